@@ -1,5 +1,13 @@
 package org.geoint.canon.event;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
+
 /**
  * An event message that has been successfully committed to an event stream.
  *
@@ -14,10 +22,74 @@ public interface AppendedEventMessage extends EventMessage {
      */
     String getSequence();
 
+    /**
+     * Stream position of the appended event message.
+     * <p>
+     * Offsets are assigned in append order, starting at 0 and increasing by
+     * one for each event appended to the stream, so the offset of an event is
+     * a numeric alternative to its sequence. Offsets are not reused; streams
+     * which remove events, such as compacted streams, may have gaps between
+     * the offsets of the remaining events.
+     * <p>
+     * The default implementation returns -1, for appended events of streams
+     * which do not assign offsets.
+     *
+     * @return stream offset, or -1 if not assigned
+     */
+    default long getOffset() {
+        return -1;
+    }
+
     /**
      * Length of the event content byte stream.
      *
      * @return event content length
      */
     int getEventLength();
+
+    /**
+     * Decodes the event content to a domain event.
+     * <p>
+     * Stream implementations may return a cached instance decoded earlier by
+     * the same codec, so many handlers of an event decode it only once;
+     * domain events returned by this method must be treated as immutable. The
+     * default implementation always decodes the content.
+     *
+     * @param <E> domain event type
+     * @param codec codec to decode the event content
+     * @return domain event
+     * @throws IOException if the event content could not be read
+     * @throws EventCodecException if the event content could not be decoded
+     */
+    default <E> E getEvent(EventCodec<E> codec)
+            throws IOException, EventCodecException {
+        return codec.decode(this);
+    }
+
+    /**
+     * Event content as a payload.
+     * <p>
+     * Stream implementations return a payload backed by the stored content,
+     * without copying it. The default implementation reads the
+     * {@link #getEventContent() content stream} into a new buffer.
+     *
+     * @return event payload
+     * @throws UncheckedIOException if the event content could not be read
+     */
+    default EventPayload getPayload() {
+        try (InputStream in = getEventContent();
+                ByteArrayOutputStream bout
+                = new ByteArrayOutputStream(Math.max(32, getEventLength()))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bout.write(buffer, 0, read);
+            }
+            return new ByteBufferEventPayload(
+                    ByteBuffer.wrap(bout.toByteArray()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("Unable to read "
+                    + "content of event '%s'.", getSequence()), ex);
+        }
+    }
 }
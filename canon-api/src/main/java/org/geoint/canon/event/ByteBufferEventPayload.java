@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.event;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * EventPayload backed by a ByteBuffer, which may be a heap array, a direct
+ * buffer, or a memory-mapped file region.
+ * <p>
+ * The payload content is never copied: {@link #getBytes() } returns a
+ * read-only view of the backing buffer and {@link #asStream() } reads from
+ * one. Each call returns an independent view, so views may be consumed
+ * concurrently, for example written to a
+ * {@link java.nio.channels.WritableByteChannel} per subscriber.
+ *
+ * @author steve_siebert
+ */
+public final class ByteBufferEventPayload implements EventPayload {
+
+    private final ByteBuffer content;
+
+    /**
+     *
+     * @param content payload content, from its position to its limit; the
+     * buffer must not be modified after the payload is created
+     */
+    public ByteBufferEventPayload(ByteBuffer content) {
+        this.content = content.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public InputStream asStream() {
+        return new ByteBufferInputStream(content);
+    }
+
+    @Override
+    public ByteBuffer getBytes() {
+        return content.duplicate();
+    }
+
+    /**
+     * Length of the payload.
+     *
+     * @return payload length in bytes
+     */
+    public int getLength() {
+        return content.remaining();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import org.geoint.canon.event.AppendedEventMessage;
+
+/**
+ * Event callback notified with batches of contiguous events from the stream
+ * the handler is registered, allowing handlers which write to a downstream
+ * store to amortize the cost of each write over many events.
+ * <p>
+ * A batch is delivered once {@link #getMaxBatchSize() } events are available
+ * or, if fewer are available, once the first event of the batch has waited
+ * {@link #getLingerMillis() linger} milliseconds.
+ * <p>
+ * If a batch cannot be handled, {@link #onFailure(List, Throwable) } decides
+ * the action applied to the events of the batch which were not processed.
+ * Handlers which processed part of the batch before failing may throw a
+ * {@link BatchHandlingException} with the number of processed events, so a
+ * retry resumes from the first unprocessed event.
+ *
+ * @author steve_siebert
+ */
+public interface BatchEventHandler extends EventHandler {
+
+    static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * Next sequential events on the stream.
+     *
+     * @param events contiguous events, in stream order, never empty
+     * @throws BatchHandlingException if some of the events were processed
+     * @throws Throwable thrown if there is a problem processing the events
+     */
+    void handle(List<AppendedEventMessage> events) throws Throwable;
+
+    /**
+     * Handles a single event as a batch of one.
+     *
+     * @param event next event to handle
+     * @throws Throwable thrown if there is a problem processing the event
+     */
+    @Override
+    default void handle(AppendedEventMessage event) throws Throwable {
+        handle(Collections.singletonList(event));
+    }
+
+    /**
+     * Maximum number of events delivered in a batch.
+     *
+     * @return maximum batch size, must be positive
+     */
+    default int getMaxBatchSize() {
+        return DEFAULT_MAX_BATCH_SIZE;
+    }
+
+    /**
+     * Maximum time to wait for a partial batch to fill before it is
+     * delivered.
+     *
+     * @return linger time in milliseconds, zero to deliver available events
+     * immediately
+     */
+    default long getLingerMillis() {
+        return 0L;
+    }
+
+    /**
+     * Called when the handler is unable to process a batch.
+     * <p>
+     * {@link EventHandlerAction#CONTINUE} skips the unprocessed events,
+     * {@link EventHandlerAction#RETRY} redelivers them and
+     * {@link EventHandlerAction#FAIL} removes the handler.
+     *
+     * @param events events of the batch which were not processed
+     * @param ex exception thrown by batch handling
+     * @return action to take
+     */
+    default EventHandlerAction onFailure(List<AppendedEventMessage> events,
+            Throwable ex) {
+        LOGGER.log(Level.WARNING,
+                String.format("Unable to handle batch of %d events starting "
+                        + "at %s, removing handler.",
+                        events.size(),
+                        events.get(0).getSequence()), ex);
+        return EventHandlerAction.FAIL;
+    }
+
+    /**
+     * Handles the failure of a single event as a batch of one.
+     *
+     * @param event event
+     * @param ex exception thrown by event handling
+     * @return action to take
+     */
+    @Override
+    default EventHandlerAction onFailure(AppendedEventMessage event,
+            Throwable ex) {
+        return onFailure(Collections.singletonList(event), ex);
+    }
+}
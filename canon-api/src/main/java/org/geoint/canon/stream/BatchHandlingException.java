@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream;
+
+import org.geoint.canon.event.EventException;
+
+/**
+ * Thrown by a {@link BatchEventHandler} which processed only part of a batch.
+ * <p>
+ * The processed events are not redelivered if the batch is retried.
+ *
+ * @author steve_siebert
+ */
+public class BatchHandlingException extends EventException {
+
+    private final int processed;
+
+    /**
+     *
+     * @param processed number of events, from the start of the batch, which
+     * were processed
+     * @param cause reason the remaining events could not be processed
+     */
+    public BatchHandlingException(int processed, Throwable cause) {
+        super(String.format("Batch handling failed after %d events.",
+                processed), cause);
+        this.processed = processed;
+    }
+
+    /**
+     * Number of events, from the start of the batch, which were processed.
+     *
+     * @return processed event count
+     */
+    public int getProcessed() {
+        return processed;
+    }
+}
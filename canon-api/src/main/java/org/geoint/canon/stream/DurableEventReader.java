@@ -137,6 +137,22 @@ public abstract class DurableEventReader extends EventReaderDecorator {
         }
     }
 
+    @Override
+    public void seek(long offset)
+            throws StreamReadException, UnknownEventException {
+        final String previousPosition = this.getPosition();
+        reader.seek(offset);
+        try {
+            writePosition(reader.getPosition());
+            currentMsg = null;
+        } catch (IOException ex) {
+            reader.setPosition(previousPosition);
+            throw new StreamReadException(this.getChannelName(),
+                    this.getStreamName(),
+                    "Cannot durably change event position.", ex);
+        }
+    }
+
     /**
      * Retrieves and auto-acknowledges the next event from the stream, waiting
      * if necessary.
@@ -94,6 +94,60 @@ public interface EventReader extends Closeable, AutoCloseable {
     AppendedEventMessage take()
             throws StreamReadException, InterruptedException;
 
+    /**
+     * Blocks until an event is available after the readers current position,
+     * or the timeout elapses, without reading the event.
+     * <p>
+     * Readers of streams which signal appends should override this method so
+     * that waiting readers are woken as soon as an event is published. The
+     * default implementation periodically checks {@link #hasNext() }.
+     *
+     * @param timeout how long to wait
+     * @param unit time unit of timeout
+     * @return true if an event is available, false if timed out
+     * @throws InterruptedException thrown if the blocked thread was interrupted
+     */
+    default boolean awaitNext(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!hasNext()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining,
+                    TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the stream of this reader signals the asynchronous handlers
+     * of the stream when events are appended.
+     * <p>
+     * Handlers reading from a reader which does not signal appends are
+     * periodically polled for events instead. The default implementation
+     * returns false.
+     *
+     * @return true if appends to the stream are signalled
+     */
+    default boolean signalsAppends() {
+        return false;
+    }
+
+    /**
+     * Number of events after the readers current position.
+     * <p>
+     * The count is a snapshot and may be approximate if events are appended,
+     * or the reader is used, concurrently. Readers which cannot efficiently
+     * count their remaining events return -1 if events are available.
+     *
+     * @return number of events available to read, or -1 if unknown
+     */
+    default long available() {
+        return hasNext() ? -1 : 0;
+    }
+
     /**
      * Set the readers position.
      *
@@ -113,4 +167,45 @@ public interface EventReader extends Closeable, AutoCloseable {
      */
     String getPosition();
 
+    /**
+     * Set the readers position to the event with the provided
+     * {@link AppendedEventMessage#getOffset() offset}.
+     * <p>
+     * Like {@link #setPosition(String)}, the event at the offset becomes the
+     * current event of the reader and the next event polled is the event
+     * following it. Readers of streams assigning offsets locate the event
+     * without resolving its sequence.
+     * <p>
+     * The default implementation is not supported.
+     *
+     * @param offset event offset
+     * @throws StreamReadException thrown if there was a problem setting the
+     * stream position
+     * @throws UnknownEventException thrown if the stream contains no event with
+     * the offset
+     * @throws UnsupportedOperationException if the stream does not assign
+     * offsets
+     */
+    default void seek(long offset)
+            throws StreamReadException, UnknownEventException {
+        throw new UnsupportedOperationException(String.format("Reader of "
+                + "stream '%s' does not support offsets.", getStreamName()));
+    }
+
+    /**
+     * Returns the offset of the current event of the reader.
+     * <p>
+     * The number of events following the reader, its lag, is the difference
+     * between the offset of the last event of the stream and the reader
+     * position.
+     * <p>
+     * The default implementation returns -1.
+     *
+     * @return offset of the current event, or -1 if no event was read or the
+     * stream does not assign offsets
+     */
+    default long position() {
+        return -1;
+    }
+
 }
@@ -30,8 +30,6 @@ public abstract class EventReaderDecorator implements EventReader {
 
     protected final EventReader reader;
 
-    private static final long THREAD_WAIT_MILLS = 10L;
-
     public EventReaderDecorator(EventReader reader) {
         this.reader = reader;
     }
@@ -56,11 +54,50 @@ public abstract class EventReaderDecorator implements EventReader {
         return reader.hasNext();
     }
 
+    /**
+     * Default implementation delegates call to decorated reader.
+     * <p>
+     * Decorators which filter events should note the decorated count is an
+     * upper bound.
+     *
+     * @return number of events available to read, or -1 if unknown
+     */
+    @Override
+    public long available() {
+        return reader.available();
+    }
+
+    /**
+     * Default implementation delegates call to decorated reader.
+     *
+     * @return true if appends to the stream are signalled
+     */
+    @Override
+    public boolean signalsAppends() {
+        return reader.signalsAppends();
+    }
+
+    /**
+     * Default implementation delegates call to decorated reader.
+     *
+     * @param timeout how long to wait
+     * @param unit time unit of timeout
+     * @return true if an event is available, false if timed out
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    @Override
+    public boolean awaitNext(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return reader.awaitNext(timeout, unit);
+    }
+
     /**
      * This method calls {@link EventReaderDecorator#poll() }, rather than
      * delegating the call to the decorated reader, so that decorator
      * implementations only need to implement 
      * {@link EventReaderDecorator#poll() } for most cases.
+     * <p>
+     * Between polls the thread waits on {@link #awaitNext(long, TimeUnit) }.
      *
      * @param timeout time to wait for event
      * @param unit time unit of timeout
@@ -73,14 +110,15 @@ public abstract class EventReaderDecorator implements EventReader {
     @Override
     public Optional<AppendedEventMessage> poll(long timeout, TimeUnit unit)
             throws StreamReadException, InterruptedException {
-        long waited = 0;
-        Optional<AppendedEventMessage> event = Optional.empty();
-        while (!(event = this.poll()).isPresent()
-                || unit.toMillis(timeout) > waited) {
-            Thread.sleep(THREAD_WAIT_MILLS);
-            waited += THREAD_WAIT_MILLS;
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Optional<AppendedEventMessage> event;
+        while (!(event = this.poll()).isPresent()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            awaitNext(remaining, TimeUnit.NANOSECONDS);
         }
-
         return event;
     }
 
@@ -89,6 +127,8 @@ public abstract class EventReaderDecorator implements EventReader {
      * delegating the call to the decorated reader, so that decorator
      * implementations only need to implement 
      * {@link EventReaderDecorator#poll() } for most cases.
+     * <p>
+     * Between polls the thread waits on {@link #awaitNext(long, TimeUnit) }.
      *
      * @return next event on the stream
      * @throws StreamReadException if there was a problem reading from the
@@ -97,12 +137,11 @@ public abstract class EventReaderDecorator implements EventReader {
      * interrupted
      */
     @Override
-    @SuppressWarnings("SleepWhileInLoop")
     public AppendedEventMessage take()
             throws StreamReadException, InterruptedException {
-        Optional<AppendedEventMessage> event = null;
+        Optional<AppendedEventMessage> event;
         while (!(event = this.poll()).isPresent()) {
-            Thread.sleep(THREAD_WAIT_MILLS);
+            awaitNext(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
         }
         return event.get();
     }
@@ -139,6 +178,28 @@ public abstract class EventReaderDecorator implements EventReader {
         return reader.getPosition();
     }
 
+    /**
+     * Default implementation delegates call to decorated reader.
+     *
+     * @param offset offset of the event in the stream to move to
+     * @throws UnknownEventException if there isn't such a position
+     */
+    @Override
+    public void seek(long offset)
+            throws StreamReadException, UnknownEventException {
+        reader.seek(offset);
+    }
+
+    /**
+     * Default implementation delegates call to decorated reader.
+     *
+     * @return offset of the current event
+     */
+    @Override
+    public long position() {
+        return reader.position();
+    }
+
     /**
      * Default implementation delegates call to decorated reader.
      *
@@ -17,6 +17,8 @@ package org.geoint.canon.stream;
 
 import java.io.Closeable;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import org.geoint.canon.codec.CodecNotFoundException;
 import org.geoint.canon.codec.CodecResolver;
@@ -120,6 +122,52 @@ public interface EventStream<E extends EventMessage>
      */
     void addHandler(EventHandler handler, EventReader reader);
 
+    /**
+     * Replays every event of the stream to the handler on concurrent lanes
+     * partitioned by the value of an event header, using the common
+     * fork-join pool.
+     *
+     * @param handler thread-safe event handler
+     * @param keyHeader name of the event header partitioning events
+     * @param partitions number of concurrent lanes
+     * @return future completed when the replay completes
+     * @see #replay(EventHandler, String, int, ForkJoinPool)
+     */
+    default CompletableFuture<Void> replay(EventHandler handler,
+            String keyHeader, int partitions) {
+        return replay(handler, keyHeader, partitions,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Replays every event of the stream to the handler on concurrent lanes
+     * partitioned by the value of an event header.
+     * <p>
+     * Events with the same key header value are always handled in stream
+     * order, one at a time; events with different values may be handled
+     * concurrently, so the handler must be thread-safe. Events without the
+     * key header are handled in order with each other. The replay ends at the
+     * last event appended when the reader reaches the end of the stream.
+     * <p>
+     * Handler failures are handled as directed by
+     * {@link EventHandler#onFailure}; a {@link EventHandlerAction#FAIL}
+     * stops the replay and completes the returned future exceptionally with a
+     * {@link StreamReadException}. Cancelling the future stops the replay.
+     *
+     * @param handler thread-safe event handler
+     * @param keyHeader name of the event header partitioning events
+     * @param partitions number of concurrent lanes, typically the
+     * parallelism of the pool
+     * @param pool pool replaying the events
+     * @return future completed when the replay completes
+     * @throws IllegalArgumentException if partitions is less than one
+     */
+    default CompletableFuture<Void> replay(EventHandler handler,
+            String keyHeader, int partitions, ForkJoinPool pool) {
+        return PartitionedReplay.start(newReader(), handler, keyHeader,
+                partitions, pool);
+    }
+
     /**
      * List the handlers currently registered to the stream.
      * <p>
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.event.AppendedEventMessage;
+
+/**
+ * Replays the events of a reader to a handler on concurrent, ordered, lanes.
+ * <p>
+ * Events are assigned a lane by the hash of a key header, so events with the
+ * same key are handled in stream order while events of different lanes are
+ * handled concurrently. Events are read by a single dispatching task in
+ * batches; the batch of each lane is chained after the previous batch of the
+ * same lane, so lanes never wait on each other and the dispatcher reads ahead
+ * of the handlers by a bounded number of batches. The dispatcher waits on
+ * the lanes as a managed blocker of the fork-join pool, which compensates the
+ * waiting worker.
+ *
+ * @see EventStream#replay(EventHandler, String, int, ForkJoinPool)
+ * @author steve_siebert
+ */
+final class PartitionedReplay {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int MAX_BATCHES_IN_FLIGHT = 4;
+    private static final Logger LOGGER
+            = Logger.getLogger(PartitionedReplay.class.getName());
+
+    private final EventReader reader;
+    private final EventHandler handler;
+    private final String keyHeader;
+    private final ForkJoinPool pool;
+    //tail of the work of each lane
+    private final CompletableFuture<?>[] lanes;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private volatile Throwable failure;
+
+    private PartitionedReplay(EventReader reader, EventHandler handler,
+            String keyHeader, int partitions, ForkJoinPool pool) {
+        this.reader = reader;
+        this.handler = handler;
+        this.keyHeader = keyHeader;
+        this.pool = pool;
+        this.lanes = new CompletableFuture<?>[partitions];
+        for (int i = 0; i < partitions; i++) {
+            lanes[i] = CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Starts replaying the events of the reader, up to the end of the stream
+     * at the time they are read.
+     *
+     * @param reader reader positioned at the first event to replay, closed
+     * when the replay completes
+     * @param handler thread-safe event handler
+     * @param keyHeader event header used to partition events
+     * @param partitions number of lanes
+     * @param pool pool running the dispatcher and lanes
+     * @return future completed when every event was handled, or completed
+     * exceptionally if the handler failed
+     */
+    static CompletableFuture<Void> start(EventReader reader,
+            EventHandler handler, String keyHeader, int partitions,
+            ForkJoinPool pool) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException(String.format("Invalid "
+                    + "number of replay partitions %d, must be positive.",
+                    partitions));
+        }
+        final PartitionedReplay replay = new PartitionedReplay(reader,
+                handler, keyHeader, partitions, pool);
+        CompletableFuture.runAsync(replay::dispatch, pool);
+        return replay.result;
+    }
+
+    private void dispatch() {
+        final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+        try (EventReader r = reader) {
+            List<AppendedEventMessage>[] batch = newBatch();
+            int size = 0;
+            Optional<AppendedEventMessage> next;
+            while (!isStopped() && (next = r.poll()).isPresent()) {
+                final int lane = lane(next.get());
+                if (batch[lane] == null) {
+                    batch[lane] = new ArrayList<>();
+                }
+                batch[lane].add(next.get());
+                if (++size == BATCH_SIZE) {
+                    submit(batch, inFlight);
+                    batch = newBatch();
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                submit(batch, inFlight);
+            }
+        } catch (StreamReadException | IOException | RuntimeException ex) {
+            fail(ex);
+        }
+
+        CompletableFuture.allOf(lanes).whenComplete((v, ex) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Chains the lists of the batch to their lanes, waiting for the oldest
+     * batch if the dispatcher is too far ahead of the handlers.
+     */
+    private void submit(List<AppendedEventMessage>[] batch,
+            Deque<CompletableFuture<Void>> inFlight) {
+        final List<CompletableFuture<?>> submitted = new ArrayList<>();
+        for (int i = 0; i < batch.length; i++) {
+            final List<AppendedEventMessage> events = batch[i];
+            if (events != null) {
+                lanes[i] = lanes[i].thenRunAsync(() -> handle(events),
+                        pool);
+                submitted.add(lanes[i]);
+            }
+        }
+        inFlight.add(CompletableFuture.allOf(
+                submitted.toArray(new CompletableFuture<?>[submitted.size()])));
+        if (inFlight.size() > MAX_BATCHES_IN_FLIGHT) {
+            inFlight.poll().join();
+        }
+    }
+
+    private void handle(List<AppendedEventMessage> events) {
+        for (AppendedEventMessage e : events) {
+            if (isStopped()) {
+                return;
+            }
+            try {
+                notify(e);
+            } catch (RuntimeException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies the handler of the event, retrying for as long as the handler
+     * requests.
+     */
+    private void notify(AppendedEventMessage msg) {
+        while (!isStopped()) {
+            try {
+                handler.handle(msg);
+                return;
+            } catch (Throwable ex) {
+                EventHandlerAction action = handler.onFailure(msg, ex);
+                switch (action) {
+                    case CONTINUE:
+                        LOGGER.log(Level.FINEST, () -> String.format("Handler "
+                                + "'%s' threw exception while replaying event "
+                                + "'%s:%s', skipping event.",
+                                handler.getClass().getName(),
+                                msg.getEventType(), msg.getSequence()));
+                        return;
+                    case RETRY:
+                        LOGGER.log(Level.FINER, () -> String.format("Handler "
+                                + "'%s' threw exception while replaying event "
+                                + "'%s:%s', retrying.",
+                                handler.getClass().getName(),
+                                msg.getEventType(), msg.getSequence()));
+                        break;
+                    case FAIL:
+                    default:
+                        fail(new StreamReadException(msg.getChannelName(),
+                                msg.getStreamName(), String.format("Handler "
+                                        + "'%s' failed to replay event '%s'.",
+                                        handler.getClass().getName(),
+                                        msg.getSequence()), ex));
+                        return;
+                }
+            }
+        }
+    }
+
+    private int lane(AppendedEventMessage e) {
+        if (lanes.length == 1) {
+            return 0;
+        }
+        //events without the key header share a lane
+        final int h = e.findHeader(keyHeader).map(String::hashCode).orElse(0);
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<AppendedEventMessage>[] newBatch() {
+        return new List[lanes.length];
+    }
+
+    private void fail(Throwable ex) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = ex;
+            }
+        }
+    }
+
+    /**
+     * Replay stops on the first failure or when the caller cancels the
+     * returned future.
+     */
+    private boolean isStopped() {
+        return failure != null || result.isDone();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream;
+
+import java.io.Serializable;
+
+/**
+ * Event handler whose derived state is periodically persisted as a snapshot,
+ * so the handler can be restored from the newest snapshot and resume from the
+ * event the snapshot was taken at rather than replaying the whole stream.
+ * <p>
+ * Snapshots are created on the thread notifying the handler, after the
+ * handler has handled the event the snapshot is tagged with, so the returned
+ * state must be consistent with the events handled so far.
+ *
+ * @author steve_siebert
+ * @param <S> snapshot state type
+ */
+public interface SnapshotEventHandler<S extends Serializable>
+        extends EventHandler {
+
+    /**
+     * Default number of events handled between snapshots.
+     */
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 10000;
+
+    /**
+     * Stream-unique name of the snapshots of this handler.
+     * <p>
+     * The name must be stable across restarts of the application; by default
+     * it is the fully qualified name of the handler class.
+     *
+     * @return snapshot name
+     */
+    default String getSnapshotName() {
+        return getClass().getName();
+    }
+
+    /**
+     * Number of events handled between snapshots.
+     *
+     * @return snapshot interval
+     */
+    default int getSnapshotInterval() {
+        return DEFAULT_SNAPSHOT_INTERVAL;
+    }
+
+    /**
+     * Returns the current state of the handler.
+     * <p>
+     * The state is serialized before the handler is notified of the next
+     * event, it need not be a copy.
+     *
+     * @return handler state
+     */
+    S createSnapshot();
+
+    /**
+     * Restores the handler state from a snapshot before the handler is
+     * notified of the events following the snapshot.
+     *
+     * @param snapshot handler state
+     */
+    void restoreSnapshot(S snapshot);
+}
@@ -23,7 +23,7 @@ public abstract class TypedEventHandler<T> implements EventHandler {
             return;
         }
 
-        handle(event, codec.decode(event));
+        handle(event, event.getEvent(codec));
     }
 
     protected abstract void handle(AppendedEventMessage msg,
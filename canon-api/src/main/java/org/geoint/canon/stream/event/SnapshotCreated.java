@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.event;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Event published when a handler snapshot of a stream is created.
+ *
+ * @author steve_siebert
+ */
+public class SnapshotCreated implements Serializable {
+
+    private final long serializableVersionUID = 1L;
+
+    private final String channelName;
+    private final String streamName;
+    private final String snapshotName;
+    private final String sequence;
+
+    public SnapshotCreated(String channelName, String streamName,
+            String snapshotName, String sequence) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.snapshotName = snapshotName;
+        this.sequence = sequence;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    public String getSnapshotName() {
+        return snapshotName;
+    }
+
+    /**
+     * Sequence of the last event reflected by the snapshot.
+     *
+     * @return event sequence
+     */
+    public String getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Snapshot '%s' of stream '%s' on channel '%s' was "
+                + "created at event '%s'.", snapshotName, streamName,
+                channelName, sequence);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 89 * hash + Objects.hashCode(this.channelName);
+        hash = 89 * hash + Objects.hashCode(this.streamName);
+        hash = 89 * hash + Objects.hashCode(this.snapshotName);
+        hash = 89 * hash + Objects.hashCode(this.sequence);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final SnapshotCreated other = (SnapshotCreated) obj;
+        if (!Objects.equals(this.channelName, other.channelName)) {
+            return false;
+        }
+        if (!Objects.equals(this.streamName, other.streamName)) {
+            return false;
+        }
+        if (!Objects.equals(this.snapshotName, other.snapshotName)) {
+            return false;
+        }
+        if (!Objects.equals(this.sequence, other.sequence)) {
+            return false;
+        }
+        return true;
+    }
+
+}
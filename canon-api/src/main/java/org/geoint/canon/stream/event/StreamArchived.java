@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.event;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Event published when events of a stream were moved to the stream archive.
+ * <p>
+ * Archived events remain readable from the stream with their sequence
+ * unchanged.
+ *
+ * @author steve_siebert
+ */
+public final class StreamArchived implements Serializable {
+
+    private final long serializableVersionUID = 1L;
+
+    private final String channelName;
+    private final String streamName;
+    private final String throughSequence;
+    private final long eventsArchived;
+    private final long bytesArchived;
+    private final long archiveBytes;
+
+    public StreamArchived(String channelName, String streamName,
+            String throughSequence, long eventsArchived, long bytesArchived,
+            long archiveBytes) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.throughSequence = throughSequence;
+        this.eventsArchived = eventsArchived;
+        this.bytesArchived = bytesArchived;
+        this.archiveBytes = archiveBytes;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * Sequence of the last event of the archived part of the stream; events
+     * after it were not archived.
+     *
+     * @return event sequence
+     */
+    public String getThroughSequence() {
+        return throughSequence;
+    }
+
+    public long getEventsArchived() {
+        return eventsArchived;
+    }
+
+    /**
+     * Size of the archived events in the stream.
+     *
+     * @return bytes removed from the stream
+     */
+    public long getBytesArchived() {
+        return bytesArchived;
+    }
+
+    /**
+     * Size of the archived events in the archive, after compression.
+     *
+     * @return bytes added to the archive
+     */
+    public long getArchiveBytes() {
+        return archiveBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Event stream '%s' was archived through event "
+                + "'%s', archiving %d events (%d bytes, %d bytes archived).",
+                streamName, throughSequence, eventsArchived, bytesArchived,
+                archiveBytes);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 89 * hash + Objects.hashCode(this.channelName);
+        hash = 89 * hash + Objects.hashCode(this.streamName);
+        hash = 89 * hash + Objects.hashCode(this.throughSequence);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final StreamArchived other = (StreamArchived) obj;
+        if (!Objects.equals(this.channelName, other.channelName)) {
+            return false;
+        }
+        if (!Objects.equals(this.streamName, other.streamName)) {
+            return false;
+        }
+        if (!Objects.equals(this.throughSequence, other.throughSequence)) {
+            return false;
+        }
+        return this.eventsArchived == other.eventsArchived
+                && this.bytesArchived == other.bytesArchived
+                && this.archiveBytes == other.archiveBytes;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.event;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Event published when superseded events of a stream were removed, retaining
+ * only the newest event of each key.
+ * <p>
+ * Sequences of the retained events are unchanged.
+ *
+ * @author steve_siebert
+ */
+public final class StreamCompacted implements Serializable {
+
+    private final long serializableVersionUID = 1L;
+
+    private final String channelName;
+    private final String streamName;
+    private final String keyHeader;
+    private final String throughSequence;
+    private final long eventsRemoved;
+    private final long bytesReclaimed;
+
+    public StreamCompacted(String channelName, String streamName,
+            String keyHeader, String throughSequence, long eventsRemoved,
+            long bytesReclaimed) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.keyHeader = keyHeader;
+        this.throughSequence = throughSequence;
+        this.eventsRemoved = eventsRemoved;
+        this.bytesReclaimed = bytesReclaimed;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * Name of the event header identifying the key of an event.
+     *
+     * @return key header name
+     */
+    public String getKeyHeader() {
+        return keyHeader;
+    }
+
+    /**
+     * Sequence of the last event of the compacted part of the stream; events
+     * after it were not compacted.
+     *
+     * @return event sequence
+     */
+    public String getThroughSequence() {
+        return throughSequence;
+    }
+
+    public long getEventsRemoved() {
+        return eventsRemoved;
+    }
+
+    public long getBytesReclaimed() {
+        return bytesReclaimed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Event stream '%s' was compacted by '%s' through "
+                + "event '%s', removing %d events (%d bytes).", streamName,
+                keyHeader, throughSequence, eventsRemoved, bytesReclaimed);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 89 * hash + Objects.hashCode(this.channelName);
+        hash = 89 * hash + Objects.hashCode(this.streamName);
+        hash = 89 * hash + Objects.hashCode(this.throughSequence);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final StreamCompacted other = (StreamCompacted) obj;
+        if (!Objects.equals(this.channelName, other.channelName)) {
+            return false;
+        }
+        if (!Objects.equals(this.streamName, other.streamName)) {
+            return false;
+        }
+        if (!Objects.equals(this.keyHeader, other.keyHeader)) {
+            return false;
+        }
+        if (!Objects.equals(this.throughSequence, other.throughSequence)) {
+            return false;
+        }
+        return this.eventsRemoved == other.eventsRemoved
+                && this.bytesReclaimed == other.bytesReclaimed;
+    }
+
+}
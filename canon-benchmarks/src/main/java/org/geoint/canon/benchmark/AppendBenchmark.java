@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.event.EventAppended;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of appending events to a stream, one event per append and in
+ * batches, by a single thread and by contending threads.
+ * <p>
+ * Other thread counts may be measured with the JMH {@code -t} option.
+ *
+ * @author steve_siebert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AppendBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({BenchmarkChannels.HEAP, BenchmarkChannels.FILE})
+    public String backend;
+
+    @Param({"64", "1024", "8192"})
+    public int payloadSize;
+
+    private BenchmarkChannels channels;
+    private EventStream stream;
+    private byte[] payload;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        channels = BenchmarkChannels.open(backend);
+        stream = channels.stream();
+        payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        channels.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public EventAppended append() throws Exception {
+        return appendSingle();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EventAppended appendContended() throws Exception {
+        return appendSingle();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public EventAppended appendBatch() throws Exception {
+        return appendBatched();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public EventAppended appendBatchContended() throws Exception {
+        return appendBatched();
+    }
+
+    private EventAppended appendSingle() throws Exception {
+        final EventAppender appender = stream.newAppender();
+        appender.create(BenchmarkChannels.RawEventCodec.EVENT_TYPE)
+                .event(payload);
+        return appender.append();
+    }
+
+    private EventAppended appendBatched() throws Exception {
+        final EventAppender appender = stream.newAppender();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            appender.create(BenchmarkChannels.RawEventCodec.EVENT_TYPE)
+                    .event(payload);
+        }
+        return appender.append();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.StreamAppendException;
+import org.geoint.canon.stream.file.FileChannelProvider;
+import org.geoint.canon.stream.memory.MemoryChannelProvider;
+
+/**
+ * Opens the channels and streams exercised by the benchmarks.
+ * <p>
+ * Events are appended as raw byte payloads with {@link RawEventCodec}, so
+ * stream benchmarks measure the stream rather than a codec.
+ *
+ * @author steve_siebert
+ */
+final class BenchmarkChannels {
+
+    static final String HEAP = "heap";
+    static final String FILE = "file";
+    static final String STREAM_NAME = "benchmark";
+
+    private final EventChannel channel;
+    private final File dir;
+
+    private BenchmarkChannels(EventChannel channel, File dir) {
+        this.channel = channel;
+        this.dir = dir;
+    }
+
+    /**
+     * Open a new, empty, channel.
+     *
+     * @param backend {@link #HEAP} or {@link #FILE}
+     * @return benchmark channel
+     * @throws Exception if the channel could not be opened
+     */
+    static BenchmarkChannels open(String backend) throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        //channel admin events are java serializable
+        final HierarchicalCodecResolver codecs = new HierarchicalCodecResolver(
+                new RawEventCodec(), new ObjectStreamEventCodec());
+        switch (backend) {
+            case HEAP:
+                return new BenchmarkChannels(new MemoryChannelProvider()
+                        .getChannel(STREAM_NAME, props, codecs), null);
+            case FILE:
+                final File dir = Files.createTempDirectory("canon-bench")
+                        .toFile();
+                props.put(FileChannelProvider.PROPERTY_DIRECTORY,
+                        dir.getAbsolutePath());
+                return new BenchmarkChannels(new FileChannelProvider()
+                        .getChannel(STREAM_NAME, props, codecs), dir);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown "
+                        + "benchmark backend '%s'.", backend));
+        }
+    }
+
+    EventStream stream() throws Exception {
+        return channel.getOrCreateStream(STREAM_NAME);
+    }
+
+    /**
+     * Append events with the payload, in batches.
+     *
+     * @param stream stream
+     * @param payload event content
+     * @param count number of events to append
+     * @param batchSize number of events per append
+     * @throws StreamAppendException if the events could not be appended
+     */
+    static void fill(EventStream stream, byte[] payload, int count,
+            int batchSize) throws StreamAppendException {
+        final EventAppender appender = stream.newAppender();
+        for (int i = 0; i < count; i++) {
+            appender.create(RawEventCodec.EVENT_TYPE).event(payload);
+            if ((i + 1) % batchSize == 0 || i + 1 == count) {
+                appender.append();
+            }
+        }
+    }
+
+    void close() throws IOException {
+        if (channel instanceof Closeable) {
+            ((Closeable) channel).close();
+        }
+        if (dir != null) {
+            delete(dir);
+        }
+    }
+
+    private static void delete(File f) {
+        final File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Writes byte array events as-is.
+     */
+    static final class RawEventCodec implements EventCodec<byte[]> {
+
+        static final String EVENT_TYPE = "org.geoint.canon.benchmark.raw";
+
+        @Override
+        public boolean isSupported(String eventType) {
+            return EVENT_TYPE.equals(eventType);
+        }
+
+        @Override
+        public void encode(byte[] event, OutputStream out)
+                throws IOException, EventCodecException {
+            out.write(event);
+        }
+
+        @Override
+        public byte[] decode(EventMessage e)
+                throws IOException, EventCodecException {
+            try (InputStream in = e.getEventContent();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                final byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        }
+    }
+}
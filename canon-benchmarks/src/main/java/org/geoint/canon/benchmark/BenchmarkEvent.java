@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Representative domain event encoded by the codec benchmarks.
+ *
+ * @author steve_siebert
+ */
+public class BenchmarkEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private UUID entityId;
+    private long version;
+    private int quantity;
+    private boolean approved;
+    private Instant occurred;
+    private String description;
+    private List<String> tags;
+
+    private BenchmarkEvent() {
+    }
+
+    /**
+     * Create an event with a description of the requested length.
+     *
+     * @param descriptionLength length of the description
+     * @return event
+     */
+    static BenchmarkEvent create(int descriptionLength) {
+        final BenchmarkEvent e = new BenchmarkEvent();
+        e.entityId = new UUID(4242L, 2424L);
+        e.version = 17;
+        e.quantity = 250;
+        e.approved = true;
+        e.occurred = Instant.ofEpochSecond(1460000000L);
+        final StringBuilder sb = new StringBuilder(descriptionLength);
+        for (int i = 0; i < descriptionLength; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        e.description = sb.toString();
+        e.tags = new ArrayList<>();
+        e.tags.add("benchmark");
+        e.tags.add("canon");
+        return e;
+    }
+}
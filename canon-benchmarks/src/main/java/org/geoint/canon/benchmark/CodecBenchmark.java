@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.binary.BinaryEventCodec;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of a domain event by the java serialization and
+ * binary codecs.
+ *
+ * @author steve_siebert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    public static final String SERIALIZATION = "serialization";
+    public static final String BINARY = "binary";
+
+    @Param({SERIALIZATION, BINARY})
+    public String codecName;
+
+    /**
+     * Length of the string content of the event.
+     */
+    @Param({"16", "256", "4096"})
+    public int payloadSize;
+
+    private EventCodec codec;
+    private BenchmarkEvent event;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private ContentMessage encoded;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        switch (codecName) {
+            case SERIALIZATION:
+                codec = new ObjectStreamEventCodec();
+                break;
+            case BINARY:
+                codec = new BinaryEventCodec(BenchmarkEvent.class);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown "
+                        + "codec '%s'.", codecName));
+        }
+        event = BenchmarkEvent.create(payloadSize);
+        codec.encode(event, out);
+        encoded = new ContentMessage(out.toByteArray());
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int encode() throws Exception {
+        out.reset();
+        codec.encode(event, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return codec.decode(encoded);
+    }
+
+    /**
+     * Event message of encoded benchmark event content.
+     */
+    private static final class ContentMessage implements EventMessage {
+
+        private final byte[] content;
+
+        ContentMessage(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public String getChannelName() {
+            return BenchmarkChannels.STREAM_NAME;
+        }
+
+        @Override
+        public String getStreamName() {
+            return BenchmarkChannels.STREAM_NAME;
+        }
+
+        @Override
+        public String getAuthorizerId() {
+            return null;
+        }
+
+        @Override
+        public String[] getTriggerIds() {
+            return new String[0];
+        }
+
+        @Override
+        public String getEventType() {
+            return BenchmarkEvent.class.getName();
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Optional<String> findHeader(String headerName) {
+            return Optional.empty();
+        }
+
+        @Override
+        public String getHeader(String headerName,
+                Supplier<String> defaultValue) {
+            return defaultValue.get();
+        }
+
+        @Override
+        public InputStream getEventContent() {
+            return new ByteArrayInputStream(content);
+        }
+    }
+}
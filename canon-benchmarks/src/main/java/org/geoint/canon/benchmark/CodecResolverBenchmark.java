@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Codec resolution through the channel, stream and appender tiers of a
+ * {@link HierarchicalCodecResolver}, as done for every appended event.
+ *
+ * @author steve_siebert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CodecResolverBenchmark {
+
+    /**
+     * Number of codecs registered to each tier.
+     */
+    @Param({"1", "10"})
+    public int codecsPerTier;
+
+    private HierarchicalCodecResolver appenderTier;
+
+    @Setup
+    public void setUp() {
+        //the channel tier resolves java serializable types, as by default
+        final HierarchicalCodecResolver channelTier
+                = new HierarchicalCodecResolver(new ObjectStreamEventCodec());
+        final HierarchicalCodecResolver streamTier
+                = new HierarchicalCodecResolver(channelTier);
+        appenderTier = new HierarchicalCodecResolver(streamTier);
+        for (int i = 0; i < codecsPerTier; i++) {
+            channelTier.add(new NamedEventCodec("channel" + i));
+            streamTier.add(new NamedEventCodec("stream" + i));
+            appenderTier.add(new NamedEventCodec("appender" + i));
+        }
+    }
+
+    @Benchmark
+    public Optional<EventCodec> findAppenderTier() {
+        return appenderTier.findCodec("appender0");
+    }
+
+    @Benchmark
+    public Optional<EventCodec> findChannelTier() {
+        return appenderTier.findCodec("channel0");
+    }
+
+    @Benchmark
+    public Optional<EventCodec> findSerializable() {
+        return appenderTier.findCodec("java.lang.String");
+    }
+
+    @Benchmark
+    public Optional<EventCodec> findUnresolved() {
+        return appenderTier.findCodec("org.geoint.canon.benchmark.unknown");
+    }
+
+    /**
+     * Codec supporting a single event type.
+     */
+    private static final class NamedEventCodec implements EventCodec<Object> {
+
+        private final String eventType;
+
+        NamedEventCodec(String eventType) {
+            this.eventType = eventType;
+        }
+
+        @Override
+        public boolean isSupported(String eventType) {
+            return this.eventType.equals(eventType);
+        }
+
+        @Override
+        public void encode(Object event, OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object decode(EventMessage e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoint.canon.async.AsyncHandlerNotifier;
+import org.geoint.canon.async.DispatchMode;
+import org.geoint.canon.impl.stream.AbstractEventStream;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end latency from appending an event to a heap stream until every
+ * handler registered to the stream has handled it, dispatched by the
+ * {@link AsyncHandlerNotifier}.
+ *
+ * @author steve_siebert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(1)
+public class NotifierBenchmark {
+
+    //fail rather than hang if an event is never dispatched
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    @Param({"1", "4", "16"})
+    public int handlers;
+
+    @Param({"SHARED", "ISOLATED"})
+    public DispatchMode mode;
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    private BenchmarkChannels channels;
+    private EventStream stream;
+    private byte[] payload;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        channels = BenchmarkChannels.open(BenchmarkChannels.HEAP);
+        stream = channels.stream();
+        payload = new byte[payloadSize];
+        for (int i = 0; i < handlers; i++) {
+            ((AbstractEventStream) stream).addHandler(
+                    (e) -> pending.decrementAndGet(),
+                    stream.newReader(), mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channels.close();
+    }
+
+    @Benchmark
+    public void appendToHandled() throws Exception {
+        pending.set(handlers);
+        final EventAppender appender = stream.newAppender();
+        appender.create(BenchmarkChannels.RawEventCodec.EVENT_TYPE)
+                .event(payload);
+        appender.append();
+
+        final long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (pending.get() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException(String.format("Event was not "
+                        + "handled by %d of %d handlers.", pending.get(),
+                        handlers));
+            }
+            Thread.yield();
+        }
+    }
+}
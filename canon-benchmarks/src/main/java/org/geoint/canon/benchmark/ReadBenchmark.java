@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Sequential scans of a stream with {@link EventReader#poll() } and random
+ * positioning of a reader with {@link EventReader#setPosition(String) }.
+ * <p>
+ * The stream is filled once per trial; benchmark threads (JMH {@code -t})
+ * read the same stream with their own readers.
+ *
+ * @author steve_siebert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({BenchmarkChannels.HEAP, BenchmarkChannels.FILE})
+    public String backend;
+
+    @Param({"64", "1024", "8192"})
+    public int payloadSize;
+
+    @Param({"100000"})
+    public int eventCount;
+
+    private BenchmarkChannels channels;
+    private EventStream stream;
+    private String[] sequences;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        channels = BenchmarkChannels.open(backend);
+        stream = channels.stream();
+        final byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        BenchmarkChannels.fill(stream, payload, eventCount, 1000);
+
+        final List<String> appended = new ArrayList<>(eventCount);
+        final EventReader reader = stream.newReader();
+        Optional<AppendedEventMessage> next;
+        while ((next = reader.poll()).isPresent()) {
+            appended.add(next.get().getSequence());
+        }
+        sequences = appended.toArray(new String[appended.size()]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channels.close();
+    }
+
+    /**
+     * Reads every event of the stream, reporting the time per scan.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void pollScan(Blackhole bh) throws Exception {
+        final EventReader reader = stream.newReader();
+        Optional<AppendedEventMessage> next;
+        while ((next = reader.poll()).isPresent()) {
+            bh.consume(next.get());
+        }
+    }
+
+    /**
+     * Positions a reader at a random event of the stream and reads it.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public AppendedEventMessage setPosition(ReaderState state)
+            throws Exception {
+        state.reader.setPosition(
+                sequences[state.random.nextInt(sequences.length)]);
+        return state.reader.read();
+    }
+
+    /**
+     * Reader and random position source of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ReaderState {
+
+        private final Random random = new Random(42);
+        private EventReader reader;
+
+        @Setup(Level.Trial)
+        public void setUp(ReadBenchmark benchmark) {
+            reader = benchmark.stream.newReader();
+        }
+    }
+}
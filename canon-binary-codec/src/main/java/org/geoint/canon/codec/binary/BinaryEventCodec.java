@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.EventMessage;
+
+/**
+ * Encodes events in a compact binary format derived from the fields of the
+ * event class.
+ * <p>
+ * Unlike Java serialization, no class descriptors or field names are written:
+ * content is a format version and a schema fingerprint followed by the field
+ * values of the event, with integral values written as variable-length
+ * integers. The {@link EventSchema schema} of each event class is created
+ * once and accesses fields through cached method handles, so encoding and
+ * decoding perform no reflection.
+ * <p>
+ * Event classes must be registered with the codec, by default using the fully
+ * qualified class name as the event type, and must have a no-argument
+ * constructor. Supported field types are primitives and their wrappers,
+ * String, byte[], enums, Instant, UUID, arrays, collections and maps declared
+ * with type arguments, and other concrete classes following the same rules
+ * (written as their declared type, subclasses are not supported).
+ * <p>
+ * This codec is thread-safe.
+ *
+ * @author steve_siebert
+ */
+public class BinaryEventCodec implements EventCodec<Object> {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final Map<String, EventSchema> eventTypes
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Create a codec for the event classes, using their fully qualified class
+     * names as the event types.
+     *
+     * @param eventClasses event classes
+     * @throws IllegalArgumentException if an event class cannot be encoded
+     * in the binary format
+     */
+    public BinaryEventCodec(Class<?>... eventClasses) {
+        for (Class<?> c : eventClasses) {
+            register(c);
+        }
+    }
+
+    /**
+     * Register the event class using its fully qualified class name as the
+     * event type.
+     *
+     * @param eventClass event class
+     * @return this codec
+     * @throws IllegalArgumentException if the event class cannot be encoded
+     * in the binary format
+     */
+    public final BinaryEventCodec register(Class<?> eventClass) {
+        return register(eventClass.getName(), eventClass);
+    }
+
+    /**
+     * Register the event class for the event type.
+     *
+     * @param eventType event type
+     * @param eventClass event class
+     * @return this codec
+     * @throws IllegalArgumentException if the event class cannot be encoded
+     * in the binary format
+     */
+    public final BinaryEventCodec register(String eventType,
+            Class<?> eventClass) {
+        try {
+            eventTypes.put(eventType, EventSchema.of(eventClass));
+        } catch (EventCodecException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex.getCause());
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isSupported(String eventType) {
+        return eventTypes.containsKey(eventType);
+    }
+
+    @Override
+    public void encode(Object event, OutputStream out)
+            throws IOException, EventCodecException {
+        final EventSchema schema = EventSchema.of(event.getClass());
+        final BinaryWriter writer = BinaryWriter.acquire();
+        try {
+            writer.writeByte(FORMAT_VERSION);
+            writer.writeInt(schema.getFingerprint());
+            schema.writeFields(event, writer);
+            writer.writeTo(out);
+        } finally {
+            writer.release();
+        }
+    }
+
+    @Override
+    public Object decode(EventMessage e) throws IOException, EventCodecException {
+        final EventSchema schema = eventTypes.get(e.getEventType());
+        if (schema == null) {
+            throw new EventCodecException(String.format("Event type '%s' is "
+                    + "not registered with the binary codec.",
+                    e.getEventType()));
+        }
+
+        final BinaryReader reader = new BinaryReader(content(e));
+        try {
+            final byte version = reader.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new EventCodecException(String.format("Unsupported "
+                        + "binary format version %d of '%s' event.", version,
+                        e.getEventType()));
+            }
+            final int fingerprint = reader.readInt();
+            if (fingerprint != schema.getFingerprint()) {
+                throw new EventCodecException(String.format("Content of "
+                        + "'%s' event was encoded with a different version of "
+                        + "class '%s'.", e.getEventType(),
+                        schema.getType().getName()));
+            }
+            return schema.readFields(reader);
+        } catch (BufferUnderflowException ex) {
+            throw new EventCodecException(String.format("Content of '%s' "
+                    + "event is truncated.", e.getEventType()), ex);
+        }
+    }
+
+    /**
+     * Event content, without copying if the message is backed by a buffer.
+     */
+    private static ByteBuffer content(EventMessage e) throws IOException {
+        if (e instanceof AppendedEventMessage) {
+            try {
+                return ((AppendedEventMessage) e).getPayload().getBytes();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+        try (InputStream in = e.getEventContent();
+                ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bout.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(bout.toByteArray());
+        }
+    }
+}
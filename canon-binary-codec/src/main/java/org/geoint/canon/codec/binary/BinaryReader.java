@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the binary format written by {@link BinaryWriter} from a buffer.
+ * <p>
+ * Reads past the end of the buffer throw
+ * {@link BufferUnderflowException}.
+ * <p>
+ * Instances of this class are <b>NOT</b> thread-safe.
+ *
+ * @author steve_siebert
+ */
+final class BinaryReader {
+
+    private final ByteBuffer buf;
+    //copy of string content for buffers without an accessible array
+    private byte[] scratch;
+
+    BinaryReader(ByteBuffer buf) {
+        this.buf = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    boolean hasRemaining() {
+        return buf.hasRemaining();
+    }
+
+    byte readByte() {
+        return buf.get();
+    }
+
+    boolean readBoolean() {
+        return buf.get() != 0;
+    }
+
+    int readVarInt() {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length int.");
+    }
+
+    long readVarLong() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length long.");
+    }
+
+    int readSignedInt() {
+        final int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    long readSignedLong() {
+        final long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readInt() {
+        return buf.getInt();
+    }
+
+    long readLong() {
+        return buf.getLong();
+    }
+
+    float readFloat() {
+        return buf.getFloat();
+    }
+
+    double readDouble() {
+        return buf.getDouble();
+    }
+
+    String readString() {
+        final int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        final String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(),
+                    checkRemaining(length), StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            if (scratch == null || scratch.length < length) {
+                scratch = new byte[Math.max(64, length)];
+            }
+            buf.get(scratch, 0, length);
+            s = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    byte[] readBytes() {
+        final int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        final byte[] b = new byte[checkRemaining(length)];
+        buf.get(b);
+        return b;
+    }
+
+    private int checkRemaining(int length) {
+        if (length > buf.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+}
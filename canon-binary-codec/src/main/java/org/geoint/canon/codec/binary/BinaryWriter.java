@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable buffer the binary format is written to before being copied to the
+ * codec output stream in a single write.
+ * <p>
+ * Integral values are written as variable-length integers, zig-zag encoded if
+ * signed, so small values take a single byte. Strings and byte arrays are
+ * prefixed with their length plus one; a prefix of zero is null.
+ * <p>
+ * Writers are pooled per thread, instances of this class are <b>NOT</b>
+ * thread-safe.
+ *
+ * @author steve_siebert
+ */
+final class BinaryWriter {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    //larger buffers are left to the garbage collector rather than pooled
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<BinaryWriter> POOL = new ThreadLocal<>();
+
+    private byte[] buf = new byte[DEFAULT_CAPACITY];
+    private int count;
+
+    /**
+     * Returns an empty writer, reusing the pooled writer of the calling thread
+     * if available.
+     *
+     * @return empty writer
+     */
+    static BinaryWriter acquire() {
+        final BinaryWriter pooled = POOL.get();
+        if (pooled != null) {
+            POOL.remove();
+            return pooled;
+        }
+        return new BinaryWriter();
+    }
+
+    /**
+     * Returns the writer to the pool of the calling thread.
+     */
+    void release() {
+        count = 0;
+        if (buf.length <= MAX_POOLED_CAPACITY) {
+            POOL.set(this);
+        }
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    int size() {
+        return count;
+    }
+
+    void writeByte(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    void writeVarInt(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7F) != 0) {
+            buf[count++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[count++] = (byte) v;
+    }
+
+    void writeVarLong(long v) {
+        ensureCapacity(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[count++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[count++] = (byte) v;
+    }
+
+    void writeSignedInt(int v) {
+        writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    void writeSignedLong(long v) {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    void writeInt(int v) {
+        ensureCapacity(4);
+        buf[count++] = (byte) (v >>> 24);
+        buf[count++] = (byte) (v >>> 16);
+        buf[count++] = (byte) (v >>> 8);
+        buf[count++] = (byte) v;
+    }
+
+    void writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    void writeFloat(float v) {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    void writeDouble(double v) {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    void writeString(String s) {
+        if (s == null) {
+            writeVarInt(0);
+            return;
+        }
+        final int length = s.length();
+        //fast path for ASCII strings, written without an intermediate array
+        ensureCapacity(length + 5);
+        final int start = count;
+        writeVarInt(length + 1);
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x80) {
+                count = start;
+                writeBytes(s.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buf[count++] = (byte) c;
+        }
+    }
+
+    void writeBytes(byte[] b) {
+        if (b == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(b.length + 1);
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, buf, count, b.length);
+        count += b.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        final int capacity = count + additional;
+        if (capacity - buf.length > 0) {
+            if (capacity < 0) {
+                throw new OutOfMemoryError("Encoded event too large.");
+            }
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, capacity));
+        }
+    }
+}
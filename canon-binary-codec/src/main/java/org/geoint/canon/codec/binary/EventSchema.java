@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.geoint.canon.codec.EventCodecException;
+
+/**
+ * Binary layout of the fields of a class.
+ * <p>
+ * The schema of a class is created once, on first use, and lists the
+ * non-static, non-transient fields of the class and its superclasses ordered
+ * by name. Instances are written as the values of the fields, in schema
+ * order, without field names or type information. The fingerprint of a
+ * schema identifies its layout, including the layouts of nested classes, so
+ * content written with a different version of the class, or of a class it
+ * references, is detected rather than silently misread. The fingerprint is
+ * computed on first use, once the schemas of nested classes, which may
+ * reference the class, can be resolved.
+ * <p>
+ * Classes must have a no-argument constructor, which may be private.
+ *
+ * @author steve_siebert
+ */
+final class EventSchema {
+
+    private static final ClassValue<EventSchema> SCHEMAS
+            = new ClassValue<EventSchema>() {
+        @Override
+        protected EventSchema computeValue(Class<?> type) {
+            return new EventSchema(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final FieldCodec[] fields;
+    private volatile Integer fingerprint;
+
+    private EventSchema(Class<?> type) {
+        this.type = type;
+        try {
+            final Constructor<?> c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+            this.constructor = MethodHandles.lookup().unreflectConstructor(c)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException
+                | RuntimeException ex) {
+            throw new IllegalArgumentException(String.format("Event class "
+                    + "'%s' must have an accessible no-argument "
+                    + "constructor.", type.getName()), ex);
+        }
+
+        final List<Field> declared = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class;
+                c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                final int mod = f.getModifiers();
+                if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod)
+                        && !f.isSynthetic()) {
+                    declared.add(f);
+                }
+            }
+        }
+        declared.sort(Comparator.comparing(Field::getName)
+                .thenComparing((f) -> f.getDeclaringClass().getName()));
+
+        this.fields = new FieldCodec[declared.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = FieldCodec.forField(declared.get(i));
+        }
+    }
+
+    /**
+     * Returns the schema of the class.
+     *
+     * @param type class
+     * @return class schema
+     * @throws EventCodecException if instances of the class cannot be
+     * written in the binary format
+     */
+    static EventSchema of(Class<?> type) throws EventCodecException {
+        try {
+            return SCHEMAS.get(type);
+        } catch (IllegalArgumentException ex) {
+            throw new EventCodecException(String.format("Unable to create "
+                    + "binary schema for '%s'.", type.getName()), ex);
+        }
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Fingerprint of the layout of the schema.
+     *
+     * @return schema fingerprint
+     * @throws EventCodecException if the schema of a nested class cannot be
+     * created
+     */
+    int getFingerprint() throws EventCodecException {
+        Integer f = fingerprint;
+        if (f == null) {
+            final StringBuilder layout = new StringBuilder();
+            final List<Class<?>> described = new ArrayList<>();
+            described.add(type);
+            describe(layout, described);
+            final CRC32 crc = new CRC32();
+            crc.update(layout.toString().getBytes(StandardCharsets.UTF_8));
+            f = (int) crc.getValue();
+            fingerprint = f;
+        }
+        return f;
+    }
+
+    /**
+     * Appends the layout of the fields, by name and binary format, to a
+     * layout.
+     *
+     * @param layout layout to append to
+     * @param described classes whose layout is already described
+     * @throws EventCodecException if the schema of a nested class cannot be
+     * created
+     */
+    void describe(StringBuilder layout, List<Class<?>> described)
+            throws EventCodecException {
+        for (FieldCodec f : fields) {
+            layout.append(f.getName()).append(':');
+            f.describe(layout, described);
+            layout.append(';');
+        }
+    }
+
+    /**
+     * Write the fields of the object.
+     *
+     * @param obj instance of the schema type
+     * @param out writer
+     * @throws EventCodecException if a field could not be written
+     */
+    void writeFields(Object obj, BinaryWriter out) throws EventCodecException {
+        FieldCodec field = null;
+        try {
+            for (FieldCodec f : fields) {
+                field = f;
+                f.write(obj, out);
+            }
+        } catch (EventCodecException ex) {
+            throw ex;
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new EventCodecException(String.format("Unable to encode "
+                    + "field '%s' of '%s'.", field.getName(),
+                    type.getName()), ex);
+        }
+    }
+
+    /**
+     * Create an instance of the schema type and read its fields.
+     *
+     * @param in reader
+     * @return instance
+     * @throws EventCodecException if a field could not be read
+     */
+    Object readFields(BinaryReader in) throws EventCodecException {
+        final Object obj;
+        try {
+            obj = constructor.invokeExact();
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new EventCodecException(String.format("Unable to create "
+                    + "instance of '%s'.", type.getName()), ex);
+        }
+
+        FieldCodec field = null;
+        try {
+            for (FieldCodec f : fields) {
+                field = f;
+                f.read(obj, in);
+            }
+        } catch (EventCodecException ex) {
+            throw ex;
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new EventCodecException(String.format("Unable to decode "
+                    + "field '%s' of '%s'.", field.getName(),
+                    type.getName()), ex);
+        }
+        return obj;
+    }
+}
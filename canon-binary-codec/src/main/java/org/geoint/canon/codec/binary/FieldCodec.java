@@ -0,0 +1,331 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.List;
+import org.geoint.canon.codec.EventCodecException;
+
+/**
+ * Writes and reads a single field of an object.
+ * <p>
+ * Field access is through method handles resolved once, when the
+ * {@link EventSchema schema} of the declaring class is created; primitive
+ * fields are accessed without boxing.
+ *
+ * @author steve_siebert
+ */
+abstract class FieldCodec {
+
+    protected final String name;
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
+
+    private FieldCodec(Field field, Class<?> accessType) {
+        this.name = field.getName();
+        try {
+            field.setAccessible(true);
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(accessType, Object.class));
+            this.setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class,
+                            accessType));
+        } catch (IllegalAccessException | RuntimeException ex) {
+            throw new IllegalArgumentException(String.format("Unable to "
+                    + "access field '%s' of '%s'.", field.getName(),
+                    field.getDeclaringClass().getName()), ex);
+        }
+    }
+
+    /**
+     * Create the codec for the field.
+     *
+     * @param field field
+     * @return field codec
+     * @throws IllegalArgumentException if the field type is not supported or
+     * the field is not accessible
+     */
+    static FieldCodec forField(Field field) {
+        final Class<?> type = field.getType();
+        if (type == int.class) {
+            return new IntField(field);
+        } else if (type == long.class) {
+            return new LongField(field);
+        } else if (type == boolean.class) {
+            return new BooleanField(field);
+        } else if (type == double.class) {
+            return new DoubleField(field);
+        } else if (type == float.class) {
+            return new FloatField(field);
+        } else if (type == short.class) {
+            return new ShortField(field);
+        } else if (type == byte.class) {
+            return new ByteField(field);
+        } else if (type == char.class) {
+            return new CharField(field);
+        }
+        return new ValueField(field, ValueCodec.forType(field.getGenericType()));
+    }
+
+    /**
+     * Name of the field.
+     *
+     * @return field name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Description of the binary format of the field.
+     *
+     * @return format descriptor
+     */
+    abstract String getDescriptor();
+
+    /**
+     * Appends the description of the binary format of the field, including
+     * the layout of nested classes, to the layout of a schema.
+     *
+     * @param layout schema layout
+     * @param described classes whose layout is already described
+     * @throws EventCodecException if the schema of a nested class cannot be
+     * created
+     */
+    void describe(StringBuilder layout, List<Class<?>> described)
+            throws EventCodecException {
+        layout.append(getDescriptor());
+    }
+
+    abstract void write(Object owner, BinaryWriter out) throws Throwable;
+
+    abstract void read(Object owner, BinaryReader in) throws Throwable;
+
+    private static final class IntField extends FieldCodec {
+
+        IntField(Field field) {
+            super(field, int.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "int";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeSignedInt((int) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readSignedInt());
+        }
+    }
+
+    private static final class LongField extends FieldCodec {
+
+        LongField(Field field) {
+            super(field, long.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "long";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeSignedLong((long) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readSignedLong());
+        }
+    }
+
+    private static final class BooleanField extends FieldCodec {
+
+        BooleanField(Field field) {
+            super(field, boolean.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "boolean";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeBoolean((boolean) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readBoolean());
+        }
+    }
+
+    private static final class DoubleField extends FieldCodec {
+
+        DoubleField(Field field) {
+            super(field, double.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "double";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeDouble((double) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readDouble());
+        }
+    }
+
+    private static final class FloatField extends FieldCodec {
+
+        FloatField(Field field) {
+            super(field, float.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "float";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeFloat((float) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readFloat());
+        }
+    }
+
+    private static final class ShortField extends FieldCodec {
+
+        ShortField(Field field) {
+            super(field, short.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "short";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeSignedInt((short) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, (short) in.readSignedInt());
+        }
+    }
+
+    private static final class ByteField extends FieldCodec {
+
+        ByteField(Field field) {
+            super(field, byte.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "byte";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeByte((byte) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, in.readByte());
+        }
+    }
+
+    private static final class CharField extends FieldCodec {
+
+        CharField(Field field) {
+            super(field, char.class);
+        }
+
+        @Override
+        String getDescriptor() {
+            return "char";
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            out.writeVarInt((char) getter.invokeExact(owner));
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, (char) in.readVarInt());
+        }
+    }
+
+    /**
+     * Field of a reference type, written by the value codec of its declared
+     * type.
+     */
+    private static final class ValueField extends FieldCodec {
+
+        private final ValueCodec codec;
+
+        ValueField(Field field, ValueCodec codec) {
+            super(field, Object.class);
+            this.codec = codec;
+        }
+
+        @Override
+        String getDescriptor() {
+            return codec.getDescriptor();
+        }
+
+        @Override
+        void describe(StringBuilder layout, List<Class<?>> described)
+                throws EventCodecException {
+            codec.describe(layout, described);
+        }
+
+        @Override
+        void write(Object owner, BinaryWriter out) throws Throwable {
+            codec.write((Object) getter.invokeExact(owner), out);
+        }
+
+        @Override
+        void read(Object owner, BinaryReader in) throws Throwable {
+            setter.invokeExact(owner, codec.read(in));
+        }
+    }
+}
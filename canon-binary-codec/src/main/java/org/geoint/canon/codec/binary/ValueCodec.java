@@ -0,0 +1,656 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.codec.binary;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.geoint.canon.codec.EventCodecException;
+
+/**
+ * Writes and reads values of a reference type, including null.
+ * <p>
+ * Value codecs are resolved once per declared type when the
+ * {@link EventSchema schema} of a class is created, so encoding a value never
+ * inspects its type.
+ *
+ * @author steve_siebert
+ */
+abstract class ValueCodec {
+
+    //null marker of nullable single-value types
+    private static final int NULL = 0;
+    private static final int PRESENT = 1;
+
+    private final String descriptor;
+
+    protected ValueCodec(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Description of the binary format of the value, used to fingerprint the
+     * schema of the class declaring the value.
+     *
+     * @return format descriptor
+     */
+    String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Appends the description of the binary format of the value, including
+     * the layout of nested classes, to the layout of a schema.
+     *
+     * @param layout schema layout
+     * @param described classes whose layout is already described
+     * @throws EventCodecException if the schema of a nested class cannot be
+     * created
+     */
+    void describe(StringBuilder layout, List<Class<?>> described)
+            throws EventCodecException {
+        layout.append(descriptor);
+    }
+
+    abstract void write(Object value, BinaryWriter out)
+            throws EventCodecException;
+
+    abstract Object read(BinaryReader in) throws EventCodecException;
+
+    /**
+     * Resolve the codec for values of the declared type.
+     *
+     * @param type declared type
+     * @return value codec
+     * @throws IllegalArgumentException if the type is not supported
+     */
+    static ValueCodec forType(Type type) {
+        if (type instanceof WildcardType) {
+            return forType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        if (type instanceof ParameterizedType) {
+            return forParameterized((ParameterizedType) type);
+        }
+        if (type instanceof GenericArrayType) {
+            return new ArrayCodec(rawType(type),
+                    forType(((GenericArrayType) type).getGenericComponentType()));
+        }
+        if (!(type instanceof Class)) {
+            throw new IllegalArgumentException(String.format("Unable to "
+                    + "resolve binary format of generic type '%s'.", type));
+        }
+
+        final Class<?> c = (Class<?>) type;
+        if (c == String.class) {
+            return STRING;
+        } else if (c == byte[].class) {
+            return BYTES;
+        } else if (c == Integer.class) {
+            return INTEGER;
+        } else if (c == Long.class) {
+            return LONG;
+        } else if (c == Boolean.class) {
+            return BOOLEAN;
+        } else if (c == Double.class) {
+            return DOUBLE;
+        } else if (c == Float.class) {
+            return FLOAT;
+        } else if (c == Short.class) {
+            return SHORT;
+        } else if (c == Byte.class) {
+            return BYTE;
+        } else if (c == Character.class) {
+            return CHARACTER;
+        } else if (c == Instant.class) {
+            return INSTANT;
+        } else if (c == UUID.class) {
+            return UUID_CODEC;
+        } else if (c.isEnum()) {
+            return new EnumCodec(c);
+        } else if (c.isArray() && !c.getComponentType().isPrimitive()) {
+            return new ArrayCodec(c, forType(c.getComponentType()));
+        } else if (Collection.class.isAssignableFrom(c)
+                || Map.class.isAssignableFrom(c)) {
+            throw new IllegalArgumentException(String.format("Element type "
+                    + "of '%s' must be declared with type arguments.",
+                    c.getName()));
+        } else if (c.isPrimitive() || c.isArray() || c.isInterface()
+                || Modifier.isAbstract(c.getModifiers())
+                || c.getName().startsWith("java.")) {
+            throw new IllegalArgumentException(String.format("No binary "
+                    + "format for type '%s'.", c.getName()));
+        }
+        return new ObjectCodec(c);
+    }
+
+    private static ValueCodec forParameterized(ParameterizedType type) {
+        final Class<?> raw = rawType(type);
+        final Type[] args = type.getActualTypeArguments();
+        if (Map.class.isAssignableFrom(raw)) {
+            final Supplier<Map<Object, Object>> factory
+                    = SortedMap.class.isAssignableFrom(raw)
+                            ? TreeMap::new
+                            : LinkedHashMap::new;
+            checkAssignable(raw, factory.get());
+            return new MapCodec(forType(args[0]), forType(args[1]), factory);
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            final Supplier<Collection<Object>> factory;
+            if (SortedSet.class.isAssignableFrom(raw)) {
+                factory = TreeSet::new;
+            } else if (Set.class.isAssignableFrom(raw)) {
+                factory = HashSet::new;
+            } else {
+                factory = ArrayList::new;
+            }
+            checkAssignable(raw, factory.get());
+            return new CollectionCodec(forType(args[0]), factory);
+        }
+        return forType(raw);
+    }
+
+    private static void checkAssignable(Class<?> declared, Object instance) {
+        if (!declared.isInstance(instance)) {
+            throw new IllegalArgumentException(String.format("No binary "
+                    + "format for type '%s', declare the field as the "
+                    + "collection interface.", declared.getName()));
+        }
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(
+                    ((GenericArrayType) type).getGenericComponentType()), 0)
+                    .getClass();
+        } else if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        throw new IllegalArgumentException(String.format("Unable to "
+                + "resolve binary format of generic type '%s'.", type));
+    }
+
+    static final ValueCodec STRING = new ValueCodec("string") {
+        @Override
+        void write(Object value, BinaryWriter out) {
+            out.writeString((String) value);
+        }
+
+        @Override
+        Object read(BinaryReader in) {
+            return in.readString();
+        }
+    };
+
+    static final ValueCodec BYTES = new ValueCodec("bytes") {
+        @Override
+        void write(Object value, BinaryWriter out) {
+            out.writeBytes((byte[]) value);
+        }
+
+        @Override
+        Object read(BinaryReader in) {
+            return in.readBytes();
+        }
+    };
+
+    static final ValueCodec INTEGER = new NullableCodec("Integer") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeSignedInt((Integer) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return in.readSignedInt();
+        }
+    };
+
+    static final ValueCodec LONG = new NullableCodec("Long") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeSignedLong((Long) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return in.readSignedLong();
+        }
+    };
+
+    static final ValueCodec SHORT = new NullableCodec("Short") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeSignedInt((Short) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return (short) in.readSignedInt();
+        }
+    };
+
+    static final ValueCodec BYTE = new NullableCodec("Byte") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeByte((Byte) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return in.readByte();
+        }
+    };
+
+    static final ValueCodec CHARACTER = new NullableCodec("Character") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeVarInt((Character) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return (char) in.readVarInt();
+        }
+    };
+
+    static final ValueCodec BOOLEAN = new ValueCodec("Boolean") {
+        //null, false and true in a single byte
+        @Override
+        void write(Object value, BinaryWriter out) {
+            out.writeByte(value == null ? 0 : ((Boolean) value) ? 2 : 1);
+        }
+
+        @Override
+        Object read(BinaryReader in) {
+            final byte b = in.readByte();
+            return b == 0 ? null : b == 2;
+        }
+    };
+
+    static final ValueCodec FLOAT = new NullableCodec("Float") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeFloat((Float) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return in.readFloat();
+        }
+    };
+
+    static final ValueCodec DOUBLE = new NullableCodec("Double") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            out.writeDouble((Double) value);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return in.readDouble();
+        }
+    };
+
+    static final ValueCodec INSTANT = new NullableCodec("Instant") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            final Instant i = (Instant) value;
+            out.writeSignedLong(i.getEpochSecond());
+            out.writeVarInt(i.getNano());
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return Instant.ofEpochSecond(in.readSignedLong(), in.readVarInt());
+        }
+    };
+
+    static final ValueCodec UUID_CODEC = new NullableCodec("UUID") {
+        @Override
+        void writeValue(Object value, BinaryWriter out) {
+            final UUID u = (UUID) value;
+            out.writeLong(u.getMostSignificantBits());
+            out.writeLong(u.getLeastSignificantBits());
+        }
+
+        @Override
+        Object readValue(BinaryReader in) {
+            return new UUID(in.readLong(), in.readLong());
+        }
+    };
+
+    /**
+     * Value prefixed with a null marker.
+     */
+    private abstract static class NullableCodec extends ValueCodec {
+
+        NullableCodec(String descriptor) {
+            super(descriptor);
+        }
+
+        @Override
+        final void write(Object value, BinaryWriter out)
+                throws EventCodecException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else {
+                out.writeByte(PRESENT);
+                writeValue(value, out);
+            }
+        }
+
+        @Override
+        final Object read(BinaryReader in) throws EventCodecException {
+            return in.readByte() == NULL ? null : readValue(in);
+        }
+
+        abstract void writeValue(Object value, BinaryWriter out)
+                throws EventCodecException;
+
+        abstract Object readValue(BinaryReader in) throws EventCodecException;
+    }
+
+    /**
+     * Enum constant written as its ordinal plus one, zero is null.
+     */
+    private static final class EnumCodec extends ValueCodec {
+
+        private final Object[] constants;
+
+        EnumCodec(Class<?> type) {
+            //constant names are part of the descriptor, so reordering the
+            //constants changes the schema fingerprint
+            super(enumDescriptor(type));
+            this.constants = type.getEnumConstants();
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) {
+            out.writeVarInt(value == null ? 0 : ((Enum<?>) value).ordinal() + 1);
+        }
+
+        @Override
+        Object read(BinaryReader in) throws EventCodecException {
+            final int ordinal = in.readVarInt() - 1;
+            if (ordinal < 0) {
+                return null;
+            }
+            if (ordinal >= constants.length) {
+                throw new EventCodecException(String.format("Unknown "
+                        + "ordinal %d for enum '%s'.", ordinal,
+                        getDescriptor()));
+            }
+            return constants[ordinal];
+        }
+
+        private static String enumDescriptor(Class<?> type) {
+            final StringBuilder sb = new StringBuilder(type.getName())
+                    .append('{');
+            for (Object c : type.getEnumConstants()) {
+                sb.append(((Enum<?>) c).name()).append(',');
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * Object array written as its length plus one followed by the elements,
+     * zero is null.
+     */
+    private static final class ArrayCodec extends ValueCodec {
+
+        private final Class<?> componentType;
+        private final ValueCodec component;
+
+        ArrayCodec(Class<?> arrayType, ValueCodec component) {
+            super(component.getDescriptor() + "[]");
+            this.componentType = arrayType.getComponentType();
+            this.component = component;
+        }
+
+        @Override
+        void describe(StringBuilder layout, List<Class<?>> described)
+                throws EventCodecException {
+            component.describe(layout, described);
+            layout.append("[]");
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws EventCodecException {
+            if (value == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            final Object[] array = (Object[]) value;
+            out.writeVarInt(array.length + 1);
+            for (Object e : array) {
+                component.write(e, out);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws EventCodecException {
+            final int length = in.readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            final Object[] array
+                    = (Object[]) Array.newInstance(componentType, length);
+            for (int i = 0; i < length; i++) {
+                array[i] = component.read(in);
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Collection written as its size plus one followed by the elements, zero
+     * is null.
+     */
+    private static final class CollectionCodec extends ValueCodec {
+
+        private final ValueCodec element;
+        private final Supplier<Collection<Object>> factory;
+
+        CollectionCodec(ValueCodec element,
+                Supplier<Collection<Object>> factory) {
+            super("Collection<" + element.getDescriptor() + ">");
+            this.element = element;
+            this.factory = factory;
+        }
+
+        @Override
+        void describe(StringBuilder layout, List<Class<?>> described)
+                throws EventCodecException {
+            layout.append("Collection<");
+            element.describe(layout, described);
+            layout.append('>');
+        }
+
+        @Override
+        void write(Object value, BinaryWriter out) throws EventCodecException {
+            if (value == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            final Collection<?> c = (Collection<?>) value;
+            out.writeVarInt(c.size() + 1);
+            if (c instanceof List && c instanceof RandomAccess) {
+                final List<?> l = (List<?>) c;
+                for (int i = 0; i < l.size(); i++) {
+                    element.write(l.get(i), out);
+                }
+            } else {
+                for (Object e : c) {
+                    element.write(e, out);
+                }
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws EventCodecException {
+            final int size = in.readVarInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+            final Collection<Object> c = factory.get();
+            for (int i = 0; i < size; i++) {
+                c.add(element.read(in));
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Map written as its size plus one followed by the entries, zero is null.
+     */
+    private static final class MapCodec extends ValueCodec {
+
+        private final ValueCodec key;
+        private final ValueCodec value;
+        private final Supplier<Map<Object, Object>> factory;
+
+        MapCodec(ValueCodec key, ValueCodec value,
+                Supplier<Map<Object, Object>> factory) {
+            super("Map<" + key.getDescriptor() + ","
+                    + value.getDescriptor() + ">");
+            this.key = key;
+            this.value = value;
+            this.factory = factory;
+        }
+
+        @Override
+        void describe(StringBuilder layout, List<Class<?>> described)
+                throws EventCodecException {
+            layout.append("Map<");
+            key.describe(layout, described);
+            layout.append(',');
+            value.describe(layout, described);
+            layout.append('>');
+        }
+
+        @Override
+        void write(Object v, BinaryWriter out) throws EventCodecException {
+            if (v == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            final Map<?, ?> m = (Map<?, ?>) v;
+            out.writeVarInt(m.size() + 1);
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                key.write(e.getKey(), out);
+                value.write(e.getValue(), out);
+            }
+        }
+
+        @Override
+        Object read(BinaryReader in) throws EventCodecException {
+            final int size = in.readVarInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+            final Map<Object, Object> m = factory.get();
+            for (int i = 0; i < size; i++) {
+                m.put(key.read(in), value.read(in));
+            }
+            return m;
+        }
+    }
+
+    /**
+     * Nested object written with the {@link EventSchema schema} of its
+     * declared class.
+     * <p>
+     * The schema is resolved on first use, so classes may (indirectly)
+     * reference themselves. Like the event class, the nested class is
+     * described by its layout, so changing the fields of a nested class
+     * changes the fingerprint of the event schema.
+     */
+    private static final class ObjectCodec extends NullableCodec {
+
+        private final Class<?> type;
+        private volatile EventSchema schema;
+
+        ObjectCodec(Class<?> type) {
+            super(type.getName());
+            this.type = type;
+        }
+
+        @Override
+        void writeValue(Object value, BinaryWriter out)
+                throws EventCodecException {
+            if (value.getClass() != type) {
+                throw new EventCodecException(String.format("Unable to "
+                        + "encode '%s' as declared type '%s', subclasses "
+                        + "are not supported.", value.getClass().getName(),
+                        type.getName()));
+            }
+            schema().writeFields(value, out);
+        }
+
+        @Override
+        Object readValue(BinaryReader in) throws EventCodecException {
+            return schema().readFields(in);
+        }
+
+        @Override
+        void describe(StringBuilder layout, List<Class<?>> described)
+                throws EventCodecException {
+            //a class already described, such as a class referencing itself,
+            //is referenced by its index so the layout is finite
+            final int index = described.indexOf(type);
+            if (index >= 0) {
+                layout.append('#').append(index);
+                return;
+            }
+            described.add(type);
+            layout.append('{');
+            schema().describe(layout, described);
+            layout.append('}');
+        }
+
+        private EventSchema schema() throws EventCodecException {
+            EventSchema s = schema;
+            if (s == null) {
+                s = EventSchema.of(type);
+                schema = s;
+            }
+            return s;
+        }
+    }
+}
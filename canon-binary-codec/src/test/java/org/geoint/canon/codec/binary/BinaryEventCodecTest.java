@@ -0,0 +1,370 @@
+package org.geoint.canon.codec.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.geoint.canon.codec.EventCodecException;
+import org.geoint.canon.event.EventMessage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the BinaryEventCodec.
+ *
+ * @author steve_siebert
+ */
+public class BinaryEventCodecTest {
+
+    @Test
+    public void testIsSupported() {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class);
+        codec.register("custom", MockLocation.class);
+        assertTrue(codec.isSupported(MockEvent.class.getName()));
+        assertTrue(codec.isSupported("custom"));
+        assertFalse(codec.isSupported(MockLocation.class.getName()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class);
+        MockEvent event = MockEvent.sample();
+
+        MockEvent decoded = (MockEvent) codec.decode(
+                new BinaryEventMessage(MockEvent.class, encode(codec, event)));
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    public void testRoundTripNulls() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class);
+        MockEvent event = new MockEvent();
+
+        MockEvent decoded = (MockEvent) codec.decode(
+                new BinaryEventMessage(MockEvent.class, encode(codec, event)));
+        assertEquals(event, decoded);
+    }
+
+    /**
+     * Test the binary content is several times smaller than the content
+     * written by java serialization.
+     */
+    @Test
+    public void testSmallerThanSerialization() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class);
+        MockEvent event = MockEvent.sample();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream oout = new ObjectOutputStream(bout)) {
+            oout.writeObject(event);
+        }
+        byte[] binary = encode(codec, event);
+        assertTrue(String.format("binary %d bytes, serialized %d bytes",
+                binary.length, bout.size()), binary.length * 4 < bout.size());
+    }
+
+    @Test(expected = EventCodecException.class)
+    public void testDecodeTruncated() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class);
+        byte[] content = encode(codec, MockEvent.sample());
+        codec.decode(new BinaryEventMessage(MockEvent.class,
+                Arrays.copyOf(content, content.length / 2)));
+    }
+
+    @Test(expected = EventCodecException.class)
+    public void testDecodeDifferentSchema() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockEvent.class,
+                MockLocation.class);
+        byte[] content = encode(codec, new MockLocation(1.0, 2.0));
+        codec.decode(new BinaryEventMessage(MockEvent.class, content));
+    }
+
+    /**
+     * Test content is rejected when the layout of a nested class changed,
+     * even though the layout of the event class did not.
+     */
+    @Test(expected = EventCodecException.class)
+    public void testDecodeChangedNestedClass() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockOuter.class);
+        byte[] content = encode(codec, MockOuter.sample());
+
+        //the same fields, but the nested count is now a long
+        BinaryEventCodec changed = new BinaryEventCodec()
+                .register(MockOuter.class.getName(), MockChangedOuter.class);
+        changed.decode(new BinaryEventMessage(MockOuter.class, content));
+    }
+
+    /**
+     * Test content is decoded by classes of the same layout, as nested
+     * classes are described by their layout rather than their name.
+     */
+    @Test
+    public void testDecodeSameNestedLayout() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockOuter.class);
+        byte[] content = encode(codec, MockOuter.sample());
+
+        BinaryEventCodec renamed = new BinaryEventCodec()
+                .register(MockOuter.class.getName(), MockRenamedOuter.class);
+        MockRenamedOuter decoded = (MockRenamedOuter) renamed.decode(
+                new BinaryEventMessage(MockOuter.class, content));
+        assertEquals("outer", decoded.name);
+        assertEquals(3, decoded.nested.count);
+    }
+
+    /**
+     * Test classes referencing themselves have a fingerprint and round trip.
+     */
+    @Test
+    public void testRecursiveRoundTrip() throws Exception {
+        BinaryEventCodec codec = new BinaryEventCodec(MockNode.class);
+        MockNode head = new MockNode("a", new MockNode("b",
+                new MockNode("c", null)));
+
+        MockNode decoded = (MockNode) codec.decode(
+                new BinaryEventMessage(MockNode.class, encode(codec, head)));
+        assertEquals("a", decoded.value);
+        assertEquals("b", decoded.next.value);
+        assertEquals("c", decoded.next.next.value);
+        assertNull(decoded.next.next.next);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterUnsupportedClass() {
+        new BinaryEventCodec(MockUnsupportedEvent.class);
+    }
+
+    private static byte[] encode(BinaryEventCodec codec, Object event)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(event, out);
+        return out.toByteArray();
+    }
+
+    public enum MockPriority {
+        LOW, HIGH;
+    }
+
+    public static class MockLocation implements Serializable {
+
+        private double lat;
+        private double lon;
+
+        private MockLocation() {
+        }
+
+        public MockLocation(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MockLocation)) {
+                return false;
+            }
+            final MockLocation other = (MockLocation) obj;
+            return lat == other.lat && lon == other.lon;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(lat) * 31 + Double.hashCode(lon);
+        }
+    }
+
+    public static class MockEvent implements Serializable {
+
+        private final long id;
+        private int count;
+        private boolean active;
+        private char grade;
+        private String name;
+        private Integer boxed;
+        private Instant time;
+        private UUID uuid;
+        private MockPriority priority;
+        private MockLocation location;
+        private List<String> tags;
+        private Map<String, Long> totals;
+        private byte[] data;
+        private transient String ignored;
+
+        private MockEvent() {
+            this(0);
+        }
+
+        public MockEvent(long id) {
+            this.id = id;
+        }
+
+        static MockEvent sample() {
+            MockEvent e = new MockEvent(-12345678901L);
+            e.count = 42;
+            e.active = true;
+            e.grade = 'A';
+            e.name = "sample event \u00e9";
+            e.boxed = -1;
+            e.time = Instant.ofEpochSecond(1460000000L, 123);
+            e.uuid = new UUID(1L, 2L);
+            e.priority = MockPriority.HIGH;
+            e.location = new MockLocation(38.9, -77.0);
+            e.tags = Arrays.asList("a", null, "c");
+            e.totals = new HashMap<>();
+            e.totals.put("x", 1L);
+            e.data = new byte[]{1, 2, 3};
+            e.ignored = "ignored";
+            return e;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MockEvent)) {
+                return false;
+            }
+            final MockEvent o = (MockEvent) obj;
+            return id == o.id && count == o.count && active == o.active
+                    && grade == o.grade
+                    && Objects.equals(name, o.name)
+                    && Objects.equals(boxed, o.boxed)
+                    && Objects.equals(time, o.time)
+                    && Objects.equals(uuid, o.uuid)
+                    && priority == o.priority
+                    && Objects.equals(location, o.location)
+                    && Objects.equals(tags, o.tags)
+                    && Objects.equals(totals, o.totals)
+                    && Arrays.equals(data, o.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+
+    public static class MockOuter {
+
+        private String name;
+        private MockNested nested;
+
+        static MockOuter sample() {
+            MockOuter o = new MockOuter();
+            o.name = "outer";
+            o.nested = new MockNested();
+            o.nested.count = 3;
+            return o;
+        }
+    }
+
+    public static class MockNested {
+
+        private int count;
+    }
+
+    public static class MockChangedOuter {
+
+        private String name;
+        private MockChangedNested nested;
+    }
+
+    public static class MockChangedNested {
+
+        private long count;
+    }
+
+    public static class MockRenamedOuter {
+
+        private String name;
+        private MockRenamedNested nested;
+    }
+
+    public static class MockRenamedNested {
+
+        private int count;
+    }
+
+    public static class MockNode {
+
+        private String value;
+        private MockNode next;
+
+        public MockNode() {
+        }
+
+        MockNode(String value, MockNode next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static class MockUnsupportedEvent {
+
+        private Object value;
+    }
+
+    private class BinaryEventMessage implements EventMessage {
+
+        private final String eventType;
+        private final byte[] content;
+
+        public BinaryEventMessage(Class<?> eventClass, byte[] content) {
+            this.eventType = eventClass.getName();
+            this.content = content;
+        }
+
+        @Override
+        public String getChannelName() {
+            return "testChannel";
+        }
+
+        @Override
+        public String getStreamName() {
+            return "testStream";
+        }
+
+        @Override
+        public String getAuthorizerId() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String[] getTriggerIds() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getEventType() {
+            return eventType;
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Optional<String> findHeader(String headerName) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getHeader(String headerName,
+                Supplier<String> defaultValue) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public InputStream getEventContent() {
+            return new ByteArrayInputStream(content);
+        }
+    }
+}
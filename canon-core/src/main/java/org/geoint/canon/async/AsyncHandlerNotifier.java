@@ -16,16 +16,33 @@
 package org.geoint.canon.async;
 
 import java.util.ArrayList;
+import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.impl.concurrent.AppendSignal;
+import org.geoint.canon.stream.BatchEventHandler;
+import org.geoint.canon.stream.BatchHandlingException;
 import org.geoint.canon.stream.EventHandler;
 import org.geoint.canon.stream.EventHandlerAction;
 import org.geoint.canon.stream.EventReader;
@@ -35,26 +52,97 @@ import org.geoint.canon.stream.StreamReadException;
 /**
  * Executes {@link EventHandler#handle(AppendedEventMessage) event handlers}
  * asynchronously on an internally managed ThreadGroup.
+ * <p>
+ * Dispatch is event-driven: a handler is scheduled on the worker pool only
+ * when its stream {@link #notifyAppended(String, String) signals} that events
+ * were appended, and each scheduled turn drains up to a bounded batch of
+ * events before yielding the worker to other handlers. A handler is never
+ * scheduled more than once at a time, so each handler sees its events in
+ * order, and its reader is only ever accessed by its running turn. Idle
+ * handlers cost nothing; only handlers whose reader does not
+ * {@link EventReader#signalsAppends() signal appends} are given a turn by a
+ * low-rate sweep.
+ * <p>
+ * Handlers are dispatched on the shared worker pool by default. Handlers
+ * which block, for example writing to a remote sink, should be registered
+ * with {@link DispatchMode#ISOLATED} so each turn runs on its own (virtual,
+ * where supported) thread and a slow handler cannot starve the others.
+ * <p>
+ * {@link BatchEventHandler batch handlers} are notified with batches of
+ * contiguous events drained from their reader, up to the maximum batch size
+ * of the handler, rather than once per event.
+ * <p>
+ * The lag of each handler, the number of events available to its reader, is
+ * published by its turns and available through {@link #getLag() }. A handler
+ * lagging by more than the threshold of its {@link LagPolicy} is logged and
+ * the {@link LagAction} of the policy is applied until it catches up.
+ * <p>
+ * Configurable with JVM properties:
+ * <ul>
+ * <li><i>org.geoint.canon.async.batchSize</i> - maximum events delivered to a
+ * handler per turn, default 64</li>
+ * <li><i>org.geoint.canon.async.sweepInterval</i> - milliseconds between
+ * sweeps of handlers whose readers do not signal appends, and between the
+ * resume checks of handlers suspended by a SHED policy, default 100</li>
+ * <li><i>org.geoint.canon.async.dispatchMode</i> - {@link DispatchMode} of
+ * handlers registered without a mode, default SHARED</li>
+ * <li><i>org.geoint.canon.async.lagPolicy</i> - {@link LagAction} of handlers
+ * without a lag policy, default NONE</li>
+ * <li><i>org.geoint.canon.async.lagThreshold</i> - lag threshold, in events,
+ * of handlers without a lag policy, default 10000</li>
+ * <li><i>org.geoint.canon.async.throttleWait</i> - maximum milliseconds an
+ * append is delayed by a THROTTLE policy, default 1000</li>
+ * </ul>
  *
  * @author steve_siebert
  */
 public class AsyncHandlerNotifier {
 
-    public static final int DEFAULT_NUM_NOTIFIER_THREADS = 3;
+    public static final int DEFAULT_NUM_NOTIFIER_THREADS
+            = Runtime.getRuntime().availableProcessors();
+    public static final String PROPERTY_BATCH_SIZE
+            = "org.geoint.canon.async.batchSize";
+    public static final String PROPERTY_SWEEP_INTERVAL
+            = "org.geoint.canon.async.sweepInterval";
+    public static final String PROPERTY_DISPATCH_MODE
+            = "org.geoint.canon.async.dispatchMode";
+    public static final String PROPERTY_LAG_POLICY
+            = "org.geoint.canon.async.lagPolicy";
+    public static final String PROPERTY_LAG_THRESHOLD
+            = "org.geoint.canon.async.lagThreshold";
+    public static final String PROPERTY_THROTTLE_WAIT
+            = "org.geoint.canon.async.throttleWait";
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final long DEFAULT_LAG_THRESHOLD = 10000L;
+    private static final long DEFAULT_THROTTLE_WAIT = 1000L;
+    //turn size multiplier of lagging handlers with a BOOST policy
+    private static final int BOOST_FACTOR = 4;
+    private static final long DEFAULT_SWEEP_INTERVAL = 100L;
+    //time given to in-flight handler turns to complete on shutdown
+    private static final long SHUTDOWN_WAIT_MILLIS = 1000L;
 
     private final ThreadGroup notifierGroup;
-    private final List<HandlerNotifier> notifiers;
-    //not thread-safe, use the field itself to synchronize access to it
-    private final List<HandlerContext> handlers = new ArrayList<>();
-    /*
-     * Simple index/position tracking mechanism for the workers to know which 
-     * HandlerContext to execute next. This effectively creates a round-robin
-     * style notification mechanism.
-     *
-     * TODO - implement a pluggable notification strategy as well as an 
-     *        implementation that supports stream prioritization.
-     */
-    private final AtomicInteger workerPosition = new AtomicInteger();
+    private final ThreadPoolExecutor workers;
+    //runs the sweep and the linger timers of batch handlers
+    private final ScheduledExecutorService sweeper;
+    //lazily created executor of ISOLATED handler turns
+    private volatile ExecutorService isolatedWorkers;
+    private final DispatchMode defaultMode;
+    private final LagPolicy defaultLagPolicy;
+    private final long throttleWaitNanos;
+    private final long sweepInterval;
+    //signalled when throttling handlers make progress
+    private final AppendSignal progress = new AppendSignal();
+    //context of the handler turn running on the current thread
+    private static final ThreadLocal<HandlerContext> RUNNING
+            = new ThreadLocal<>();
+    private final int batchSize;
+    //every registered handler
+    private volatile boolean shutdown;
+    private final List<HandlerContext> handlers = new CopyOnWriteArrayList<>();
+    //registered handlers by channel/stream, used to dispatch append signals
+    private final Map<String, List<HandlerContext>> streamHandlers
+            = new ConcurrentHashMap<>();
 
     private static final String NOTIFIER_THREAD_NAME_PREFIX
             = "EventHandlerNotifier";
@@ -63,7 +151,7 @@ public class AsyncHandlerNotifier {
 
     /**
      * Create a notifier with the {@link AsyncHandlerNotifier#DEFAULT_NUM_NOTIFIER_THREADS
-     * default number of threads}.
+     * default number of threads}, one per available processor.
      */
     public AsyncHandlerNotifier() {
         this(DEFAULT_NUM_NOTIFIER_THREADS);
@@ -77,26 +165,60 @@ public class AsyncHandlerNotifier {
     public AsyncHandlerNotifier(int numThreads) {
         this.notifierGroup = new ThreadGroup("AsyncHandlerNotifiers-"+UUID.randomUUID().toString());
         this.notifierGroup.setDaemon(true);
+        this.batchSize = (int) longProperty(PROPERTY_BATCH_SIZE,
+                DEFAULT_BATCH_SIZE);
+        this.defaultMode = dispatchModeProperty();
+        this.defaultLagPolicy = new LagPolicy(lagActionProperty(),
+                longProperty(PROPERTY_LAG_THRESHOLD, DEFAULT_LAG_THRESHOLD));
+        this.throttleWaitNanos = TimeUnit.MILLISECONDS.toNanos(
+                longProperty(PROPERTY_THROTTLE_WAIT, DEFAULT_THROTTLE_WAIT));
 
-        this.notifiers = new ArrayList<>(numThreads);
+        this.workers = new ThreadPoolExecutor(numThreads, numThreads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                notifierThreadFactory());
 
-        for (int i = 0; i < numThreads; i++) {
-            this.addNotificationThread();
-        }
+        this.sweepInterval = longProperty(PROPERTY_SWEEP_INTERVAL,
+                DEFAULT_SWEEP_INTERVAL);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(
+                notifierThreadFactory());
+        this.sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval,
+                sweepInterval, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Registers a handler dispatched with the default {@link DispatchMode}.
+     *
+     * @param handler event handler
+     * @param reader reader the handler is notified from
+     */
     public void addHandler(EventHandler handler, EventReader reader) {
-        synchronized (handlers) {
-            handlers.add(new HandlerContext(reader, handler));
-        }
+        addHandler(handler, reader, defaultMode);
+    }
+
+    /**
+     * Registers a handler dispatched with the specified mode.
+     *
+     * @param handler event handler
+     * @param reader reader the handler is notified from
+     * @param mode dispatch mode of the handler
+     */
+    public void addHandler(EventHandler handler, EventReader reader,
+            DispatchMode mode) {
+        HandlerContext hc = new HandlerContext(reader, handler,
+                mode == DispatchMode.ISOLATED ? isolatedWorkers() : workers);
+        handlers.add(hc);
+        streamHandlers.computeIfAbsent(
+                streamKey(reader.getChannelName(), reader.getStreamName()),
+                (k) -> new CopyOnWriteArrayList<>())
+                .add(hc);
+        //the reader may already have events available
+        hc.schedule();
     }
 
     public Collection<EventHandler> listHandlers() {
-        synchronized (handlers) {
-            return handlers.stream()
-                    .map(HandlerContext::getHandler)
-                    .collect(Collectors.toList());
-        }
+        return handlers.stream()
+                .map(HandlerContext::getHandler)
+                .collect(Collectors.toList());
     }
 
     public void removeHandler(String channelName, String streamName,
@@ -118,59 +240,230 @@ public class AsyncHandlerNotifier {
     }
 
     private void removeHandlers(Predicate<HandlerContext> filter) {
-        synchronized (handlers) {
-            Iterator<HandlerContext> iterator = handlers.iterator();
-            while (iterator.hasNext()) {
-                HandlerContext hc = iterator.next();
-                if (filter.test(hc)) {
-                    //invalidate so any worker currently with a reference to 
-                    //the handler object but not yet notifying (ie waiting on 
-                    //thread notify) will not execute again
-                    hc.valid = false;
-                    iterator.remove();
-                }
+        List<HandlerContext> removed = new ArrayList<>();
+        for (HandlerContext hc : handlers) {
+            if (filter.test(hc)) {
+                //invalidate so any worker currently with a reference to 
+                //the handler context will not notify it again
+                hc.valid = false;
+                removed.add(hc);
             }
         }
+        handlers.removeAll(removed);
+        removed.forEach((hc) -> {
+            List<HandlerContext> sh = streamHandlers.get(streamKey(
+                    hc.getReader().getChannelName(),
+                    hc.getReader().getStreamName()));
+            if (sh != null) {
+                sh.remove(hc);
+            }
+        });
     }
 
-    public void setNumThreads(int numThreads) {
-        int numNotifiers;
-        while ((numNotifiers = numNotifiers()) != numThreads) {
-            if (numNotifiers > numThreads) {
-                addNotificationThread();
-            } else {
-                removeNotificationThread();
+    /**
+     * Signals that events were appended to a stream, scheduling the handlers
+     * of the stream which are not already scheduled.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     */
+    public void notifyAppended(String channelName, String streamName) {
+        List<HandlerContext> sh
+                = streamHandlers.get(streamKey(channelName, streamName));
+        if (sh == null) {
+            return;
+        }
+        sh.forEach(HandlerContext::schedule);
+        throttle(sh);
+    }
+
+    /**
+     * Delays the appending thread while any of the handlers are throttling
+     * appenders, up to the maximum throttle wait per handler.
+     * <p>
+     * Handlers appending events are never throttled, as they may be the
+     * handler being waited on.
+     */
+    private void throttle(List<HandlerContext> sh) {
+        if (RUNNING.get() != null) {
+            return;
+        }
+        for (HandlerContext hc : sh) {
+            if (!hc.isThrottling()) {
+                continue;
             }
+            try {
+                progress.await(() -> shutdown || !hc.isThrottling(),
+                        throttleWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the lag policy of a handler.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param handler registered handler
+     * @param policy lag policy
+     */
+    public void setLagPolicy(String channelName, String streamName,
+            EventHandler handler, LagPolicy policy) {
+        handlers.stream()
+                .filter((hc) -> hc.getHandler().equals(handler)
+                        && hc.getReader().getChannelName().contentEquals(channelName)
+                        && hc.getReader().getStreamName().contentEquals(streamName))
+                .forEach((hc) -> hc.lagPolicy = policy);
+        progress.signal();
+    }
+
+    /**
+     * Lag of each registered handler.
+     *
+     * @return lag snapshots
+     */
+    public List<HandlerLag> getLag() {
+        return handlers.stream()
+                .map(HandlerContext::getLag)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lag of the handlers registered to a stream.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @return lag snapshots
+     */
+    public List<HandlerLag> getLag(String channelName, String streamName) {
+        List<HandlerContext> sh
+                = streamHandlers.get(streamKey(channelName, streamName));
+        if (sh == null) {
+            return Collections.emptyList();
+        }
+        return sh.stream()
+                .map(HandlerContext::getLag)
+                .collect(Collectors.toList());
+    }
+
+    public void setNumThreads(int numThreads) {
+        //order matters, the core size may never exceed the maximum size
+        if (numThreads > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(numThreads);
+            workers.setCorePoolSize(numThreads);
+        } else {
+            workers.setCorePoolSize(numThreads);
+            workers.setMaximumPoolSize(numThreads);
         }
     }
 
+    /**
+     * Stops dispatching events to handlers.
+     * <p>
+     * Handler turns already scheduled, and partial batches still lingering,
+     * are given a short time to complete; the
+     * workers are daemon threads doing transactional work, so if they "die" in
+     * the middle of their handling operation, it's no big deal.
+     */
     public void shutdown() {
-        //tell the notifiers to shut down - they are daemon threads doing 
-        //transactional work, so if they "die" in the middle of their handling 
-        //operation, it's no big deal.
-        while (numNotifiers() > 0) {
-            removeNotificationThread();
+        final ExecutorService isolated;
+        synchronized (this) {
+            shutdown = true;
+            isolated = isolatedWorkers;
+        }
+        sweeper.shutdownNow();
+        //release throttled appenders
+        progress.signal();
+        //deliver partial batches still lingering
+        handlers.stream()
+                .filter((hc) -> hc.batchHandler != null)
+                .forEach(HandlerContext::schedule);
+        workers.shutdown();
+        if (isolated != null) {
+            isolated.shutdown();
+        }
+        boolean terminated = false;
+        try {
+            final long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_WAIT_MILLIS);
+            terminated = workers.awaitTermination(SHUTDOWN_WAIT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            if (isolated != null) {
+                terminated &= isolated.awaitTermination(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (terminated) {
+            //a turn running as shutdown started may have kept a partial
+            //batch lingering after its following turn was rejected
+            handlers.stream()
+                    .filter((hc) -> hc.batchHandler != null)
+                    .forEach(HandlerContext::flushPending);
+        }
+        workers.shutdownNow();
+        if (isolated != null) {
+            isolated.shutdownNow();
         }
     }
 
     /**
-     * Returns the number of HandlerNotifier instances that are defined to keep
-     * running.
-     *
-     * @return number of notifiers still running
+     * Returns the executor of ISOLATED handler turns, creating it on first
+     * use.
      */
-    private int numNotifiers() {
-        synchronized (notifiers) {
-            return (int) notifiers.stream()
-                    .filter(HandlerNotifier::isActiveNotifier)
-                    .count();
+    private ExecutorService isolatedWorkers() {
+        ExecutorService isolated = isolatedWorkers;
+        if (isolated == null) {
+            synchronized (this) {
+                isolated = isolatedWorkers;
+                if (isolated == null) {
+                    isolated = newIsolatedExecutor();
+                    if (shutdown) {
+                        isolated.shutdown();
+                    }
+                    isolatedWorkers = isolated;
+                }
+            }
         }
+        return isolated;
     }
 
-    private void addNotificationThread() {
-        synchronized (notifiers) {
-            HandlerNotifier notifier = new HandlerNotifier();
-            Thread t = new Thread(notifierGroup, notifier);
+    /**
+     * Creates a thread-per-task executor backed by virtual threads if the
+     * runtime supports them, otherwise an unbounded pool of daemon threads.
+     */
+    private ExecutorService newIsolatedExecutor() {
+        try {
+            Method m = Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Virtual threads are not supported by "
+                    + "this runtime, isolated handlers will be dispatched "
+                    + "on platform threads.");
+            return Executors.newCachedThreadPool(notifierThreadFactory());
+        }
+    }
+
+    /**
+     * Schedules a turn of every handler whose reader does not signal appends.
+     * <p>
+     * Readers are only accessed by the turns of their handler, a turn of a
+     * handler without unread events ends without notifying the handler.
+     */
+    private void sweep() {
+        handlers.stream()
+                .filter((hc) -> !hc.signalled)
+                .forEach(HandlerContext::schedule);
+    }
+
+    private ThreadFactory notifierThreadFactory() {
+        return (r) -> {
+            Thread t = new Thread(notifierGroup, r);
             t.setDaemon(true);
             t.setName(String.format("%s-%s", NOTIFIER_THREAD_NAME_PREFIX,
                     UUID.randomUUID().toString()));
@@ -179,80 +472,105 @@ public class AsyncHandlerNotifier {
                         + "notifier exception running on thread '%s'",
                         th.getName()), ex);
             });
-            t.start();
-            notifiers.add(notifier);
-        }
+            return t;
+        };
     }
 
-    private void removeNotificationThread() {
-        //tell a notification thread to shut itself down
-        synchronized (notifiers) {
-            notifiers.stream()
-                    .filter(HandlerNotifier::isActiveNotifier)
-                    .findFirst()
-                    .ifPresent((n) -> n.keepRunning = false);
-        }
+    private static String streamKey(String channelName, String streamName) {
+        return channelName + "/" + streamName;
     }
 
-    private final class HandlerNotifier implements Runnable {
-
-        private volatile boolean keepRunning = true;
-
-        @Override
-        public void run() {
-            while (isActiveNotifier()) {
-
-                //get index of handler to trigger 
-                final int handlerIndex = workerPosition.getAndUpdate((i) -> {
-                    //next position or back to 0 if overflow - this is not 
-                    //a perfect concurrent solution, worker still needs to 
-                    //handler index out of bounds exception
-                    synchronized (handlers) {
-                        if (i > handlers.size()) {
-                            return 0;
-                        }
-                        return i + 1;
-                    }
-                });
-
-                final HandlerContext hc;
-                synchronized (handlers) {
-                    try {
-                        hc = handlers.get(handlerIndex);
-                    } catch (IndexOutOfBoundsException ex) {
-                        //a handler was removed, just skip this iteration
-                        continue;
-                    }
-                }
-
-                //notify outside synchronization so we don't deadlock )
-                hc.notifyNext();
+    private static DispatchMode dispatchModeProperty() {
+        final String value = System.getProperty(PROPERTY_DISPATCH_MODE);
+        if (value == null) {
+            return DispatchMode.SHARED;
+        }
+        try {
+            return DispatchMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                    + "property '%s', using default of %s.", value,
+                    PROPERTY_DISPATCH_MODE, DispatchMode.SHARED.name()));
+            return DispatchMode.SHARED;
+        }
+    }
 
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException ex) {
-                    //let while condition check worker state
-                }
-            }
-            LOGGER.log(Level.FINE, String.format("Shutting down async "
-                    + "handler notification thread %s",
-                    Thread.currentThread().getName()));
+    private static LagAction lagActionProperty() {
+        final String value = System.getProperty(PROPERTY_LAG_POLICY);
+        if (value == null) {
+            return LagAction.NONE;
         }
+        try {
+            return LagAction.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                    + "property '%s', using default of %s.", value,
+                    PROPERTY_LAG_POLICY, LagAction.NONE.name()));
+            return LagAction.NONE;
+        }
+    }
 
-        private boolean isActiveNotifier() {
-            return keepRunning;
+    private static long longProperty(String name, long defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final long l = Long.parseLong(value);
+            if (l > 0) {
+                return l;
+            }
+        } catch (NumberFormatException ex) {
+            //fall through to default
         }
+        LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                + "property '%s', using default of %d.", value, name,
+                defaultValue));
+        return defaultValue;
     }
 
-    private final class HandlerContext {
+    private final class HandlerContext implements Runnable {
 
         private final EventReader reader;
         private final EventHandler handler;
+        //set if the handler is notified in batches
+        private final BatchEventHandler batchHandler;
+        //events read for the next batch, only accessed by the running turn
+        private final List<AppendedEventMessage> pending = new ArrayList<>();
+        //nanoTime the pending batch must be delivered by
+        private long lingerDeadline;
+        //executor the handler turns are run on
+        private final Executor dispatcher;
+        //true if turns are scheduled by append signals rather than sweeps
+        private final boolean signalled;
         private volatile boolean valid = true;
+        //true while the context is queued or running on a worker
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        //set by each schedule request, cleared when a turn starts reading
+        private final AtomicBoolean requested = new AtomicBoolean();
+        private volatile LagPolicy lagPolicy = defaultLagPolicy;
+        //true while the lag exceeds the policy threshold
+        private volatile boolean lagging;
+        //true while the handler is given no turns by a SHED policy
+        private volatile boolean suspended;
+        //lag of the suspended handler at its last resume check
+        private long suspendedLag;
+        //true from resuming until the lag is within the threshold again
+        private volatile boolean catchingUp;
+        //only written by the running turn
+        private volatile long notified;
+        private volatile long lag;
+        //true once logged that the reader does not count its events
+        private boolean lagUnknown;
 
-        private HandlerContext(EventReader reader, EventHandler handler) {
+        private HandlerContext(EventReader reader, EventHandler handler,
+                Executor dispatcher) {
             this.reader = reader;
             this.handler = handler;
+            this.batchHandler = (handler instanceof BatchEventHandler)
+                    ? (BatchEventHandler) handler : null;
+            this.dispatcher = dispatcher;
+            this.signalled = reader.signalsAppends();
         }
 
         EventReader getReader() {
@@ -263,109 +581,452 @@ public class AsyncHandlerNotifier {
             return handler;
         }
 
+        HandlerLag getLag() {
+            return new HandlerLag(reader.getChannelName(),
+                    reader.getStreamName(), handler, lag, notified, lagging,
+                    lagPolicy);
+        }
+
+        boolean isThrottling() {
+            return valid && lagging
+                    && lagPolicy.getAction() == LagAction.THROTTLE;
+        }
+
         /**
-         * Synchronously notifies the EventHandler of the provided event.
+         * Maximum number of events notified per turn.
+         */
+        private int turnSize() {
+            return (lagging && lagPolicy.getAction() == LagAction.BOOST)
+                    ? batchSize * BOOST_FACTOR : batchSize;
+        }
+
+        /**
+         * Queue this context on its dispatcher, unless it is already queued
+         * or running; a request made while a turn is running is served by a
+         * following turn.
+         */
+        void schedule() {
+            requested.set(true);
+            if (!valid || suspended || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(this);
+            } catch (RejectedExecutionException ex) {
+                //notifier is shut down
+                scheduled.set(false);
+            }
+        }
+
+        /**
+         * Delivers up to a batch of events to the handler, rescheduling itself
+         * if more events are available.
+         */
+        @Override
+        public void run() {
+            //events appended before any request served by this turn are read
+            //by this turn
+            requested.set(false);
+            boolean full = false;
+            RUNNING.set(this);
+            try {
+                if (batchHandler != null) {
+                    full = notifyBatchHandler();
+                } else {
+                    full = notifyEvents();
+                }
+                updateLag();
+            } finally {
+                RUNNING.remove();
+                scheduled.set(false);
+            }
+            //the reader may have more events if the turn was full, and a
+            //request made while this turn was running must not be lost
+            if (valid && (full || requested.get())) {
+                schedule();
+            }
+        }
+
+        /**
+         * Uses the calling thread to read up to a batch of events from the
+         * EventReader, notifying the EventHandler of each.
+         *
+         * @return true if the turn notified its maximum number of events
+         */
+        private boolean notifyEvents() {
+            final int turnSize = turnSize();
+            for (int i = 0; i < turnSize && valid; i++) {
+                final Optional<AppendedEventMessage> msg;
+                try {
+                    msg = reader.poll();
+                } catch (StreamReadException ex) {
+                    //problems reading from stream
+                    LOGGER.log(Level.WARNING, String.format("Unable to read "
+                            + "from stream '%s-%s'", reader.getChannelName(),
+                            reader.getStreamName()), ex);
+                    return false;
+                }
+                if (!msg.isPresent()) {
+                    return false;
+                }
+                lag = reader.available();
+                notify(msg.get());
+                notified++;
+            }
+            return valid;
+        }
+
+        /**
+         * Checks the lag of the handler against its policy, logging when the
+         * handler starts and stops lagging, and suspends a lagging handler
+         * with a SHED policy.
          * <p>
-         * This method is intentionally synchronized so that only one worker can
-         * execute this operation at a time.
+         * The lag of a handler whose reader does not count its remaining
+         * events is unknown, reported as -1, and the handler is never
+         * considered lagging.
+         */
+        private void updateLag() {
+            final LagPolicy policy = lagPolicy;
+            long lag = reader.available();
+            if (lag < 0) {
+                if (!lagUnknown) {
+                    lagUnknown = true;
+                    LOGGER.log(Level.INFO, String.format("Reader of handler "
+                            + "'%s' on stream '%s-%s' does not count its "
+                            + "events, lag policy %s is not applied.",
+                            handler.getClass().getName(),
+                            reader.getChannelName(), reader.getStreamName(),
+                            policy));
+                }
+                lag = -1;
+            } else if (lag > policy.getThreshold() && !catchingUp
+                    && policy.getAction() == LagAction.SHED) {
+                suspend(lag, policy);
+            }
+            this.lag = lag;
+            final boolean over = lag > policy.getThreshold();
+            if (!over) {
+                catchingUp = false;
+            }
+            if (over != lagging) {
+                lagging = over;
+                if (over) {
+                    LOGGER.log(Level.WARNING, String.format("Handler '%s' "
+                            + "on stream '%s-%s' lags by %d events, exceeding "
+                            + "the threshold of lag policy %s.",
+                            handler.getClass().getName(),
+                            reader.getChannelName(), reader.getStreamName(),
+                            lag, policy));
+                } else {
+                    LOGGER.log(Level.INFO, String.format("Handler '%s' on "
+                            + "stream '%s-%s' is within the threshold of lag "
+                            + "policy %s.", handler.getClass().getName(),
+                            reader.getChannelName(), reader.getStreamName(),
+                            policy));
+                }
+            }
+            if (policy.getAction() == LagAction.THROTTLE) {
+                progress.signal();
+            }
+        }
+
+        /**
+         * Stops giving the handler turns, leaving its reader at the last
+         * event it handled, until its stream stops outpacing it.
+         * <p>
+         * A lingering partial batch is delivered first, so a durable reader
+         * is not checkpointed past events the handler was not notified of.
          *
-         * @param msg event to notify the handler about
+         * @param lag number of events available to the reader
+         * @param policy lag policy of the handler
          */
-        public synchronized void notify(AppendedEventMessage msg) {
-            if (!valid) {
-                //handler context has been invalidated
-                return;
+        private void suspend(long lag, LagPolicy policy) {
+            if (batchHandler != null) {
+                flushPending();
+            }
+            suspendedLag = lag;
+            suspended = true;
+            LOGGER.log(Level.WARNING, String.format("Handler '%s' on stream "
+                    + "'%s-%s' lags by %d events, exceeding the threshold of "
+                    + "lag policy %s; the handler is suspended at its last "
+                    + "handled event.", handler.getClass().getName(),
+                    reader.getChannelName(), reader.getStreamName(), lag,
+                    policy));
+            scheduleResumeCheck();
+        }
+
+        /**
+         * Schedules a check of the suspended handler after the sweep
+         * interval.
+         */
+        private void scheduleResumeCheck() {
+            try {
+                sweeper.schedule(this::checkResume, sweepInterval,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                //notifier is shut down
             }
+        }
 
-            if (msg == null) {
+        /**
+         * Resumes the suspended handler from its last handled event once no
+         * events were appended to its stream since the last check, or its
+         * policy no longer sheds, otherwise checks again later.
+         * <p>
+         * The resumed handler catches up before it may be suspended again.
+         */
+        private void checkResume() {
+            if (!valid || shutdown) {
                 return;
             }
-            
+            //the reader is only accessed while no turn may run
+            if (!scheduled.compareAndSet(false, true)) {
+                scheduleResumeCheck();
+                return;
+            }
+            final long lag;
             try {
-                handler.handle(msg);
-            } catch (StreamReadException ex) {
-                //problems reading from stream
-                LOGGER.log(Level.WARNING, String.format("Unable to read "
-                        + "from stream '%s-%s'", reader.getChannelName(),
-                        reader.getStreamName()), ex);
-            } catch (Throwable ex) {
-                //problems handling event
-                if (msg == null) {
-                    LOGGER.log(Level.SEVERE, "Unexpected null event in "
-                            + "handler.");
+                lag = reader.available();
+            } finally {
+                scheduled.set(false);
+            }
+            this.lag = lag;
+            final LagPolicy policy = lagPolicy;
+            if (lag > suspendedLag && lag > policy.getThreshold()
+                    && policy.getAction() == LagAction.SHED) {
+                suspendedLag = lag;
+                scheduleResumeCheck();
+                return;
+            }
+            catchingUp = true;
+            suspended = false;
+            LOGGER.log(Level.INFO, String.format("Handler '%s' on stream "
+                    + "'%s-%s' resumes from its last handled event, %d events "
+                    + "behind.", handler.getClass().getName(),
+                    reader.getChannelName(), reader.getStreamName(), lag));
+            schedule();
+        }
+
+        /**
+         * Uses the calling thread to fill the pending batch from the
+         * EventReader, notifying the BatchEventHandler once the batch is full
+         * or its linger time has elapsed.
+         * <p>
+         * A partial batch still lingering is kept for a later turn, which is
+         * scheduled by the next append or when the linger time elapses.
+         *
+         * @return true if the turn notified its maximum number of events
+         */
+        private boolean notifyBatchHandler() {
+            final int maxSize = Math.max(1, batchHandler.getMaxBatchSize());
+            //deliver batches until the turn has notified at least as many
+            //events as a single event handler would be
+            final int turnSize = turnSize();
+            int turnNotified = 0;
+            while (valid && turnNotified < turnSize) {
+                if (!fillBatch(maxSize)) {
+                    return false;
                 }
-                @SuppressWarnings("null")
-                final String eventType = msg.getEventType();
-                final String eventSequence = msg.getSequence();
-
-                EventHandlerAction action = handler.onFailure(msg, ex);
-                switch (action) {
-                    case CONTINUE:
-                        LOGGER.log(Level.FINEST, () -> String.format(
-                                "Handler '%s' threw exception while attempting "
-                                + "to handle event '%s:%s', skipping "
-                                + "event.",
-                                handler.getClass().getName(),
-                                eventType, eventSequence));
-                        break;
-                    case RETRY:
-                        LOGGER.log(Level.FINER, () -> String.format(
-                                "Handler '%s' threw exception while attempting to "
-                                + "handle event '%s:%s', retrying.",
-                                handler.getClass().getName(),
-                                eventType, eventSequence));
-                        notify(msg);
-                        break;
-                    case FAIL:
-                        LOGGER.log(Level.WARNING, String.format("Handler "
-                                + "'%s' handling failed.",
-                                handler.getClass().getName()),
-                                ex);
-                        removeHandler(reader.getChannelName(),
-                                reader.getStreamName(), handler);
-                        break;
-                    default:
-                        LOGGER.log(Level.SEVERE, String.format("Unknown "
-                                + "handler action '%s' found for handler "
-                                + "'%s'; failing handler.",
-                                action.name(), handler.getClass().getName()
-                        ), ex);
-                        removeHandler(reader.getChannelName(),
-                                reader.getStreamName(), handler);
+                turnNotified += pending.size();
+                notified += pending.size();
+                try {
+                    notify(pending);
+                } finally {
+                    pending.clear();
                 }
             }
+            return valid;
         }
 
         /**
-         * Uses the calling thread to read from the EventReader and notify the
-         * EventHandler if there is a next message.
-         * <p>
-         * This method is intentionally synchronized so that only one worker can
-         * execute this operation at a time.
+         * Uses the calling thread to notify the BatchEventHandler of the
+         * pending batch, once no turn of the handler can run.
          */
-        public synchronized void notifyNext() {
-            if (!valid) {
+        void flushPending() {
+            if (pending.isEmpty()) {
                 return;
             }
+            RUNNING.set(this);
+            try {
+                notified += pending.size();
+                notify(pending);
+            } finally {
+                pending.clear();
+                RUNNING.remove();
+            }
+        }
 
+        /**
+         * Reads events from the EventReader into the pending batch.
+         *
+         * @param maxSize maximum batch size
+         * @return true if the pending batch should be delivered
+         */
+        private boolean fillBatch(int maxSize) {
             try {
-                notify(reader.poll().orElse(null));
+                while (pending.size() < maxSize) {
+                    Optional<AppendedEventMessage> msg = reader.poll();
+                    if (!msg.isPresent()) {
+                        break;
+                    }
+                    if (pending.isEmpty()) {
+                        lingerDeadline = System.nanoTime()
+                                + TimeUnit.MILLISECONDS.toNanos(
+                                        batchHandler.getLingerMillis());
+                        scheduleLinger();
+                    }
+                    pending.add(msg.get());
+                    lag = reader.available();
+                }
             } catch (StreamReadException ex) {
-                //problems reading from stream
+                //problems reading from stream, keep what has been read
                 LOGGER.log(Level.WARNING, String.format("Unable to read "
                         + "from stream '%s-%s'", reader.getChannelName(),
                         reader.getStreamName()), ex);
             }
 
+            return !pending.isEmpty() && (pending.size() >= maxSize
+                    || shutdown || System.nanoTime() - lingerDeadline >= 0);
         }
 
-//        @Override
-//        public int compareTo(HandlerContext o) {
-//            return (this.lastNotified == o.lastNotified)
-//                    ? 0
-//                    : (this.lastNotified > o.lastNotified)
-//                            ? 1
-//                            : -1;
-//        }
+        /**
+         * Schedules a turn for when the linger time of the pending batch
+         * elapses.
+         */
+        private void scheduleLinger() {
+            final long delay = lingerDeadline - System.nanoTime();
+            if (delay <= 0) {
+                return;
+            }
+            try {
+                sweeper.schedule(this::schedule, delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                //notifier is shut down
+            }
+        }
+
+        /**
+         * Synchronously notifies the BatchEventHandler of the provided batch,
+         * retrying the unprocessed events for as long as the handler
+         * requests.
+         *
+         * @param batch events to notify the handler about
+         */
+        private void notify(List<AppendedEventMessage> batch) {
+            int offset = 0;
+            while (valid && offset < batch.size()) {
+                try {
+                    batchHandler.handle(Collections.unmodifiableList(
+                            batch.subList(offset, batch.size())));
+                    return;
+                } catch (Throwable ex) {
+                    if (ex instanceof BatchHandlingException) {
+                        offset += Math.max(0,
+                                ((BatchHandlingException) ex).getProcessed());
+                        if (offset >= batch.size()) {
+                            return;
+                        }
+                    }
+                    final List<AppendedEventMessage> unprocessed
+                            = Collections.unmodifiableList(
+                                    batch.subList(offset, batch.size()));
+                    final String firstSequence
+                            = unprocessed.get(0).getSequence();
+
+                    EventHandlerAction action
+                            = batchHandler.onFailure(unprocessed, ex);
+                    switch (action) {
+                        case CONTINUE:
+                            LOGGER.log(Level.FINEST, () -> String.format(
+                                    "Batch handler '%s' threw exception while "
+                                    + "attempting to handle %d events from "
+                                    + "'%s', skipping events.",
+                                    handler.getClass().getName(),
+                                    unprocessed.size(), firstSequence));
+                            return;
+                        case RETRY:
+                            LOGGER.log(Level.FINER, () -> String.format(
+                                    "Batch handler '%s' threw exception while "
+                                    + "attempting to handle %d events from "
+                                    + "'%s', retrying.",
+                                    handler.getClass().getName(),
+                                    unprocessed.size(), firstSequence));
+                            break;
+                        case FAIL:
+                            LOGGER.log(Level.WARNING, String.format("Handler "
+                                    + "'%s' handling failed.",
+                                    handler.getClass().getName()),
+                                    ex);
+                            removeHandler(reader.getChannelName(),
+                                    reader.getStreamName(), handler);
+                            return;
+                        default:
+                            LOGGER.log(Level.SEVERE, String.format("Unknown "
+                                    + "handler action '%s' found for handler "
+                                    + "'%s'; failing handler.",
+                                    action.name(), handler.getClass().getName()
+                            ), ex);
+                            removeHandler(reader.getChannelName(),
+                                    reader.getStreamName(), handler);
+                            return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Synchronously notifies the EventHandler of the provided event,
+         * retrying the event for as long as the handler requests.
+         *
+         * @param msg event to notify the handler about
+         */
+        private void notify(AppendedEventMessage msg) {
+            while (valid) {
+                try {
+                    handler.handle(msg);
+                    return;
+                } catch (Throwable ex) {
+                    //problems handling event
+                    final String eventType = msg.getEventType();
+                    final String eventSequence = msg.getSequence();
+
+                    EventHandlerAction action = handler.onFailure(msg, ex);
+                    switch (action) {
+                        case CONTINUE:
+                            LOGGER.log(Level.FINEST, () -> String.format(
+                                    "Handler '%s' threw exception while attempting "
+                                    + "to handle event '%s:%s', skipping "
+                                    + "event.",
+                                    handler.getClass().getName(),
+                                    eventType, eventSequence));
+                            return;
+                        case RETRY:
+                            LOGGER.log(Level.FINER, () -> String.format(
+                                    "Handler '%s' threw exception while attempting to "
+                                    + "handle event '%s:%s', retrying.",
+                                    handler.getClass().getName(),
+                                    eventType, eventSequence));
+                            break;
+                        case FAIL:
+                            LOGGER.log(Level.WARNING, String.format("Handler "
+                                    + "'%s' handling failed.",
+                                    handler.getClass().getName()),
+                                    ex);
+                            removeHandler(reader.getChannelName(),
+                                    reader.getStreamName(), handler);
+                            return;
+                        default:
+                            LOGGER.log(Level.SEVERE, String.format("Unknown "
+                                    + "handler action '%s' found for handler "
+                                    + "'%s'; failing handler.",
+                                    action.name(), handler.getClass().getName()
+                            ), ex);
+                            removeHandler(reader.getChannelName(),
+                                    reader.getStreamName(), handler);
+                            return;
+                    }
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.async;
+
+/**
+ * How the {@link AsyncHandlerNotifier} dispatches events to a handler.
+ *
+ * @author steve_siebert
+ */
+public enum DispatchMode {
+
+    /**
+     * Handler turns run on the bounded worker pool shared by all handlers of
+     * the notifier. Best suited to handlers which do not block.
+     */
+    SHARED,
+    /**
+     * Each handler turn runs on its own thread; a virtual thread when the
+     * runtime supports them, otherwise a thread from an unbounded pool.
+     * Handlers which block on I/O only stall their own stream.
+     */
+    ISOLATED;
+}
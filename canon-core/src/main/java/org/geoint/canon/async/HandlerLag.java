@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.async;
+
+import org.geoint.canon.stream.EventHandler;
+
+/**
+ * Snapshot of how far an asynchronous handler lags behind its stream.
+ *
+ * @author steve_siebert
+ */
+public final class HandlerLag {
+
+    private final String channelName;
+    private final String streamName;
+    private final EventHandler handler;
+    private final long lag;
+    private final long notified;
+    private final boolean lagging;
+    private final LagPolicy policy;
+
+    HandlerLag(String channelName, String streamName, EventHandler handler,
+            long lag, long notified, boolean lagging, LagPolicy policy) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.handler = handler;
+        this.lag = lag;
+        this.notified = notified;
+        this.lagging = lagging;
+        this.policy = policy;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getStreamName() {
+        return streamName;
+    }
+
+    public EventHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Number of events appended to the stream which the handler has not yet
+     * been notified of.
+     *
+     * @return lag in events, or -1 if the reader of the handler cannot count
+     * its remaining events
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * Number of events the handler has been notified of since it was added.
+     *
+     * @return notified event count
+     */
+    public long getNotified() {
+        return notified;
+    }
+
+    /**
+     * Whether the lag policy of the handler is currently being applied.
+     *
+     * @return true if the handler lags by more than the policy threshold
+     */
+    public boolean isLagging() {
+        return lagging;
+    }
+
+    public LagPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s-%s %s lag=%d notified=%d policy=%s",
+                channelName, streamName, handler.getClass().getName(), lag,
+                notified, policy);
+    }
+}
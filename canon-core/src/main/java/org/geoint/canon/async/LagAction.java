@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.async;
+
+/**
+ * Action taken by the {@link AsyncHandlerNotifier} while a handler lags
+ * behind its stream by more than the threshold of its {@link LagPolicy}.
+ *
+ * @author steve_siebert
+ */
+public enum LagAction {
+
+    /**
+     * Lag is only reported.
+     */
+    NONE,
+    /**
+     * Appenders to the stream are delayed, for a bounded time per append,
+     * until the handler catches up.
+     */
+    THROTTLE,
+    /**
+     * The handler is given no turns, releasing its dispatch share to the
+     * other handlers, while its reader is kept at the last event it handled;
+     * durable readers keep that position as their checkpoint. Once its stream
+     * stops outpacing it the handler resumes from the checkpoint and catches
+     * up, no events are lost.
+     */
+    SHED,
+    /**
+     * The handler is given larger dispatch turns until it catches up.
+     */
+    BOOST;
+}
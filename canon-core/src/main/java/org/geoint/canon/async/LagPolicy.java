@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.async;
+
+/**
+ * Policy applied by the {@link AsyncHandlerNotifier} when a handler lags
+ * behind its stream.
+ * <p>
+ * A handler is lagging when the number of events available to its reader
+ * exceeds the threshold of the policy.
+ *
+ * @author steve_siebert
+ */
+public final class LagPolicy {
+
+    /**
+     * Policy which only reports lag.
+     */
+    public static final LagPolicy NONE
+            = new LagPolicy(LagAction.NONE, Long.MAX_VALUE);
+
+    private final LagAction action;
+    private final long threshold;
+
+    /**
+     *
+     * @param action action taken while the handler is lagging
+     * @param threshold number of unread events after which the handler is
+     * lagging
+     */
+    public LagPolicy(LagAction action, long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(String.format("Invalid lag "
+                    + "threshold %d, must not be negative.", threshold));
+        }
+        this.action = action;
+        this.threshold = threshold;
+    }
+
+    public static LagPolicy throttle(long threshold) {
+        return new LagPolicy(LagAction.THROTTLE, threshold);
+    }
+
+    public static LagPolicy shed(long threshold) {
+        return new LagPolicy(LagAction.SHED, threshold);
+    }
+
+    public static LagPolicy boost(long threshold) {
+        return new LagPolicy(LagAction.BOOST, threshold);
+    }
+
+    public LagAction getAction() {
+        return action;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d)", action.name(), threshold);
+    }
+}
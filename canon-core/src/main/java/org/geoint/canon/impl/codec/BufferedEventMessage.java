@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.codec;
+
+import org.geoint.canon.event.EventMessage;
+
+/**
+ * Event message whose content was encoded into an {@link EventBuffer}, which
+ * event streams read directly rather than through
+ * {@link EventMessage#getEventContent() }.
+ *
+ * @author steve_siebert
+ */
+public interface BufferedEventMessage extends EventMessage {
+
+    /**
+     * Buffer containing the encoded event content.
+     *
+     * @return content buffer, or null if the content is only available as a
+     * stream
+     */
+    EventBuffer getContentBuffer();
+
+    /**
+     * Returns the content buffer to the pool once the event was appended,
+     * detaching it from this message.
+     * <p>
+     * The content of the message is no longer available once released, so
+     * the buffer must only be released once the message will not be
+     * appended again.
+     */
+    void releaseContentBuffer();
+}
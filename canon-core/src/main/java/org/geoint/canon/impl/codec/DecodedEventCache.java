@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.codec;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
+import org.geoint.canon.event.AppendedEventMessage;
+
+/**
+ * Bounded cache of decoded domain events, keyed by the stream and sequence
+ * of the event and the codec which decoded it.
+ * <p>
+ * When many handlers are notified of the same event each would otherwise
+ * decode it; with the cache the event is decoded once and the domain event
+ * instance is shared, so cached domain events must be treated as immutable.
+ * <p>
+ * The cache is split into stripes, each a least-recently-used map guarded by
+ * its own lock, so concurrent handlers rarely contend. Decoding is done
+ * outside the lock; if two threads miss on the same event concurrently both
+ * decode it and the first instance cached is returned to both.
+ * <p>
+ * The shared cache is sized with the JVM property
+ * <i>org.geoint.canon.decodeCache.size</i>, default 10000 events; a size of
+ * zero disables caching.
+ *
+ * @author steve_siebert
+ */
+public class DecodedEventCache {
+
+    public static final String PROPERTY_CACHE_SIZE
+            = "org.geoint.canon.decodeCache.size";
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final int NUM_STRIPES = 16;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(DecodedEventCache.class.getName());
+    private static final DecodedEventCache SHARED
+            = new DecodedEventCache(cacheSizeProperty());
+
+    private final Stripe[] stripes;
+    private final boolean enabled;
+
+    /**
+     *
+     * @param maxSize maximum number of cached events
+     */
+    public DecodedEventCache(int maxSize) {
+        this.enabled = maxSize > 0;
+        final int numStripes = Math.max(1, Math.min(NUM_STRIPES, maxSize));
+        this.stripes = new Stripe[numStripes];
+        final int stripeSize = Math.max(1, maxSize / numStripes);
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Cache shared by all streams of the JVM.
+     *
+     * @return shared cache
+     */
+    public static DecodedEventCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached domain event decoded from the event message by the
+     * codec, decoding and caching it if not cached.
+     *
+     * @param <E> domain event type
+     * @param msg appended event
+     * @param codec codec to decode the event
+     * @return domain event
+     * @throws IOException if the event content could not be read
+     * @throws EventCodecException if the event could not be decoded
+     */
+    @SuppressWarnings("unchecked")
+    public <E> E decode(AppendedEventMessage msg, EventCodec<E> codec)
+            throws IOException, EventCodecException {
+        if (!enabled) {
+            return codec.decode(msg);
+        }
+        final Key key = new Key(msg, codec);
+        final Stripe stripe = stripes[(key.hashCode() & 0x7FFFFFFF)
+                % stripes.length];
+
+        Object event;
+        synchronized (stripe) {
+            event = stripe.get(key);
+        }
+        if (event != null) {
+            return (E) event;
+        }
+
+        final E decoded = codec.decode(msg);
+        if (decoded == null) {
+            return null;
+        }
+        synchronized (stripe) {
+            event = stripe.putIfAbsent(key, decoded);
+        }
+        return (event == null) ? decoded : (E) event;
+    }
+
+    /**
+     * Number of cached events.
+     *
+     * @return cache size
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all cached events.
+     */
+    public void clear() {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.clear();
+            }
+        }
+    }
+
+    private static int cacheSizeProperty() {
+        final String value = System.getProperty(PROPERTY_CACHE_SIZE);
+        if (value == null) {
+            return DEFAULT_CACHE_SIZE;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                    + "property '%s', using default of %d.", value,
+                    PROPERTY_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+            return DEFAULT_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * Least-recently-used map of a cache stripe.
+     */
+    private static final class Stripe extends LinkedHashMap<Key, Object> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * Identifies a decoded event; codecs are compared by identity.
+     */
+    private static final class Key {
+
+        private final String channelName;
+        private final String streamName;
+        private final String sequence;
+        private final EventCodec<?> codec;
+        private final int hash;
+
+        Key(AppendedEventMessage msg, EventCodec<?> codec) {
+            this.channelName = msg.getChannelName();
+            this.streamName = msg.getStreamName();
+            this.sequence = msg.getSequence();
+            this.codec = codec;
+            int h = Objects.hashCode(sequence);
+            h = 31 * h + Objects.hashCode(streamName);
+            h = 31 * h + Objects.hashCode(channelName);
+            h = 31 * h + System.identityHashCode(codec);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return codec == other.codec
+                    && Objects.equals(sequence, other.sequence)
+                    && Objects.equals(streamName, other.streamName)
+                    && Objects.equals(channelName, other.channelName);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.geoint.canon.event.ByteBufferInputStream;
+import org.geoint.canon.event.EventMessage;
+
+/**
+ * Growable buffer that encoded event content is written to, and which event
+ * streams read from, without intermediate copies.
+ * <p>
+ * Buffers are pooled: {@link #acquire() } reuses a buffer
+ * {@link #release() released} on the calling thread, or otherwise one
+ * released on any thread, if available. Each thread keeps a small free list,
+ * so an appender building a batch of events reuses a buffer per event, and
+ * buffers released beyond it are shared with other threads, so buffers
+ * released by another thread, such as the thread writing a group commit,
+ * return to the appenders. Streams which copy the content into their own
+ * storage release the buffer once written;
+ * streams which keep the content on the heap {@link #adopt() adopt} the
+ * backing array instead, after which the buffer is read-only and never
+ * reused.
+ * <p>
+ * Instances of this class are <b>NOT</b> thread-safe.
+ *
+ * @author steve_siebert
+ */
+public final class EventBuffer extends OutputStream {
+
+    private static final int DEFAULT_CAPACITY = 512;
+    //larger buffers are left to the garbage collector rather than pooled
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    //buffers kept by each thread, and shared by all threads
+    static final int THREAD_POOL_SIZE = 8;
+    static final int SHARED_POOL_SIZE = 64;
+    private static final ThreadLocal<ArrayDeque<EventBuffer>> POOL
+            = ThreadLocal.withInitial(() -> new ArrayDeque<>(THREAD_POOL_SIZE));
+    private static final ArrayBlockingQueue<EventBuffer> SHARED_POOL
+            = new ArrayBlockingQueue<>(SHARED_POOL_SIZE);
+
+    private byte[] buf;
+    private int count;
+    //content is owned by a stream, the buffer is read-only and never pooled
+    private boolean adopted;
+    //buffer was returned to the pool
+    private boolean released;
+
+    private EventBuffer(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * Returns an empty buffer, reusing a pooled buffer of the calling thread,
+     * or one shared by other threads, if available.
+     *
+     * @return empty buffer
+     */
+    public static EventBuffer acquire() {
+        EventBuffer pooled = POOL.get().pollFirst();
+        if (pooled == null) {
+            pooled = SHARED_POOL.poll();
+        }
+        if (pooled != null) {
+            pooled.released = false;
+            return pooled;
+        }
+        return new EventBuffer(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the encoded content of the event message, reading the content
+     * into a new buffer unless the message was encoded into one.
+     *
+     * @param msg event message
+     * @return event content buffer
+     * @throws IOException if the event content could not be read
+     */
+    public static EventBuffer of(EventMessage msg) throws IOException {
+        if (msg instanceof BufferedEventMessage) {
+            final EventBuffer b = ((BufferedEventMessage) msg).getContentBuffer();
+            if (b != null) {
+                return b;
+            }
+        }
+        final EventBuffer b = acquire();
+        try (InputStream in = msg.getEventContent()) {
+            b.readFrom(in);
+        }
+        return b;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Reads the remaining content of the stream into the buffer.
+     *
+     * @param in stream to read
+     * @throws IOException if the stream could not be read
+     */
+    public void readFrom(InputStream in) throws IOException {
+        for (;;) {
+            ensureCapacity(count + 1);
+            final int read = in.read(buf, count, buf.length - count);
+            if (read == -1) {
+                return;
+            }
+            count += read;
+        }
+    }
+
+    /**
+     * Number of bytes written to the buffer.
+     *
+     * @return content length
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Content of the buffer, without copying.
+     * <p>
+     * The returned buffer is only valid until this buffer is released.
+     *
+     * @return view of the content
+     */
+    public ByteBuffer toByteBuffer() {
+        if (released) {
+            throw new IllegalStateException("Event buffer was released.");
+        }
+        return ByteBuffer.wrap(buf, 0, count).slice();
+    }
+
+    /**
+     * Content of the buffer as a stream, without copying.
+     *
+     * @return content stream
+     */
+    public InputStream asInputStream() {
+        return new ByteBufferInputStream(toByteBuffer());
+    }
+
+    /**
+     * Transfers ownership of the content to the caller; the buffer becomes
+     * read-only and is never returned to the pool.
+     *
+     * @return view of the content
+     */
+    public ByteBuffer adopt() {
+        final ByteBuffer content = toByteBuffer();
+        adopted = true;
+        return content;
+    }
+
+    /**
+     * Returns the buffer to the pool of the calling thread, or to the pool
+     * shared by all threads if the pool of the thread is full.
+     * <p>
+     * Adopted buffers are not pooled; the content of released buffers must no
+     * longer be read.
+     */
+    public void release() {
+        if (adopted || released) {
+            return;
+        }
+        released = true;
+        count = 0;
+        if (buf.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        final ArrayDeque<EventBuffer> pool = POOL.get();
+        if (pool.size() < THREAD_POOL_SIZE) {
+            pool.addFirst(this);
+        } else {
+            SHARED_POOL.offer(this);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (adopted || released) {
+            throw new IllegalStateException("Event buffer is read-only.");
+        }
+        if (capacity - buf.length > 0) {
+            if (capacity < 0) {
+                throw new OutOfMemoryError("Event content too large.");
+            }
+            int newCapacity = Math.max(buf.length << 1, capacity);
+            if (newCapacity < 0) {
+                newCapacity = Integer.MAX_VALUE - 8;
+            }
+            buf = Arrays.copyOf(buf, newCapacity);
+        }
+    }
+}
@@ -15,15 +15,24 @@
  */
 package org.geoint.canon.impl.codec;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.codec.EventCodec;
 
 /**
  * EventCodec resolver that supports hierarchical tiered codec resolution.
+ * <p>
+ * Resolutions, including unresolved event types, are memoized per tier so
+ * repeated resolution of an event type is a single map lookup. The memo of a
+ * tier is invalidated when a codec is added to the tier or to any of its
+ * HierarchicalCodecResolver parent tiers. Resolutions from a parent which is
+ * not a HierarchicalCodecResolver are not memoized, as additions to it cannot
+ * be detected.
  *
  * @author steve_siebert
  */
@@ -31,6 +40,9 @@ public class HierarchicalCodecResolver implements CodecResolver {
 
     private final CodecResolver parentTier;
     private final Collection<EventCodec> tierCodecs;
+    //incremented each time a codec is added to this tier
+    private volatile long modCount;
+    private volatile Memo memo = new Memo(-1);
 
     public HierarchicalCodecResolver(CodecResolver parent,
             EventCodec... tierCodecs) {
@@ -43,8 +55,9 @@ public class HierarchicalCodecResolver implements CodecResolver {
         this.tierCodecs = modifiableCollection(tierCodecs);
     }
 
-    public void add(EventCodec codec) {
+    public synchronized void add(EventCodec codec) {
         tierCodecs.add(codec);
+        modCount++;
     }
 
     /**
@@ -55,14 +68,54 @@ public class HierarchicalCodecResolver implements CodecResolver {
      */
     @Override
     public Optional<EventCodec> findCodec(String eventType) {
-        return Optional.ofNullable(tierCodecs.stream()
-                .filter((c) -> c.isSupported(eventType))
-                .findFirst()
-                .orElseGet(() -> (parentTier != null)
-                        ? parentTier.findCodec(eventType).orElseGet(() -> null)
-                        : null
-                )
-        );
+        final long generation = generation();
+        Memo m = memo;
+        if (m.generation != generation) {
+            m = new Memo(generation);
+            memo = m;
+        }
+
+        Optional<EventCodec> codec = m.resolved.get(eventType);
+        if (codec != null) {
+            return codec;
+        }
+        codec = resolve(eventType);
+        if (codec.isPresent() || isParentMemoizable()) {
+            m.resolved.putIfAbsent(eventType, codec);
+        }
+        return codec;
+    }
+
+    /**
+     * Resolve the codec from the current tier or parent tier, without the
+     * memo of this tier.
+     */
+    private Optional<EventCodec> resolve(String eventType) {
+        for (EventCodec c : tierCodecs) {
+            if (c.isSupported(eventType)) {
+                return Optional.of(c);
+            }
+        }
+        return (parentTier != null)
+                ? parentTier.findCodec(eventType)
+                : Optional.empty();
+    }
+
+    /**
+     * Number of codecs added to this tier and its hierarchical parent tiers;
+     * changes whenever the resolution of an event type may have changed.
+     */
+    private long generation() {
+        long generation = modCount;
+        if (parentTier instanceof HierarchicalCodecResolver) {
+            generation += ((HierarchicalCodecResolver) parentTier).generation();
+        }
+        return generation;
+    }
+
+    private boolean isParentMemoizable() {
+        return parentTier == null
+                || parentTier instanceof HierarchicalCodecResolver;
     }
 
     /**
@@ -73,9 +126,21 @@ public class HierarchicalCodecResolver implements CodecResolver {
      */
     private static Collection<EventCodec> modifiableCollection(
             EventCodec... codecs) {
-        Collection<EventCodec> codecCollection = new ArrayList<>(codecs.length);
-        Arrays.stream(codecs).forEach((c) -> codecCollection.add(c));
-        return codecCollection;
+        return new CopyOnWriteArrayList<>(Arrays.asList(codecs));
+    }
+
+    /**
+     * Event type resolutions memoized for a generation of the tier.
+     */
+    private static final class Memo {
+
+        private final long generation;
+        private final ConcurrentMap<String, Optional<EventCodec>> resolved
+                = new ConcurrentHashMap<>();
+
+        Memo(long generation) {
+            this.generation = generation;
+        }
     }
 
 }
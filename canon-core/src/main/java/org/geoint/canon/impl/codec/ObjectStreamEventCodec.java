@@ -22,6 +22,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoint.canon.codec.EventCodec;
@@ -35,6 +37,9 @@ import org.geoint.canon.event.EventMessage;
  * For events to make use of this codec the eventType must be the fully
  * qualified class name, and the class must be available on the classpath of the
  * calling thread.
+ * <p>
+ * Whether an event type is supported is resolved once per event type; the
+ * class lookup is not repeated.
  *
  * @see ObjectInputStream
  * @see ObjectOutputStream
@@ -44,18 +49,34 @@ public class ObjectStreamEventCodec implements EventCodec {
 
     private static final Logger LOGGER
             = Logger.getLogger(ObjectStreamEventCodec.class.getName());
+    //bounds the memo if called with arbitrary (unsupported) event types
+    private static final int MAX_MEMOIZED_TYPES = 4096;
+
+    private final ConcurrentMap<String, Boolean> supportedTypes
+            = new ConcurrentHashMap<>();
 
     @Override
     public boolean isSupported(String eventType) {
+        Boolean supported = supportedTypes.get(eventType);
+        if (supported == null) {
+            supported = isSerializable(eventType);
+            if (supportedTypes.size() < MAX_MEMOIZED_TYPES) {
+                supportedTypes.putIfAbsent(eventType, supported);
+            }
+        }
+        return supported;
+    }
+
+    private static boolean isSerializable(String eventType) {
         //for this to work the eventType must be a fully qualified class name, 
         //resolvable on this classpath
         try {
             Class<?> eventClass = Class.forName(eventType);
             return Serializable.class.isAssignableFrom(eventClass)
                     || Externalizable.class.isAssignableFrom(eventClass);
-        } catch (ClassNotFoundException ex) {
-            LOGGER.log(Level.FINE, String.format("Event type '%s' is"
-                    + " not serializable, cannot find class.", eventType), ex);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            LOGGER.log(Level.FINE, () -> String.format("Event type '%s' is"
+                    + " not serializable, cannot find class.", eventType));
             return false;
         }
     }
@@ -20,16 +20,28 @@ import org.geoint.canon.codec.EventCodecException;
  * So long as the codec is thread-safe, this encoder is thread-safe.
  *
  * @author steve_siebert
+ * @deprecated encoding through a pipe requires a thread hand-off per event;
+ * encode directly into an {@link EventBuffer} instead
  */
+@Deprecated
 public class PipedEventEncoder {
 
+    //shared by all encoders created without an executor
+    private static final ExecutorService SHARED_EXECUTOR
+            = Executors.newCachedThreadPool((r) -> {
+                Thread t = new Thread(r, "Canon piped event encoder");
+                t.setDaemon(true);
+                return t;
+            });
+
     private final ExecutorService executor;
 
     /**
-     * Creates the piped event encoder with 5 worker threads.
+     * Creates the piped event encoder using a shared pool of daemon worker
+     * threads.
      */
     public PipedEventEncoder() {
-        executor = Executors.newFixedThreadPool(5);
+        executor = SHARED_EXECUTOR;
     }
 
     public PipedEventEncoder(ExecutorService executor) {
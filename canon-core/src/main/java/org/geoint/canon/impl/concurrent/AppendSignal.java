@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wakes threads waiting for events to be appended to a stream.
+ * <p>
+ * Waiting threads park on a condition and cost nothing while idle. The
+ * appending thread only acquires the lock to signal when there are waiting
+ * threads, so appends to a stream without blocked readers pay only a volatile
+ * read.
+ * <p>
+ * Appenders must publish the event (make it visible to readers) before
+ * calling {@link #signal() }; waiters re-check their readiness condition
+ * after registering as a waiter, so a signal is never lost.
+ *
+ * @author steve_siebert
+ */
+public class AppendSignal {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Wake all threads waiting for an append.
+     */
+    public void signal() {
+        if (waiters.get() == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the condition is met, re-checking it each time an append is
+     * signalled, or until the timeout elapses.
+     *
+     * @param ready condition the caller is waiting for
+     * @param timeout maximum time to wait
+     * @param unit time unit of the timeout
+     * @return true if the condition was met, false if timed out
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    public boolean await(BooleanSupplier ready, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (ready.getAsBoolean()) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        waiters.incrementAndGet();
+        try {
+            while (!ready.getAsBoolean()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of threads currently waiting.
+     *
+     * @return waiting thread count
+     */
+    public int getWaiting() {
+        return waiters.get();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.concurrent;
+
+import java.util.Arrays;
+
+/**
+ * Append-only log of elements stored in fixed-size array chunks.
+ * <p>
+ * The log has a single-writer, multiple-reader design: appends must be
+ * serialized by the caller, while reads are wait-free and never contend with
+ * the writer or other readers. Appended elements become visible to readers
+ * when the writer publishes the new size of the log (a volatile write), so a
+ * reader never observes a partially appended element. Indexed reads are O(1);
+ * existing chunks are never copied or moved when the log grows, only the
+ * (small) chunk directory is.
+ *
+ * @author steve_siebert
+ * @param <E> element type
+ */
+public class ChunkedArrayLog<E> {
+
+    private static final int DEFAULT_CHUNK_SHIFT = 10; //1024 elements
+    private static final int INITIAL_DIRECTORY_SIZE = 16;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    //chunk directory, replaced (not modified) when it must grow
+    private volatile Object[][] chunks;
+    //number of elements visible to readers
+    private volatile int size;
+
+    /**
+     * Create a log with chunks of 1024 elements.
+     */
+    public ChunkedArrayLog() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Create a log with chunks of {@code 2^chunkShift} elements.
+     *
+     * @param chunkShift power of two of the chunk size
+     */
+    public ChunkedArrayLog(int chunkShift) {
+        if (chunkShift < 0 || chunkShift > 30) {
+            throw new IllegalArgumentException(String.format("Invalid chunk "
+                    + "shift %d, must be between 0 and 30.", chunkShift));
+        }
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = new Object[INITIAL_DIRECTORY_SIZE][];
+    }
+
+    /**
+     * Append an element to the log and publish it to readers.
+     * <p>
+     * Calls to this method must be serialized by the caller.
+     *
+     * @param element element to append
+     * @return index of the appended element
+     */
+    public int append(E element) {
+        final int index = size;
+        put(index, element);
+        size = index + 1; //publish
+        return index;
+    }
+
+    /**
+     * Append the elements to the log, publishing them to readers together.
+     * <p>
+     * Calls to this method must be serialized by the caller.
+     *
+     * @param elements elements to append
+     * @return index of the first appended element
+     */
+    @SafeVarargs
+    public final int appendAll(E... elements) {
+        final int first = size;
+        for (int i = 0; i < elements.length; i++) {
+            put(first + i, elements[i]);
+        }
+        size = first + elements.length; //publish
+        return first;
+    }
+
+    /**
+     * Returns the element at the provided index.
+     *
+     * @param index element index
+     * @return element
+     * @throws IndexOutOfBoundsException if the index has not been published
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        //read size before the directory so the directory is at least as
+        //current as the published size
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, "
+                    + "size %d", index, size));
+        }
+        return (E) chunks[index >>> chunkShift][index & chunkMask];
+    }
+
+    /**
+     * Number of elements published to readers.
+     *
+     * @return log size
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Writes the element to its slot, allocating a chunk (and growing the
+     * directory) as needed. Only called by the writer.
+     */
+    private void put(int index, E element) {
+        if (index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Log is full.");
+        }
+        final int chunk = index >>> chunkShift;
+        Object[][] directory = chunks;
+        if (chunk >= directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+        }
+        if (directory[chunk] == null) {
+            directory[chunk] = new Object[chunkMask + 1];
+        }
+        directory[chunk][index & chunkMask] = element;
+        if (directory != chunks) {
+            chunks = directory;
+        }
+    }
+}
@@ -15,10 +15,10 @@ import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.codec.EventCodec;
 import org.geoint.canon.codec.EventCodecException;
 import org.geoint.canon.event.AppendedEventMessage;
-import org.geoint.canon.event.EventMessage;
 import org.geoint.canon.event.EventMessageBuilder;
+import org.geoint.canon.impl.codec.BufferedEventMessage;
+import org.geoint.canon.impl.codec.EventBuffer;
 import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
-import org.geoint.canon.impl.codec.PipedEventEncoder;
 import org.geoint.canon.stream.EventAppender;
 import org.geoint.canon.stream.StreamAppendException;
 
@@ -61,15 +61,20 @@ public abstract class AbstractEventAppender implements EventAppender {
     /**
      * Buildable event message which adds itself to the appender upon addition
      * of the event content.
+     * <p>
+     * Domain events are encoded on the calling thread directly into an
+     * {@link EventBuffer}, which the stream reads without copying.
      */
     private class AppendingEventMessageBuilder
-            implements EventMessageBuilder, EventMessage {
+            implements EventMessageBuilder, BufferedEventMessage {
 
         private final String eventType;
         private String authorizedBy;
         private final Set<String> triggeredBy;
         private final Map<String, String> headers;
         private Supplier<InputStream> eventContent;
+        //set if the event was encoded by the builder
+        private EventBuffer contentBuffer;
 
         public AppendingEventMessageBuilder(String eventType) {
             this.eventType = eventType;
@@ -107,8 +112,9 @@ public abstract class AbstractEventAppender implements EventAppender {
         }
 
         @Override
-        public void event(InputStream event) {
+        public void event(InputStream event) throws StreamAppendException {
             this.eventContent = () -> event;
+            add(this);
         }
 
         @Override
@@ -140,17 +146,19 @@ public abstract class AbstractEventAppender implements EventAppender {
                         eventType));
             }
 
-            this.eventContent = () -> {
-                try {
-                    PipedEventEncoder encoder = new PipedEventEncoder();
-                    return encoder.encode(encodingCodec, event);
-                } catch (EventCodecException ex) {
-                    LOGGER.log(Level.WARNING, "Event cannot be encoded", ex);
-                    //set the event content to a supplier that will return an 
-                    //inputstream that will always throw the codec exception
-                    return new ExceptionalInputStream(ex);
-                }
-            };
+            final EventBuffer buffer = EventBuffer.acquire();
+            try {
+                encodingCodec.encode(event, buffer);
+            } catch (IOException | EventCodecException ex) {
+                buffer.release();
+                LOGGER.log(Level.WARNING, "Event cannot be encoded", ex);
+                throw new StreamAppendException(streamName, String.format(
+                        "Unable to encode event type '%s' with codec '%s'",
+                        eventType, encodingCodec.getClass().getCanonicalName()),
+                        ex);
+            }
+            this.contentBuffer = buffer;
+            this.eventContent = buffer::asInputStream;
 
             add(this);
         }
@@ -195,23 +203,24 @@ public abstract class AbstractEventAppender implements EventAppender {
             return eventContent.get();
         }
 
-    }
-
-    /**
-     * Will always throw an IOException with the the provided exception as the
-     * causedBy for any method called on the InputStream.
-     */
-    private class ExceptionalInputStream extends InputStream {
-
-        private final IOException ex;
-
-        public ExceptionalInputStream(Throwable ex) {
-            this.ex = new IOException(ex);
+        @Override
+        public EventBuffer getContentBuffer() {
+            return contentBuffer;
         }
 
         @Override
-        public int read() throws IOException {
-            throw ex;
+        public void releaseContentBuffer() {
+            final EventBuffer buffer = contentBuffer;
+            if (buffer == null) {
+                return;
+            }
+            contentBuffer = null;
+            eventContent = () -> {
+                throw new IllegalStateException(String.format("Content of "
+                        + "event type '%s' was released once appended.",
+                        eventType));
+            };
+            buffer.release();
         }
 
     }
@@ -15,7 +15,9 @@
  */
 package org.geoint.canon.impl.stream;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.geoint.canon.codec.CodecResolver;
@@ -49,6 +51,8 @@ public abstract class AbstractEventChannel implements EventChannel {
     protected final String name;
     protected final Map<String, String> channelProperties;
     protected final HierarchicalCodecResolver codecs;
+    //streams of the channel, registered by the channel implementation
+    protected final StreamRegistry streams = new StreamRegistry();
     private final EventIdGenerator idGenerator;
 
     public AbstractEventChannel(String channelName,
@@ -96,19 +100,31 @@ public abstract class AbstractEventChannel implements EventChannel {
         codecs.add(codec);
     }
 
+    /**
+     * Returns an unmodifiable live view of the registered streams, without
+     * copying.
+     *
+     * @return channel streams
+     */
+    @Override
+    public Collection<EventStream> listStreams() {
+        return streams.streams();
+    }
+
     @Override
     public Optional<EventStream> findStream(String streamName) {
-        return listStreams().stream()
-                .filter((s) -> s.getName().equalsIgnoreCase(streamName))
-                .findFirst();
+        return streams.find(streamName);
     }
 
     @Override
     public EventStream getOrCreateStream(String streamName)
             throws StreamInitializationException {
         try {
-            return findStream(streamName)
-                    .orElse(createAndInitStream(streamName));
+            final Optional<EventStream> stream = findStream(streamName);
+            if (stream.isPresent()) {
+                return stream.get();
+            }
+            return createAndInitStream(streamName);
         } catch (StreamAlreadyExistsException ex) {
             //will get here if the stream is created between the call to 
             //findStream and createStream...try finding the stream again
@@ -119,10 +135,29 @@ public abstract class AbstractEventChannel implements EventChannel {
         }
     }
 
+    /**
+     * Properties the channel was configured with.
+     *
+     * @return unmodifiable channel properties
+     */
+    public Map<String, String> getChannelProperties() {
+        return channelProperties;
+    }
+
     public String generateEventId(EventMessage msg) {
         return idGenerator.generate(msg, channelProperties);
     }
 
+    /**
+     * Generate the identities of a batch of events appended together.
+     *
+     * @param msgs event messages
+     * @return event identities, in the order of the messages
+     */
+    public String[] generateEventIds(List<? extends EventMessage> msgs) {
+        return idGenerator.generateBatch(msgs, channelProperties);
+    }
+
     /**
      * Create a new event stream.
      *
@@ -131,10 +166,12 @@ public abstract class AbstractEventChannel implements EventChannel {
      * @return requested stream
      * @throws StreamAlreadyExistsException if stream could not be created on
      * channel because it already exists
+     * @throws StreamInitializationException if the stream could not be
+     * created on the channel
      */
     protected abstract EventStream createStream(String streamName,
             CodecResolver codecs)
-            throws StreamAlreadyExistsException;
+            throws StreamAlreadyExistsException, StreamInitializationException;
 
     /**
      * Creates the requested stream and published creation event to the channel
@@ -144,20 +181,36 @@ public abstract class AbstractEventChannel implements EventChannel {
      * @return new stream
      * @throws StreamAlreadyExistsException thrown if a stream by this name
      * already exists in the channel
+     * @throws StreamInitializationException thrown if the stream could not be
+     * created
      * @throws StreamAppendException thrown if the stream creation event could
      * not be appended to the channel admin stream
      */
     private EventStream createAndInitStream(String streamName)
-            throws StreamAlreadyExistsException, StreamAppendException {
+            throws StreamAlreadyExistsException, StreamInitializationException,
+            StreamAppendException {
         EventStream s = createStream(streamName, codecs);
 
         //add the stream creation event to the channels own admin stream
-        EventAppender appender = getChannelAdminStream().newAppender();
-        appender.create(StreamCreated.class.getName())
-                .event(new StreamCreated(name, streamName));
-        appender.append();
+        appendAdminEvent(StreamCreated.class.getName(),
+                new StreamCreated(name, streamName));
 
         return s;
     }
+
+    /**
+     * Appends an event to the channel admin stream.
+     *
+     * @param eventType event type
+     * @param event admin event
+     * @throws StreamAppendException thrown if the event could not be appended
+     * to the channel admin stream
+     */
+    public void appendAdminEvent(String eventType, Object event)
+            throws StreamAppendException {
+        EventAppender appender = getChannelAdminStream().newAppender();
+        appender.create(eventType).event(event);
+        appender.append();
+    }
     
 }
@@ -1,20 +1,43 @@
 package org.geoint.canon.impl.stream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoint.canon.async.AsyncHandlerNotifier;
+import org.geoint.canon.async.DispatchMode;
+import org.geoint.canon.async.HandlerLag;
+import org.geoint.canon.async.LagPolicy;
 import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.codec.EventCodec;
 import org.geoint.canon.event.UnknownEventException;
 import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.concurrent.AppendSignal;
 import org.geoint.canon.stream.EventStream;
 import org.geoint.canon.stream.EventHandler;
 import org.geoint.canon.stream.EventReader;
 import org.geoint.canon.stream.FilteredEventReader;
+import org.geoint.canon.stream.SnapshotEventHandler;
+import org.geoint.canon.stream.StreamAppendException;
 import org.geoint.canon.stream.StreamReadException;
+import org.geoint.canon.stream.event.SnapshotCreated;
 
 /**
  * Implements common event stream methods requiring event stream implementations
@@ -30,8 +53,23 @@ public abstract class AbstractEventStream implements EventStream {
     protected final AbstractEventChannel channel;
     protected final String streamName;
     protected final HierarchicalCodecResolver streamCodecs;
+    //wakes readers blocked waiting for events
+    private final AppendSignal appendSignal = new AppendSignal();
     //use one AsyncHandlerNotifier for all AbstractEventStream instances
     private static final AsyncHandlerNotifier notifier = new AsyncHandlerNotifier();
+    //snapshotting handlers registered in place of snapshot handlers
+    private final Map<EventHandler, SnapshottingEventHandler> snapshotHandlers
+            = new ConcurrentHashMap<>();
+    private volatile SnapshotStore snapshots;
+    private volatile Future<?> lastSnapshot;
+    //one thread stores the snapshots of all streams, so a slow store or
+    //admin append never stalls the turn of the snapshotted handler
+    private static final ExecutorService SNAPSHOT_EXECUTOR
+            = Executors.newSingleThreadExecutor((r) -> {
+                Thread t = new Thread(r, "Canon snapshot writer");
+                t.setDaemon(true);
+                return t;
+            });
 
     private static final Logger LOGGER
             = Logger.getLogger(EventStream.class.getPackage().getName());
@@ -86,6 +124,66 @@ public abstract class AbstractEventStream implements EventStream {
         notifier.addHandler(handler, reader);
     }
 
+    /**
+     * Registers an event handler which will be called for each event read
+     * from the provided reader, dispatched with the specified mode.
+     * <p>
+     * Handlers which block should use {@link DispatchMode#ISOLATED} so they
+     * do not stall the handlers of other streams.
+     *
+     * @param handler event handler
+     * @param reader event reader
+     * @param mode dispatch mode of the handler
+     */
+    public void addHandler(EventHandler handler, EventReader reader,
+            DispatchMode mode) {
+        notifier.addHandler(handler, reader, mode);
+    }
+
+    /**
+     * Sets the policy applied while a handler registered to this stream lags
+     * behind the stream.
+     *
+     * @param handler registered handler
+     * @param policy lag policy
+     */
+    public void setLagPolicy(EventHandler handler, LagPolicy policy) {
+        notifier.setLagPolicy(getChannelName(), streamName,
+                registered(handler), policy);
+    }
+
+    /**
+     * Registers a snapshot handler, restored from its newest snapshot, which
+     * will be called for each event following the snapshot and periodically
+     * snapshotted.
+     * <p>
+     * If the handler has no snapshot, or its newest snapshot could not be
+     * read or refers to an event no longer in the stream, the handler is
+     * called for every event of the stream.
+     *
+     * @param handler snapshot handler
+     * @throws StreamReadException thrown if the handler could not be restored
+     * from its snapshot
+     */
+    public void addSnapshotHandler(SnapshotEventHandler<?> handler)
+            throws StreamReadException {
+        EventReader reader = newReader();
+        restoreSnapshot(handler, reader);
+        SnapshottingEventHandler snapshotting
+                = new SnapshottingEventHandler(this, handler);
+        snapshotHandlers.put(handler, snapshotting);
+        addHandler(snapshotting, reader);
+    }
+
+    /**
+     * Lag of each handler registered to this stream.
+     *
+     * @return lag snapshots
+     */
+    public List<HandlerLag> getHandlerLag() {
+        return notifier.getLag(getChannelName(), streamName);
+    }
+
     @Override
     public Collection<EventHandler> listHandlers() {
         return notifier.listHandlers();
@@ -93,7 +191,9 @@ public abstract class AbstractEventStream implements EventStream {
 
     @Override
     public void removeHandler(EventHandler handler) {
-        notifier.removeHandler(this.getChannelName(), streamName, handler);
+        notifier.removeHandler(this.getChannelName(), streamName,
+                registered(handler));
+        snapshotHandlers.remove(handler);
     }
 
     @Override
@@ -106,6 +206,212 @@ public abstract class AbstractEventStream implements EventStream {
         return streamCodecs.findCodec(eventType);
     }
 
+    /**
+     * Storage of the handler snapshots of this stream.
+     *
+     * @return snapshot store
+     */
+    protected final SnapshotStore getSnapshotStore() {
+        SnapshotStore store = snapshots;
+        if (store == null) {
+            synchronized (snapshotHandlers) {
+                store = snapshots;
+                if (store == null) {
+                    store = createSnapshotStore();
+                    snapshots = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Creates the snapshot store of this stream; by default snapshots are
+     * kept on the heap.
+     * <p>
+     * Persistent streams should override this method to store snapshots next
+     * to the stream.
+     *
+     * @return snapshot store
+     */
+    protected SnapshotStore createSnapshotStore() {
+        return new MemorySnapshotStore();
+    }
+
+    /**
+     * Serializes the handler state, then stores the snapshot and publishes
+     * its creation to the channel admin stream in the background.
+     * <p>
+     * The state is serialized on the calling handler turn, before the
+     * handler is notified of the next event, so it need not be a copy; only
+     * storing the snapshot and appending the admin event, which may wait on
+     * the disk, are left to the background thread.
+     * <p>
+     * Failures are logged rather than failing the handler, the handler is
+     * snapshotted again at the next interval.
+     *
+     * @param handler snapshot handler
+     * @param sequence sequence of the last event handled
+     */
+    void saveSnapshot(SnapshotEventHandler<?> handler, String sequence) {
+        final String snapshotName = handler.getSnapshotName();
+        final byte[] state;
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+                out.writeObject(handler.createSnapshot());
+            }
+            state = bout.toByteArray();
+        } catch (IOException | RuntimeException ex) {
+            logSnapshotFailure(snapshotName, sequence, ex);
+            return;
+        }
+        lastSnapshot = SNAPSHOT_EXECUTOR.submit(()
+                -> storeSnapshot(snapshotName, sequence, state));
+    }
+
+    /**
+     * Stores the serialized snapshot and publishes its creation to the
+     * channel admin stream.
+     */
+    private void storeSnapshot(String snapshotName, String sequence,
+            byte[] state) {
+        try {
+            getSnapshotStore().save(new StreamSnapshot(snapshotName, sequence,
+                    state));
+            channel.appendAdminEvent(SnapshotCreated.class.getName(),
+                    new SnapshotCreated(getChannelName(), streamName,
+                            snapshotName, sequence));
+        } catch (IOException | StreamAppendException | RuntimeException ex) {
+            logSnapshotFailure(snapshotName, sequence, ex);
+        }
+    }
+
+    private void logSnapshotFailure(String snapshotName, String sequence,
+            Exception ex) {
+        LOGGER.log(Level.WARNING, String.format("Unable to snapshot handler "
+                + "'%s' of stream '%s' at event '%s'.", snapshotName,
+                streamName, sequence), ex);
+    }
+
+    /**
+     * Waits for the snapshots of this stream being stored in the background
+     * to be stored.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitSnapshots() throws InterruptedException {
+        final Future<?> snapshot = lastSnapshot;
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            snapshot.get();
+        } catch (ExecutionException ex) {
+            //failures are logged by the snapshot task
+        }
+    }
+
+    /**
+     * Restores the handler from its newest snapshot, positioning the reader
+     * at the event of the snapshot.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void restoreSnapshot(SnapshotEventHandler handler,
+            EventReader reader) throws StreamReadException {
+        final String snapshotName = handler.getSnapshotName();
+        final Object state;
+        final StreamSnapshot snapshot;
+        try {
+            Optional<StreamSnapshot> latest
+                    = getSnapshotStore().findLatest(snapshotName);
+            if (!latest.isPresent()) {
+                return;
+            }
+            snapshot = latest.get();
+            state = deserialize(handler.getClass().getClassLoader(),
+                    snapshot.getState());
+            reader.setPosition(snapshot.getSequence());
+        } catch (IOException | ClassNotFoundException
+                | UnknownEventException ex) {
+            LOGGER.log(Level.WARNING, String.format("Unable to restore "
+                    + "handler '%s' of stream '%s' from its snapshot, "
+                    + "replaying the stream.", snapshotName, streamName), ex);
+            return;
+        }
+
+        try {
+            handler.restoreSnapshot((Serializable) state);
+        } catch (RuntimeException ex) {
+            throw new StreamReadException(getChannelName(), streamName,
+                    String.format("Handler '%s' could not be restored from "
+                            + "snapshot at event '%s'.", snapshotName,
+                            snapshot.getSequence()), ex);
+        }
+        LOGGER.log(Level.FINE, () -> String.format("Restored handler '%s' of "
+                + "stream '%s' from snapshot at event '%s'.", snapshotName,
+                streamName, snapshot.getSequence()));
+    }
+
+    /**
+     * Deserializes snapshot state with the class loader of the handler.
+     */
+    private static Object deserialize(ClassLoader loader, byte[] state)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(state)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc)
+                    throws IOException, ClassNotFoundException {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException ex) {
+                    return super.resolveClass(desc);
+                }
+            }
+        }) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * The handler registered with the notifier for the provided handler.
+     */
+    private EventHandler registered(EventHandler handler) {
+        final EventHandler snapshotting = snapshotHandlers.get(handler);
+        return (snapshotting != null) ? snapshotting : handler;
+    }
+
+    /**
+     * Wake readers waiting for events on this stream and schedule the
+     * asynchronous handlers of this stream.
+     * <p>
+     * Stream implementations must call this method after appended events are
+     * visible to readers.
+     */
+    protected void signalAppended() {
+        appendSignal.signal();
+        notifier.notifyAppended(getChannelName(), streamName);
+    }
+
+    /**
+     * Blocks until the reader condition is met, re-checking the condition when
+     * events are appended to this stream, or until the timeout elapses.
+     * <p>
+     * Used by stream readers to implement
+     * {@link EventReader#awaitNext(long, TimeUnit) }.
+     *
+     * @param ready reader condition, typically {@link EventReader#hasNext() }
+     * @param timeout maximum time to wait
+     * @param unit time unit of timeout
+     * @return true if the condition was met, false if timed out
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    protected boolean awaitAppended(BooleanSupplier ready, long timeout,
+            TimeUnit unit) throws InterruptedException {
+        return appendSignal.await(ready, timeout, unit);
+    }
+
     /**
      * Subclasses overriding this method should call {@code super.close()} to
      * prevent resource leakage.
@@ -116,6 +422,7 @@ public abstract class AbstractEventStream implements EventStream {
     public void close() throws IOException {
         //remove any handlers associated with this stream
         notifier.removeAllHandlers(this.getChannelName(), this.getName());
+        snapshotHandlers.clear();
     }
 //
 //    /**
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy deciding when a durable reader writes its acknowledged position to
+ * persistent storage.
+ * <p>
+ * A {@link #SYNCHRONOUS synchronous} reader writes each acknowledged position
+ * before the acknowledgement returns. A batched reader acknowledges in memory
+ * and writes the latest acknowledged position after a number of
+ * acknowledgements, after an interval, and when the reader is closed; its
+ * recovery is <i>at-least-once from the last flushed checkpoint</i>: after a
+ * crash the reader resumes from the last written position, so events
+ * acknowledged after it are read again.
+ *
+ * @author steve_siebert
+ */
+public final class CheckpointPolicy {
+
+    /**
+     * Policy which durably writes every acknowledged position.
+     */
+    public static final CheckpointPolicy SYNCHRONOUS
+            = new CheckpointPolicy(1, 0);
+
+    private final int maxEvents;
+    private final long maxDelayMillis;
+
+    private CheckpointPolicy(int maxEvents, long maxDelayMillis) {
+        this.maxEvents = maxEvents;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Policy which writes the latest acknowledged position every
+     * {@code maxEvents} acknowledgements or {@code maxDelay} after an
+     * unwritten acknowledgement, whichever comes first.
+     *
+     * @param maxEvents acknowledgements after which the position is written
+     * @param maxDelay maximum time an acknowledgement remains unwritten
+     * @param unit time unit of the delay
+     * @return batched checkpoint policy
+     */
+    public static CheckpointPolicy batched(int maxEvents, long maxDelay,
+            TimeUnit unit) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException(String.format("Invalid "
+                    + "checkpoint batch size %d, must be positive.",
+                    maxEvents));
+        }
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid "
+                    + "checkpoint delay %d, must be positive.", maxDelay));
+        }
+        return new CheckpointPolicy(maxEvents,
+                Math.max(1, unit.toMillis(maxDelay)));
+    }
+
+    public boolean isSynchronous() {
+        return maxDelayMillis == 0;
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return isSynchronous()
+                ? "SYNCHRONOUS"
+                : String.format("BATCHED(%d, %dms)", maxEvents, maxDelayMillis);
+    }
+}
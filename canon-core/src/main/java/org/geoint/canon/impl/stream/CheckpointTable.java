@@ -0,0 +1,476 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped table of durable reader positions shared by any number of
+ * readers.
+ * <p>
+ * The table is a single file of fixed-size slots, one slot per reader, mapped
+ * into memory in chunks as it grows. Writing a position is a memory write; a
+ * single flusher thread forces modified chunks to storage at a fixed
+ * interval, so readers recover <i>at-least-once from the last flushed
+ * checkpoint</i>. Each slot holds two position records, written alternately
+ * and protected by a checksum, so a write torn by a crash falls back to the
+ * previous position rather than corrupting the slot.
+ * <p>
+ * Each {@link Checkpoint} should be written by one reader at a time; the
+ * table itself is thread-safe.
+ *
+ * @author steve_siebert
+ */
+public final class CheckpointTable implements Closeable {
+
+    /**
+     * Default interval at which modified checkpoints are forced to storage.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    //magic bytes used to uniquely identify file as a canon checkpoint table
+    private static final byte[] MAGIC_BYTES
+            = "CANON.CPT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte CURRENT_VERSION = 0;
+    private static final int HEADER_LENGTH = 64;
+
+    /*
+     * slot layout:
+     *   0    short key length, 0 if the slot is free
+     *   2    key bytes (UTF-8)
+     *   192  position record A
+     *   352  position record B
+     * record layout:
+     *   0    long record version, the newest valid record is current
+     *   8    short position length
+     *   10   position bytes (UTF-8)
+     *   156  int CRC32 of the version, length and position
+     */
+    private static final int SLOT_SIZE = 512;
+    private static final int MAX_KEY_LENGTH = 190;
+    private static final int RECORD_OFFSET = 192;
+    private static final int RECORD_SIZE = 160;
+    private static final int RECORD_CRC_OFFSET = 156;
+    private static final int MAX_POSITION_LENGTH = RECORD_CRC_OFFSET - 10;
+    private static final int SLOTS_PER_CHUNK = 4096; //2MB per chunk
+    private static final long CHUNK_SIZE = (long) SLOTS_PER_CHUNK * SLOT_SIZE;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(CheckpointTable.class.getName());
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    //guarded by this
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final List<AtomicBoolean> dirty = new ArrayList<>();
+    private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+    private volatile boolean closed;
+    private final ScheduledExecutorService flusher;
+
+    private CheckpointTable(File file, RandomAccessFile raf) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.flusher = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "canon-checkpoint-table-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens, or creates, the checkpoint table flushing modified checkpoints
+     * every {@link #DEFAULT_FLUSH_INTERVAL_MILLIS} milliseconds.
+     *
+     * @param file table file
+     * @return checkpoint table
+     * @throws IOException thrown if the file is not a checkpoint table or
+     * could not be opened
+     */
+    public static CheckpointTable open(File file) throws IOException {
+        return open(file, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens, or creates, the checkpoint table.
+     *
+     * @param file table file
+     * @param flushInterval interval at which modified checkpoints are forced
+     * to storage
+     * @param unit time unit of the interval
+     * @return checkpoint table
+     * @throws IOException thrown if the file is not a checkpoint table or
+     * could not be opened
+     */
+    public static CheckpointTable open(File file, long flushInterval,
+            TimeUnit unit) throws IOException {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid "
+                    + "checkpoint flush interval %d, must be positive.",
+                    flushInterval));
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final CheckpointTable table = new CheckpointTable(file, raf);
+        try {
+            table.load();
+        } catch (IOException | RuntimeException ex) {
+            table.close();
+            throw ex;
+        }
+        table.flusher.scheduleWithFixedDelay(table::scheduledFlush,
+                flushInterval, flushInterval, unit);
+        return table;
+    }
+
+    /**
+     * Returns the checkpoint of the key, allocating an empty checkpoint if
+     * the table does not contain the key.
+     *
+     * @param key table-unique checkpoint key
+     * @return checkpoint
+     * @throws IOException thrown if the table could not grow
+     */
+    public synchronized Checkpoint checkpoint(String key) throws IOException {
+        checkOpen();
+        Checkpoint cp = checkpoints.get(key);
+        if (cp != null) {
+            return cp;
+        }
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(String.format("Invalid "
+                    + "checkpoint key '%s', must be 1 to %d bytes.", key,
+                    MAX_KEY_LENGTH));
+        }
+
+        final int slot = freeSlots.isEmpty() ? allocateSlot() : freeSlots.pop();
+        final MappedByteBuffer chunk = chunk(slot);
+        final int base = slotOffset(slot);
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            chunk.put(base + i, (byte) 0);
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            chunk.put(base + 2 + i, keyBytes[i]);
+        }
+        chunk.putShort(base, (short) keyBytes.length);
+        markDirty(slot);
+
+        cp = new Checkpoint(key, slot, 0, null);
+        checkpoints.put(key, cp);
+        return cp;
+    }
+
+    /**
+     * Number of checkpoints in the table.
+     *
+     * @return checkpoint count
+     */
+    public synchronized int size() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Forces all modified checkpoints to storage.
+     *
+     * @throws IOException thrown if the checkpoints could not be forced
+     */
+    public void flush() throws IOException {
+        final MappedByteBuffer[] toForce;
+        synchronized (this) {
+            checkOpen();
+            toForce = new MappedByteBuffer[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                if (dirty.get(i).getAndSet(false)) {
+                    toForce[i] = chunks.get(i);
+                }
+            }
+        }
+        for (MappedByteBuffer chunk : toForce) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        flusher.shutdownNow();
+        try {
+            if (!chunks.isEmpty()) {
+                flush();
+            }
+        } finally {
+            synchronized (this) {
+                closed = true;
+                channel.close();
+                raf.close();
+            }
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, String.format("Unable to flush "
+                    + "checkpoint table '%s'.", file.getAbsolutePath()), ex);
+        }
+    }
+
+    /**
+     * Validates the file header and indexes the checkpoints of an existing
+     * table, or writes the header of a new table.
+     */
+    private synchronized void load() throws IOException {
+        if (raf.length() == 0) {
+            final byte[] header = Arrays.copyOf(MAGIC_BYTES, HEADER_LENGTH);
+            header[MAGIC_BYTES.length] = CURRENT_VERSION;
+            raf.write(header);
+            return;
+        }
+
+        final byte[] header = new byte[MAGIC_BYTES.length + 1];
+        raf.seek(0);
+        raf.readFully(header);
+        if (!Arrays.equals(MAGIC_BYTES,
+                Arrays.copyOf(header, MAGIC_BYTES.length))
+                || header[MAGIC_BYTES.length] != CURRENT_VERSION) {
+            throw new IOException(String.format("File '%s' is not a "
+                    + "checkpoint table.", file.getAbsolutePath()));
+        }
+
+        final long numChunks
+                = (raf.length() - HEADER_LENGTH + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        for (int c = 0; c < numChunks; c++) {
+            mapChunk();
+        }
+        slotCount = chunks.size() * SLOTS_PER_CHUNK;
+        for (int slot = 0; slot < slotCount; slot++) {
+            final MappedByteBuffer chunk = chunk(slot);
+            final int base = slotOffset(slot);
+            final int keyLength = chunk.getShort(base);
+            if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH) {
+                freeSlots.add(slot);
+                continue;
+            }
+            final byte[] key = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                key[i] = chunk.get(base + 2 + i);
+            }
+
+            //current position is the newest valid record
+            long version = 0;
+            String position = null;
+            for (int r = 0; r < 2; r++) {
+                final int record = base + RECORD_OFFSET + r * RECORD_SIZE;
+                final String p = readRecord(chunk, record);
+                final long v = chunk.getLong(record);
+                if (p != null && v > version) {
+                    version = v;
+                    position = p;
+                }
+            }
+            final String k = new String(key, StandardCharsets.UTF_8);
+            checkpoints.put(k, new Checkpoint(k, slot, version, position));
+        }
+    }
+
+    private static String readRecord(MappedByteBuffer chunk, int record) {
+        final int length = chunk.getShort(record + 8);
+        if (length <= 0 || length > MAX_POSITION_LENGTH) {
+            return null;
+        }
+        final byte[] bytes = new byte[10 + length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = chunk.get(record + i);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        if ((int) crc.getValue() != chunk.getInt(record + RECORD_CRC_OFFSET)) {
+            return null;
+        }
+        return new String(bytes, 10, length, StandardCharsets.UTF_8);
+    }
+
+    private int allocateSlot() throws IOException {
+        if (slotCount == chunks.size() * SLOTS_PER_CHUNK) {
+            mapChunk();
+        }
+        return slotCount++;
+    }
+
+    private void mapChunk() throws IOException {
+        final long offset = HEADER_LENGTH + chunks.size() * CHUNK_SIZE;
+        chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                CHUNK_SIZE));
+        dirty.add(new AtomicBoolean());
+    }
+
+    private synchronized MappedByteBuffer chunk(int slot) {
+        return chunks.get(slot / SLOTS_PER_CHUNK);
+    }
+
+    private synchronized void markDirty(int slot) {
+        dirty.get(slot / SLOTS_PER_CHUNK).set(true);
+    }
+
+    private static int slotOffset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * SLOT_SIZE;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException(String.format("Checkpoint table "
+                    + "'%s' is closed.", file.getAbsolutePath()));
+        }
+    }
+
+    private synchronized void delete(Checkpoint cp) {
+        checkOpen();
+        if (checkpoints.remove(cp.key) != cp) {
+            return;
+        }
+        synchronized (cp) {
+            cp.deleted = true;
+        }
+        chunk(cp.slot).putShort(slotOffset(cp.slot), (short) 0);
+        markDirty(cp.slot);
+        freeSlots.push(cp.slot);
+    }
+
+    /**
+     * Position stored in a slot of the table.
+     */
+    public final class Checkpoint {
+
+        private final String key;
+        private final int slot;
+        private final MappedByteBuffer chunk;
+        private final int base;
+        private final AtomicBoolean chunkDirty;
+        private final CRC32 crc = new CRC32();
+        private long version;
+        private volatile String position;
+        private volatile boolean deleted;
+
+        private Checkpoint(String key, int slot, long version,
+                String position) {
+            this.key = key;
+            this.slot = slot;
+            this.chunk = chunk(slot);
+            this.base = slotOffset(slot);
+            this.chunkDirty = dirty.get(slot / SLOTS_PER_CHUNK);
+            this.version = version;
+            this.position = position;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Last written position.
+         *
+         * @return position or null if no position was written
+         */
+        public String read() {
+            return position;
+        }
+
+        /**
+         * Writes the position; it is forced to storage by the next flush of
+         * the table.
+         *
+         * @param position reader position
+         * @throws IOException thrown if the position is too long to be stored
+         * or the table is closed
+         */
+        public synchronized void write(String position) throws IOException {
+            if (closed) {
+                throw new IOException(String.format("Checkpoint table '%s' "
+                        + "is closed.", file.getAbsolutePath()));
+            }
+            if (deleted) {
+                throw new IOException(String.format("Checkpoint '%s' was "
+                        + "deleted.", key));
+            }
+            final byte[] bytes = position.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0 || bytes.length > MAX_POSITION_LENGTH) {
+                throw new IOException(String.format("Position '%s' of "
+                        + "checkpoint '%s' must be 1 to %d bytes.", position,
+                        key, MAX_POSITION_LENGTH));
+            }
+
+            //overwrite the older of the two records
+            final long next = version + 1;
+            final int record = base + RECORD_OFFSET
+                    + (int) (next & 1) * RECORD_SIZE;
+            chunk.putLong(record, next);
+            chunk.putShort(record + 8, (short) bytes.length);
+            for (int i = 0; i < bytes.length; i++) {
+                chunk.put(record + 10 + i, bytes[i]);
+            }
+            crc.reset();
+            for (int i = 0; i < 10; i++) {
+                crc.update(chunk.get(record + i));
+            }
+            crc.update(bytes, 0, bytes.length);
+            chunk.putInt(record + RECORD_CRC_OFFSET, (int) crc.getValue());
+
+            version = next;
+            this.position = position;
+            chunkDirty.set(true);
+        }
+
+        /**
+         * Removes the checkpoint from the table.
+         */
+        public void delete() {
+            CheckpointTable.this.delete(this);
+        }
+    }
+}
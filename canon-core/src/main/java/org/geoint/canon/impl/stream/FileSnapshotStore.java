@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores snapshots as files in a directory, typically next to the stream
+ * files.
+ * <p>
+ * Each snapshot name has its own sub-directory of numbered snapshot files.
+ * Snapshots are written to a temporary file, forced to storage and atomically
+ * renamed, so a crash never leaves a partial snapshot in place. The previous
+ * snapshot is retained as a fallback should the newest fail validation;
+ * older snapshots are deleted.
+ *
+ * @author steve_siebert
+ */
+public class FileSnapshotStore implements SnapshotStore {
+
+    //magic bytes used to uniquely identify file as a canon snapshot file
+    private static final byte[] MAGIC_BYTES
+            = "CANON.SNP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte CURRENT_VERSION = 0;
+    private static final String SNAPSHOT_FILE_EXTENSION = ".snap";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final int RETAINED_SNAPSHOTS = 2;
+    private static final Logger LOGGER
+            = Logger.getLogger(FileSnapshotStore.class.getName());
+
+    private final File snapshotDir;
+
+    /**
+     * @param snapshotDir directory containing the snapshots
+     */
+    public FileSnapshotStore(File snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    @Override
+    public synchronized void save(StreamSnapshot snapshot) throws IOException {
+        final File dir = snapshotDir(snapshot.getSnapshotName());
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException(String.format("Unable to create snapshot "
+                    + "directory '%s'", dir.getAbsolutePath()));
+        }
+
+        final long[] ids = snapshotIds(dir);
+        final long id = (ids.length == 0) ? 0 : ids[ids.length - 1] + 1;
+        final File temp = new File(dir, fileName(id) + TEMP_FILE_EXTENSION);
+        try (FileOutputStream fout = new FileOutputStream(temp)) {
+            fout.write(encode(snapshot));
+            fout.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), new File(dir, fileName(id)).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+
+        for (int i = 0; i < ids.length - (RETAINED_SNAPSHOTS - 1); i++) {
+            new File(dir, fileName(ids[i])).delete();
+        }
+    }
+
+    @Override
+    public synchronized Optional<StreamSnapshot> findLatest(
+            String snapshotName) throws IOException {
+        final File dir = snapshotDir(snapshotName);
+        final long[] ids = snapshotIds(dir);
+        for (int i = ids.length - 1; i >= 0; i--) {
+            final File f = new File(dir, fileName(ids[i]));
+            try {
+                return Optional.of(decode(snapshotName, f));
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, String.format("Ignoring invalid "
+                        + "snapshot file '%s'.", f.getAbsolutePath()), ex);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized void delete(String snapshotName) throws IOException {
+        final File dir = snapshotDir(snapshotName);
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (!f.delete()) {
+                throw new IOException(String.format("Unable to delete "
+                        + "snapshot file '%s'", f.getAbsolutePath()));
+            }
+        }
+        dir.delete();
+    }
+
+    private static byte[] encode(StreamSnapshot snapshot) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(snapshot.getState(), 0, snapshot.getState().length);
+
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(
+                snapshot.getState().length + 64);
+        try (DataOutputStream out = new DataOutputStream(bout)) {
+            out.write(MAGIC_BYTES);
+            out.writeByte(CURRENT_VERSION);
+            out.writeUTF(snapshot.getSequence());
+            out.writeInt(snapshot.getState().length);
+            out.write(snapshot.getState());
+            out.writeInt((int) crc.getValue());
+        }
+        return bout.toByteArray();
+    }
+
+    private static StreamSnapshot decode(String snapshotName, File f)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(f))) {
+            final byte[] header = new byte[MAGIC_BYTES.length + 1];
+            in.readFully(header);
+            if (!Arrays.equals(MAGIC_BYTES,
+                    Arrays.copyOf(header, MAGIC_BYTES.length))
+                    || header[MAGIC_BYTES.length] != CURRENT_VERSION) {
+                throw new IOException("Invalid file header, file is not a "
+                        + "snapshot file.");
+            }
+            final String sequence = in.readUTF();
+            final int length = in.readInt();
+            if (length < 0 || length > f.length()) {
+                throw new IOException(String.format("Invalid snapshot "
+                        + "length %d.", length));
+            }
+            final byte[] state = new byte[length];
+            in.readFully(state);
+            final CRC32 crc = new CRC32();
+            crc.update(state, 0, length);
+            if ((int) crc.getValue() != in.readInt()) {
+                throw new IOException("Snapshot checksum does not match.");
+            }
+            return new StreamSnapshot(snapshotName, sequence, state);
+        }
+    }
+
+    /**
+     * Ids of the snapshot files in the directory, in ascending order.
+     */
+    private static long[] snapshotIds(File dir) {
+        final File[] files = dir.listFiles((d, n)
+                -> n.endsWith(SNAPSHOT_FILE_EXTENSION));
+        if (files == null) {
+            return new long[0];
+        }
+        return Arrays.stream(files)
+                .map(File::getName)
+                .map((n) -> n.substring(0,
+                        n.length() - SNAPSHOT_FILE_EXTENSION.length()))
+                .filter((n) -> !n.isEmpty() && n.chars()
+                        .allMatch(Character::isDigit))
+                .mapToLong(Long::parseLong)
+                .sorted()
+                .toArray();
+    }
+
+    private static String fileName(long id) {
+        //zero-padded so file names sort by id
+        return String.format("%020d%s", id, SNAPSHOT_FILE_EXTENSION);
+    }
+
+    private File snapshotDir(String snapshotName) {
+        try {
+            return new File(snapshotDir, URLEncoder.encode(snapshotName,
+                    StandardCharsets.UTF_8.name()));
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -21,7 +21,12 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geoint.canon.event.AppendedEventMessage;
 import org.geoint.canon.event.UnknownEventException;
@@ -32,6 +37,16 @@ import org.geoint.canon.stream.StreamReadException;
 /**
  * DurableEventReader implementation that uses a file-per-stream to persistently
  * keep track of reader positioning.
+ * <p>
+ * When the position is written is decided by the {@link CheckpointPolicy} of
+ * the reader. By default every acknowledged position is written synchronously;
+ * with a batched policy acknowledgements are kept in memory and the latest
+ * position is written, and forced to storage, once per batch, making the
+ * per-event acknowledgement cost negligible. Batched readers recover
+ * at-least-once from the last flushed checkpoint.
+ * <p>
+ * Each reader holds its track file open; processes tracking a large number of
+ * readers should use {@link TableTrackedDurableEventReader} instead.
  *
  * @author steve_siebert
  */
@@ -46,7 +61,14 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
             = new AtomicReference<>();
     private final File trackingFile;
     private final RandomAccessFile trackingFileRAF;
-    private static final String TRACKING_FILE_MODE = "rwd";
+    private final CheckpointPolicy checkpoints;
+    //latest acknowledged position not yet written, guarded by this
+    private String pendingPosition;
+    private int pendingCount;
+    private ScheduledFuture<?> scheduledFlush;
+    //synchronous checkpoints write through, batched checkpoints force on flush
+    private static final String SYNC_TRACKING_FILE_MODE = "rwd";
+    private static final String BATCHED_TRACKING_FILE_MODE = "rw";
 
     //magic bytes used to uniquely identify file as a canon reader track file
     private static final byte[] MAGIC_BYTES
@@ -60,10 +82,30 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
     private FileTrackedDurableEventReader(String readerId,
             EventReader reader,
             File trackingFile,
-            RandomAccessFile raf) {
+            RandomAccessFile raf,
+            CheckpointPolicy checkpoints) {
         super(readerId, reader);
         this.trackingFile = trackingFile;
         this.trackingFileRAF = raf;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Persistently track the readers position in the provided file, writing
+     * every acknowledged position synchronously.
+     *
+     * @param readerId stream-unique reader identifier
+     * @param reader reader to use
+     * @param trackingFile backing track file
+     * @return durable reader
+     * @throws StreamReadException thrown if there is a problem initializing the
+     * durable reader
+     * @see #trackFile(String, EventReader, File, CheckpointPolicy)
+     */
+    public static FileTrackedDurableEventReader trackFile(String readerId,
+            EventReader reader, File trackingFile) throws StreamReadException {
+        return trackFile(readerId, reader, trackingFile,
+                CheckpointPolicy.SYNCHRONOUS);
     }
 
     /**
@@ -77,12 +119,14 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
      * @param readerId stream-unique reader identifier
      * @param reader reader to use
      * @param trackingFile backing track file
+     * @param checkpoints when acknowledged positions are written
      * @return durable reader
      * @throws StreamReadException thrown if there is a problem initializing the
      * durable reader
      */
     public static FileTrackedDurableEventReader trackFile(String readerId,
-            EventReader reader, File trackingFile) throws StreamReadException {
+            EventReader reader, File trackingFile,
+            CheckpointPolicy checkpoints) throws StreamReadException {
 
         if (!trackingFile.exists()) {
             try {
@@ -97,7 +141,10 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
         }
 
         try {
-            RandomAccessFile raf = new RandomAccessFile(trackingFile, TRACKING_FILE_MODE);
+            RandomAccessFile raf = new RandomAccessFile(trackingFile,
+                    checkpoints.isSynchronous()
+                            ? SYNC_TRACKING_FILE_MODE
+                            : BATCHED_TRACKING_FILE_MODE);
 
             if (raf.length() > 0) {
                 //if the track file contains data, first check if the file is a 
@@ -134,6 +181,7 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
             } else {
                 //track file contains no data, set the header and the 
                 //current position of the reader
+                raf.write(VALID_HEADER);
                 String position = reader.getPosition();
                 if (position != null && !position.isEmpty()) {
                     raf.writeUTF(position);
@@ -141,7 +189,7 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
             }
 
             return new FileTrackedDurableEventReader(readerId, reader,
-                    trackingFile, raf);
+                    trackingFile, raf, checkpoints);
 
         } catch (IOException | UnknownEventException ex) {
             //we know we won't get here, because we ensure the tracking files 
@@ -172,13 +220,57 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
     public static FileTrackedDurableEventReader trackDirectory(
             String readerId, EventReader reader, File trackDirectory)
             throws StreamReadException {
+        return trackDirectory(readerId, reader, trackDirectory,
+                CheckpointPolicy.SYNCHRONOUS);
+    }
+
+    /**
+     * Persistently track the readers position using a track file contained
+     * within the track directory managed by this class, writing positions as
+     * decided by the checkpoint policy.
+     *
+     * @param readerId stream-unique reader identifier
+     * @param reader reader to use
+     * @param trackDirectory tracking directory containing track files
+     * @param checkpoints when acknowledged positions are written
+     * @return durable reader
+     * @throws StreamReadException thrown if there is a problem initializing the
+     * durable reader
+     */
+    public static FileTrackedDurableEventReader trackDirectory(
+            String readerId, EventReader reader, File trackDirectory,
+            CheckpointPolicy checkpoints) throws StreamReadException {
 
         File trackFile = new File(trackDirectory, String.join(File.separator,
                 reader.getChannelName(),
                 reader.getStreamName(),
                 readerId));
 
-        return trackFile(readerId, reader, trackFile);
+        return trackFile(readerId, reader, trackFile, checkpoints);
+    }
+
+    public CheckpointPolicy getCheckpointPolicy() {
+        return checkpoints;
+    }
+
+    /**
+     * Writes the latest acknowledged position, if not yet written, and forces
+     * it to storage.
+     *
+     * @throws IOException thrown if the position could not be written
+     */
+    public synchronized void flush() throws IOException {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pendingPosition == null) {
+            return;
+        }
+        writeCheckpoint(pendingPosition);
+        trackingFileRAF.getChannel().force(false);
+        pendingPosition = null;
+        pendingCount = 0;
     }
 
     @Override
@@ -188,21 +280,67 @@ public class FileTrackedDurableEventReader extends DurableEventReader {
     }
 
     @Override
-    protected String readPosition() throws IOException {
+    protected synchronized String readPosition() throws IOException {
+        if (pendingPosition != null) {
+            return pendingPosition;
+        }
         trackingFileRAF.seek(HEADER_LENGTH);
         return trackingFileRAF.readUTF();
     }
 
     @Override
-    protected void writePosition(String position) throws IOException {
+    protected synchronized void writePosition(String position)
+            throws IOException {
+        if (checkpoints.isSynchronous()) {
+            writeCheckpoint(position);
+            return;
+        }
+
+        pendingPosition = position;
+        if (++pendingCount >= checkpoints.getMaxEvents()) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = Flusher.SCHEDULER.schedule(this::scheduledFlush,
+                    checkpoints.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writeCheckpoint(String position) throws IOException {
         trackingFileRAF.seek(HEADER_LENGTH);
         trackingFileRAF.writeUTF(position);
     }
 
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, String.format("Unable to flush "
+                    + "checkpoint of durable reader '%s' to '%s'.", readerId,
+                    trackingFile.getAbsolutePath()), ex);
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        super.close();
-        trackingFileRAF.close();
+        try {
+            flush();
+        } finally {
+            super.close();
+            trackingFileRAF.close();
+        }
+    }
+
+    /**
+     * Lazily started scheduler of the checkpoint flushes of batched readers.
+     */
+    private static final class Flusher {
+
+        private static final ScheduledExecutorService SCHEDULER
+                = Executors.newSingleThreadScheduledExecutor((r) -> {
+                    Thread t = new Thread(r, "canon-checkpoint-flusher");
+                    t.setDaemon(true);
+                    return t;
+                });
     }
 
 }
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.StreamAppendException;
+
+/**
+ * Merges the concurrent append requests of many producer threads into a single
+ * stream write and a single flush to the storage device.
+ * <p>
+ * Group commit uses a leader/follower protocol: the first thread to commit
+ * while no write is in progress becomes the leader and writes every request
+ * queued at that time, as one batch, followed by a flush as dictated by the
+ * {@link SyncMode sync policy}. Threads which commit while a leader is writing
+ * queue their records and wait; the next leader writes them all at once.
+ * Under load, the number of writes and flushes is therefore proportional to
+ * the number of leader turns rather than the number of producers.
+ * <p>
+ * The sync policy is configured with the channel properties:
+ * <ul>
+ * <li><i>org.geoint.canon.commit.sync</i> - one of <i>batch</i> (default),
+ * <i>interval</i>, or <i>bytes</i></li>
+ * <li><i>org.geoint.canon.commit.syncInterval</i> - milliseconds between
+ * flushes when using the interval policy, default 1000</li>
+ * <li><i>org.geoint.canon.commit.syncBytes</i> - bytes written between flushes
+ * when using the bytes policy, default 1MB</li>
+ * </ul>
+ * <p>
+ * Written events are visible to readers as soon as the group is written,
+ * before it is flushed, so once written an append can no longer be withdrawn.
+ * If the group is only partially written, only the requests whose records
+ * were all written are acknowledged. A failed flush is never retried, as the
+ * written pages may have been dropped by the storage device: every request of
+ * a group whose flush failed fails, and the committer refuses all further
+ * commits until the stream is reopened and recovered from its storage.
+ *
+ * @author steve_siebert
+ * @param <T> encoded record type written by the stream
+ */
+public class GroupCommitter<T> implements AutoCloseable {
+
+    public static final String PROPERTY_SYNC = "org.geoint.canon.commit.sync";
+    public static final String PROPERTY_SYNC_INTERVAL
+            = "org.geoint.canon.commit.syncInterval";
+    public static final String PROPERTY_SYNC_BYTES
+            = "org.geoint.canon.commit.syncBytes";
+    public static final long DEFAULT_SYNC_INTERVAL = 1000L;
+    public static final long DEFAULT_SYNC_BYTES = 1024 * 1024;
+
+    private final String streamName;
+    private final BatchWriter<T> writer;
+    private final Syncer syncer;
+    private final SyncMode mode;
+    private final long syncBytes;
+    private final ScheduledFuture<?> syncTask;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    //guarded by lock
+    private List<CommitRequest<T>> pending = new ArrayList<>();
+    private boolean writing;
+    private boolean closed;
+    //only accessed by the leader
+    private long unsyncedBytes;
+    private volatile boolean dirty;
+    //set once a flush failed, commits are refused from then on
+    private volatile StreamAppendException syncFailure;
+
+    //one thread services interval flushes for every stream
+    private static final ScheduledExecutorService SYNC_SCHEDULER
+            = Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread t = new Thread(r, "Canon group commit sync");
+                t.setDaemon(true);
+                return t;
+            });
+    private static final Logger LOGGER
+            = Logger.getLogger(GroupCommitter.class.getName());
+
+    /**
+     * Flush policy of committed writes.
+     */
+    public enum SyncMode {
+        /**
+         * Flush every group write before acknowledging the append.
+         * <p>
+         * The events of the group are visible to readers before the flush
+         * completes. If the flush fails every append of the group fails,
+         * although its events may already have been read.
+         */
+        BATCH,
+        /**
+         * Flush on a fixed interval; appends are acknowledged once written,
+         * so a failed flush only fails the following appends.
+         */
+        INTERVAL,
+        /**
+         * Flush after a number of bytes were written; appends are acknowledged
+         * once written, except those of the group triggering the flush, which
+         * fail if the flush fails.
+         */
+        BYTES;
+    }
+
+    /**
+     * Writes a group of records to the stream as a single operation.
+     *
+     * @param <T> record type
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+
+        /**
+         * Write the records to the stream, in order.
+         * <p>
+         * If some of the records were written, and are visible to readers,
+         * before the write failed the writer must throw a
+         * {@link PartialWriteException} reporting the written records.
+         *
+         * @param records records to write
+         * @return appended events, in the same order as the records
+         * @throws StreamAppendException if the records could not be written
+         */
+        AppendedEventMessage[] write(List<T> records)
+                throws StreamAppendException;
+    }
+
+    /**
+     * Flushes written records to the storage device.
+     */
+    @FunctionalInterface
+    public interface Syncer {
+
+        void sync() throws IOException;
+    }
+
+    private GroupCommitter(String streamName, BatchWriter<T> writer,
+            Syncer syncer, SyncMode mode, long syncInterval, long syncBytes) {
+        this.streamName = streamName;
+        this.writer = writer;
+        this.syncer = syncer;
+        this.mode = mode;
+        this.syncBytes = syncBytes;
+        if (mode == SyncMode.INTERVAL) {
+            this.syncTask = SYNC_SCHEDULER.scheduleWithFixedDelay(
+                    this::intervalSync, syncInterval, syncInterval,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.syncTask = null;
+        }
+    }
+
+    /**
+     * Create a group committer using the sync policy defined by the channel
+     * properties.
+     *
+     * @param <T> record type
+     * @param streamName name of the stream
+     * @param channelProperties channel properties
+     * @param writer stream batch writer
+     * @param syncer stream flush function
+     * @return group committer
+     */
+    public static <T> GroupCommitter<T> fromProperties(String streamName,
+            Map<String, String> channelProperties, BatchWriter<T> writer,
+            Syncer syncer) {
+        SyncMode mode;
+        final String modeName = channelProperties.get(PROPERTY_SYNC);
+        try {
+            mode = (modeName == null)
+                    ? SyncMode.BATCH
+                    : SyncMode.valueOf(modeName.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, String.format("Unknown sync policy '%s' "
+                    + "for stream '%s', using %s.", modeName, streamName,
+                    SyncMode.BATCH.name()));
+            mode = SyncMode.BATCH;
+        }
+
+        return new GroupCommitter<>(streamName, writer, syncer, mode,
+                positiveProperty(channelProperties, PROPERTY_SYNC_INTERVAL,
+                        DEFAULT_SYNC_INTERVAL),
+                positiveProperty(channelProperties, PROPERTY_SYNC_BYTES,
+                        DEFAULT_SYNC_BYTES));
+    }
+
+    /**
+     * Sync policy used by this committer.
+     *
+     * @return sync mode
+     */
+    public SyncMode getSyncMode() {
+        return mode;
+    }
+
+    /**
+     * Commit the records to the stream, blocking until they are written (and,
+     * depending on the sync policy, flushed).
+     *
+     * @param records records to write
+     * @param bytes approximate size of the records
+     * @return appended events, in the same order as the records
+     * @throws StreamAppendException if the group containing these records
+     * failed to be written or flushed, or a previous flush failed
+     */
+    public AppendedEventMessage[] commit(List<T> records, long bytes)
+            throws StreamAppendException {
+        final CommitRequest<T> request = new CommitRequest<>(records, bytes);
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new StreamAppendException(streamName, "Stream is closed.");
+            }
+            if (syncFailure != null) {
+                throw refused();
+            }
+            pending.add(request);
+            while (!request.done) {
+                if (!writing) {
+                    //become the leader for everything queued
+                    writing = true;
+                    final List<CommitRequest<T>> group = pending;
+                    pending = new ArrayList<>();
+                    lock.unlock();
+                    try {
+                        writeGroup(group);
+                    } finally {
+                        lock.lock();
+                        group.forEach((r) -> r.done = true);
+                        writing = false;
+                        committed.signalAll();
+                    }
+                } else {
+                    try {
+                        committed.await();
+                    } catch (InterruptedException ex) {
+                        //the records are already queued, wait for the outcome
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (request.error != null) {
+            throw request.error;
+        }
+        return request.appended;
+    }
+
+    /**
+     * Writes and, if required by the policy, flushes the group, recording the
+     * outcome on each request.
+     * <p>
+     * Called only by the leader, without holding the lock.
+     *
+     * @param group commit requests
+     */
+    private void writeGroup(List<CommitRequest<T>> group) {
+        if (syncFailure != null) {
+            //queued before the flush failed
+            final StreamAppendException refused = refused();
+            group.forEach((r) -> r.error = refused);
+            return;
+        }
+        final List<T> records;
+        long bytes = 0;
+        if (group.size() == 1) {
+            records = group.get(0).records;
+            bytes = group.get(0).bytes;
+        } else {
+            records = new ArrayList<>();
+            for (CommitRequest<T> r : group) {
+                records.addAll(r.records);
+                bytes += r.bytes;
+            }
+        }
+
+        StreamAppendException error = null;
+        AppendedEventMessage[] appended;
+        try {
+            appended = writer.write(records);
+        } catch (PartialWriteException ex) {
+            error = ex;
+            appended = ex.getWritten();
+        } catch (StreamAppendException ex) {
+            error = ex;
+            appended = new AppendedEventMessage[0];
+        } catch (RuntimeException ex) {
+            error = new StreamAppendException(streamName, "Unexpected error "
+                    + "writing events to stream.", ex);
+            appended = new AppendedEventMessage[0];
+        }
+
+        if (appended.length > 0) {
+            dirty = true;
+            unsyncedBytes += (error == null) ? bytes
+                    : bytes * appended.length / records.size();
+            if (mode == SyncMode.BATCH
+                    || (mode == SyncMode.BYTES && unsyncedBytes >= syncBytes)) {
+                final StreamAppendException syncError = sync();
+                if (syncError != null) {
+                    //none of the group may be acknowledged as durable
+                    group.forEach((r) -> r.error = syncError);
+                    return;
+                }
+            }
+        }
+
+        //requests are acknowledged only if all their records were written
+        int index = 0;
+        for (CommitRequest<T> r : group) {
+            if (index + r.records.size() <= appended.length) {
+                r.appended = Arrays.copyOfRange(appended, index,
+                        index + r.records.size());
+            } else {
+                r.error = error;
+            }
+            index += r.records.size();
+        }
+    }
+
+    /**
+     * Flush the written records, failing the committer if the flush fails.
+     *
+     * @return flush failure, or null if flushed
+     */
+    private StreamAppendException sync() {
+        dirty = false;
+        try {
+            syncer.sync();
+            unsyncedBytes = 0;
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            return syncFailed(ex);
+        }
+    }
+
+    private void intervalSync() {
+        if (!dirty || syncFailure != null) {
+            return;
+        }
+        dirty = false;
+        try {
+            syncer.sync();
+        } catch (IOException | RuntimeException ex) {
+            syncFailed(ex);
+        }
+    }
+
+    /**
+     * Records a failed flush, which is not retried; the state of the written
+     * pages is unknown until the stream is recovered from its storage.
+     *
+     * @param cause flush failure
+     * @return append failure of the flushed requests
+     */
+    private StreamAppendException syncFailed(Exception cause) {
+        final StreamAppendException failure = new StreamAppendException(
+                streamName, String.format("Unable to flush stream '%s'.",
+                        streamName), cause);
+        syncFailure = failure;
+        LOGGER.log(Level.SEVERE, String.format("Unable to flush stream '%s', "
+                + "appends are refused until the stream is reopened.",
+                streamName), cause);
+        return failure;
+    }
+
+    /**
+     * Append failure of commits made after a failed flush.
+     */
+    private StreamAppendException refused() {
+        return new StreamAppendException(streamName, String.format("Stream "
+                + "'%s' failed to flush, appends are refused until the stream "
+                + "is reopened.", streamName), syncFailure);
+    }
+
+    /**
+     * Stops accepting commits and flushes any written records which have not
+     * yet been flushed, unless a flush already failed.
+     *
+     * @throws IOException if the final flush failed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            while (writing || !pending.isEmpty()) {
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (syncTask != null) {
+            syncTask.cancel(false);
+        }
+        if (dirty && syncFailure == null) {
+            dirty = false;
+            syncer.sync();
+        }
+    }
+
+    private static long positiveProperty(Map<String, String> props,
+            String name, long defaultValue) {
+        final String value = props.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final long l = Long.parseLong(value.trim());
+            if (l > 0) {
+                return l;
+            }
+        } catch (NumberFormatException ex) {
+            //fall through to default
+        }
+        LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                + "property '%s', using default of %d.", value, name,
+                defaultValue));
+        return defaultValue;
+    }
+
+    /**
+     * Thrown by a {@link BatchWriter} which wrote some, but not all, of the
+     * records before failing.
+     */
+    public static class PartialWriteException extends StreamAppendException {
+
+        private final AppendedEventMessage[] written;
+
+        /**
+         *
+         * @param streamName stream name
+         * @param written appended events of the written records, in order
+         * @param cause cause of the failed write
+         */
+        public PartialWriteException(String streamName,
+                AppendedEventMessage[] written, Throwable cause) {
+            super(streamName, String.format("Only %d records were written to "
+                    + "stream '%s'.", written.length, streamName), cause);
+            this.written = written;
+        }
+
+        /**
+         * Appended events of the records written before the failure.
+         *
+         * @return written events, in record order
+         */
+        public AppendedEventMessage[] getWritten() {
+            return written;
+        }
+    }
+
+    private static class CommitRequest<T> {
+
+        private final List<T> records;
+        private final long bytes;
+        //written by the leader before it marks the request done under lock
+        private AppendedEventMessage[] appended;
+        private StreamAppendException error;
+        //guarded by the committer lock
+        private boolean done;
+
+        CommitRequest(List<T> records, long bytes) {
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package org.geoint.canon.impl.stream;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
-import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.event.AppendedEventMessage;
 
 /**
  * An event stream which is accessed locally (on the same system as the canon
  * instance is running) allowing for local operations not relying on network
  * connectivity.
+ * <p>
+ * Local streams may archive older events to a separate, typically cheaper and
+ * compressed, tier of storage. Archived events remain readable from the stream
+ * with their sequence and order unchanged.
  *
  * @author steve_siebert
  */
-public abstract class LocalEventStream implements EventStream {
+public abstract class LocalEventStream extends AbstractEventStream {
 
     /**
-     * Enable event archiving.
+     * Default age of the events to archive, one day.
+     */
+    public static final long DEFAULT_ARCHIVE_AGE = TimeUnit.DAYS.toMillis(1);
+
+    public LocalEventStream(AbstractEventChannel channel, String streamName,
+            CodecResolver codecs) {
+        super(channel, streamName, codecs);
+    }
+
+    /**
+     * Enable event archiving, archiving events older than the
+     * {@link #DEFAULT_ARCHIVE_AGE default archive age}.
      *
      * @param archiveDir directory to contain archive streams
      * @param compress true to compress the archive file, otherwise do not
@@ -25,17 +41,37 @@ public abstract class LocalEventStream implements EventStream {
      */
     public void enableArchive(File archiveDir, boolean compress,
             Predicate<AppendedEventMessage> archiveFilter) {
-        throw new UnsupportedOperationException();
+        enableArchive(archiveDir, compress, archiveFilter,
+                DEFAULT_ARCHIVE_AGE, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Enable event archiving.
+     * <p>
+     * Events matching the filter are archived in the background once they are
+     * older than the provided age; the age of an event is the time since it
+     * was appended.
+     *
+     * @param archiveDir directory to contain archive streams
+     * @param compress true to compress the archive file, otherwise do not
+     * compress
+     * @param archiveFilter filter to determine if the message should be
+     * archived
+     * @param age minimum age of archived events
+     * @param unit unit of the age
+     * @throws IllegalStateException if the stream has archived events in a
+     * different archive directory
+     */
+    public abstract void enableArchive(File archiveDir, boolean compress,
+            Predicate<AppendedEventMessage> archiveFilter, long age,
+            TimeUnit unit);
+
     /**
      * Check if the stream is archiving.
      *
      * @return true if archiving, otherwise false
      */
-    public boolean isArchiving() {
-        throw new UnsupportedOperationException();
-    }
+    public abstract boolean isArchiving();
 
     /**
      * If archive(s) exist, move the archived events back to the primary stream
@@ -44,8 +80,6 @@ public abstract class LocalEventStream implements EventStream {
      * This is a synchronous operation executed by the thread requesting this
      * operation.
      */
-    public void deleteArchive() {
-        throw new UnsupportedOperationException();
-    }
+    public abstract void deleteArchive();
 
 }
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.impl.codec.BufferedEventMessage;
 import org.geoint.canon.stream.EventAppender;
 import org.geoint.canon.stream.StreamAppendException;
 import org.geoint.canon.stream.event.EventAppended;
@@ -57,9 +58,29 @@ public class MemoryEventAppender extends AbstractEventAppender {
         return this;
     }
 
+    /**
+     * Appends the events added to this appender to the stream.
+     * <p>
+     * Once appended the events are cleared from this appender, so the
+     * appender may be reused for further events, and their encoded content
+     * buffers are returned to the pool. If the append fails the events, and
+     * their content, are kept so the append may be retried.
+     *
+     * @return results of the append operation
+     * @throws StreamAppendException if the events could not be appended
+     */
     @Override
     public EventAppended append() throws StreamAppendException {
-        return doAppend.append(appenderMessages);
+        synchronized (appenderMessages) {
+            final EventAppended appended = doAppend.append(appenderMessages);
+            for (EventMessage m : appenderMessages) {
+                if (m instanceof BufferedEventMessage) {
+                    ((BufferedEventMessage) m).releaseContentBuffer();
+                }
+            }
+            appenderMessages.clear();
+            return appended;
+        }
     }
 
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence index held entirely on the heap.
+ *
+ * @author steve_siebert
+ */
+public class MemorySequenceIndex implements SequenceIndex {
+
+    private final Map<String, Long> positions = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String sequence, long position) {
+        positions.put(sequence, position);
+    }
+
+    @Override
+    public OptionalLong find(String sequence) {
+        final Long position = positions.get(sequence);
+        return (position == null)
+                ? OptionalLong.empty()
+                : OptionalLong.of(position);
+    }
+
+    /**
+     * Number of indexed sequences.
+     *
+     * @return index size
+     */
+    public int size() {
+        return positions.size();
+    }
+
+}
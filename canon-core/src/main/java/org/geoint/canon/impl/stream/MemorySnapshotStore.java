@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the newest snapshot of each name on the heap, for streams which are
+ * themselves not persistent.
+ *
+ * @author steve_siebert
+ */
+final class MemorySnapshotStore implements SnapshotStore {
+
+    private final Map<String, StreamSnapshot> snapshots
+            = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(StreamSnapshot snapshot) {
+        snapshots.put(snapshot.getSnapshotName(), snapshot);
+    }
+
+    @Override
+    public Optional<StreamSnapshot> findLatest(String snapshotName) {
+        return Optional.ofNullable(snapshots.get(snapshotName));
+    }
+
+    @Override
+    public void delete(String snapshotName) {
+        snapshots.remove(snapshotName);
+    }
+}
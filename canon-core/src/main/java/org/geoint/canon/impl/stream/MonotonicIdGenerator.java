@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.spi.id.BinaryEventIdGenerator;
+
+/**
+ * Generates time-ordered, monotonic, 128-bit event identities.
+ * <p>
+ * Each identity is composed of:
+ * <pre>
+ * 48 bits  generation time, milliseconds since the epoch
+ * 16 bits  node id
+ * 24 bits  generating thread tag
+ * 40 bits  per-thread counter, reset each millisecond
+ * </pre>
+ * The string form is the 26 character Crockford base32 encoding of the
+ * identity, so identities sort by generation time as both strings and binary
+ * values (k-sortable) and identities generated by one thread are strictly
+ * increasing, even if the system clock moves backwards. Identities of
+ * different threads generated within the same millisecond are not ordered.
+ * <p>
+ * Threads keep their own counter, so no lock or shared counter is contended
+ * and no random numbers are drawn to generate an identity. The tag of a
+ * thread is recycled once the thread ended and was garbage collected; the
+ * thread given the tag continues its counter, so identities remain unique
+ * however many threads are started. The node id is
+ * read from the {@link #NODE_PROPERTY_NAME} channel property, or otherwise
+ * derived from the name of the running JVM; nodes generating identities for
+ * the same channel should be assigned distinct node ids.
+ * <p>
+ * This generator is thread safe.
+ *
+ * @author steve_siebert
+ */
+public class MonotonicIdGenerator implements BinaryEventIdGenerator {
+
+    /**
+     * Channel property setting the node id, 0 - 65535.
+     */
+    public static final String NODE_PROPERTY_NAME = "org.geoint.canon.id.node";
+    public static final int BINARY_LENGTH = Long.BYTES * 2;
+    public static final int STRING_LENGTH = 26;
+
+    private static final int NODE_BITS = 16;
+    private static final int COUNTER_BITS = 40;
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+    private static final int THREAD_TAG_COUNT = 1 << 24;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final char[] ALPHABET
+            = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    //tags are shared by all generators, so threads generating identities
+    //for several channels keep a single counter
+    private static final ThreadTags THREAD_TAGS
+            = new ThreadTags(THREAD_TAG_COUNT);
+
+    private static final Logger LOGGER
+            = Logger.getLogger(MonotonicIdGenerator.class.getName());
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private final ThreadTags tags;
+    //resolved from the channel properties on first use
+    private volatile long node = -1;
+
+    public MonotonicIdGenerator() {
+        this(THREAD_TAGS);
+    }
+
+    /**
+     * Generator with its own thread tags.
+     *
+     * @param tags thread tags
+     */
+    MonotonicIdGenerator(ThreadTags tags) {
+        this.tags = tags;
+    }
+
+    @Override
+    public String generate(EventMessage eventContext,
+            Map<String, String> channelProperties) {
+        final ThreadState s = next(channelProperties);
+        return encode(s.high, s.low);
+    }
+
+    @Override
+    public void generate(EventMessage eventContext,
+            Map<String, String> channelProperties, ByteBuffer id) {
+        final ThreadState s = next(channelProperties);
+        id.putLong(s.high).putLong(s.low);
+    }
+
+    @Override
+    public int getBinaryLength() {
+        return BINARY_LENGTH;
+    }
+
+    @Override
+    public String toString(ByteBuffer id) {
+        return encode(id.getLong(id.position()),
+                id.getLong(id.position() + Long.BYTES));
+    }
+
+    /**
+     * Writes the binary form of the identity to the buffer at its current
+     * position, advancing the position.
+     *
+     * @param id string form of an identity
+     * @param target buffer with at least {@link #BINARY_LENGTH} bytes remaining
+     * @throws IllegalArgumentException if the string is not an identity
+     * generated by this class
+     */
+    public static void toBinary(String id, ByteBuffer target) {
+        if (id.length() != STRING_LENGTH) {
+            throw invalid(id);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < STRING_LENGTH; i++) {
+            final char c = id.charAt(i);
+            final int v = c < VALUES.length ? VALUES[c] : -1;
+            //the leading character only encodes the 3 high bits
+            if (v < 0 || (i == 0 && v > 7)) {
+                throw invalid(id);
+            }
+            high = (high << 5) | (low >>> 59);
+            low = (low << 5) | v;
+        }
+        target.putLong(high).putLong(low);
+    }
+
+    /**
+     * Returns the generation time of the identity.
+     *
+     * @param id string form of an identity
+     * @return milliseconds since the epoch
+     * @throws IllegalArgumentException if the string is not an identity
+     * generated by this class
+     */
+    public static long getTimestamp(String id) {
+        final ByteBuffer binary = ByteBuffer.allocate(BINARY_LENGTH);
+        toBinary(id, binary);
+        return binary.getLong(0) >>> NODE_BITS;
+    }
+
+    /**
+     * Returns the smallest identity generated at or after the provided time,
+     * for use as the lower bound of a range of identities.
+     *
+     * @param timestamp milliseconds since the epoch
+     * @return string form of the bound
+     */
+    public static String lowerBound(long timestamp) {
+        return encode(timestamp << NODE_BITS, 0);
+    }
+
+    /**
+     * Advances the counter of the calling thread.
+     */
+    private ThreadState next(Map<String, String> channelProperties) {
+        long n = node;
+        if (n == -1) {
+            n = resolveNode(channelProperties);
+            node = n;
+        }
+
+        final ThreadState s = tags.get();
+        final long now = System.currentTimeMillis();
+        if (now > s.millis) {
+            s.millis = now;
+            s.counter = 0;
+        } else if (++s.counter > COUNTER_MASK) {
+            //counter exhausted or clock moved back, borrow the next millisecond
+            s.millis++;
+            s.counter = 0;
+        }
+        s.high = (s.millis << NODE_BITS) | n;
+        s.low = (s.thread << COUNTER_BITS) | s.counter;
+        return s;
+    }
+
+    private static long resolveNode(Map<String, String> channelProperties) {
+        final String value = channelProperties.get(NODE_PROPERTY_NAME);
+        if (value != null) {
+            try {
+                final long n = Long.parseLong(value.trim());
+                if (n >= 0 && n <= NODE_MASK) {
+                    return n;
+                }
+            } catch (NumberFormatException ex) {
+                //logged below
+            }
+            LOGGER.log(Level.WARNING, String.format("Invalid value '%s' for "
+                    + "property '%s', deriving the node id from the JVM.",
+                    value, NODE_PROPERTY_NAME));
+        }
+        //pid@hostname on most JVMs
+        return ManagementFactory.getRuntimeMXBean().getName().hashCode()
+                & NODE_MASK;
+    }
+
+    /**
+     * Crockford base32 encoding of the 128-bit value, most significant bits
+     * first.
+     */
+    private static String encode(long high, long low) {
+        final char[] chars = new char[STRING_LENGTH];
+        for (int i = STRING_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static IllegalArgumentException invalid(String id) {
+        return new IllegalArgumentException(String.format("'%s' is not a "
+                + "monotonic event id.", id));
+    }
+
+    /**
+     * Assigns each thread generating identities a unique tag, recycling the
+     * tags of threads which were garbage collected.
+     */
+    static final class ThreadTags {
+
+        private final int count;
+        private final AtomicInteger next = new AtomicInteger();
+        private final ReferenceQueue<Thread> ended = new ReferenceQueue<>();
+        //keeps the references of threads holding a tag reachable
+        private final Set<TagReference> held = ConcurrentHashMap.newKeySet();
+        private final ThreadLocal<ThreadState> state
+                = ThreadLocal.withInitial(this::acquire);
+
+        /**
+         *
+         * @param count number of tags
+         */
+        ThreadTags(int count) {
+            this.count = count;
+        }
+
+        /**
+         * Returns the generator state of the calling thread.
+         */
+        ThreadState get() {
+            return state.get();
+        }
+
+        /**
+         * Assigns the calling thread a recycled tag, or a new tag, waiting
+         * for ended threads to be collected if all tags were assigned.
+         */
+        private ThreadState acquire() {
+            ThreadState s = recycle(ended.poll());
+            if (s == null) {
+                final int tag = next.getAndUpdate((t) -> t < count ? t + 1 : t);
+                s = tag < count ? new ThreadState(tag) : awaitRecycled();
+            }
+            held.add(new TagReference(Thread.currentThread(), s, ended));
+            return s;
+        }
+
+        private ThreadState awaitRecycled() {
+            for (int i = 0; i < 50; i++) {
+                System.gc();
+                try {
+                    final ThreadState s = recycle(ended.remove(100));
+                    if (s != null) {
+                        return s;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            throw new IllegalStateException(String.format("All %d thread "
+                    + "tags are held by live threads.", count));
+        }
+
+        private ThreadState recycle(Object ref) {
+            if (ref == null) {
+                return null;
+            }
+            final TagReference r = (TagReference) ref;
+            held.remove(r);
+            return r.state;
+        }
+    }
+
+    /**
+     * Reference to a thread holding a tag, enqueued once the thread was
+     * collected.
+     */
+    private static final class TagReference extends WeakReference<Thread> {
+
+        private final ThreadState state;
+
+        TagReference(Thread thread, ThreadState state,
+                ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            this.state = state;
+        }
+    }
+
+    /**
+     * Generator state of a thread tag.
+     */
+    private static final class ThreadState {
+
+        private final long thread;
+        private long millis;
+        private long counter;
+        //last generated identity
+        private long high;
+        private long low;
+
+        ThreadState(long thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.util.OptionalLong;
+
+/**
+ * Index of event sequence to the position of the event within its stream,
+ * used by stream readers to reposition in constant or logarithmic time rather
+ * than scanning the stream.
+ * <p>
+ * The meaning of the position is defined by the stream implementation (for
+ * example, a list index or an encoded segment/byte position).
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @author steve_siebert
+ */
+public interface SequenceIndex {
+
+    /**
+     * Index the position of an event.
+     *
+     * @param sequence event sequence
+     * @param position stream-specific position of the event
+     */
+    void put(String sequence, long position);
+
+    /**
+     * Find the position of an event.
+     *
+     * @param sequence event sequence
+     * @return stream-specific position of the event or empty if the sequence
+     * is not indexed
+     */
+    OptionalLong find(String sequence);
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Storage of the handler snapshots of a stream.
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @author steve_siebert
+ */
+public interface SnapshotStore {
+
+    /**
+     * Stores the snapshot, replacing older snapshots of the same name.
+     *
+     * @param snapshot snapshot
+     * @throws IOException thrown if the snapshot could not be stored
+     */
+    void save(StreamSnapshot snapshot) throws IOException;
+
+    /**
+     * Returns the newest snapshot of the name.
+     *
+     * @param snapshotName snapshot name
+     * @return newest snapshot, if any
+     * @throws IOException thrown if the snapshots could not be read
+     */
+    Optional<StreamSnapshot> findLatest(String snapshotName)
+            throws IOException;
+
+    /**
+     * Deletes all snapshots of the name.
+     *
+     * @param snapshotName snapshot name
+     * @throws IOException thrown if the snapshots could not be deleted
+     */
+    void delete(String snapshotName) throws IOException;
+}
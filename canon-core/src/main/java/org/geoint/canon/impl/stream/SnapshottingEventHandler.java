@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.EventHandler;
+import org.geoint.canon.stream.EventHandlerAction;
+import org.geoint.canon.stream.SnapshotEventHandler;
+
+/**
+ * Notifies a snapshot handler of events, snapshotting the handler after every
+ * snapshot interval of handled events.
+ * <p>
+ * Notifications of a handler are sequential, so the event count needs no
+ * synchronization.
+ *
+ * @author steve_siebert
+ */
+final class SnapshottingEventHandler implements EventHandler {
+
+    private final AbstractEventStream stream;
+    private final SnapshotEventHandler<?> handler;
+    private final int interval;
+    private int sinceSnapshot;
+
+    SnapshottingEventHandler(AbstractEventStream stream,
+            SnapshotEventHandler<?> handler) {
+        this.stream = stream;
+        this.handler = handler;
+        this.interval = Math.max(1, handler.getSnapshotInterval());
+    }
+
+    SnapshotEventHandler<?> getHandler() {
+        return handler;
+    }
+
+    @Override
+    public void handle(AppendedEventMessage event) throws Throwable {
+        handler.handle(event);
+        if (++sinceSnapshot >= interval) {
+            sinceSnapshot = 0;
+            stream.saveSnapshot(handler, event.getSequence());
+        }
+    }
+
+    @Override
+    public EventHandlerAction onFailure(AppendedEventMessage event,
+            Throwable ex) {
+        return handler.onFailure(event, ex);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.geoint.canon.stream.EventStream;
+
+/**
+ * Streams of a channel, keyed by case-insensitive stream name.
+ * <p>
+ * Lookups are lock-free and do not copy the registered streams, so channels
+ * with many streams can resolve a stream by name in constant time.
+ * Registration is typically guarded by the channel, which must create the
+ * stream storage and register the stream atomically.
+ *
+ * @author steve_siebert
+ */
+public class StreamRegistry {
+
+    private final ConcurrentMap<String, EventStream> streams
+            = new ConcurrentHashMap<>();
+    private final Collection<EventStream> view
+            = Collections.unmodifiableCollection(streams.values());
+
+    /**
+     * Find a stream by name, ignoring case.
+     *
+     * @param streamName stream name
+     * @return stream, if registered
+     */
+    public Optional<EventStream> find(String streamName) {
+        return Optional.ofNullable(streams.get(key(streamName)));
+    }
+
+    /**
+     * Check if a stream by this name, ignoring case, is registered.
+     *
+     * @param streamName stream name
+     * @return true if registered, otherwise false
+     */
+    public boolean contains(String streamName) {
+        return streams.containsKey(key(streamName));
+    }
+
+    /**
+     * Register a stream, unless a stream of the same name, ignoring case, is
+     * already registered.
+     *
+     * @param stream stream to register
+     * @return the previously registered stream of the same name, if one was
+     * registered, in which case the provided stream was not registered
+     */
+    public Optional<EventStream> register(EventStream stream) {
+        return Optional.ofNullable(
+                streams.putIfAbsent(key(stream.getName()), stream));
+    }
+
+    /**
+     * Unmodifiable live view of the registered streams.
+     *
+     * @return registered streams
+     */
+    public Collection<EventStream> streams() {
+        return view;
+    }
+
+    /**
+     * Number of registered streams.
+     *
+     * @return registry size
+     */
+    public int size() {
+        return streams.size();
+    }
+
+    private static String key(String streamName) {
+        return streamName.toLowerCase(Locale.ROOT);
+    }
+
+}
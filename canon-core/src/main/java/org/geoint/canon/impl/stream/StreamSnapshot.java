@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+/**
+ * Serialized handler state tagged with the sequence of the last event the
+ * state reflects.
+ *
+ * @author steve_siebert
+ */
+public final class StreamSnapshot {
+
+    private final String snapshotName;
+    private final String sequence;
+    private final byte[] state;
+
+    public StreamSnapshot(String snapshotName, String sequence, byte[] state) {
+        this.snapshotName = snapshotName;
+        this.sequence = sequence;
+        this.state = state;
+    }
+
+    public String getSnapshotName() {
+        return snapshotName;
+    }
+
+    /**
+     * Sequence of the last event reflected by the snapshot.
+     *
+     * @return event sequence
+     */
+    public String getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Serialized state; the returned array must not be modified.
+     *
+     * @return serialized state
+     */
+    public byte[] getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Snapshot '%s' at event '%s' (%d bytes)",
+                snapshotName, sequence, state.length);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.impl.stream;
+
+import java.io.IOException;
+import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.stream.DurableEventReader;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.StreamReadException;
+
+/**
+ * DurableEventReader implementation that keeps track of the reader position
+ * in a {@link CheckpointTable} shared with other durable readers.
+ * <p>
+ * Unlike {@link FileTrackedDurableEventReader}, which holds a file open per
+ * reader, table-tracked readers hold no file of their own: acknowledging an
+ * event is a write to the memory-mapped table, forced to storage by the
+ * single flusher thread of the table. Readers recover at-least-once from the
+ * last flushed checkpoint.
+ * <p>
+ * Closing the reader does not close the table, which is owned by the caller.
+ *
+ * @author steve_siebert
+ */
+public class TableTrackedDurableEventReader extends DurableEventReader {
+
+    private final CheckpointTable.Checkpoint checkpoint;
+
+    private TableTrackedDurableEventReader(String readerId,
+            EventReader reader, CheckpointTable.Checkpoint checkpoint) {
+        super(readerId, reader);
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Persistently track the readers position in the checkpoint table.
+     * <p>
+     * If the table contains a position for the reader the reader is moved to
+     * it, otherwise the current position of the reader is written.
+     *
+     * @param readerId stream-unique reader identifier
+     * @param reader reader to use
+     * @param table checkpoint table shared by durable readers
+     * @return durable reader
+     * @throws StreamReadException thrown if there is a problem initializing the
+     * durable reader
+     */
+    public static TableTrackedDurableEventReader track(String readerId,
+            EventReader reader, CheckpointTable table)
+            throws StreamReadException {
+        try {
+            final CheckpointTable.Checkpoint checkpoint = table.checkpoint(
+                    checkpointKey(reader.getChannelName(),
+                            reader.getStreamName(), readerId));
+            final String position = checkpoint.read();
+            if (position != null) {
+                reader.setPosition(position);
+            } else {
+                final String current = reader.getPosition();
+                if (current != null && !current.isEmpty()) {
+                    checkpoint.write(current);
+                }
+            }
+            return new TableTrackedDurableEventReader(readerId, reader,
+                    checkpoint);
+        } catch (IOException | UnknownEventException
+                | IllegalArgumentException | IllegalStateException ex) {
+            throw new StreamReadException(reader.getChannelName(),
+                    reader.getStreamName(), String.format("Unable to "
+                            + "initialize table-tracked durable event reader "
+                            + "'%s'.", readerId), ex);
+        }
+    }
+
+    /**
+     * Key of the reader checkpoint within the table.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param readerId stream-unique reader identifier
+     * @return checkpoint key
+     */
+    public static String checkpointKey(String channelName, String streamName,
+            String readerId) {
+        return String.join("/", channelName, streamName, readerId);
+    }
+
+    @Override
+    public void deleteReader() throws IOException {
+        this.close();
+        checkpoint.delete();
+    }
+
+    @Override
+    protected String readPosition() throws IOException {
+        return checkpoint.read();
+    }
+
+    @Override
+    protected void writePosition(String position) throws IOException {
+        checkpoint.write(position);
+    }
+
+}
@@ -22,6 +22,9 @@ import org.geoint.canon.spi.id.EventIdGenerator;
 
 /**
  * Generates random UUIDs for each event.
+ * <p>
+ * Random identities are not ordered; see {@link MonotonicIdGenerator} for
+ * time-ordered identities.
  *
  * @author steve_siebert
  */
@@ -0,0 +1,614 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Archived events of a sealed {@link EventSegment}, stored in compressed
+ * blocks.
+ * <p>
+ * Records are archived in their segment format, grouped into blocks of about
+ * 64KB which are each compressed with Deflate. Blocks are decompressed
+ * independently, so a sequential read decompresses each block once and a
+ * lookup decompresses a single block.
+ * <p>
+ * The archive file is accompanied by a sparse index file, containing the first
+ * offset and file position of each block and, like a {@link SegmentIndex},
+ * the sorted sequence hashes of the archived events but referencing the block
+ * containing the event rather than the event itself. The index file is written
+ * last; an archive file without an index file is incomplete.
+ * <p>
+ * Archive file layout:
+ * <pre>
+ * [header][bool compressed]([int storedLength][int rawLength][byte[] block])*
+ * </pre>
+ * Index file layout:
+ * <pre>
+ * [header][long firstOffset][long lastOffset]
+ * [int blockCount]([long firstOffset][long blockPosition])*
+ * [int entryCount]([long sequenceHash][int block])*
+ * </pre>
+ *
+ * @author steve_siebert
+ */
+final class ArchiveSegment {
+
+    //magic bytes used to uniquely identify file as a canon segment archive
+    private static final byte[] MAGIC_BYTES
+            = "CANON.ARC".getBytes(StandardCharsets.US_ASCII);
+    //magic bytes used to uniquely identify file as a canon archive index
+    private static final byte[] INDEX_MAGIC_BYTES
+            = "CANON.AIX".getBytes(StandardCharsets.US_ASCII);
+    private static final byte CURRENT_VERSION = 0;
+    private static final int HEADER_LENGTH = MAGIC_BYTES.length + 1;
+    private static final byte[] VALID_HEADER
+            = Arrays.copyOf(MAGIC_BYTES, HEADER_LENGTH); //current version is 0
+    private static final byte[] VALID_INDEX_HEADER
+            = Arrays.copyOf(INDEX_MAGIC_BYTES, HEADER_LENGTH);
+    private static final int BLOCKS_START = HEADER_LENGTH + 1;
+    private static final int BLOCK_OVERHEAD = Integer.BYTES * 2;
+    private static final int BLOCK_TABLE_START
+            = HEADER_LENGTH + Long.BYTES * 2 + Integer.BYTES;
+    private static final int BLOCK_ENTRY_LENGTH = Long.BYTES * 2;
+    private static final int ENTRY_LENGTH = Long.BYTES + Integer.BYTES;
+    //uncompressed size at which a block is closed
+    private static final int BLOCK_SIZE = 64 * 1024;
+    static final String ARCHIVE_FILE_EXTENSION = ".arc";
+    static final String INDEX_FILE_EXTENSION = ".aix";
+
+    private static final ThreadLocal<Inflater> INFLATERS
+            = ThreadLocal.withInitial(Inflater::new);
+
+    private final String channelName;
+    private final String streamName;
+    private final long segmentId;
+    private final File file;
+    private final MappedByteBuffer data;
+    private final boolean compressed;
+    private final MappedByteBuffer index;
+    private final long firstOffset;
+    private final long lastOffset;
+    private final int blockCount;
+    private final int entriesStart;
+    private final int entryCount;
+
+    private ArchiveSegment(String channelName, String streamName,
+            long segmentId, File file, MappedByteBuffer data,
+            MappedByteBuffer index) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.segmentId = segmentId;
+        this.file = file;
+        this.data = data;
+        this.compressed = data.get(HEADER_LENGTH) != 0;
+        this.index = index;
+        this.firstOffset = index.getLong(HEADER_LENGTH);
+        this.lastOffset = index.getLong(HEADER_LENGTH + Long.BYTES);
+        this.blockCount = index.getInt(HEADER_LENGTH + Long.BYTES * 2);
+        final int countPosition = BLOCK_TABLE_START
+                + blockCount * BLOCK_ENTRY_LENGTH;
+        this.entryCount = index.getInt(countPosition);
+        this.entriesStart = countPosition + Integer.BYTES;
+    }
+
+    /**
+     * Writes the archive of the records of a segment.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param archiveDir archive directory of the stream
+     * @param segmentId id of the archived segment
+     * @param records complete segment records, in offset order, at least one
+     * @param compress true to compress the blocks
+     * @return archive segment
+     * @throws IOException if the archive could not be written
+     */
+    static ArchiveSegment write(String channelName, String streamName,
+            File archiveDir, long segmentId, List<ByteBuffer> records,
+            boolean compress) throws IOException {
+        final int n = records.size();
+        final long[] hashes = new long[n];
+        final int[] entryBlocks = new int[n];
+        long[] blockOffsets = new long[16];
+        long[] blockPositions = new long[16];
+        int blocks = 0;
+
+        final File archiveFile = archiveFile(archiveDir, segmentId);
+        final File tmpFile = new File(archiveDir,
+                archiveFile.getName() + ".tmp");
+        final Deflater deflater = new Deflater();
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+            raf.setLength(0);
+            final FileChannel fc = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(BLOCKS_START);
+            header.put(VALID_HEADER).put((byte) (compress ? 1 : 0)).flip();
+            write(fc, header);
+
+            ByteBuffer raw = ByteBuffer.allocate(BLOCK_SIZE);
+            byte[] stored = new byte[BLOCK_SIZE];
+            long filePosition = BLOCKS_START;
+            for (int i = 0; i < n;) {
+                //fill a block with at least one record
+                raw.clear();
+                final int first = i;
+                while (i < n && (i == first
+                        || records.get(i).remaining() <= raw.remaining())) {
+                    final ByteBuffer r = records.get(i).duplicate();
+                    if (r.remaining() > raw.remaining()) {
+                        raw = ByteBuffer.allocate(r.remaining());
+                    }
+                    hashes[i] = SegmentIndex.hash(EventSegment.readRecord(
+                            channelName, streamName, r, r.position())
+                            .getSequence());
+                    entryBlocks[i] = blocks;
+                    raw.put(r);
+                    i++;
+                }
+                raw.flip();
+
+                final int rawLength = raw.remaining();
+                int storedLength = rawLength;
+                if (compress) {
+                    deflater.reset();
+                    deflater.setInput(raw.array(), 0, rawLength);
+                    deflater.finish();
+                    storedLength = 0;
+                    while (!deflater.finished()) {
+                        if (storedLength == stored.length) {
+                            stored = Arrays.copyOf(stored, stored.length * 2);
+                        }
+                        storedLength += deflater.deflate(stored, storedLength,
+                                stored.length - storedLength);
+                    }
+                }
+
+                if (blocks == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                    blockPositions = Arrays.copyOf(blockPositions, blocks * 2);
+                }
+                blockOffsets[blocks] = EventSegment.recordOffset(
+                        records.get(first), records.get(first).position());
+                blockPositions[blocks] = filePosition;
+                blocks++;
+
+                ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_OVERHEAD);
+                blockHeader.putInt(storedLength).putInt(rawLength).flip();
+                write(fc, blockHeader);
+                write(fc, compress ? ByteBuffer.wrap(stored, 0, storedLength)
+                        : raw);
+                filePosition += BLOCK_OVERHEAD + storedLength;
+            }
+            fc.force(true);
+        } finally {
+            deflater.end();
+        }
+        move(tmpFile, archiveFile);
+
+        //entries sorted by hash, as the segment index
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+        final ByteBuffer last = records.get(n - 1);
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_TABLE_START
+                + blocks * BLOCK_ENTRY_LENGTH + Integer.BYTES
+                + n * ENTRY_LENGTH);
+        buffer.put(VALID_INDEX_HEADER);
+        buffer.putLong(blockOffsets[0]);
+        buffer.putLong(EventSegment.recordOffset(last, last.position()));
+        buffer.putInt(blocks);
+        for (int b = 0; b < blocks; b++) {
+            buffer.putLong(blockOffsets[b]);
+            buffer.putLong(blockPositions[b]);
+        }
+        buffer.putInt(n);
+        for (Integer i : order) {
+            buffer.putLong(hashes[i]);
+            buffer.putInt(entryBlocks[i]);
+        }
+        buffer.flip();
+
+        final File indexFile = indexFile(archiveDir, segmentId);
+        final File tmpIndexFile = new File(archiveDir,
+                indexFile.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmpIndexFile, "rw")) {
+            raf.setLength(0);
+            write(raf.getChannel(), buffer);
+            raf.getChannel().force(true);
+        }
+        move(tmpIndexFile, indexFile);
+
+        ArchiveSegment archive = open(channelName, streamName, archiveDir,
+                segmentId);
+        if (archive == null) {
+            throw new IOException(String.format("Unable to read archive file "
+                    + "'%s'.", archiveFile.getAbsolutePath()));
+        }
+        return archive;
+    }
+
+    /**
+     * Opens the archive of a segment.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param archiveDir archive directory of the stream
+     * @param segmentId id of the archived segment
+     * @return archive, or null if the segment has no complete archive
+     * @throws IOException if the archive files could not be read
+     */
+    static ArchiveSegment open(String channelName, String streamName,
+            File archiveDir, long segmentId) throws IOException {
+        final File archiveFile = archiveFile(archiveDir, segmentId);
+        final File indexFile = indexFile(archiveDir, segmentId);
+        if (!archiveFile.exists() || !indexFile.exists()) {
+            return null;
+        }
+
+        final MappedByteBuffer data = map(archiveFile);
+        final MappedByteBuffer index = map(indexFile);
+        final byte[] header = new byte[HEADER_LENGTH];
+        if (data.capacity() < BLOCKS_START
+                || index.capacity() < BLOCK_TABLE_START) {
+            return null;
+        }
+        data.get(header);
+        if (!Arrays.equals(VALID_HEADER, header)) {
+            return null;
+        }
+        index.get(header);
+        if (!Arrays.equals(VALID_INDEX_HEADER, header)) {
+            return null;
+        }
+        final long blocks = index.getInt(HEADER_LENGTH + Long.BYTES * 2);
+        final long countPosition = BLOCK_TABLE_START
+                + blocks * BLOCK_ENTRY_LENGTH;
+        if (blocks <= 0 || countPosition + Integer.BYTES > index.capacity()
+                || index.capacity() != countPosition + Integer.BYTES
+                + (long) index.getInt((int) countPosition) * ENTRY_LENGTH) {
+            return null;
+        }
+        return new ArchiveSegment(channelName, streamName, segmentId,
+                archiveFile, data, index);
+    }
+
+    /**
+     * Deletes the archive files of the segment, if they exist.
+     *
+     * @param archiveDir archive directory of the stream
+     * @param segmentId id of the archived segment
+     * @throws IOException if a file exists and could not be deleted
+     */
+    static void delete(File archiveDir, long segmentId) throws IOException {
+        //index first, so an interrupted delete leaves an incomplete archive
+        Files.deleteIfExists(indexFile(archiveDir, segmentId).toPath());
+        Files.deleteIfExists(archiveFile(archiveDir, segmentId).toPath());
+    }
+
+    long getSegmentId() {
+        return segmentId;
+    }
+
+    long getFirstOffset() {
+        return firstOffset;
+    }
+
+    long getLastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * Number of archived events.
+     *
+     * @return event count
+     */
+    int size() {
+        return entryCount;
+    }
+
+    /**
+     * Size of the archive file.
+     *
+     * @return archive file length
+     */
+    long length() {
+        return data.capacity();
+    }
+
+    /**
+     * Returns a cursor reading the archived events from the first event with
+     * an offset equal to or after the provided offset.
+     *
+     * @param fromOffset offset of the first event to read
+     * @return cursor
+     */
+    Cursor cursor(long fromOffset) {
+        return new Cursor(fromOffset);
+    }
+
+    /**
+     * Find the archived event with the provided sequence.
+     *
+     * @param sequence event sequence
+     * @return archived event, empty if the sequence is not archived here
+     * @throws IOException if the block of a candidate event could not be read
+     */
+    Optional<FileAppendedEventMessage> find(String sequence)
+            throws IOException {
+        final long hash = SegmentIndex.hash(sequence);
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midHash = hashAt(mid);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                //walk back to the first entry with this hash, then verify
+                //each candidate block
+                int i = mid;
+                while (i > 0 && hashAt(i - 1) == hash) {
+                    i--;
+                }
+                int searched = -1;
+                for (; i < entryCount && hashAt(i) == hash; i++) {
+                    final int b = blockAt(i);
+                    if (b == searched) {
+                        continue;
+                    }
+                    searched = b;
+                    final ByteBuffer block = decode(b);
+                    for (int p = 0; p < block.limit();
+                            p += Integer.BYTES + block.getInt(p)) {
+                        final FileAppendedEventMessage msg = EventSegment
+                                .readRecord(channelName, streamName, block, p);
+                        if (sequence.equals(msg.getSequence())) {
+                            return Optional.of(msg);
+                        }
+                    }
+                }
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Views of every archived record, in offset order.
+     *
+     * @return complete records
+     * @throws IOException if a block could not be read
+     */
+    List<ByteBuffer> records() throws IOException {
+        final List<ByteBuffer> records = new ArrayList<>(entryCount);
+        for (int b = 0; b < blockCount; b++) {
+            final ByteBuffer block = decode(b);
+            for (int p = 0; p < block.limit();) {
+                final int next = p + Integer.BYTES + block.getInt(p);
+                ByteBuffer record = block.duplicate();
+                record.limit(next).position(p);
+                records.add(record.slice());
+                p = next;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Deletes the archive files; the archive and events already read remain
+     * readable through the mappings.
+     *
+     * @throws IOException if the files could not be deleted
+     */
+    void delete() throws IOException {
+        delete(file.getParentFile(), segmentId);
+    }
+
+    /**
+     * Reads the uncompressed records of a block.
+     *
+     * @param block block number
+     * @return block records
+     * @throws IOException if the block is corrupt
+     */
+    private ByteBuffer decode(int block) throws IOException {
+        final int position = (int) index.getLong(BLOCK_TABLE_START
+                + block * BLOCK_ENTRY_LENGTH + Long.BYTES);
+        final int storedLength = data.getInt(position);
+        final int rawLength = data.getInt(position + Integer.BYTES);
+        ByteBuffer stored = data.duplicate();
+        stored.position(position + BLOCK_OVERHEAD)
+                .limit(position + BLOCK_OVERHEAD + storedLength);
+        if (!compressed) {
+            return stored.slice().asReadOnlyBuffer();
+        }
+
+        final byte[] input = new byte[storedLength];
+        stored.get(input);
+        final byte[] raw = new byte[rawLength];
+        final Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(input);
+        int n = 0;
+        try {
+            while (n < rawLength && !inflater.finished()) {
+                final int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += read;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(String.format("Block %d of archive file "
+                    + "'%s' is corrupt.", block, file.getAbsolutePath()), ex);
+        }
+        if (n != rawLength) {
+            throw new IOException(String.format("Block %d of archive file "
+                    + "'%s' is truncated.", block, file.getAbsolutePath()));
+        }
+        return ByteBuffer.wrap(raw).asReadOnlyBuffer();
+    }
+
+    /**
+     * Block containing the first event with an offset equal to or after the
+     * provided offset, or the last block containing events before it.
+     */
+    private int startBlock(long offset) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (blockOffsetAt(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private long blockOffsetAt(int block) {
+        return index.getLong(BLOCK_TABLE_START + block * BLOCK_ENTRY_LENGTH);
+    }
+
+    private long hashAt(int entry) {
+        return index.getLong(entriesStart + entry * ENTRY_LENGTH);
+    }
+
+    private int blockAt(int entry) {
+        return index.getInt(entriesStart + entry * ENTRY_LENGTH + Long.BYTES);
+    }
+
+    private static void write(FileChannel fc, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            fc.write(buffer);
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        Files.move(from.toPath(), to.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MappedByteBuffer map(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            return raf.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+    }
+
+    static File archiveFile(File archiveDir, long segmentId) {
+        return new File(archiveDir,
+                String.format("%020d%s", segmentId, ARCHIVE_FILE_EXTENSION));
+    }
+
+    private static File indexFile(File archiveDir, long segmentId) {
+        return new File(archiveDir,
+                String.format("%020d%s", segmentId, INDEX_FILE_EXTENSION));
+    }
+
+    /**
+     * Sequential reader of the archived events.
+     * <p>
+     * Blocks are decompressed as the cursor reaches them. A cursor must only
+     * be used by one thread.
+     */
+    final class Cursor {
+
+        private final long fromOffset;
+        private int nextBlock;
+        private ByteBuffer block;
+        private int position;
+
+        private Cursor(long fromOffset) {
+            this.fromOffset = fromOffset;
+            this.nextBlock = fromOffset > lastOffset
+                    ? blockCount : startBlock(fromOffset);
+        }
+
+        /**
+         * Check if an event remains to be read, without reading a block.
+         *
+         * @return true if an event remains
+         */
+        boolean hasNext() {
+            return (block != null && position < block.limit())
+                    || nextBlock < blockCount;
+        }
+
+        /**
+         * Offset of the next event.
+         *
+         * @return event offset
+         * @throws IOException if the next block could not be read
+         */
+        long peekOffset() throws IOException {
+            load();
+            return EventSegment.recordOffset(block, position);
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return event
+         * @throws IOException if the next block could not be read
+         */
+        FileAppendedEventMessage next() throws IOException {
+            load();
+            final FileAppendedEventMessage msg = EventSegment.readRecord(
+                    channelName, streamName, block, position);
+            position += Integer.BYTES + block.getInt(position);
+            return msg;
+        }
+
+        private void load() throws IOException {
+            while (block == null || position >= block.limit()) {
+                if (nextBlock >= blockCount) {
+                    throw new NoSuchElementException();
+                }
+                block = decode(nextBlock++);
+                position = 0;
+                while (position < block.limit() && EventSegment
+                        .recordOffset(block, position) < fromOffset) {
+                    position += Integer.BYTES + block.getInt(position);
+                }
+            }
+        }
+    }
+}
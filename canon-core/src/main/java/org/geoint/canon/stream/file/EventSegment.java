@@ -0,0 +1,640 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.geoint.canon.event.EventMessage;
+
+/**
+ * A single, fixed capacity, append-only file of a {@link FileEventStream}.
+ * <p>
+ * The segment file is pre-allocated to its full capacity and memory-mapped
+ * once, so appends are memory writes and reads are served directly from the
+ * mapping without a read system call per event. The unused tail of the file is
+ * zero-filled, a zero record length marks the end of the segment data.
+ * <p>
+ * Each record is laid out as:
+ * <pre>
+ * int    record length (excluding this field)
+ * int    CRC32 of the record length and the fields following the checksum
+ * long   stream offset
+ * int    metadata length
+ * byte[] metadata (see {@link #encodeMetadata})
+ * byte[] event content
+ * </pre>
+ * <p>
+ * The pages of a mapped file may be written back to storage in any order, so
+ * after a crash a record may be partially written regardless of the order its
+ * fields were written in. On recovery the segment data ends at the first
+ * record whose checksum does not match.
+ * <p>
+ * Only one thread may append to a segment at a time (the owning stream
+ * serializes appends), any number of threads may read concurrently. Data is
+ * visible to readers once {@link #getLimit() published}.
+ *
+ * @author steve_siebert
+ */
+final class EventSegment implements Closeable {
+
+    /**
+     * magic bytes used to uniquely identify a file as a canon segment file
+     */
+    private static final byte[] MAGIC_BYTES
+            = "CANON.SEG".getBytes(StandardCharsets.US_ASCII);
+    private static final byte CURRENT_VERSION = 1;
+    static final int HEADER_LENGTH = MAGIC_BYTES.length + 1;
+    private static final byte[] VALID_HEADER
+            = Arrays.copyOf(MAGIC_BYTES, HEADER_LENGTH);
+
+    static {
+        VALID_HEADER[MAGIC_BYTES.length] = CURRENT_VERSION;
+    }
+    /**
+     * bytes used by each record in addition to metadata and content
+     */
+    static final int RECORD_OVERHEAD = Integer.BYTES * 3 + Long.BYTES;
+    //positions of the record fields relative to the record position
+    private static final int CHECKSUM_POSITION = Integer.BYTES;
+    private static final int OFFSET_POSITION = CHECKSUM_POSITION
+            + Integer.BYTES;
+    private static final int METADATA_LENGTH_POSITION = OFFSET_POSITION
+            + Long.BYTES;
+    static final String SEGMENT_FILE_EXTENSION = ".seg";
+    static final String COMPACTED_FILE_EXTENSION = ".compact";
+
+    private final String channelName;
+    private final String streamName;
+    private final long id;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer writeBuffer; //only used by the appending thread
+    private final int capacity;
+    //end of the published data - readers must not read past this point
+    private volatile int limit;
+    //once sealed, no more records will be appended to the segment
+    private volatile boolean sealed;
+    //first/last record offsets and sequence of the segment, or -1/null if empty
+    private volatile long firstOffset = -1;
+    private volatile long lastOffset = -1;
+    private volatile String lastSequence;
+
+    private EventSegment(String channelName, String streamName, long id,
+            File file, RandomAccessFile raf, MappedByteBuffer mapped) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.id = id;
+        this.file = file;
+        this.raf = raf;
+        this.mapped = mapped;
+        this.capacity = mapped.capacity();
+        this.writeBuffer = mapped.duplicate();
+        this.limit = HEADER_LENGTH;
+    }
+
+    /**
+     * Creates a new, empty, segment file.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param streamDir stream directory
+     * @param id segment id
+     * @param capacity segment file size
+     * @return new segment
+     * @throws IOException if the segment file could not be created
+     */
+    static EventSegment create(String channelName, String streamName,
+            File streamDir, long id, int capacity) throws IOException {
+        File segmentFile = segmentFile(streamDir, id);
+        if (segmentFile.exists()) {
+            throw new IOException(String.format("Segment file '%s' already "
+                    + "exists.", segmentFile.getAbsolutePath()));
+        }
+        RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw");
+        try {
+            raf.setLength(capacity);
+            MappedByteBuffer mapped = raf.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            mapped.put(VALID_HEADER);
+            return new EventSegment(channelName, streamName, id, segmentFile,
+                    raf, mapped);
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens an existing segment file, recovering the published limit and the
+     * last record details by scanning the records of the segment.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param segmentFile segment file
+     * @return existing segment
+     * @throws IOException if the file is not a valid segment file or could not
+     * be mapped
+     */
+    static EventSegment open(String channelName, String streamName,
+            File segmentFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw");
+        try {
+            if (raf.length() < HEADER_LENGTH
+                    || raf.length() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("File '%s' is not a "
+                        + "valid segment file.", segmentFile.getAbsolutePath()));
+            }
+            MappedByteBuffer mapped = raf.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            byte[] header = new byte[HEADER_LENGTH];
+            mapped.get(header);
+            if (!Arrays.equals(VALID_HEADER, header)) {
+                throw new IOException(String.format("Invalid file header, "
+                        + "'%s' is not a segment file.",
+                        segmentFile.getAbsolutePath()));
+            }
+
+            EventSegment segment = new EventSegment(channelName, streamName,
+                    segmentId(segmentFile), segmentFile, raf, mapped);
+            segment.recover();
+            return segment;
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Scan the segment records to find the end of data.
+     * <p>
+     * The data ends at the first record which is not complete; any data
+     * following it is zeroed so it can not be mistaken for records once new
+     * records are appended in its place.
+     */
+    private void recover() {
+        int position = HEADER_LENGTH;
+        while (position + RECORD_OVERHEAD <= capacity) {
+            if (!isValidRecord(position)) {
+                break;
+            }
+            FileAppendedEventMessage msg = readAt(position);
+            if (firstOffset == -1) {
+                firstOffset = msg.getOffset();
+            }
+            lastOffset = msg.getOffset();
+            lastSequence = msg.getSequence();
+            position = nextPosition(position);
+        }
+
+        if (position + Integer.BYTES <= capacity
+                && mapped.getInt(position) != 0) {
+            //torn record
+            for (int p = position; p < capacity; p++) {
+                mapped.put(p, (byte) 0);
+            }
+        }
+        this.writeBuffer.position(position);
+        this.limit = position;
+    }
+
+    /**
+     * Check if the record at the provided position is complete, its lengths
+     * are within the segment and its checksum matches.
+     *
+     * @param position record position
+     * @return true if the record is valid
+     */
+    private boolean isValidRecord(int position) {
+        final int recordLength = mapped.getInt(position);
+        if (recordLength < RECORD_OVERHEAD - Integer.BYTES
+                || (long) position + Integer.BYTES + recordLength > capacity) {
+            return false;
+        }
+        final int metadataLength
+                = mapped.getInt(position + METADATA_LENGTH_POSITION);
+        if (metadataLength < 0 || metadataLength
+                > recordLength - (RECORD_OVERHEAD - Integer.BYTES)) {
+            return false;
+        }
+        return mapped.getInt(position + CHECKSUM_POSITION)
+                == checksum(mapped, position, recordLength);
+    }
+
+    /**
+     * Calculates the checksum of a record, covering the record length and
+     * every field following the checksum.
+     *
+     * @param records buffer of records
+     * @param position record position
+     * @param recordLength record length
+     * @return record checksum
+     */
+    private static int checksum(ByteBuffer records, int position,
+            int recordLength) {
+        final CRC32 crc = new CRC32();
+        crc.update(recordLength >>> 24);
+        crc.update(recordLength >>> 16);
+        crc.update(recordLength >>> 8);
+        crc.update(recordLength);
+        final ByteBuffer fields = records.duplicate();
+        fields.limit(position + Integer.BYTES + recordLength)
+                .position(position + OFFSET_POSITION);
+        crc.update(fields);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a record to the segment.
+     * <p>
+     * Callers must serialize calls to this method. The record is not visible
+     * to readers until {@link #publish()} is called.
+     *
+     * @param offset stream offset of the event
+     * @param sequence event sequence
+     * @param metadata encoded event metadata
+     * @param content event content
+     * @return position of the record within the segment or -1 if the segment
+     * does not have the capacity for the record
+     */
+    int append(long offset, String sequence, byte[] metadata, ByteBuffer content) {
+        final int recordLength = RECORD_OVERHEAD - Integer.BYTES
+                + metadata.length + content.remaining();
+        final int position = writeBuffer.position();
+        if (sealed
+                || (long) position + Integer.BYTES + recordLength > capacity) {
+            return -1;
+        }
+
+        writeBuffer.position(position + OFFSET_POSITION);
+        writeBuffer.putLong(offset);
+        writeBuffer.putInt(metadata.length);
+        writeBuffer.put(metadata);
+        writeBuffer.put(content.duplicate());
+        writeBuffer.putInt(position, recordLength);
+        writeBuffer.putInt(position + CHECKSUM_POSITION,
+                checksum(writeBuffer, position, recordLength));
+
+        if (firstOffset == -1) {
+            firstOffset = offset;
+        }
+        lastOffset = offset;
+        lastSequence = sequence;
+        return position;
+    }
+
+    /**
+     * Make all appended records visible to readers.
+     */
+    void publish() {
+        limit = writeBuffer.position();
+    }
+
+    /**
+     * Determine if a record with the provided length could be appended to a
+     * new, empty, segment of the provided capacity.
+     *
+     * @param capacity segment capacity
+     * @param metadataLength length of the record metadata
+     * @param contentLength length of the record content
+     * @return true if the record fits in an empty segment
+     */
+    static boolean fits(int capacity, int metadataLength, int contentLength) {
+        return (long) HEADER_LENGTH + RECORD_OVERHEAD + metadataLength
+                + contentLength <= capacity;
+    }
+
+    /**
+     * Flush the appended records to the storage device.
+     */
+    void force() {
+        mapped.force();
+    }
+
+    /**
+     * Seal the segment, no more records may be appended.
+     */
+    void seal() {
+        this.sealed = true;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Reads the record at the provided position.
+     *
+     * @param position record position
+     * @return event message
+     */
+    FileAppendedEventMessage readAt(int position) {
+        return readRecord(channelName, streamName, mapped, position);
+    }
+
+    /**
+     * Reads the record at the provided position of a buffer of records, such
+     * as a segment mapping or a decompressed archive block.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param records buffer of records
+     * @param position record position
+     * @return event message
+     */
+    static FileAppendedEventMessage readRecord(String channelName,
+            String streamName, ByteBuffer records, int position) {
+        final int recordLength = records.getInt(position);
+        final long offset = recordOffset(records, position);
+        final int metadataLength
+                = records.getInt(position + METADATA_LENGTH_POSITION);
+        final int metadataStart = position + RECORD_OVERHEAD;
+        final int contentStart = metadataStart + metadataLength;
+        final int recordEnd = position + Integer.BYTES + recordLength;
+
+        ByteBuffer metadata = records.duplicate();
+        metadata.limit(contentStart).position(metadataStart);
+        ByteBuffer content = records.duplicate();
+        content.limit(recordEnd).position(contentStart);
+
+        return FileAppendedEventMessage.fromRecord(channelName, streamName,
+                offset, metadata.slice(), content.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Returns a view of the complete record, including its length, at the
+     * provided position.
+     *
+     * @param position record position
+     * @return record bytes
+     */
+    ByteBuffer recordAt(int position) {
+        ByteBuffer record = mapped.duplicate();
+        record.limit(nextPosition(position)).position(position);
+        return record.slice();
+    }
+
+    /**
+     * Views of every published record of the segment, in offset order.
+     *
+     * @return record views
+     */
+    List<ByteBuffer> records() {
+        final List<ByteBuffer> records = new ArrayList<>();
+        final int end = limit;
+        for (int p = HEADER_LENGTH; p < end; p = nextPosition(p)) {
+            records.add(recordAt(p));
+        }
+        return records;
+    }
+
+    /**
+     * Reads only the stream offset of the record at the provided position.
+     *
+     * @param position record position
+     * @return stream offset
+     */
+    long offsetAt(int position) {
+        return recordOffset(mapped, position);
+    }
+
+    /**
+     * Reads only the stream offset of the record at the provided position of
+     * a buffer of records.
+     *
+     * @param records buffer of records
+     * @param position record position
+     * @return stream offset
+     */
+    static long recordOffset(ByteBuffer records, int position) {
+        return records.getLong(position + OFFSET_POSITION);
+    }
+
+    /**
+     * Writes a compacted copy of this sealed segment, containing only the
+     * records at the provided positions, to a file next to the segment.
+     * <p>
+     * Records are copied as-is, so their offsets and sequences are unchanged.
+     * The compacted file is sized to its records rather than the segment
+     * capacity and is forced to storage before this method returns.
+     *
+     * @param positions positions of the retained records, in ascending order
+     * @param count number of retained records
+     * @return compacted segment file
+     * @throws IOException if the compacted file could not be written
+     */
+    File writeCompacted(int[] positions, int count) throws IOException {
+        final List<ByteBuffer> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(recordAt(positions[i]));
+        }
+        return writeReplacement(records);
+    }
+
+    /**
+     * Writes a replacement of this sealed segment, containing the provided
+     * records, to a file next to the segment.
+     * <p>
+     * The file is sized to its records rather than the segment capacity and
+     * is forced to storage before this method returns.
+     *
+     * @param records complete records, in offset order
+     * @return replacement segment file
+     * @throws IOException if the file could not be written
+     */
+    File writeReplacement(List<ByteBuffer> records) throws IOException {
+        long length = HEADER_LENGTH;
+        for (ByteBuffer r : records) {
+            length += r.remaining();
+        }
+
+        final File replacement = new File(file.getParentFile(),
+                file.getName() + COMPACTED_FILE_EXTENSION);
+        try (RandomAccessFile out = new RandomAccessFile(replacement, "rw")) {
+            out.setLength(length);
+            MappedByteBuffer target = out.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, length);
+            target.put(VALID_HEADER);
+            for (ByteBuffer r : records) {
+                target.put(r.duplicate());
+            }
+            target.force();
+        }
+        return replacement;
+    }
+
+    /**
+     * Atomically replaces the file of this segment with its compacted file and
+     * opens the compacted segment, sealed.
+     * <p>
+     * This segment remains readable through its mapping until closed.
+     *
+     * @param compacted file written by {@link #writeCompacted} or
+     * {@link #writeReplacement}
+     * @return compacted segment
+     * @throws IOException if the file could not be replaced or opened
+     */
+    EventSegment replaceWith(File compacted) throws IOException {
+        Files.move(compacted.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        EventSegment segment = open(channelName, streamName, file);
+        segment.seal();
+        return segment;
+    }
+
+    /**
+     * Returns the position of the record following the record at the provided
+     * position.
+     *
+     * @param position record position
+     * @return next record position
+     */
+    int nextPosition(int position) {
+        return position + Integer.BYTES + mapped.getInt(position);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * End of the data published to readers.
+     *
+     * @return published limit
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isEmpty() {
+        return lastOffset == -1;
+    }
+
+    long getFirstOffset() {
+        return firstOffset;
+    }
+
+    long getLastOffset() {
+        return lastOffset;
+    }
+
+    String getLastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Encodes the event metadata of a record.
+     * <p>
+     * Metadata format:
+     * <pre>
+     * long   append timestamp (millis)
+     * UTF    sequence
+     * UTF    event type
+     * bool   has authorizer
+     * UTF    authorizer (if has authorizer)
+     * int    number of triggers
+     * UTF[]  triggers
+     * int    number of headers
+     * UTF[]  header name/value pairs
+     * </pre>
+     *
+     * @param timestamp append time
+     * @param sequence event sequence
+     * @param msg event message
+     * @return encoded metadata
+     * @throws IOException if the metadata could not be encoded
+     */
+    static byte[] encodeMetadata(long timestamp, String sequence,
+            EventMessage msg) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeLong(timestamp);
+        out.writeUTF(sequence);
+        out.writeUTF(msg.getEventType());
+        final String authorizer = msg.getAuthorizerId();
+        out.writeBoolean(authorizer != null);
+        if (authorizer != null) {
+            out.writeUTF(authorizer);
+        }
+        final String[] triggers = msg.getTriggerIds();
+        if (triggers == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(triggers.length);
+            for (String t : triggers) {
+                out.writeUTF(t);
+            }
+        }
+        final Map<String, String> headers = msg.getHeaders();
+        out.writeInt(headers.size());
+        for (Map.Entry<String, String> h : headers.entrySet()) {
+            out.writeUTF(h.getKey());
+            out.writeUTF(h.getValue());
+        }
+        out.flush();
+        return bout.toByteArray();
+    }
+
+    static File segmentFile(File streamDir, long id) {
+        return new File(streamDir,
+                String.format("%020d%s", id, SEGMENT_FILE_EXTENSION));
+    }
+
+    static boolean isSegmentFile(File file) {
+        return file.isFile()
+                && file.getName().endsWith(SEGMENT_FILE_EXTENSION);
+    }
+
+    private static long segmentId(File segmentFile) throws IOException {
+        final String name = segmentFile.getName();
+        try {
+            return Long.parseLong(name.substring(0,
+                    name.length() - SEGMENT_FILE_EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+            throw new IOException(String.format("Invalid segment file name "
+                    + "'%s'", name), ex);
+        }
+    }
+}
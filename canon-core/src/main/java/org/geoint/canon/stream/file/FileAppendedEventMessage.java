@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.ByteBufferEventPayload;
+import org.geoint.canon.event.ByteBufferInputStream;
+import org.geoint.canon.event.EventPayload;
+import org.geoint.canon.impl.codec.DecodedEventCache;
+
+/**
+ * Appended event message read from an {@link EventSegment}.
+ * <p>
+ * The event content is not copied onto the heap, it remains a read-only view
+ * of the memory-mapped segment.
+ *
+ * @author steve_siebert
+ */
+public class FileAppendedEventMessage implements AppendedEventMessage {
+
+    private final String channelName;
+    private final String streamName;
+    private final long offset;
+    private final long timestamp;
+    private final String sequence;
+    private final String eventType;
+    private final String authorizerId;
+    private final String[] triggerIds;
+    private final Map<String, String> headers;
+    private final ByteBuffer content;
+
+    private FileAppendedEventMessage(String channelName, String streamName,
+            long offset, long timestamp, String sequence, String eventType,
+            String authorizerId, String[] triggerIds,
+            Map<String, String> headers, ByteBuffer content) {
+        this.channelName = channelName;
+        this.streamName = streamName;
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.eventType = eventType;
+        this.authorizerId = authorizerId;
+        this.triggerIds = triggerIds;
+        this.headers = headers;
+        this.content = content;
+    }
+
+    /**
+     * Decode a message from the metadata and content of a segment record.
+     *
+     * @param channelName channel name
+     * @param streamName stream name
+     * @param offset stream offset of the record
+     * @param metadata record metadata
+     * @param content read-only record content
+     * @return appended message
+     */
+    static FileAppendedEventMessage fromRecord(String channelName,
+            String streamName, long offset, ByteBuffer metadata,
+            ByteBuffer content) {
+        try (DataInputStream in
+                = new DataInputStream(new ByteBufferInputStream(metadata))) {
+            final long timestamp = in.readLong();
+            final String sequence = in.readUTF();
+            final String eventType = in.readUTF();
+            final String authorizer = in.readBoolean() ? in.readUTF() : null;
+            final String[] triggers = new String[in.readInt()];
+            for (int i = 0; i < triggers.length; i++) {
+                triggers[i] = in.readUTF();
+            }
+            final int numHeaders = in.readInt();
+            final Map<String, String> headers;
+            if (numHeaders == 0) {
+                headers = Collections.EMPTY_MAP;
+            } else {
+                headers = new HashMap<>(numHeaders);
+                for (int i = 0; i < numHeaders; i++) {
+                    headers.put(in.readUTF(), in.readUTF());
+                }
+            }
+            return new FileAppendedEventMessage(channelName, streamName,
+                    offset, timestamp, sequence, eventType, authorizer, triggers,
+                    Collections.unmodifiableMap(headers), content);
+        } catch (IOException ex) {
+            //the metadata is fully in memory, we only get here if the
+            //segment record is corrupt
+            throw new UncheckedIOException("Corrupt segment record.", ex);
+        }
+    }
+
+    /**
+     * Stream-unique position of the event within its stream.
+     * <p>
+     * Offsets are dense until the stream is compacted.
+     *
+     * @return stream offset
+     */
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Time the event was appended to the stream.
+     *
+     * @return append time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public int getEventLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public String getChannelName() {
+        return channelName;
+    }
+
+    @Override
+    public String getStreamName() {
+        return streamName;
+    }
+
+    @Override
+    public String getAuthorizerId() {
+        return authorizerId;
+    }
+
+    @Override
+    public String[] getTriggerIds() {
+        return triggerIds.clone();
+    }
+
+    @Override
+    public String getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public Optional<String> findHeader(String headerName) {
+        return Optional.ofNullable(headers.get(headerName));
+    }
+
+    @Override
+    public String getHeader(String headerName, Supplier<String> defaultValue) {
+        return findHeader(headerName).orElseGet(defaultValue);
+    }
+
+    @Override
+    public InputStream getEventContent() {
+        return new ByteBufferInputStream(content);
+    }
+
+    /**
+     * Returns a read-only view of the stored event content, without copying.
+     *
+     * @return event payload
+     */
+    @Override
+    public EventPayload getPayload() {
+        return new ByteBufferEventPayload(content);
+    }
+
+    /**
+     * Decodes the event through the shared {@link DecodedEventCache}, so the
+     * event is decoded once for all handlers using the codec.
+     *
+     * @param <E> domain event type
+     * @param codec event codec
+     * @return domain event
+     * @throws IOException if the event content could not be read
+     * @throws EventCodecException if the event could not be decoded
+     */
+    @Override
+    public <E> E getEvent(EventCodec<E> codec)
+            throws IOException, EventCodecException {
+        return DecodedEventCache.getShared().decode(this, codec);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 97 * hash + Objects.hashCode(this.channelName);
+        hash = 97 * hash + Objects.hashCode(this.streamName);
+        hash = 97 * hash + Objects.hashCode(this.sequence);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final FileAppendedEventMessage other = (FileAppendedEventMessage) obj;
+        if (!Objects.equals(this.channelName, other.channelName)) {
+            return false;
+        }
+        if (!Objects.equals(this.streamName, other.streamName)) {
+            return false;
+        }
+        return Objects.equals(this.sequence, other.sequence);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s-%s:%s", channelName, streamName, sequence);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import org.geoint.canon.codec.CodecResolver;
+import org.geoint.canon.spi.stream.EventChannelProvider;
+import org.geoint.canon.spi.stream.UnableToResolveChannelException;
+import org.geoint.canon.stream.ChannelInitializationException;
+import org.geoint.canon.stream.EventChannel;
+
+/**
+ * Provider of durable event channels which store their streams as
+ * memory-mapped segment files on the local file system.
+ * <p>
+ * Channel properties (which may also be set as JVM properties):
+ * <ul>
+ * <li><i>org.geoint.canon.file.dir</i> - base directory containing the channel
+ * directories, named by the URL encoded channel name, defaults to
+ * <i>${user.home}/.canon</i></li>
+ * <li><i>org.geoint.canon.file.segmentSize</i> - size, in bytes, of each
+ * stream segment file, defaults to 64MB</li>
+ * <li><i>org.geoint.canon.file.compactionKey</i> - name of the event header
+ * identifying the key of an event; if set, streams are periodically compacted
+ * to the newest event of each key, disabled by default</li>
+ * <li><i>org.geoint.canon.file.compactionInterval</i> - milliseconds between
+ * stream compactions, defaults to 10 minutes</li>
+ * </ul>
+ *
+ * @author steve_siebert
+ */
+public class FileChannelProvider implements EventChannelProvider {
+
+    public static final String SCHEME = "file";
+    public static final String PROPERTY_DIRECTORY = "org.geoint.canon.file.dir";
+    public static final String PROPERTY_SEGMENT_SIZE
+            = "org.geoint.canon.file.segmentSize";
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final String PROPERTY_COMPACTION_KEY
+            = "org.geoint.canon.file.compactionKey";
+    public static final String PROPERTY_COMPACTION_INTERVAL
+            = "org.geoint.canon.file.compactionInterval";
+    public static final long DEFAULT_COMPACTION_INTERVAL = 10 * 60 * 1000L;
+
+    private final Map<String, EventChannel> channels = new HashMap<>();
+
+    @Override
+    public boolean provides(String scheme,
+            Map<String, String> channelProperties) {
+        return SCHEME.equalsIgnoreCase(scheme);
+    }
+
+    @Override
+    public EventChannel getChannel(String channelName,
+            Map<String, String> channelProperties,
+            CodecResolver codecs)
+            throws UnableToResolveChannelException, ChannelInitializationException {
+        synchronized (channels) {
+            EventChannel channel = channels.get(channelName);
+            if (channel == null) {
+                File baseDir = new File(property(channelProperties,
+                        PROPERTY_DIRECTORY, new File(
+                                System.getProperty("user.home"), ".canon")
+                        .getAbsolutePath()));
+                channel = new FileEventChannel(channelName, channelProperties,
+                        codecs, channelDir(baseDir, channelName),
+                        segmentSize(channelName, channelProperties));
+                channels.put(channelName, channel);
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Channel directory names are encoded as stream directory names, so a
+     * channel name can not escape the base directory.
+     *
+     * @param baseDir base directory of the channels
+     * @param channelName channel name
+     * @return channel directory
+     * @throws ChannelInitializationException if the channel name can not be
+     * used as a directory name
+     */
+    private static File channelDir(File baseDir, String channelName)
+            throws ChannelInitializationException {
+        try {
+            return new File(baseDir,
+                    FileEventChannel.directoryName(channelName));
+        } catch (IllegalArgumentException ex) {
+            throw new ChannelInitializationException(channelName,
+                    String.format("Invalid file channel name '%s'",
+                            channelName), ex);
+        }
+    }
+
+    private static int segmentSize(String channelName,
+            Map<String, String> channelProperties)
+            throws ChannelInitializationException {
+        final String size = property(channelProperties, PROPERTY_SEGMENT_SIZE,
+                String.valueOf(DEFAULT_SEGMENT_SIZE));
+        try {
+            final int segmentSize = Integer.parseInt(size);
+            if (segmentSize <= 0) {
+                throw new NumberFormatException("Segment size must be "
+                        + "positive.");
+            }
+            return segmentSize;
+        } catch (NumberFormatException ex) {
+            throw new ChannelInitializationException(channelName,
+                    String.format("Invalid segment size '%s' for channel '%s'",
+                            size, channelName), ex);
+        }
+    }
+
+    /**
+     * Returns the channel property, falling back to the JVM property of the
+     * same name and then the default value.
+     *
+     * @param channelProperties channel properties
+     * @param name property name
+     * @param defaultValue value if property is not set
+     * @return property value
+     */
+    static String property(Map<String, String> channelProperties, String name,
+            String defaultValue) {
+        final String value = channelProperties.get(name);
+        if (value != null && !value.isEmpty()) {
+            return value;
+        }
+        return System.getProperty(name, defaultValue);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.codec.CodecResolver;
+import org.geoint.canon.impl.stream.AbstractEventChannel;
+import org.geoint.canon.stream.ChannelInitializationException;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.StreamAlreadyExistsException;
+import org.geoint.canon.stream.StreamAppendException;
+import org.geoint.canon.stream.StreamInitializationException;
+import org.geoint.canon.stream.event.ChannelCreated;
+import org.geoint.canon.stream.event.StreamCreated;
+
+/**
+ * Channel which durably stores each of its streams in a stream directory
+ * within the channel directory.
+ *
+ * @author steve_siebert
+ */
+public class FileEventChannel extends AbstractEventChannel {
+
+    private final File channelDir;
+    private final int segmentCapacity;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(FileEventChannel.class.getName());
+
+    /**
+     * Opens, or creates, a file channel.
+     *
+     * @param name channel name
+     * @param channelProperties properties
+     * @param codecs codecs
+     * @param channelDir channel directory
+     * @param segmentCapacity size of stream segment files
+     * @throws ChannelInitializationException thrown if the channel could not be
+     * initialized
+     */
+    public FileEventChannel(String name,
+            Map<String, String> channelProperties,
+            CodecResolver codecs, File channelDir, int segmentCapacity)
+            throws ChannelInitializationException {
+        super(name, channelProperties, codecs);
+        this.channelDir = channelDir;
+        this.segmentCapacity = segmentCapacity;
+
+        final boolean newChannel = !channelDir.exists();
+        if (newChannel && !channelDir.mkdirs()) {
+            throw new ChannelInitializationException(name, String.format(
+                    "Unable to create channel directory '%s'",
+                    channelDir.getAbsolutePath()));
+        }
+
+        try {
+            //open existing streams
+            for (File streamDir : channelDir.listFiles(File::isDirectory)) {
+                final String streamName = streamName(streamDir);
+                final FileEventStream stream = new FileEventStream(this,
+                        streamName, this.codecs, streamDir, segmentCapacity);
+                if (streams.register(stream).isPresent()) {
+                    //stream names are case-insensitive within a channel
+                    LOGGER.log(Level.WARNING, String.format("Stream '%s' of "
+                            + "file channel '%s' conflicts with a stream of "
+                            + "the same name, ignoring stream directory '%s'",
+                            streamName, name, streamDir.getAbsolutePath()));
+                    stream.close();
+                }
+            }
+
+            if (!streams.contains(CHANNEL_ADMIN_STREAM_NAME)) {
+                FileEventStream adminStream = new FileEventStream(this,
+                        CHANNEL_ADMIN_STREAM_NAME, codecs,
+                        streamDir(CHANNEL_ADMIN_STREAM_NAME), segmentCapacity);
+                streams.register(adminStream);
+
+                //publish channel and admin stream creation events
+                EventAppender appender = adminStream.newAppender();
+                appender.create(ChannelCreated.class.getName())
+                        .event(new ChannelCreated(name));
+                appender.create(StreamCreated.class.getName())
+                        .event(new StreamCreated(name, CHANNEL_ADMIN_STREAM_NAME));
+                appender.append();
+            }
+        } catch (IOException ex) {
+            closeStreams();
+            throw new ChannelInitializationException(name, String.format(
+                    "Channel '%s' could not be initialized, unable to open "
+                    + "channel streams.", name), ex);
+        } catch (StreamAppendException ex) {
+            closeStreams();
+            throw new ChannelInitializationException(name, String.format(
+                    "Channel '%s' could not be initialized, unable to write to "
+                    + "channel admin stream.", name), ex);
+        }
+    }
+
+    @Override
+    protected EventStream createStream(String streamName, CodecResolver codecs)
+            throws StreamInitializationException {
+        synchronized (streams) {
+            if (streams.contains(streamName)) {
+                throw new StreamAlreadyExistsException(streamName,
+                        String.format("Stream '%s' already exists on file "
+                                + "channel '%s'",
+                                streamName, this.getChannelName()));
+            }
+            try {
+                FileEventStream s = new FileEventStream(this, streamName,
+                        this.codecs, streamDir(streamName), segmentCapacity);
+                streams.register(s);
+                return s;
+            } catch (IllegalArgumentException ex) {
+                throw new StreamInitializationException(streamName,
+                        String.format("Invalid stream name '%s' on file "
+                                + "channel '%s'", streamName, getChannelName()),
+                        ex);
+            } catch (IOException ex) {
+                throw new StreamInitializationException(streamName,
+                        String.format("Unable to create stream '%s' on file "
+                                + "channel '%s'", streamName, getChannelName()),
+                        ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeStreams();
+    }
+
+    private void closeStreams() {
+        synchronized (streams) {
+            streams.streams().forEach((s) -> {
+                        try {
+                            s.close();
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE,
+                                    String.format("Stream '%s-%s' did not "
+                                            + "close gracefully.",
+                                            getChannelName(), s.getName()), ex);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Stream directory names are the URL encoded stream name, so any stream
+     * name can safely be used as a directory name.
+     *
+     * @param streamName stream name
+     * @return stream directory
+     */
+    private File streamDir(String streamName) {
+        return new File(channelDir, directoryName(streamName));
+    }
+
+    /**
+     * Encodes a channel or stream name as a directory name, URL encoding the
+     * name so any name can safely be used as a single path element.
+     *
+     * @param name channel or stream name
+     * @return directory name
+     * @throws IllegalArgumentException if the name does not encode to a
+     * directory name of its own, such as "." and ".."
+     */
+    static String directoryName(String name) {
+        final String encoded;
+        try {
+            encoded = URLEncoder.encode(name, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException(ex);
+        }
+        if (encoded.isEmpty() || encoded.equals(".") || encoded.equals("..")) {
+            throw new IllegalArgumentException(String.format("Name '%s' can "
+                    + "not be used as a directory name.", name));
+        }
+        return encoded;
+    }
+
+    private static String streamName(File streamDir) {
+        try {
+            return URLDecoder.decode(streamDir.getName(),
+                    StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException(ex);
+        }
+    }
+}
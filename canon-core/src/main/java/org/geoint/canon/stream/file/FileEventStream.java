@@ -0,0 +1,1348 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.codec.CodecResolver;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.impl.codec.BufferedEventMessage;
+import org.geoint.canon.impl.codec.EventBuffer;
+import org.geoint.canon.impl.stream.AbstractEventChannel;
+import org.geoint.canon.impl.stream.FileSnapshotStore;
+import org.geoint.canon.impl.stream.GroupCommitter;
+import org.geoint.canon.impl.stream.LocalEventStream;
+import org.geoint.canon.impl.stream.MemoryEventAppender;
+import org.geoint.canon.impl.stream.SnapshotStore;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.StreamAppendException;
+import org.geoint.canon.stream.StreamReadException;
+import org.geoint.canon.stream.event.EventAppended;
+import org.geoint.canon.stream.event.StreamArchived;
+import org.geoint.canon.stream.event.StreamCompacted;
+
+/**
+ * Durable event stream which appends events to rolling, memory-mapped,
+ * segment files.
+ * <p>
+ * Events are stored in the stream directory as a sequence of fixed capacity
+ * {@link EventSegment segments}. When the active segment does not have the
+ * capacity for the next event it is sealed and a new segment is created.
+ * Readers are served directly from the segment mappings, event content is
+ * never copied onto the heap by the stream.
+ * <p>
+ * Concurrent appends are merged by a {@link GroupCommitter} so that many
+ * producers share a single segment write and flush; the flush policy is
+ * configured with the channel properties described there.
+ * <p>
+ * Readers are repositioned using a {@link FileSequenceIndex}, rather than
+ * scanning the stream.
+ * <p>
+ * Streams of state-style events may opt in to {@link #compact(String)
+ * compaction} by setting the
+ * {@link FileChannelProvider#PROPERTY_COMPACTION_KEY compaction key} channel
+ * property: sealed segments are then periodically rewritten in the background
+ * retaining only the newest event of each key.
+ * <p>
+ * Once {@link #enableArchive archiving} is enabled, the older events of
+ * sealed segments are moved to compressed {@link ArchiveSegment archive
+ * segments} in the archive directory, keeping the stream directory small.
+ * Readers merge the archived and retained events of a segment, so the archive
+ * is transparent to readers.
+ *
+ * @author steve_siebert
+ */
+public class FileEventStream extends LocalEventStream {
+
+    private final File streamDir;
+    private final int segmentCapacity;
+    //segments ordered by id, the last segment is the active segment
+    private final List<EventSegment> segments = new CopyOnWriteArrayList<>();
+    //first offset of each leading sealed segment, including its archived
+    //events, searched to position readers by offset
+    private volatile long[] firstOffsets = new long[0];
+    //guards the active segment, offset assignment, and unsynced segments
+    private final Object appendLock = new Object();
+    private long nextOffset;
+    //offset after the last event visible to readers
+    private volatile long publishedOffset;
+    //segments written to since the last flush
+    private final Set<EventSegment> unsynced = new LinkedHashSet<>();
+    private final GroupCommitter<EncodedEvent> committer;
+    private final FileSequenceIndex index;
+    private volatile String currentSequence;
+    //held to swap compacted segments, excluding reader repositioning
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    //serializes compaction, archiving and archive restores
+    private final Object compactionMonitor = new Object();
+    private final ScheduledFuture<?> compaction;
+    //archived events of sealed segments, by segment id
+    private final Map<Long, ArchiveSegment> archives = new ConcurrentHashMap<>();
+    //archive directory of the stream, null if the stream has no archive
+    private volatile File archiveDir;
+    //null if not archiving
+    private volatile ArchivePolicy archivePolicy;
+    private ScheduledFuture<?> archiving; //guarded by compactionMonitor
+
+    //handler snapshots are stored in this sub-directory of the stream
+    private static final String SNAPSHOT_DIR_NAME = "snapshots";
+    //file of the stream directory containing the archive directory path
+    private static final String ARCHIVE_LOCATION_FILE_NAME = "archive";
+    //minimum fraction of a segment superseded for it to be compacted
+    private static final double MIN_COMPACTION_RATIO = 0.25;
+    //maximum delay between archive runs
+    private static final long MAX_ARCHIVE_INTERVAL
+            = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Logger LOGGER
+            = Logger.getLogger(FileEventStream.class.getName());
+
+    /**
+     * Opens, or creates, a file event stream in the provided stream directory.
+     *
+     * @param channel channel of the stream
+     * @param streamName stream name
+     * @param codecs codecs
+     * @param streamDir directory containing the stream segment files
+     * @param segmentCapacity size of each segment file
+     * @throws IOException thrown if the stream segments could not be opened
+     */
+    public FileEventStream(AbstractEventChannel channel, String streamName,
+            CodecResolver codecs, File streamDir, int segmentCapacity)
+            throws IOException {
+        super(channel, streamName, codecs);
+        this.streamDir = streamDir;
+        this.segmentCapacity = segmentCapacity;
+        this.index = new FileSequenceIndex(streamName);
+
+        if (!streamDir.exists() && !streamDir.mkdirs()) {
+            throw new IOException(String.format("Unable to create stream "
+                    + "directory '%s'", streamDir.getAbsolutePath()));
+        }
+
+        //remove compacted files of a compaction interrupted by a crash
+        for (File f : streamDir.listFiles((d, n)
+                -> n.endsWith(EventSegment.COMPACTED_FILE_EXTENSION))) {
+            f.delete();
+        }
+
+        File[] segmentFiles = streamDir.listFiles(EventSegment::isSegmentFile);
+        Arrays.sort(segmentFiles); //file names are zero-padded segment ids
+        try {
+            for (File f : segmentFiles) {
+                EventSegment s = EventSegment.open(channel.getChannelName(),
+                        streamName, f);
+                if (!segments.isEmpty()) {
+                    EventSegment previous = segments.get(segments.size() - 1);
+                    previous.seal();
+                    index.open(previous);
+                }
+                segments.add(s);
+                if (!s.isEmpty()) {
+                    nextOffset = s.getLastOffset() + 1;
+                    currentSequence = s.getLastSequence();
+                }
+            }
+
+            publishedOffset = nextOffset;
+            if (segments.isEmpty()) {
+                segments.add(EventSegment.create(channel.getChannelName(),
+                        streamName, streamDir, 0, segmentCapacity));
+            } else {
+                //index the records of the active segment on the heap
+                EventSegment active = segments.get(segments.size() - 1);
+                for (int p = EventSegment.HEADER_LENGTH; p < active.getLimit();
+                        p = active.nextPosition(p)) {
+                    index.put(active.readAt(p).getSequence(),
+                            active.offsetAt(p),
+                            FileSequenceIndex.position(active.getId(), p));
+                }
+            }
+            openArchives();
+            indexFirstOffsets();
+        } catch (IOException ex) {
+            closeSegments();
+            throw ex;
+        }
+
+        this.committer = GroupCommitter.fromProperties(streamName,
+                channel.getChannelProperties(), this::write, this::sync);
+        this.compaction = scheduleCompaction(channel.getChannelProperties());
+    }
+
+    /**
+     * Opens the archives of the sealed segments.
+     * <p>
+     * An archive is only retained if its events were removed from the
+     * segment; archives left by an archive or restore interrupted by a crash
+     * are deleted, the segment still containing every event.
+     *
+     * @throws IOException if an archive could not be opened
+     */
+    private void openArchives() throws IOException {
+        final File location = new File(streamDir, ARCHIVE_LOCATION_FILE_NAME);
+        if (!location.exists()) {
+            return;
+        }
+        archiveDir = new File(new String(Files.readAllBytes(location.toPath()),
+                StandardCharsets.UTF_8).trim());
+        for (EventSegment s : segments) {
+            if (!s.isSealed()) {
+                continue;
+            }
+            final ArchiveSegment archive = ArchiveSegment.open(
+                    channel.getChannelName(), streamName, archiveDir,
+                    s.getId());
+            if (archive == null) {
+                //incomplete archive files, if any
+                ArchiveSegment.delete(archiveDir, s.getId());
+            } else if (containsOffset(s, archive.getFirstOffset())) {
+                archive.delete();
+            } else {
+                archives.put(s.getId(), archive);
+            }
+        }
+    }
+
+    @Override
+    public EventReader newReader() {
+        return new FileEventReader();
+    }
+
+    @Override
+    public EventAppender newAppender() {
+        return new MemoryEventAppender(channel.getChannelName(),
+                streamName,
+                streamCodecs,
+                (e) -> {
+                    //encode on the producer thread so only the segment
+                    //writes are serialized
+                    final long timestamp = System.currentTimeMillis();
+                    final List<EncodedEvent> encoded = new ArrayList<>(e.size());
+                    final String[] sequences = channel.generateEventIds(e);
+                    long bytes = 0;
+                    for (int i = 0; i < sequences.length; i++) {
+                        EncodedEvent ee = encode(timestamp, sequences[i],
+                                e.get(i));
+                        bytes += ee.length();
+                        encoded.add(ee);
+                    }
+
+                    return new EventAppended(streamName,
+                            committer.commit(encoded, bytes));
+                });
+    }
+
+    @Override
+    public String getCurrentSequence() {
+        return currentSequence;
+    }
+
+    /**
+     * Compacts the sealed segments of the stream, removing events superseded
+     * by a newer event with the same key header value.
+     * <p>
+     * Events without the key header are never removed, nor are the events of
+     * the active segment. A segment is only rewritten if at least a quarter of
+     * its data is superseded. Retained events keep their sequence and offset;
+     * readers positioned within a compacted segment continue from the next
+     * retained event. If any segment was compacted a {@link StreamCompacted}
+     * event is appended to the channel admin stream.
+     *
+     * @param keyHeader name of the header identifying the key of an event
+     * @return compaction details, empty if no segment was compacted
+     * @throws IOException if a segment could not be compacted, segments
+     * compacted before the failure remain compacted
+     */
+    public Optional<StreamCompacted> compact(String keyHeader)
+            throws IOException {
+        synchronized (compactionMonitor) {
+            final List<EventSegment> current = new ArrayList<>(segments);
+
+            //offset of the newest event of each key published so far
+            final Map<String, Long> newest = new HashMap<>();
+            for (EventSegment segment : current) {
+                final int limit = segment.getLimit();
+                for (int p = EventSegment.HEADER_LENGTH; p < limit;
+                        p = segment.nextPosition(p)) {
+                    final FileAppendedEventMessage msg = segment.readAt(p);
+                    msg.findHeader(keyHeader)
+                            .ifPresent((k) -> newest.put(k, msg.getOffset()));
+                }
+            }
+
+            long eventsRemoved = 0;
+            long bytesReclaimed = 0;
+            String throughSequence = null;
+            for (EventSegment segment : current) {
+                //segments indexed on the heap are too recent to compact
+                if (!segment.isSealed() || !index.isPersisted(segment.getId())) {
+                    continue;
+                }
+
+                final int limit = segment.getLimit();
+                int[] retained = new int[64];
+                int count = 0;
+                long superseded = 0;
+                long supersededBytes = 0;
+                for (int p = EventSegment.HEADER_LENGTH; p < limit;
+                        p = segment.nextPosition(p)) {
+                    final FileAppendedEventMessage msg = segment.readAt(p);
+                    final Long latest = msg.findHeader(keyHeader)
+                            .map(newest::get).orElse(null);
+                    if (latest != null && latest != msg.getOffset()) {
+                        superseded++;
+                        supersededBytes += segment.nextPosition(p) - p;
+                    } else {
+                        if (count == retained.length) {
+                            retained = Arrays.copyOf(retained, count * 2);
+                        }
+                        retained[count++] = p;
+                    }
+                }
+                if (superseded == 0 || supersededBytes
+                        < (limit - EventSegment.HEADER_LENGTH)
+                        * MIN_COMPACTION_RATIO) {
+                    continue;
+                }
+
+                replaceSegment(segment, segment.writeCompacted(retained, count),
+                        () -> {
+                        });
+                eventsRemoved += superseded;
+                bytesReclaimed += supersededBytes;
+                throughSequence = segment.getLastSequence();
+            }
+
+            if (throughSequence == null) {
+                return Optional.empty();
+            }
+            final StreamCompacted compacted = new StreamCompacted(
+                    getChannelName(), streamName, keyHeader, throughSequence,
+                    eventsRemoved, bytesReclaimed);
+            LOGGER.log(Level.FINE, compacted::toString);
+            try {
+                channel.appendAdminEvent(StreamCompacted.class.getName(),
+                        compacted);
+            } catch (StreamAppendException ex) {
+                LOGGER.log(Level.WARNING, String.format("Unable to publish "
+                        + "compaction of stream '%s' to the channel admin "
+                        + "stream.", streamName), ex);
+            }
+            return Optional.of(compacted);
+        }
+    }
+
+    /**
+     * Replaces the segment with its compacted, archived, or restored segment.
+     * <p>
+     * The index file of the segment is deleted before the segment file is
+     * replaced, so after a crash the index is rebuilt from the replacement
+     * segment rather than loaded stale.
+     *
+     * @param segment sealed segment
+     * @param compactedFile replacement segment file
+     * @param swap run with the segment swap, while readers are excluded
+     * @throws IOException if the segment could not be replaced
+     */
+    private void replaceSegment(EventSegment segment, File compactedFile,
+            Runnable swap) throws IOException {
+        index.invalidate(segment);
+        final EventSegment compacted = segment.replaceWith(compactedFile);
+        final SegmentIndex compactedIndex;
+        try {
+            compactedIndex = index.build(compacted);
+        } catch (IOException ex) {
+            //the replaced segment remains readable through its mapping
+            compacted.close();
+            throw ex;
+        }
+
+        compactionLock.writeLock().lock();
+        try {
+            //readers observe the replaced segment after the swap
+            swap.run();
+            segments.set(segmentIndex(segment.getId()), compacted);
+            index.replace(compactedIndex);
+            synchronized (appendLock) {
+                indexFirstOffsets();
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+        //events already read remain valid, the mapping outlives the file
+        segment.close();
+    }
+
+    /**
+     * Schedules background compaction if a compaction key is configured.
+     *
+     * @param props channel properties
+     * @return scheduled compaction or null
+     */
+    private ScheduledFuture<?> scheduleCompaction(Map<String, String> props) {
+        final String keyHeader = FileChannelProvider.property(props,
+                FileChannelProvider.PROPERTY_COMPACTION_KEY, null);
+        if (keyHeader == null
+                || streamName.equals(
+                        AbstractEventChannel.CHANNEL_ADMIN_STREAM_NAME)) {
+            return null;
+        }
+
+        long interval = FileChannelProvider.DEFAULT_COMPACTION_INTERVAL;
+        final String value = FileChannelProvider.property(props,
+                FileChannelProvider.PROPERTY_COMPACTION_INTERVAL, null);
+        if (value != null) {
+            try {
+                interval = Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                interval = -1;
+            }
+            if (interval <= 0) {
+                LOGGER.log(Level.WARNING, String.format("Invalid value '%s' "
+                        + "for property '%s', using default of %d.", value,
+                        FileChannelProvider.PROPERTY_COMPACTION_INTERVAL,
+                        FileChannelProvider.DEFAULT_COMPACTION_INTERVAL));
+                interval = FileChannelProvider.DEFAULT_COMPACTION_INTERVAL;
+            }
+        }
+
+        return Maintenance.SCHEDULER.scheduleWithFixedDelay(() -> {
+            try {
+                compact(keyHeader);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, String.format("Unable to compact "
+                        + "stream '%s'.", streamName), ex);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Archive segments are written to a sub-directory of the archive
+     * directory named by the channel and stream. A sealed segment is archived
+     * once the age of its last event exceeds the archive age: events matching
+     * the filter are moved to the archive segment and the segment is
+     * rewritten with the remaining events. Each segment is archived once, so
+     * the filter is not applied to events of segments already archived.
+     */
+    @Override
+    public void enableArchive(File archiveDir, boolean compress,
+            Predicate<AppendedEventMessage> archiveFilter, long age,
+            TimeUnit unit) {
+        final File dir = new File(new File(archiveDir,
+                encode(channel.getChannelName())), streamDir.getName());
+        synchronized (compactionMonitor) {
+            if (this.archiveDir != null && !archives.isEmpty()
+                    && !this.archiveDir.getAbsoluteFile()
+                    .equals(dir.getAbsoluteFile())) {
+                throw new IllegalStateException(String.format("Stream '%s' "
+                        + "is archived to '%s', the archive must be deleted "
+                        + "before archiving to '%s'.", streamName,
+                        this.archiveDir.getAbsolutePath(),
+                        dir.getAbsolutePath()));
+            }
+            try {
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException(String.format("Unable to create "
+                            + "archive directory '%s'", dir.getAbsolutePath()));
+                }
+                final File location
+                        = new File(streamDir, ARCHIVE_LOCATION_FILE_NAME);
+                final File tmp = new File(streamDir,
+                        ARCHIVE_LOCATION_FILE_NAME + ".tmp");
+                Files.write(tmp.toPath(), dir.getAbsolutePath()
+                        .getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp.toPath(), location.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(String.format("Unable to "
+                        + "enable archiving of stream '%s'.", streamName), ex);
+            }
+            this.archiveDir = dir;
+
+            stopArchiving();
+            final ArchivePolicy policy = new ArchivePolicy(dir, compress,
+                    archiveFilter, unit.toMillis(age));
+            archivePolicy = policy;
+            final long interval = Math.max(1,
+                    Math.min(policy.age, MAX_ARCHIVE_INTERVAL));
+            archiving = Maintenance.SCHEDULER.scheduleWithFixedDelay(() -> {
+                try {
+                    archive();
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, String.format("Unable to "
+                            + "archive stream '%s'.", streamName), ex);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public boolean isArchiving() {
+        return archivePolicy != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the archived events could not be
+     * restored, segments restored before the failure remain restored
+     */
+    @Override
+    public void deleteArchive() {
+        synchronized (compactionMonitor) {
+            stopArchiving();
+            if (archiveDir == null) {
+                return;
+            }
+            try {
+                for (ArchiveSegment archive
+                        : new ArrayList<>(archives.values())) {
+                    restore(archive);
+                }
+                Files.deleteIfExists(new File(streamDir,
+                        ARCHIVE_LOCATION_FILE_NAME).toPath());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(String.format("Unable to "
+                        + "restore the archive of stream '%s'.", streamName),
+                        ex);
+            }
+            //only deleted if no other files were placed in it
+            archiveDir.delete();
+            archiveDir = null;
+        }
+    }
+
+    /**
+     * Archives the events of the sealed segments older than the archive age
+     * matching the archive filter.
+     * <p>
+     * Archiving is run periodically in the background while the stream is
+     * {@link #isArchiving() archiving}. If any event was archived a
+     * {@link StreamArchived} event is appended to the channel admin stream.
+     *
+     * @return archive details, empty if the stream is not archiving or no
+     * event was archived
+     * @throws IOException if a segment could not be archived, segments
+     * archived before the failure remain archived
+     */
+    public Optional<StreamArchived> archive() throws IOException {
+        synchronized (compactionMonitor) {
+            final ArchivePolicy policy = archivePolicy;
+            if (policy == null) {
+                return Optional.empty();
+            }
+            final long before = System.currentTimeMillis() - policy.age;
+
+            long eventsArchived = 0;
+            long bytesArchived = 0;
+            long archiveBytes = 0;
+            String throughSequence = null;
+            for (EventSegment segment : new ArrayList<>(segments)) {
+                //segments indexed on the heap are too recent to archive
+                if (!segment.isSealed() || !index.isPersisted(segment.getId())) {
+                    continue;
+                }
+                if (segment.isEmpty() || archives.containsKey(segment.getId())
+                        || policy.archived.contains(segment.getId())) {
+                    continue;
+                }
+                if (segment.readAt(lastPosition(segment)).getTimestamp()
+                        >= before) {
+                    //following segments were appended later
+                    break;
+                }
+                policy.archived.add(segment.getId());
+
+                final List<ByteBuffer> archived = new ArrayList<>();
+                final List<ByteBuffer> retained = new ArrayList<>();
+                long bytes = 0;
+                final int limit = segment.getLimit();
+                for (int p = EventSegment.HEADER_LENGTH; p < limit;
+                        p = segment.nextPosition(p)) {
+                    final ByteBuffer record = segment.recordAt(p);
+                    if (policy.filter.test(segment.readAt(p))) {
+                        archived.add(record);
+                        bytes += record.remaining();
+                    } else {
+                        retained.add(record);
+                    }
+                }
+                if (archived.isEmpty()) {
+                    continue;
+                }
+
+                final ArchiveSegment archive = ArchiveSegment.write(
+                        channel.getChannelName(), streamName, policy.dir,
+                        segment.getId(), archived, policy.compress);
+                File replacement = null;
+                try {
+                    replacement = segment.writeReplacement(retained);
+                    replaceSegment(segment, replacement,
+                            () -> archives.put(segment.getId(), archive));
+                } catch (IOException | RuntimeException ex) {
+                    if (replacement == null || replacement.exists()) {
+                        //the segment was not replaced and still contains
+                        //every event
+                        if (replacement != null) {
+                            replacement.delete();
+                        }
+                        archive.delete();
+                    }
+                    throw ex;
+                }
+                eventsArchived += archived.size();
+                bytesArchived += bytes;
+                archiveBytes += archive.length();
+                throughSequence = segment.getLastSequence();
+            }
+
+            if (throughSequence == null) {
+                return Optional.empty();
+            }
+            final StreamArchived event = new StreamArchived(getChannelName(),
+                    streamName, throughSequence, eventsArchived, bytesArchived,
+                    archiveBytes);
+            LOGGER.log(Level.FINE, event::toString);
+            try {
+                channel.appendAdminEvent(StreamArchived.class.getName(),
+                        event);
+            } catch (StreamAppendException ex) {
+                LOGGER.log(Level.WARNING, String.format("Unable to publish "
+                        + "archiving of stream '%s' to the channel admin "
+                        + "stream.", streamName), ex);
+            }
+            return Optional.of(event);
+        }
+    }
+
+    /**
+     * Moves the archived events of a segment back to the segment and deletes
+     * the archive segment.
+     * <p>
+     * Must be called while holding the compaction monitor.
+     *
+     * @param archive archive segment
+     * @throws IOException if the segment could not be restored
+     */
+    private void restore(ArchiveSegment archive) throws IOException {
+        final EventSegment segment
+                = segments.get(segmentIndex(archive.getSegmentId()));
+
+        //merge the retained and archived records by offset
+        final List<ByteBuffer> retained = segment.records();
+        final List<ByteBuffer> archived = archive.records();
+        final List<ByteBuffer> merged
+                = new ArrayList<>(retained.size() + archived.size());
+        int r = 0;
+        int a = 0;
+        while (r < retained.size() || a < archived.size()) {
+            if (a == archived.size() || (r < retained.size()
+                    && recordOffset(retained.get(r))
+                    < recordOffset(archived.get(a)))) {
+                merged.add(retained.get(r++));
+            } else {
+                merged.add(archived.get(a++));
+            }
+        }
+
+        replaceSegment(segment, segment.writeReplacement(merged),
+                () -> archives.remove(archive.getSegmentId()));
+        archive.delete();
+    }
+
+    /**
+     * Cancels background archiving.
+     * <p>
+     * Must be called while holding the compaction monitor.
+     */
+    private void stopArchiving() {
+        archivePolicy = null;
+        if (archiving != null) {
+            archiving.cancel(false);
+            archiving = null;
+        }
+    }
+
+    /**
+     * Rebuilds the first offsets of the sealed segments.
+     * <p>
+     * Called whenever a segment is sealed or replaced. A segment without
+     * events is given the first offset of the following segment, so the
+     * offsets are ordered and a search finds the last segment which may
+     * contain an offset.
+     * <p>
+     * Must be called while holding the append lock.
+     */
+    private void indexFirstOffsets() {
+        final List<EventSegment> current = segments;
+        int sealed = current.size();
+        while (sealed > 0 && !current.get(sealed - 1).isSealed()) {
+            sealed--;
+        }
+        final long[] offsets = new long[sealed];
+        long following = Long.MAX_VALUE;
+        for (int i = sealed - 1; i >= 0; i--) {
+            final EventSegment s = current.get(i);
+            final ArchiveSegment archive = archives.get(s.getId());
+            long first = s.isEmpty() ? following : s.getFirstOffset();
+            if (archive != null) {
+                first = Math.min(first, archive.getFirstOffset());
+            }
+            offsets[i] = first;
+            following = first;
+        }
+        firstOffsets = offsets;
+    }
+
+    private int segmentIndex(long segmentId) {
+        return (int) (segmentId - segments.get(0).getId());
+    }
+
+    private static long recordOffset(ByteBuffer record) {
+        return EventSegment.recordOffset(record, record.position());
+    }
+
+    private static int lastPosition(EventSegment segment) {
+        int last = EventSegment.HEADER_LENGTH;
+        for (int p = last; p < segment.getLimit(); p = segment.nextPosition(p)) {
+            last = p;
+        }
+        return last;
+    }
+
+    private static boolean containsOffset(EventSegment segment, long offset) {
+        for (int p = EventSegment.HEADER_LENGTH; p < segment.getLimit();
+                p = segment.nextPosition(p)) {
+            if (segment.offsetAt(p) == offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String encode(String name) {
+        try {
+            return URLEncoder.encode(name, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException ex) {
+            //UTF-8 is always supported
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    protected SnapshotStore createSnapshotStore() {
+        return new FileSnapshotStore(new File(streamDir, SNAPSHOT_DIR_NAME));
+    }
+
+    /**
+     * Encode the event into a segment record.
+     *
+     * @param timestamp append timestamp
+     * @param sequence event sequence
+     * @param msg event message
+     * @return encoded event
+     * @throws StreamAppendException if the event could not be encoded or is
+     * too large for a segment
+     */
+    private EncodedEvent encode(long timestamp, String sequence,
+            EventMessage msg) throws StreamAppendException {
+        final EventBuffer content = readContent(msg);
+        //content read from the message stream belongs to this append, buffers
+        //encoded by an appender are released by the appender once appended
+        final boolean owned = !(msg instanceof BufferedEventMessage)
+                || ((BufferedEventMessage) msg).getContentBuffer() != content;
+        final byte[] metadata;
+        try {
+            metadata = EventSegment.encodeMetadata(timestamp, sequence, msg);
+        } catch (IOException ex) {
+            throw new StreamAppendException(streamName,
+                    "Unable to encode event metadata.", ex);
+        }
+        if (!EventSegment.fits(segmentCapacity, metadata.length,
+                content.size())) {
+            throw new StreamAppendException(streamName,
+                    String.format("Event of %d bytes exceeds the stream "
+                            + "segment capacity of %d bytes.",
+                            content.size(), segmentCapacity));
+        }
+        return new EncodedEvent(sequence, metadata, content, owned);
+    }
+
+    /**
+     * Writes the encoded events to the active segment, rolling to a new
+     * segment as needed, and publishes them to readers.
+     * <p>
+     * Flushing the segments is the responsibility of the group committer.
+     *
+     * @param events encoded events
+     * @return appended events
+     * @throws StreamAppendException if a new segment could not be created
+     */
+    private AppendedEventMessage[] write(List<EncodedEvent> events)
+            throws StreamAppendException {
+        final AppendedEventMessage[] appended
+                = new AppendedEventMessage[events.size()];
+        final int[] positions = new int[appended.length];
+        int written = 0;
+        StreamAppendException failure = null;
+
+        synchronized (appendLock) {
+            EventSegment active = segments.get(segments.size() - 1);
+            //first event of the batch in the active segment
+            int activeStart = 0;
+            try {
+                for (; written < appended.length; written++) {
+                    final EncodedEvent e = events.get(written);
+                    int position = active.append(nextOffset, e.sequence,
+                            e.metadata, e.content);
+                    if (position == -1) {
+                        final EventSegment full = active;
+                        unsynced.add(full);
+                        active = roll(full);
+                        //index the batch records of the sealed segment on the
+                        //heap until its index file is written
+                        indexRecords(full, appended, positions, activeStart,
+                                written);
+                        index.sealed(full);
+                        activeStart = written;
+                        position = active.append(nextOffset, e.sequence,
+                                e.metadata, e.content);
+                    }
+                    nextOffset++;
+                    positions[written] = position;
+                    appended[written] = active.readAt(position);
+                }
+            } catch (StreamAppendException ex) {
+                //the records written before the failure are published, they
+                //would otherwise be published by the next write
+                failure = ex;
+            }
+            unsynced.add(active);
+            active.publish();
+            indexRecords(active, appended, positions, activeStart, written);
+            if (written > 0) {
+                currentSequence = appended[written - 1].getSequence();
+            }
+            publishedOffset = nextOffset;
+        }
+        //content was copied to the segments, buffers read by this append may
+        //be reused; appender buffers are kept until the append succeeds, so
+        //a failed append can be retried
+        events.stream()
+                .filter((e) -> e.owned)
+                .forEach((e) -> e.buffer.release());
+        signalAppended();
+        if (failure != null) {
+            throw new GroupCommitter.PartialWriteException(streamName,
+                    Arrays.copyOf(appended, written), failure);
+        }
+        return appended;
+    }
+
+    /**
+     * Add the published records of a write to the sequence index.
+     *
+     * @param segment segment containing the records
+     * @param appended appended events of the write
+     * @param positions segment positions of the appended events
+     * @param from first record to index, inclusive
+     * @param to last record to index, exclusive
+     */
+    private void indexRecords(EventSegment segment,
+            AppendedEventMessage[] appended, int[] positions, int from,
+            int to) {
+        for (int i = from; i < to; i++) {
+            index.put(appended[i].getSequence(), appended[i].getOffset(),
+                    FileSequenceIndex.position(segment.getId(), positions[i]));
+        }
+    }
+
+    /**
+     * Flushes the segments written since the last flush to the storage
+     * device.
+     */
+    private void sync() {
+        final EventSegment[] dirty;
+        synchronized (appendLock) {
+            dirty = unsynced.toArray(new EventSegment[unsynced.size()]);
+            unsynced.clear();
+        }
+        for (EventSegment s : dirty) {
+            s.force();
+        }
+    }
+
+    /**
+     * Seals the active segment and creates a new active segment.
+     * <p>
+     * Must be called while holding the append lock.
+     *
+     * @param active current active segment
+     * @return new active segment
+     * @throws StreamAppendException if the new segment could not be created
+     */
+    private EventSegment roll(EventSegment active)
+            throws StreamAppendException {
+        try {
+            EventSegment next = EventSegment.create(channel.getChannelName(),
+                    streamName, streamDir, active.getId() + 1,
+                    segmentCapacity);
+            active.publish();
+            active.seal();
+            segments.add(next);
+            indexFirstOffsets();
+            return next;
+        } catch (IOException ex) {
+            throw new StreamAppendException(streamName, "Unable to create new "
+                    + "stream segment.", ex);
+        }
+    }
+
+    /**
+     * Returns the encoded event content, reading it into a pooled buffer if
+     * the event was not encoded into one.
+     *
+     * @param msg event message
+     * @return event content
+     * @throws StreamAppendException if the content could not be read
+     */
+    private EventBuffer readContent(EventMessage msg)
+            throws StreamAppendException {
+        try {
+            return EventBuffer.of(msg);
+        } catch (IOException | IllegalStateException ex) {
+            throw new StreamAppendException(streamName, "Unable to read event "
+                    + "message content.", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (compaction != null) {
+            compaction.cancel(false);
+        }
+        synchronized (compactionMonitor) {
+            stopArchiving();
+        }
+        committer.close();
+        try {
+            index.awaitBuilds();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (compactionMonitor) {
+            synchronized (appendLock) {
+                segments.forEach(EventSegment::force);
+                closeSegments();
+            }
+        }
+    }
+
+    private void closeSegments() {
+        segments.forEach((s) -> {
+            try {
+                s.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, String.format("Segment '%s' did "
+                        + "not close gracefully.",
+                        s.getFile().getAbsolutePath()), ex);
+            }
+        });
+    }
+
+    /**
+     * Lazily started scheduler of the compaction and archiving of all file
+     * streams.
+     */
+    private static final class Maintenance {
+
+        private static final ScheduledExecutorService SCHEDULER
+                = Executors.newSingleThreadScheduledExecutor((r) -> {
+                    Thread t = new Thread(r, "canon-segment-maintenance");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Archiving configuration of the stream.
+     */
+    private static final class ArchivePolicy {
+
+        private final File dir;
+        private final boolean compress;
+        private final Predicate<AppendedEventMessage> filter;
+        private final long age;
+        //ids of segments already archived, guarded by the compaction monitor
+        private final Set<Long> archived = new HashSet<>();
+
+        ArchivePolicy(File dir, boolean compress,
+                Predicate<AppendedEventMessage> filter, long age) {
+            this.dir = dir;
+            this.compress = compress;
+            this.filter = filter;
+            this.age = age;
+        }
+    }
+
+    /**
+     * Event encoded as a segment record, ready to be written.
+     */
+    private static class EncodedEvent {
+
+        private final String sequence;
+        private final byte[] metadata;
+        private final ByteBuffer content;
+        private final EventBuffer buffer;
+        //buffer was read by the stream rather than encoded by an appender
+        private final boolean owned;
+
+        EncodedEvent(String sequence, byte[] metadata, EventBuffer buffer,
+                boolean owned) {
+            this.sequence = sequence;
+            this.metadata = metadata;
+            this.buffer = buffer;
+            this.owned = owned;
+            this.content = buffer.toByteBuffer();
+        }
+
+        int length() {
+            return EventSegment.RECORD_OVERHEAD + metadata.length
+                    + content.remaining();
+        }
+    }
+
+    /**
+     * Reader of a file event stream.
+     * <p>
+     * Reads events directly from the memory-mapped stream segments, merging
+     * the events of the archive segment of a segment by offset. If the segment
+     * being read is replaced by its compacted, archived or restored segment the
+     * reader continues from the first event it has not read.
+     */
+    private class FileEventReader implements EventReader {
+
+        private int segmentIndex = 0;
+        //segment the position refers to, null to reposition on the next read
+        private EventSegment segment;
+        //position of the next record to read in the current segment
+        private int position = EventSegment.HEADER_LENGTH;
+        //archived events of the current segment, null if not archived
+        private ArchiveSegment.Cursor archived;
+        //last read event, null if no events were read
+        private FileAppendedEventMessage current;
+        //offset of the next event to read
+        private long nextReadOffset = 0;
+
+        @Override
+        public boolean hasNext() {
+            if (position < segment().getLimit()
+                    || (archived != null && archived.hasNext())) {
+                return true;
+            }
+            //following segments may be empty once compacted or archived
+            for (int i = segmentIndex; segments.get(i).isSealed()
+                    && i + 1 < segments.size(); i++) {
+                final EventSegment next = segments.get(i + 1);
+                if (next.getLimit() > EventSegment.HEADER_LENGTH
+                        || archives.containsKey(next.getId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long available() {
+            //offsets are not dense once compacted, so this may over-count
+            return Math.max(0, publishedOffset - nextReadOffset);
+        }
+
+        @Override
+        public AppendedEventMessage read() throws StreamReadException {
+            if (current != null) {
+                return current;
+            }
+            //nothing read yet, return the first event of the stream
+            return new FileEventReader().poll()
+                    .orElseThrow(() -> new StreamReadException(
+                            getChannelName(), streamName,
+                            "Stream contains no events."));
+        }
+
+        @Override
+        public Optional<AppendedEventMessage> poll()
+                throws StreamReadException {
+            for (;;) {
+                final EventSegment s = segment();
+                final boolean hot = position < s.getLimit();
+                if (hot || (archived != null && archived.hasNext())) {
+                    try {
+                        if (!hot || (archived != null && archived.hasNext()
+                                && archived.peekOffset() < s.offsetAt(position))) {
+                            current = archived.next();
+                        } else {
+                            current = s.readAt(position);
+                            position = s.nextPosition(position);
+                        }
+                    } catch (IOException ex) {
+                        throw new StreamReadException(getChannelName(),
+                                streamName, "Unable to read archived event.",
+                                ex);
+                    }
+                    nextReadOffset = current.getOffset() + 1;
+                    return Optional.of(current);
+                }
+
+                if (s.isSealed() && segmentIndex + 1 < segments.size()) {
+                    //move to the next segment
+                    segmentIndex++;
+                    segment = null;
+                    continue;
+                }
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Current segment of the reader, repositioning the reader if the
+         * segment was replaced.
+         */
+        private EventSegment segment() {
+            final EventSegment s = segments.get(segmentIndex);
+            if (s != segment) {
+                int p = index.floorPosition(s, nextReadOffset);
+                while (p < s.getLimit() && s.offsetAt(p) < nextReadOffset) {
+                    p = s.nextPosition(p);
+                }
+                segment = s;
+                position = p;
+                archived = archiveCursor(s);
+            }
+            return s;
+        }
+
+        private ArchiveSegment.Cursor archiveCursor(EventSegment s) {
+            final ArchiveSegment archive = archives.get(s.getId());
+            return archive == null ? null : archive.cursor(nextReadOffset);
+        }
+
+        @Override
+        public Optional<AppendedEventMessage> poll(long timeout,
+                TimeUnit unit) throws StreamReadException, InterruptedException {
+            awaitNext(timeout, unit);
+            return poll();
+        }
+
+        @Override
+        public AppendedEventMessage take()
+                throws StreamReadException, InterruptedException {
+            awaitNext(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            return poll().get();
+        }
+
+        @Override
+        public boolean awaitNext(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return awaitAppended(this::hasNext, timeout, unit);
+        }
+
+        @Override
+        public boolean signalsAppends() {
+            return true;
+        }
+
+        @Override
+        public void setPosition(String sequence) throws UnknownEventException {
+            //the index and segments must not be swapped between lookup and
+            //read
+            compactionLock.readLock().lock();
+            try {
+                final OptionalLong indexed = index.find(sequence);
+                if (indexed.isPresent()) {
+                    final int i = segmentIndex(
+                            FileSequenceIndex.segmentId(indexed.getAsLong()));
+                    final int p = FileSequenceIndex.segmentPosition(
+                            indexed.getAsLong());
+                    final EventSegment s = segments.get(i);
+                    this.current = s.readAt(p);
+                    this.nextReadOffset = current.getOffset() + 1;
+                    this.segmentIndex = i;
+                    this.segment = s;
+                    this.position = s.nextPosition(p);
+                    this.archived = archiveCursor(s);
+                    return;
+                }
+
+                for (ArchiveSegment archive : archives.values()) {
+                    final Optional<FileAppendedEventMessage> msg
+                            = archive.find(sequence);
+                    if (msg.isPresent()) {
+                        this.current = msg.get();
+                        this.nextReadOffset = current.getOffset() + 1;
+                        this.segmentIndex
+                                = segmentIndex(archive.getSegmentId());
+                        this.segment = null;
+                        return;
+                    }
+                }
+                throw new UnknownEventException(sequence);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(String.format("Unable to read "
+                        + "the archive of stream '%s'.", streamName), ex);
+            } finally {
+                compactionLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void seek(long offset)
+                throws StreamReadException, UnknownEventException {
+            final int previousIndex = segmentIndex;
+            final EventSegment previousSegment = segment;
+            final int previousPosition = position;
+            final ArchiveSegment.Cursor previousArchived = archived;
+            final FileAppendedEventMessage previous = current;
+            final long previousNextReadOffset = nextReadOffset;
+
+            boolean found = false;
+            compactionLock.readLock().lock();
+            try {
+                final int i = slotOf(offset);
+                if (i != -1) {
+                    //reposition within the segment, reading the event at the
+                    //offset if it was not compacted
+                    this.segmentIndex = i;
+                    this.segment = null;
+                    this.nextReadOffset = offset;
+                    found = poll().filter((e)
+                            -> ((FileAppendedEventMessage) e).getOffset()
+                            == offset).isPresent();
+                }
+            } finally {
+                if (!found) {
+                    this.segmentIndex = previousIndex;
+                    this.segment = previousSegment;
+                    this.position = previousPosition;
+                    this.archived = previousArchived;
+                    this.current = previous;
+                    this.nextReadOffset = previousNextReadOffset;
+                }
+                compactionLock.readLock().unlock();
+            }
+            if (!found) {
+                throw new UnknownEventException(String.valueOf(offset));
+            }
+        }
+
+        /**
+         * Index of the last segment containing events at or before the
+         * offset, including its archived events.
+         *
+         * @return segment index or -1 if the stream has no such segment
+         */
+        private int slotOf(long offset) {
+            final long[] sealed = firstOffsets;
+            //segments not yet in the first offsets, the active segment and
+            //one sealed by a concurrent roll
+            for (int i = segments.size() - 1; i >= sealed.length; i--) {
+                final EventSegment s = segments.get(i);
+                if (!s.isEmpty() && s.getFirstOffset() <= offset) {
+                    return i;
+                }
+            }
+            //last sealed segment with a first offset at or before the offset
+            int low = 0;
+            int high = sealed.length - 1;
+            int slot = -1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (sealed[mid] <= offset) {
+                    slot = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return slot;
+        }
+
+        @Override
+        public long position() {
+            return current == null ? -1 : current.getOffset();
+        }
+
+        @Override
+        public String getPosition() {
+            try {
+                return read().getSequence();
+            } catch (StreamReadException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getChannelName() {
+            return channel.getChannelName();
+        }
+
+        @Override
+        public String getStreamName() {
+            return streamName;
+        }
+
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.canon.impl.stream.MemorySequenceIndex;
+import org.geoint.canon.impl.stream.SequenceIndex;
+
+/**
+ * Sequence index of a file event stream.
+ * <p>
+ * Sequences of recently appended events, those in segments which do not yet
+ * have a persisted {@link SegmentIndex}, are held in a heap hash per segment.
+ * When a segment is sealed its index file is written in the background, after
+ * which the heap hash of that segment is discarded. Lookups check the heap
+ * hashes and then the persisted segment indexes, newest first, since readers
+ * are most often repositioned near the tail of the stream. Each persisted
+ * index is first checked with its bloom filter, so only the segments which
+ * likely contain the sequence are searched; a lookup costs a few filter
+ * probes per segment and a single binary search.
+ * <p>
+ * Like the persisted indexes, the heap index of a segment keeps a sparse
+ * offset table, used to position readers by offset within the segment.
+ * <p>
+ * Positions are encoded as the segment id in the high 32 bits and the record
+ * position within the segment in the low 32 bits.
+ *
+ * @author steve_siebert
+ */
+final class FileSequenceIndex implements SequenceIndex {
+
+    private final String streamName;
+    //heap index of each segment not yet covered by a persisted index
+    private final ConcurrentNavigableMap<Long, MemorySequenceIndex> recent
+            = new ConcurrentSkipListMap<>();
+    //offset table of each segment not yet covered by a persisted index
+    private final ConcurrentNavigableMap<Long, OffsetTable> recentOffsets
+            = new ConcurrentSkipListMap<>();
+    //persisted indexes, ordered by segment id
+    private final List<SegmentIndex> persisted = new CopyOnWriteArrayList<>();
+    private volatile Future<?> lastBuild;
+
+    //one thread builds segment indexes for all streams
+    private static final ExecutorService INDEX_EXECUTOR
+            = Executors.newSingleThreadExecutor((r) -> {
+                Thread t = new Thread(r, "Canon segment indexer");
+                t.setDaemon(true);
+                return t;
+            });
+    private static final Logger LOGGER
+            = Logger.getLogger(FileSequenceIndex.class.getName());
+
+    FileSequenceIndex(String streamName) {
+        this.streamName = streamName;
+    }
+
+    @Override
+    public void put(String sequence, long position) {
+        recent.computeIfAbsent(segmentId(position),
+                (id) -> new MemorySequenceIndex())
+                .put(sequence, position);
+    }
+
+    /**
+     * Index the sequence and offset of a record.
+     *
+     * @param sequence event sequence
+     * @param offset event offset
+     * @param position encoded record position
+     */
+    void put(String sequence, long offset, long position) {
+        put(sequence, position);
+        recentOffsets.computeIfAbsent(segmentId(position),
+                (id) -> new OffsetTable())
+                .add(offset, segmentPosition(position));
+    }
+
+    /**
+     * Find the position to scan the segment for the record with the offset
+     * from, a record at or before the offset.
+     *
+     * @param segment segment containing the offset
+     * @param offset event offset
+     * @return segment position
+     */
+    int floorPosition(EventSegment segment, long offset) {
+        final OffsetTable table = recentOffsets.get(segment.getId());
+        if (table != null) {
+            return table.floorPosition(offset);
+        }
+        final SegmentIndex persistedIndex = persisted(segment.getId());
+        //positions are only valid in the indexed segment, not a replacement
+        //which is not yet indexed
+        if (persistedIndex != null && persistedIndex.getSegment() == segment) {
+            return persistedIndex.floorPosition(offset);
+        }
+        return EventSegment.HEADER_LENGTH;
+    }
+
+    /**
+     * Persisted index of the segment, a binary search of the indexes.
+     */
+    private SegmentIndex persisted(long segmentId) {
+        final List<SegmentIndex> indexes = persisted;
+        int low = 0;
+        int high = indexes.size() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final SegmentIndex i = indexes.get(mid);
+            final long id = i.getSegment().getId();
+            if (id < segmentId) {
+                low = mid + 1;
+            } else if (id > segmentId) {
+                high = mid - 1;
+            } else {
+                return i;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public OptionalLong find(String sequence) {
+        for (MemorySequenceIndex i : recent.descendingMap().values()) {
+            OptionalLong position = i.find(sequence);
+            if (position.isPresent()) {
+                return position;
+            }
+        }
+
+        ListIterator<SegmentIndex> iterator
+                = persisted.listIterator(persisted.size());
+        while (iterator.hasPrevious()) {
+            SegmentIndex i = iterator.previous();
+            final int position = i.find(sequence);
+            if (position != -1) {
+                return OptionalLong.of(position(i.getSegment().getId(),
+                        position));
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Opens, or builds, the persisted index of a sealed segment on the
+     * calling thread.
+     * <p>
+     * Used when opening the stream; segments must be opened in order.
+     *
+     * @param segment sealed segment
+     * @throws IOException if the index could not be opened or built
+     */
+    void open(EventSegment segment) throws IOException {
+        persisted.add(SegmentIndex.open(segment));
+    }
+
+    /**
+     * Builds the persisted index of a newly sealed segment in the background.
+     * <p>
+     * Until the index is built the heap index of the segment continues to be
+     * used. If the index cannot be written the heap index is retained.
+     *
+     * @param segment sealed segment
+     */
+    void sealed(EventSegment segment) {
+        lastBuild = INDEX_EXECUTOR.submit(() -> {
+            try {
+                persisted.add(SegmentIndex.build(segment));
+                recent.remove(segment.getId());
+                recentOffsets.remove(segment.getId());
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, String.format("Unable to write "
+                        + "index for segment '%s' of stream '%s', the "
+                        + "segment will remain indexed on the heap.",
+                        segment.getFile().getAbsolutePath(), streamName), ex);
+            }
+        });
+    }
+
+    /**
+     * Determine if the segment is indexed by a persisted index, and is no
+     * longer indexed on the heap.
+     *
+     * @param segmentId segment id
+     * @return true if the segment index is persisted
+     */
+    boolean isPersisted(long segmentId) {
+        return !recent.containsKey(segmentId) && persisted.stream()
+                .anyMatch((i) -> i.getSegment().getId() == segmentId);
+    }
+
+    /**
+     * Deletes the index file of a segment about to be replaced by its
+     * compacted segment, so a crash before the compacted segment is indexed
+     * cannot leave a stale index file.
+     * <p>
+     * The loaded index continues to serve lookups until
+     * {@link #replace(SegmentIndex) replaced}.
+     *
+     * @param segment segment to be compacted
+     * @throws IOException if the index file could not be deleted
+     */
+    void invalidate(EventSegment segment) throws IOException {
+        SegmentIndex.delete(segment);
+    }
+
+    /**
+     * Builds the index of a compacted segment.
+     *
+     * @param compacted compacted segment
+     * @return index of the compacted segment
+     * @throws IOException if the index could not be written
+     */
+    SegmentIndex build(EventSegment compacted) throws IOException {
+        return SegmentIndex.build(compacted);
+    }
+
+    /**
+     * Replaces the persisted index of the segment with the same id.
+     *
+     * @param compacted index of a compacted segment
+     */
+    void replace(SegmentIndex compacted) {
+        final long id = compacted.getSegment().getId();
+        recentOffsets.remove(id);
+        for (int i = 0; i < persisted.size(); i++) {
+            if (persisted.get(i).getSegment().getId() == id) {
+                persisted.set(i, compacted);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits for any background index builds to complete.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitBuilds() throws InterruptedException {
+        final Future<?> build = lastBuild;
+        if (build == null) {
+            return;
+        }
+        try {
+            build.get();
+        } catch (ExecutionException ex) {
+            //failures are logged by the build task
+        }
+    }
+
+    /**
+     * Sparse offset table of a segment indexed on the heap, the offset and
+     * position of every {@link SegmentIndex#OFFSET_STRIDE}th record appended.
+     */
+    private static final class OffsetTable {
+
+        private long[] offsets = new long[16];
+        private int[] positions = new int[16];
+        private int size;
+        private int records;
+
+        synchronized void add(long offset, int position) {
+            if (records++ % SegmentIndex.OFFSET_STRIDE != 0) {
+                return;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            offsets[size] = offset;
+            positions[size] = position;
+            size++;
+        }
+
+        synchronized int floorPosition(long offset) {
+            int i = Arrays.binarySearch(offsets, 0, size, offset);
+            if (i < 0) {
+                //index of the last entry before the insertion point
+                i = -i - 2;
+            }
+            return i < 0 ? EventSegment.HEADER_LENGTH : positions[i];
+        }
+    }
+
+    static long position(long segmentId, int segmentPosition) {
+        return (segmentId << Integer.SIZE) | (segmentPosition & 0xFFFFFFFFL);
+    }
+
+    static long segmentId(long position) {
+        return position >>> Integer.SIZE;
+    }
+
+    static int segmentPosition(long position) {
+        return (int) position;
+    }
+}
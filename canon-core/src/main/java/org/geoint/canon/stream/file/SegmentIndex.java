@@ -0,0 +1,399 @@
+/*
+ * Copyright 2016 geoint.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Persisted sequence index of a sealed {@link EventSegment}.
+ * <p>
+ * The index file contains one fixed-length entry per segment record, a 64-bit
+ * hash of the event sequence and the record position, sorted by hash. Lookups
+ * are a binary search of the memory-mapped index; since different sequences
+ * may share a hash, each candidate record is read to verify its sequence.
+ * <p>
+ * The index also contains a bloom filter of the sequence hashes, so lookups of
+ * sequences which are not in the segment, the common case when searching the
+ * segments of a stream, are rejected with a few memory reads rather than a
+ * binary search.
+ * <p>
+ * Readers positioned by offset use the sparse offset table of the index, the
+ * offset and position of every {@link #OFFSET_STRIDE}th record, to start
+ * scanning the segment near the record rather than at its first record.
+ * <p>
+ * Index file layout:
+ * <pre>
+ * [header][int entryCount][int filterLength][int offsetCount]
+ * ([long filterWord])*([long sequenceHash][int position])*
+ * ([long offset][int position])*
+ * </pre>
+ *
+ * @author steve_siebert
+ */
+final class SegmentIndex {
+
+    //magic bytes used to uniquely identify file as a canon segment index
+    private static final byte[] MAGIC_BYTES
+            = "CANON.SIX".getBytes(StandardCharsets.US_ASCII);
+    private static final byte CURRENT_VERSION = 2;
+    private static final int HEADER_LENGTH = MAGIC_BYTES.length + 1;
+    private static final byte[] VALID_HEADER
+            = Arrays.copyOf(MAGIC_BYTES, HEADER_LENGTH);
+
+    static {
+        VALID_HEADER[MAGIC_BYTES.length] = CURRENT_VERSION;
+    }
+    private static final int FILTER_START = HEADER_LENGTH + Integer.BYTES * 3;
+    private static final int ENTRY_LENGTH = Long.BYTES + Integer.BYTES;
+    //records between the entries of the offset table
+    static final int OFFSET_STRIDE = 64;
+    //bloom filter sizing, about a 1% false positive rate
+    private static final int FILTER_BITS_PER_ENTRY = 10;
+    private static final int FILTER_HASHES = 7;
+    static final String INDEX_FILE_EXTENSION = ".idx";
+
+    private final EventSegment segment;
+    private final MappedByteBuffer entries;
+    private final int count;
+    private final int filterLength; //in longs
+    private final int entriesStart;
+    private final int offsetCount;
+    private final int offsetsStart;
+
+    private SegmentIndex(EventSegment segment, MappedByteBuffer entries,
+            int count, int filterLength, int offsetCount) {
+        this.segment = segment;
+        this.entries = entries;
+        this.count = count;
+        this.filterLength = filterLength;
+        this.entriesStart = FILTER_START + filterLength * Long.BYTES;
+        this.offsetCount = offsetCount;
+        this.offsetsStart = entriesStart + count * ENTRY_LENGTH;
+    }
+
+    /**
+     * Opens the index of the sealed segment, building the index file if it
+     * does not exist or is not valid.
+     *
+     * @param segment sealed segment
+     * @return segment index
+     * @throws IOException if the index could not be read or written
+     */
+    static SegmentIndex open(EventSegment segment) throws IOException {
+        final File indexFile = indexFile(segment);
+        if (indexFile.exists()) {
+            SegmentIndex index = load(segment, indexFile);
+            if (index != null) {
+                return index;
+            }
+        }
+        return build(segment);
+    }
+
+    /**
+     * Writes the index file for the sealed segment.
+     *
+     * @param segment sealed segment
+     * @return segment index
+     * @throws IOException if the index file could not be written
+     */
+    static SegmentIndex build(EventSegment segment) throws IOException {
+        //collect and sort the (hash, position) pairs of every record
+        final int limit = segment.getLimit();
+        long[] hashes = new long[64];
+        int[] positions = new int[64];
+        int n = 0;
+        for (int p = EventSegment.HEADER_LENGTH; p < limit;
+                p = segment.nextPosition(p)) {
+            if (n == hashes.length) {
+                hashes = Arrays.copyOf(hashes, n * 2);
+                positions = Arrays.copyOf(positions, n * 2);
+            }
+            hashes[n] = hash(segment.readAt(p).getSequence());
+            positions[n] = p;
+            n++;
+        }
+        return write(segment, hashes, positions, n);
+    }
+
+    /**
+     * Writes the index file for the sealed segment from the (hash, position)
+     * pairs of its records.
+     *
+     * @param segment sealed segment
+     * @param hashes sequence hash of each record
+     * @param positions position of each record
+     * @param n number of records
+     * @return segment index
+     * @throws IOException if the index file could not be written
+     */
+    static SegmentIndex write(EventSegment segment, long[] hashes,
+            int[] positions, int n) throws IOException {
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+        final long[] filter = new long[Math.max(1,
+                (n * FILTER_BITS_PER_ENTRY + Long.SIZE - 1) / Long.SIZE)];
+        for (int i = 0; i < n; i++) {
+            final long bits = (long) filter.length * Long.SIZE;
+            for (int k = 0; k < FILTER_HASHES; k++) {
+                final long bit = filterBit(hashes[i], k, bits);
+                filter[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        //offsets increase with the record position
+        final int[] sorted = Arrays.copyOf(positions, n);
+        Arrays.sort(sorted);
+        final int offsetCount = (n + OFFSET_STRIDE - 1) / OFFSET_STRIDE;
+
+        ByteBuffer buffer = ByteBuffer.allocate(FILTER_START
+                + filter.length * Long.BYTES + n * ENTRY_LENGTH
+                + offsetCount * ENTRY_LENGTH);
+        buffer.put(VALID_HEADER);
+        buffer.putInt(n);
+        buffer.putInt(filter.length);
+        buffer.putInt(offsetCount);
+        for (long word : filter) {
+            buffer.putLong(word);
+        }
+        for (Integer i : order) {
+            buffer.putLong(hashes[i]);
+            buffer.putInt(positions[i]);
+        }
+        for (int i = 0; i < n; i += OFFSET_STRIDE) {
+            buffer.putLong(segment.offsetAt(sorted[i]));
+            buffer.putInt(sorted[i]);
+        }
+        buffer.flip();
+
+        //write to a temporary file and move it in place so a partially
+        //written index is never loaded
+        final File indexFile = indexFile(segment);
+        final File tmpFile = new File(indexFile.getParentFile(),
+                indexFile.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+            raf.setLength(0);
+            FileChannel fc = raf.getChannel();
+            while (buffer.hasRemaining()) {
+                fc.write(buffer);
+            }
+            fc.force(true);
+        }
+        Files.move(tmpFile.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        SegmentIndex index = load(segment, indexFile);
+        if (index == null) {
+            throw new IOException(String.format("Unable to read index file "
+                    + "'%s'.", indexFile.getAbsolutePath()));
+        }
+        return index;
+    }
+
+    /**
+     * Deletes the index file of the segment; a loaded index remains readable
+     * through its mapping.
+     *
+     * @param segment indexed segment
+     * @throws IOException if the index file exists and could not be deleted
+     */
+    static void delete(EventSegment segment) throws IOException {
+        Files.deleteIfExists(indexFile(segment).toPath());
+    }
+
+    /**
+     * Map an existing index file.
+     *
+     * @param segment indexed segment
+     * @param indexFile index file
+     * @return index or null if the file is not a valid index file
+     * @throws IOException if the file could not be read
+     */
+    private static SegmentIndex load(EventSegment segment, File indexFile)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            final long length = raf.length();
+            if (length < FILTER_START) {
+                return null;
+            }
+            MappedByteBuffer mapped = raf.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, length);
+            byte[] header = new byte[HEADER_LENGTH];
+            mapped.get(header);
+            final int count = mapped.getInt();
+            final int filterLength = mapped.getInt();
+            final int offsetCount = mapped.getInt();
+            if (!Arrays.equals(VALID_HEADER, header) || count < 0
+                    || filterLength <= 0 || offsetCount < 0
+                    || length != FILTER_START
+                    + (long) filterLength * Long.BYTES
+                    + (long) count * ENTRY_LENGTH
+                    + (long) offsetCount * ENTRY_LENGTH) {
+                return null;
+            }
+            return new SegmentIndex(segment, mapped, count, filterLength,
+                    offsetCount);
+        }
+    }
+
+    /**
+     * Find the position of the record with the provided sequence.
+     *
+     * @param sequence event sequence
+     * @return record position or -1 if the sequence is not in the segment
+     */
+    int find(String sequence) {
+        final long hash = hash(sequence);
+        if (!mightContain(hash)) {
+            return -1;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midHash = hashAt(mid);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                //walk back to the first entry with this hash, then verify
+                //each candidate
+                int i = mid;
+                while (i > 0 && hashAt(i - 1) == hash) {
+                    i--;
+                }
+                for (; i < count && hashAt(i) == hash; i++) {
+                    final int position = positionAt(i);
+                    if (segment.readAt(position).getSequence()
+                            .equals(sequence)) {
+                        return position;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the position of the last record of the offset table at or before
+     * the offset, a binary search of the table.
+     *
+     * @param offset event offset
+     * @return position to scan the segment for the offset from
+     */
+    int floorPosition(long offset) {
+        int low = 0;
+        int high = offsetCount - 1;
+        int floor = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (entries.getLong(offsetsStart + mid * ENTRY_LENGTH) <= offset) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return floor == -1 ? EventSegment.HEADER_LENGTH
+                : entries.getInt(offsetsStart + floor * ENTRY_LENGTH
+                        + Long.BYTES);
+    }
+
+    /**
+     * Check the bloom filter of the index for the sequence hash.
+     *
+     * @param hash sequence hash
+     * @return false if the segment does not contain the sequence, true if it
+     * may
+     */
+    boolean mightContain(long hash) {
+        final long bits = (long) filterLength * Long.SIZE;
+        for (int k = 0; k < FILTER_HASHES; k++) {
+            final long bit = filterBit(hash, k, bits);
+            final long word = entries.getLong(FILTER_START
+                    + (int) (bit >>> 6) * Long.BYTES);
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bit of the k-th filter hash, derived from the two halves of the
+     * sequence hash (Kirsch-Mitzenmacher double hashing).
+     */
+    private static long filterBit(long hash, int k, long bits) {
+        final long combined = (hash >>> Integer.SIZE)
+                + k * (hash & 0xFFFFFFFFL);
+        return (combined & Long.MAX_VALUE) % bits;
+    }
+
+    EventSegment getSegment() {
+        return segment;
+    }
+
+    int size() {
+        return count;
+    }
+
+    private long hashAt(int entry) {
+        return entries.getLong(entriesStart + entry * ENTRY_LENGTH);
+    }
+
+    private int positionAt(int entry) {
+        return entries.getInt(entriesStart + entry * ENTRY_LENGTH + Long.BYTES);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the sequence.
+     *
+     * @param sequence event sequence
+     * @return sequence hash
+     */
+    static long hash(String sequence) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < sequence.length(); i++) {
+            h ^= sequence.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static File indexFile(EventSegment segment) {
+        final String segmentName = segment.getFile().getName();
+        return new File(segment.getFile().getParentFile(),
+                segmentName.substring(0, segmentName.length()
+                        - EventSegment.SEGMENT_FILE_EXTENSION.length())
+                + INDEX_FILE_EXTENSION);
+    }
+}
@@ -1,13 +1,21 @@
 package org.geoint.canon.stream.memory;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Supplier;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.codec.EventCodecException;
 import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.ByteBufferEventPayload;
+import org.geoint.canon.event.ByteBufferInputStream;
+import org.geoint.canon.event.EventPayload;
+import org.geoint.canon.impl.codec.DecodedEventCache;
 import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.impl.codec.EventBuffer;
 import org.geoint.canon.stream.StreamAppendException;
 
 /**
@@ -20,10 +28,12 @@ public class HeapAppendedEventMessage implements AppendedEventMessage {
 
     private final String sequence;
     private final EventMessage msg;
-    private final byte[] content;
+    private final ByteBuffer content;
+    //assigned by the stream before the message is published to readers
+    private long offset = -1;
 
     private HeapAppendedEventMessage(String sequence,
-            EventMessage msg, byte[] content) {
+            EventMessage msg, ByteBuffer content) {
         this.sequence = sequence;
         this.msg = msg;
         this.content = content;
@@ -41,16 +51,11 @@ public class HeapAppendedEventMessage implements AppendedEventMessage {
     public static HeapAppendedEventMessage fromMessage(String sequence,
             EventMessage msg)
             throws StreamAppendException {
-        try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
-                InputStream in = msg.getEventContent();) {
-            byte[] buffer = new byte[1024];
-            int read = 0;
-            while ((read = in.read(buffer)) != -1) {
-                bout.write(buffer, 0, read);
-            }
-            byte[] bytes = bout.toByteArray();
-            return new HeapAppendedEventMessage(sequence, msg, bytes);
-        } catch (Throwable ex) {
+        try {
+            //the stream keeps the encoded content, without copying it
+            return new HeapAppendedEventMessage(sequence, msg,
+                    EventBuffer.of(msg).adopt());
+        } catch (IOException | RuntimeException ex) {
             throw new StreamAppendException("Unable to read event message "
                     + "content into memory.", ex);
         }
@@ -61,9 +66,25 @@ public class HeapAppendedEventMessage implements AppendedEventMessage {
         return sequence;
     }
 
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the stream offset of the message.
+     * <p>
+     * Must be called by the stream, before the message is published.
+     *
+     * @param offset stream offset
+     */
+    void setOffset(long offset) {
+        this.offset = offset;
+    }
+
     @Override
     public int getEventLength() {
-        return content.length;
+        return content.remaining();
     }
 
     @Override
@@ -108,7 +129,33 @@ public class HeapAppendedEventMessage implements AppendedEventMessage {
 
     @Override
     public InputStream getEventContent() {
-        return msg.getEventContent();
+        return new ByteBufferInputStream(content);
+    }
+
+    /**
+     * Returns a read-only view of the stored event content, without copying.
+     *
+     * @return event payload
+     */
+    @Override
+    public EventPayload getPayload() {
+        return new ByteBufferEventPayload(content);
+    }
+
+    /**
+     * Decodes the event through the shared {@link DecodedEventCache}, so the
+     * event is decoded once for all handlers using the codec.
+     *
+     * @param <E> domain event type
+     * @param codec event codec
+     * @return domain event
+     * @throws IOException if the event content could not be read
+     * @throws EventCodecException if the event could not be decoded
+     */
+    @Override
+    public <E> E getEvent(EventCodec<E> codec)
+            throws IOException, EventCodecException {
+        return DecodedEventCache.getShared().decode(this, codec);
     }
 
     @Override
@@ -1,13 +1,9 @@
 package org.geoint.canon.stream.memory;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.impl.stream.AbstractEventChannel;
 import org.geoint.canon.stream.ChannelInitializationException;
@@ -25,8 +21,6 @@ import org.geoint.canon.stream.event.StreamCreated;
  */
 public class HeapEventChannel extends AbstractEventChannel {
 
-    private final Map<String, EventStream> streams;
-
     private static final Logger LOGGER
             = Logger.getLogger(HeapEventChannel.class.getName());
 
@@ -45,9 +39,8 @@ public class HeapEventChannel extends AbstractEventChannel {
         super(name, channelProperties, codecs);
 
         //every in-memory channel is a new channel, so initialize as such
-        this.streams = new HashMap<>();
         EventStream adminStream = new HeapEventStream(this, CHANNEL_ADMIN_STREAM_NAME, codecs);
-        this.streams.put(CHANNEL_ADMIN_STREAM_NAME, adminStream);
+        this.streams.register(adminStream);
 
         //publish channel and admin stream creation events
         try {
@@ -64,24 +57,17 @@ public class HeapEventChannel extends AbstractEventChannel {
         }
     }
 
-    @Override
-    public Collection<EventStream> listStreams() {
-        return streams.entrySet().stream()
-                .map(Entry::getValue)
-                .collect(Collectors.toList());
-    }
-
     @Override
     protected EventStream createStream(String streamName, CodecResolver codecs)
             throws StreamAlreadyExistsException {
         synchronized (streams) {
-            if (streams.containsKey(streamName)) {
+            if (streams.contains(streamName)) {
                 throw new StreamAlreadyExistsException(String.format("Stream "
                         + "'%s' already exists on heap channel '%s'",
                         streamName, this.getChannelName()));
             }
             HeapEventStream s = new HeapEventStream(this, streamName, this.codecs);
-            streams.put(streamName, s);
+            streams.register(s);
             return s;
         }
     }
@@ -89,9 +75,7 @@ public class HeapEventChannel extends AbstractEventChannel {
     @Override
     public void close() throws IOException {
         synchronized (streams) {
-            streams.entrySet().stream()
-                    .map(Map.Entry::getValue)
-                    .forEach((s) -> {
+            streams.streams().forEach((s) -> {
                         try {
                             s.close();
                         } catch (IOException ex) {
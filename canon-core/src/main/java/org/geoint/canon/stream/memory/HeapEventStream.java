@@ -1,25 +1,18 @@
 package org.geoint.canon.stream.memory;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import org.geoint.canon.codec.CodecResolver;
 import org.geoint.canon.event.AppendedEventMessage;
 import org.geoint.canon.event.EventMessage;
 import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.impl.concurrent.ChunkedArrayLog;
 import org.geoint.canon.impl.stream.AbstractEventChannel;
 import org.geoint.canon.impl.stream.AbstractEventStream;
 import org.geoint.canon.impl.stream.MemoryEventAppender;
+import org.geoint.canon.impl.stream.MemorySequenceIndex;
+import org.geoint.canon.impl.stream.SequenceIndex;
 import org.geoint.canon.stream.EventAppender;
 import org.geoint.canon.stream.EventReader;
 import org.geoint.canon.stream.event.EventAppended;
@@ -35,9 +28,12 @@ import org.geoint.canon.stream.StreamReadException;
  */
 public class HeapEventStream extends AbstractEventStream {
 
-    //messages on heap
-    private final List<AppendedEventMessage> messages
-            = Collections.synchronizedList(new LinkedList<>());
+    //messages on heap, appends are serialized by the append lock
+    private final ChunkedArrayLog<AppendedEventMessage> messages
+            = new ChunkedArrayLog<>();
+    private final Object appendLock = new Object();
+    //sequence to message index
+    private final SequenceIndex index = new MemorySequenceIndex();
 
     public HeapEventStream(AbstractEventChannel channel, String streamName,
             CodecResolver codecs) {
@@ -48,7 +44,9 @@ public class HeapEventStream extends AbstractEventStream {
             CodecResolver codecs,
             Collection<AppendedEventMessage> messages) {
         this(channel, streamName, codecs);
-        this.messages.addAll(messages);
+        synchronized (appendLock) {
+            add(messages.toArray(new AppendedEventMessage[messages.size()]));
+        }
     }
 
     @Override
@@ -68,27 +66,52 @@ public class HeapEventStream extends AbstractEventStream {
                     //so process is complete as a single action
                     AppendedEventMessage[] appendedMessages
                     = new AppendedEventMessage[e.size()];
+                    final String[] ids = channel.generateEventIds(e);
                     for (int i = 0; i < e.size(); i++) {
                         EventMessage msg = e.get(i);
                         appendedMessages[i] = HeapAppendedEventMessage.fromMessage(
-                                channel.generateEventId(msg), msg);
+                                ids[i], msg);
                     }
 
                     //add all messages to the stream once all codec 
                     //operations are complete
-                    synchronized (messages) {
-                        Arrays.stream(appendedMessages)
-                        .forEach(messages::add);
+                    synchronized (appendLock) {
+                        add(appendedMessages);
                     }
+                    signalAppended();
 
                     return new EventAppended(streamName, appendedMessages);
 
                 });
     }
 
+    /**
+     * Adds the messages to the stream, publishing them to readers together,
+     * and to the sequence index.
+     * <p>
+     * The offset of each message is its index in the stream.
+     * <p>
+     * Must be called while holding the append lock.
+     *
+     * @param msgs appended messages
+     */
+    private void add(AppendedEventMessage... msgs) {
+        final int size = messages.size();
+        for (int i = 0; i < msgs.length; i++) {
+            if (msgs[i] instanceof HeapAppendedEventMessage) {
+                ((HeapAppendedEventMessage) msgs[i]).setOffset(size + i);
+            }
+        }
+        final int first = messages.appendAll(msgs);
+        for (int i = 0; i < msgs.length; i++) {
+            index.put(msgs[i].getSequence(), first + i);
+        }
+    }
+
     @Override
     public String getCurrentSequence() {
-        return messages.get(messages.size() - 1).getSequence();
+        final int size = messages.size();
+        return (size == 0) ? null : messages.get(size - 1).getSequence();
     }
 
     /**
@@ -104,6 +127,11 @@ public class HeapEventStream extends AbstractEventStream {
             return messages.size() > (currentIndex + 1);
         }
 
+        @Override
+        public long available() {
+            return Math.max(0, messages.size() - (currentIndex + 1));
+        }
+
         @Override
         public AppendedEventMessage read() throws StreamReadException {
             return messages.get((currentIndex == -1) ? 0 : currentIndex);
@@ -111,51 +139,43 @@ public class HeapEventStream extends AbstractEventStream {
 
         @Override
         public Optional<AppendedEventMessage> poll() throws StreamReadException {
-            try {
-                AppendedEventMessage msg = messages.get(currentIndex + 1);
-                currentIndex++;
-                return Optional.of(msg);
-            } catch (IndexOutOfBoundsException ex) {
+            final int next = currentIndex + 1;
+            if (next >= messages.size()) {
                 return Optional.empty();
             }
+            currentIndex = next;
+            return Optional.of(messages.get(next));
         }
 
         @Override
         public Optional<AppendedEventMessage> poll(final long timeout,
                 TimeUnit unit) throws StreamReadException, InterruptedException {
-            Optional<AppendedEventMessage> msg = poll();
-
-            if (msg.isPresent()) {
-                return msg;
-            }
-
+            awaitNext(timeout, unit);
             return poll();
-
         }
 
         @Override
-        @SuppressWarnings("SleepWhileInLoop")
         public AppendedEventMessage take()
                 throws StreamReadException, InterruptedException {
+            awaitNext(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            return poll().get();
+        }
 
-            Optional<AppendedEventMessage> msg = poll();
-
-            if (msg.isPresent()) {
-                return msg.get();
-            }
+        @Override
+        public boolean awaitNext(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return awaitAppended(this::hasNext, timeout, unit);
+        }
 
-            return poll().orElse(null);
+        @Override
+        public boolean signalsAppends() {
+            return true;
         }
 
         @Override
         public void setPosition(String sequence) throws UnknownEventException {
-            for (int i = 0; i < messages.size(); i++) {
-                if (messages.get(i).getSequence().contentEquals(sequence)) {
-                    this.currentIndex = i;
-                    return;
-                }
-            }
-            throw new UnknownEventException(sequence);
+            this.currentIndex = (int) index.find(sequence)
+                    .orElseThrow(() -> new UnknownEventException(sequence));
         }
 
         @Override
@@ -167,9 +187,29 @@ public class HeapEventStream extends AbstractEventStream {
             }
         }
 
+        /**
+         * Positions the reader at the event with the offset; offsets of a
+         * heap stream are the index of the event.
+         *
+         * @param offset event offset
+         * @throws UnknownEventException if the offset has not been appended
+         */
+        @Override
+        public void seek(long offset) throws UnknownEventException {
+            if (offset < 0 || offset >= messages.size()) {
+                throw new UnknownEventException(String.valueOf(offset));
+            }
+            this.currentIndex = (int) offset;
+        }
+
+        @Override
+        public long position() {
+            return currentIndex;
+        }
+
         @Override
         public void close() {
-            messages.clear();
+            //the messages belong to the stream, not the reader
         }
 
         @Override
@@ -15,11 +15,23 @@
  */
 package org.geoint.canon.async;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.BatchEventHandler;
+import org.geoint.canon.stream.BatchHandlingException;
 import org.geoint.canon.stream.EventHandler;
 import org.geoint.canon.stream.EventHandlerAction;
+import org.geoint.canon.stream.StreamReadException;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
 import org.geoint.canon.stream.mock.MockEventReader;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -221,4 +233,393 @@ public class AsyncHandlerNotifierTest {
         assertEquals(1, eventCounter.get());
     }
 
+    /**
+     * Test a blocked ISOLATED handler does not stall a handler on another
+     * stream, even with a single shared worker, and still receives its events
+     * in order once unblocked.
+     */
+    @Test
+    public void testIsolatedHandlerDoesNotStall() throws Exception {
+        final List<AppendedEventMessage> slowEvents = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        MockEventReader fastReader
+                = new MockEventReader("notifierTest", "testIsolatedFast");
+        for (int i = 0; i < 10; i++) {
+            AppendedEventMessage e = MockAppendedEventMessage
+                    .random("notifierTest", "testIsolatedSlow");
+            slowEvents.add(e);
+            expected.add(e.getSequence());
+            fastReader.addRandomEvent();
+        }
+        MockEventReader slowReader = new MockEventReader("notifierTest",
+                "testIsolatedSlow", slowEvents);
+        final List<String> handled = new CopyOnWriteArrayList<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch fastDone = new CountDownLatch(10);
+        final CountDownLatch slowDone = new CountDownLatch(10);
+
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier(1);
+
+            notifier.addHandler((e) -> {
+                release.await();
+                handled.add(e.getSequence());
+                slowDone.countDown();
+            }, slowReader, DispatchMode.ISOLATED);
+            notifier.addHandler((e) -> fastDone.countDown(), fastReader);
+
+            assertTrue("shared handler was stalled",
+                    fastDone.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+        } finally {
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+        assertEquals(expected, handled);
+    }
+
+    /**
+     * Test a handler whose reader signals appends is given no turns while its
+     * stream is idle, and the handler of a reader which does not signal
+     * appends is swept.
+     */
+    @Test
+    public void testIdleHandlerGetsNoTurns() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        MockEventReader signalled = new MockEventReader("notifierTest",
+                "testIdleSignalled") {
+            @Override
+            public Optional<AppendedEventMessage> poll()
+                    throws StreamReadException {
+                polls.incrementAndGet();
+                return super.poll();
+            }
+
+            @Override
+            public boolean signalsAppends() {
+                return true;
+            }
+        };
+        MockEventReader unsignalled
+                = new MockEventReader("notifierTest", "testIdleUnsignalled");
+        final CountDownLatch swept = new CountDownLatch(1);
+
+        AsyncHandlerNotifier notifier = new AsyncHandlerNotifier(1);
+        try {
+            notifier.addHandler((e) -> {
+            }, signalled, DispatchMode.ISOLATED);
+            notifier.addHandler((e) -> swept.countDown(), unsignalled);
+            //the registration turn finds no events
+            Thread.sleep(500);
+            assertEquals(1, polls.get());
+
+            unsignalled.addRandomEvent();
+            assertTrue(swept.await(5, TimeUnit.SECONDS));
+            assertEquals(1, polls.get());
+        } finally {
+            notifier.shutdown();
+        }
+    }
+
+    /**
+     * Test a batch handler receives contiguous batches no larger than its
+     * maximum batch size.
+     */
+    @Test
+    public void testBatchCallback() throws Exception {
+        MockEventReader reader
+                = new MockEventReader("notifierTest", "testBatchCallback");
+        for (int i = 0; i < 25; i++) {
+            reader.addRandomEvent();
+        }
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final CountDownLatch delivered = new CountDownLatch(25);
+
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            notifier.addHandler(new BatchEventHandler() {
+                @Override
+                public void handle(List<AppendedEventMessage> events) {
+                    batchSizes.add(events.size());
+                    events.forEach((e) -> delivered.countDown());
+                }
+
+                @Override
+                public int getMaxBatchSize() {
+                    return 10;
+                }
+            }, reader);
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+        assertEquals(Arrays.asList(10, 10, 5), batchSizes);
+    }
+
+    /**
+     * Test a partial batch is held until its linger time elapses.
+     */
+    @Test
+    public void testBatchLinger() throws Exception {
+        MockEventReader reader
+                = new MockEventReader("notifierTest", "testBatchLinger");
+        reader.addRandomEvent();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final AtomicLong deliveredAfter = new AtomicLong();
+
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            notifier.addHandler(new BatchEventHandler() {
+                @Override
+                public void handle(List<AppendedEventMessage> events) {
+                    deliveredAfter.set(System.nanoTime() - start);
+                    delivered.countDown();
+                }
+
+                @Override
+                public long getLingerMillis() {
+                    return 200;
+                }
+            }, reader);
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+        assertTrue(deliveredAfter.get() >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    /**
+     * Test a lingering partial batch is delivered by shutdown.
+     */
+    @Test
+    public void testShutdownDeliversLingeringBatch() throws Exception {
+        MockEventReader reader = new MockEventReader("notifierTest",
+                "testShutdownDeliversLingeringBatch");
+        for (int i = 0; i < 3; i++) {
+            reader.addRandomEvent();
+        }
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        AsyncHandlerNotifier notifier = new AsyncHandlerNotifier();
+        notifier.addHandler(new BatchEventHandler() {
+            @Override
+            public void handle(List<AppendedEventMessage> events) {
+                batchSizes.add(events.size());
+            }
+
+            @Override
+            public long getLingerMillis() {
+                return TimeUnit.MINUTES.toMillis(10);
+            }
+        }, reader);
+        //wait for a turn to read the partial batch
+        while (reader.hasNext()) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        assertTrue(batchSizes.isEmpty());
+
+        notifier.shutdown();
+        assertEquals(Arrays.asList(3), batchSizes);
+    }
+
+    /**
+     * Test a retried batch resumes from the first unprocessed event.
+     */
+    @Test
+    public void testBatchRetryFromOffset() throws Exception {
+        MockEventReader reader = new MockEventReader("notifierTest",
+                "testBatchRetryFromOffset");
+        for (int i = 0; i < 5; i++) {
+            reader.addRandomEvent();
+        }
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            notifier.addHandler(new BatchEventHandler() {
+                @Override
+                public void handle(List<AppendedEventMessage> events)
+                        throws BatchHandlingException {
+                    batchSizes.add(events.size());
+                    if (batchSizes.size() == 1) {
+                        throw new BatchHandlingException(2,
+                                new RuntimeException("RETRY!"));
+                    }
+                }
+
+                @Override
+                public EventHandlerAction onFailure(
+                        List<AppendedEventMessage> events, Throwable ex) {
+                    return EventHandlerAction.RETRY;
+                }
+            }, reader);
+        } finally {
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+        assertEquals(Arrays.asList(5, 3), batchSizes);
+    }
+
+    /**
+     * Test the lag of a handler is reported while it is blocked.
+     */
+    @Test
+    public void testHandlerLag() throws Exception {
+        MockEventReader reader
+                = new MockEventReader("notifierTest", "testHandlerLag");
+        for (int i = 0; i < 10; i++) {
+            reader.addRandomEvent();
+        }
+        final CountDownLatch handling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            notifier.addHandler((e) -> {
+                handling.countDown();
+                release.await();
+            }, reader);
+            assertTrue(handling.await(5, TimeUnit.SECONDS));
+
+            List<HandlerLag> lag
+                    = notifier.getLag("notifierTest", "testHandlerLag");
+            assertEquals(1, lag.size());
+            assertEquals(9, lag.get(0).getLag());
+            assertEquals(0, lag.get(0).getNotified());
+            release.countDown();
+        } finally {
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+        HandlerLag lag = notifier.getLag().get(0);
+        assertEquals(0, lag.getLag());
+        assertEquals(10, lag.getNotified());
+    }
+
+    /**
+     * Test appenders are delayed while a handler with a THROTTLE policy lags
+     * behind the stream, and released once it catches up.
+     */
+    @Test
+    public void testThrottleLaggingHandler() throws Exception {
+        MockEventReader reader = new MockEventReader("notifierTest",
+                "testThrottleLaggingHandler");
+        for (int i = 0; i < 20; i++) {
+            reader.addRandomEvent();
+        }
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger eventCounter = new AtomicInteger();
+
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_BATCH_SIZE, "1");
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_LAG_POLICY,
+                "THROTTLE");
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_LAG_THRESHOLD, "5");
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            final AsyncHandlerNotifier n = notifier;
+            n.addHandler((e) -> {
+                if (eventCounter.incrementAndGet() > 1) {
+                    release.await();
+                }
+            }, reader);
+            //wait for the first turn to find the handler lagging
+            while (!n.getLag().get(0).isLagging()) {
+                Thread.sleep(1);
+            }
+
+            Thread appender = new Thread(() -> n.notifyAppended(
+                    "notifierTest", "testThrottleLaggingHandler"));
+            appender.start();
+            appender.join(100);
+            assertTrue("appender was not throttled", appender.isAlive());
+
+            release.countDown();
+            appender.join(5000);
+            assertFalse("appender was not released", appender.isAlive());
+            assertTrue(n.getLag().get(0).getLag() <= 5);
+        } finally {
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_BATCH_SIZE);
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_LAG_POLICY);
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_LAG_THRESHOLD);
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test a lagging handler with a SHED policy is suspended at its last
+     * handled event while its stream keeps growing, and resumes from it
+     * without losing events once the appends stop.
+     */
+    @Test
+    public void testShedLaggingHandler() throws Exception {
+        MockEventReader reader = new MockEventReader("notifierTest",
+                "testShedLaggingHandler");
+        for (int i = 0; i < 20; i++) {
+            reader.addRandomEvent("old");
+        }
+        final List<String> types = new CopyOnWriteArrayList<>();
+        final CountDownLatch delivered = new CountDownLatch(23);
+
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_BATCH_SIZE, "1");
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_LAG_POLICY, "SHED");
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_LAG_THRESHOLD, "5");
+        System.setProperty(AsyncHandlerNotifier.PROPERTY_SWEEP_INTERVAL,
+                "200");
+        AsyncHandlerNotifier notifier = null;
+        try {
+            notifier = new AsyncHandlerNotifier();
+            notifier.addHandler((e) -> {
+                types.add(e.getEventType());
+                delivered.countDown();
+            }, reader);
+            //wait for the first turn to suspend the lagging handler
+            while (!notifier.getLag().get(0).isLagging()) {
+                Thread.sleep(1);
+            }
+
+            //appends do not schedule the suspended handler
+            for (int i = 0; i < 3; i++) {
+                reader.addRandomEvent("new");
+            }
+            notifier.notifyAppended("notifierTest", "testShedLaggingHandler");
+            Thread.sleep(50);
+            assertEquals(1, types.size());
+
+            //the handler resumes from its last handled event
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add("old");
+            }
+            expected.addAll(Arrays.asList("new", "new", "new"));
+            assertEquals(expected, types);
+        } finally {
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_BATCH_SIZE);
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_LAG_POLICY);
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_LAG_THRESHOLD);
+            System.clearProperty(AsyncHandlerNotifier.PROPERTY_SWEEP_INTERVAL);
+            if (notifier != null) {
+                notifier.shutdown();
+            }
+        }
+    }
+
 }
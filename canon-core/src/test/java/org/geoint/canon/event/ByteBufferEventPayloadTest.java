@@ -0,0 +1,123 @@
+package org.geoint.canon.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.file.FileChannelProvider;
+import org.geoint.canon.stream.memory.MemoryChannelProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the ByteBufferEventPayload views and the payloads of appended events.
+ *
+ * @author steve_siebert
+ */
+public class ByteBufferEventPayloadTest {
+
+    @Test
+    public void testBytesIndependentReadOnly() throws Exception {
+        ByteBuffer content = ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4});
+        content.position(1);
+        ByteBufferEventPayload payload = new ByteBufferEventPayload(content);
+        assertEquals(4, payload.getLength());
+
+        ByteBuffer first = payload.getBytes();
+        assertTrue(first.isReadOnly());
+        assertEquals(1, first.get());
+        //consuming a view does not change the next view
+        ByteBuffer second = payload.getBytes();
+        assertEquals(4, second.remaining());
+        assertEquals(1, second.get(0));
+
+        try (InputStream in = payload.asStream()) {
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, read(in));
+        }
+        assertEquals(3, first.remaining());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testBytesNotWritable() throws Exception {
+        new ByteBufferEventPayload(ByteBuffer.wrap(new byte[]{1}))
+                .getBytes().put(0, (byte) 2);
+    }
+
+    @Test
+    public void testHeapMessagePayload() throws Exception {
+        assertPayload(new MemoryChannelProvider().getChannel("testChannel",
+                new HashMap<>(), codecs()));
+    }
+
+    @Test
+    public void testFileMessagePayload() throws Exception {
+        File dir = Files.createTempDirectory("canon-payload").toFile();
+        dir.deleteOnExit();
+        Map<String, String> props = new HashMap<>();
+        props.put(FileChannelProvider.PROPERTY_DIRECTORY,
+                dir.getAbsolutePath());
+        assertPayload(new FileChannelProvider().getChannel("testChannel",
+                props, codecs()));
+    }
+
+    /**
+     * Appends an event to the channel and checks its payload contains the
+     * full event content.
+     */
+    private static void assertPayload(EventChannel channel) throws Exception {
+        try {
+            EventStream stream = channel.getOrCreateStream("testStream");
+            EventAppender appender = stream.newAppender();
+            appender.create(String.class.getName()).event("payload content");
+            appender.append();
+
+            AppendedEventMessage msg;
+            try (EventReader reader = stream.newReader()) {
+                msg = reader.poll().get();
+            }
+            byte[] content;
+            try (InputStream in = msg.getEventContent()) {
+                content = read(in);
+            }
+            assertTrue(content.length > 0);
+
+            EventPayload payload = msg.getPayload();
+            try (InputStream in = payload.asStream()) {
+                assertArrayEquals(content, read(in));
+            }
+            ByteBuffer bytes = payload.getBytes();
+            assertTrue(bytes.isReadOnly());
+            byte[] viewed = new byte[bytes.remaining()];
+            bytes.get(viewed);
+            assertArrayEquals(content, viewed);
+            assertEquals(content.length, payload.getBytes().remaining());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[64];
+        int read;
+        while ((read = in.read(b)) != -1) {
+            out.write(b, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static HierarchicalCodecResolver codecs() {
+        return new HierarchicalCodecResolver(new ObjectStreamEventCodec());
+    }
+}
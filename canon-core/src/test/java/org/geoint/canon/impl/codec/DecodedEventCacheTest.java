@@ -0,0 +1,80 @@
+package org.geoint.canon.impl.codec;
+
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoint.canon.codec.EventCodec;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.EventMessage;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the DecodedEventCache.
+ *
+ * @author steve_siebert
+ */
+public class DecodedEventCacheTest {
+
+    /**
+     * Test an event is decoded once for each codec.
+     */
+    @Test
+    public void testDecodeOncePerCodec() throws Exception {
+        DecodedEventCache cache = new DecodedEventCache(100);
+        AppendedEventMessage msg
+                = MockAppendedEventMessage.random("cacheTest", "testDecode");
+        CountingCodec codec = new CountingCodec();
+        CountingCodec otherCodec = new CountingCodec();
+
+        Object first = cache.decode(msg, codec);
+        assertSame(first, cache.decode(msg, codec));
+        assertEquals(1, codec.decoded.get());
+
+        assertNotSame(first, cache.decode(msg, otherCodec));
+        assertEquals(1, otherCodec.decoded.get());
+    }
+
+    @Test
+    public void testEvictsBeyondMaxSize() throws Exception {
+        DecodedEventCache cache = new DecodedEventCache(32);
+        CountingCodec codec = new CountingCodec();
+        for (int i = 0; i < 1000; i++) {
+            cache.decode(MockAppendedEventMessage.random("cacheTest",
+                    "testEvict"), codec);
+        }
+        assertTrue(cache.size() <= 32);
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        DecodedEventCache cache = new DecodedEventCache(0);
+        AppendedEventMessage msg
+                = MockAppendedEventMessage.random("cacheTest", "testDisabled");
+        CountingCodec codec = new CountingCodec();
+        cache.decode(msg, codec);
+        cache.decode(msg, codec);
+        assertEquals(2, codec.decoded.get());
+        assertEquals(0, cache.size());
+    }
+
+    private static class CountingCodec implements EventCodec<Object> {
+
+        private final AtomicInteger decoded = new AtomicInteger();
+
+        @Override
+        public boolean isSupported(String eventType) {
+            return true;
+        }
+
+        @Override
+        public void encode(Object event, OutputStream out) {
+        }
+
+        @Override
+        public Object decode(EventMessage e) {
+            decoded.incrementAndGet();
+            return new Object();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.geoint.canon.impl.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the EventBuffer.
+ *
+ * @author steve_siebert
+ */
+public class EventBufferTest {
+
+    @Test
+    public void testWriteGrowsBuffer() throws Exception {
+        byte[] content = new byte[5000];
+        Arrays.fill(content, (byte) 7);
+
+        EventBuffer buffer = EventBuffer.acquire();
+        buffer.write(1);
+        buffer.write(content);
+        assertEquals(5001, buffer.size());
+
+        ByteBuffer bytes = buffer.toByteBuffer();
+        assertEquals(5001, bytes.remaining());
+        assertEquals(1, bytes.get(0));
+        assertEquals(7, bytes.get(5000));
+    }
+
+    @Test
+    public void testReadFrom() throws Exception {
+        byte[] content = new byte[3000];
+        new Random(1).nextBytes(content);
+
+        EventBuffer buffer = EventBuffer.acquire();
+        buffer.readFrom(new ByteArrayInputStream(content));
+
+        byte[] read = new byte[buffer.size()];
+        try (InputStream in = buffer.asInputStream()) {
+            assertEquals(read.length, in.read(read));
+        }
+        assertArrayEquals(content, read);
+    }
+
+    /**
+     * Test a released buffer is reused by the next acquire on the thread.
+     */
+    @Test
+    public void testReleaseReusesBuffer() throws Exception {
+        EventBuffer buffer = EventBuffer.acquire();
+        buffer.write(new byte[]{1, 2, 3});
+        buffer.release();
+
+        EventBuffer reused = EventBuffer.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+    }
+
+    /**
+     * Test buffers acquired for a batch are each reused once released.
+     */
+    @Test
+    public void testReleasedBatchReused() throws Exception {
+        List<EventBuffer> batch = new ArrayList<>();
+        for (int i = 0; i < EventBuffer.THREAD_POOL_SIZE; i++) {
+            batch.add(EventBuffer.acquire());
+        }
+        batch.forEach(EventBuffer::release);
+
+        Set<EventBuffer> reused = Collections.newSetFromMap(
+                new IdentityHashMap<>());
+        for (int i = 0; i < EventBuffer.THREAD_POOL_SIZE; i++) {
+            reused.add(EventBuffer.acquire());
+        }
+        assertEquals(EventBuffer.THREAD_POOL_SIZE, reused.size());
+        assertTrue(reused.containsAll(batch));
+    }
+
+    /**
+     * Test buffers released on another thread return to the acquiring
+     * threads.
+     */
+    @Test
+    public void testReleasedOnOtherThreadReused() throws Exception {
+        //drain the buffers released to the shared pool by earlier tests
+        Thread drain = new Thread(() -> {
+            for (int i = 0; i < EventBuffer.SHARED_POOL_SIZE; i++) {
+                EventBuffer.acquire();
+            }
+        });
+        drain.start();
+        drain.join();
+
+        final List<EventBuffer> acquired = new ArrayList<>();
+        Thread appender = new Thread(() -> {
+            for (int i = 0; i <= EventBuffer.THREAD_POOL_SIZE; i++) {
+                acquired.add(EventBuffer.acquire());
+            }
+        });
+        appender.start();
+        appender.join();
+        //the releasing thread keeps a full pool, the rest is shared
+        Thread writer = new Thread(() -> acquired.forEach(EventBuffer::release));
+        writer.start();
+        writer.join();
+
+        final AtomicReference<EventBuffer> reused = new AtomicReference<>();
+        Thread next = new Thread(() -> reused.set(EventBuffer.acquire()));
+        next.start();
+        next.join();
+        assertTrue(acquired.contains(reused.get()));
+    }
+
+    /**
+     * Test adopted content remains readable and the buffer is never reused.
+     */
+    @Test
+    public void testAdoptedBufferNotReused() throws Exception {
+        EventBuffer buffer = EventBuffer.acquire();
+        buffer.write(new byte[]{1, 2, 3});
+        ByteBuffer adopted = buffer.adopt();
+        buffer.release();
+
+        assertNotSame(buffer, EventBuffer.acquire());
+        assertEquals(3, adopted.remaining());
+        assertEquals(3, adopted.get(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleasedBufferNotReadable() throws Exception {
+        EventBuffer buffer = EventBuffer.acquire();
+        buffer.write(1);
+        buffer.release();
+        buffer.toByteBuffer();
+    }
+}
@@ -49,6 +49,28 @@ public class HierarchicalCodecResolverTest {
         assertFalse(secondTier.findCodec("doesNotExist").isPresent());
     }
 
+    /**
+     * Test resolutions are memoized, including unresolved types, and that
+     * codecs added to a parent tier are visible to previously resolved types
+     * of the child tier.
+     */
+    @Test
+    public void testMemoizedResolution() {
+        final HierarchicalCodecResolver firstTier = new HierarchicalCodecResolver();
+        final HierarchicalCodecResolver secondTier = new HierarchicalCodecResolver(firstTier);
+        final MockEventCodec bar = new MockEventCodec("bar");
+        secondTier.add(bar);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(secondTier.findCodec("bar").isPresent());
+            assertFalse(secondTier.findCodec("foo").isPresent());
+        }
+        assertEquals(2, bar.supportedCalls);
+
+        firstTier.add(new MockEventCodec("foo"));
+        assertTrue(secondTier.findCodec("foo").isPresent());
+    }
+
     /**
      * Mock codec implementation used to test HierarchicalCodecResolver.
      * <p>
@@ -58,6 +80,7 @@ public class HierarchicalCodecResolverTest {
     private class MockEventCodec implements EventCodec {
 
         private final String eventType;
+        private int supportedCalls;
 
         public MockEventCodec(String eventType) {
             this.eventType = eventType;
@@ -65,6 +88,7 @@ public class HierarchicalCodecResolverTest {
 
         @Override
         public boolean isSupported(String eventType) {
+            supportedCalls++;
             return this.eventType.equalsIgnoreCase(eventType);
         }
 
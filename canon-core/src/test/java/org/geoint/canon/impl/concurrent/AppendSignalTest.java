@@ -0,0 +1,56 @@
+package org.geoint.canon.impl.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the AppendSignal.
+ *
+ * @author steve_siebert
+ */
+public class AppendSignalTest {
+
+    @Test
+    public void testAwaitReturnsImmediatelyWhenReady() throws Exception {
+        AppendSignal signal = new AppendSignal();
+        assertTrue(signal.await(() -> true, 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testAwaitTimesOut() throws Exception {
+        AppendSignal signal = new AppendSignal();
+        assertFalse(signal.await(() -> false, 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, signal.getWaiting());
+    }
+
+    /**
+     * Test a waiting thread is woken by the signal rather than waiting for
+     * the timeout.
+     */
+    @Test
+    public void testSignalWakesWaiter() throws Exception {
+        AppendSignal signal = new AppendSignal();
+        AtomicBoolean published = new AtomicBoolean();
+        AtomicBoolean result = new AtomicBoolean();
+
+        Thread waiter = new Thread(() -> {
+            try {
+                result.set(signal.await(published::get, 1, TimeUnit.MINUTES));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        while (signal.getWaiting() == 0) {
+            Thread.yield();
+        }
+
+        published.set(true);
+        signal.signal();
+        waiter.join(1000);
+        assertFalse("waiter was not woken", waiter.isAlive());
+        assertTrue(result.get());
+    }
+}
@@ -0,0 +1,78 @@
+package org.geoint.canon.impl.concurrent;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the ChunkedArrayLog.
+ *
+ * @author steve_siebert
+ */
+public class ChunkedArrayLogTest {
+
+    /**
+     * Test elements are returned by index across many chunks and directory
+     * growth.
+     */
+    @Test
+    public void testAppendAndGet() {
+        ChunkedArrayLog<Integer> log = new ChunkedArrayLog<>(2); //4 per chunk
+        assertTrue(log.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, log.append(i));
+        }
+        assertEquals(1000, log.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), log.get(i));
+        }
+    }
+
+    @Test
+    public void testAppendAll() {
+        ChunkedArrayLog<String> log = new ChunkedArrayLog<>(1);
+        log.append("a");
+        assertEquals(1, log.appendAll("b", "c", "d"));
+        assertEquals(4, log.size());
+        assertEquals("d", log.get(3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetUnpublished() {
+        ChunkedArrayLog<String> log = new ChunkedArrayLog<>();
+        log.append("a");
+        log.get(1);
+    }
+
+    /**
+     * Test a reader concurrently reading while the writer appends never sees a
+     * missing or out of order element.
+     */
+    @Test
+    public void testConcurrentReader() throws Exception {
+        final int count = 200000;
+        ChunkedArrayLog<Integer> log = new ChunkedArrayLog<>(4);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            int next = 0;
+            while (next < count) {
+                if (next < log.size()) {
+                    Integer value = log.get(next);
+                    if (value == null || value != next) {
+                        failure.set("expected " + next + " but read " + value);
+                        return;
+                    }
+                    next++;
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            log.append(i);
+        }
+        reader.join(10000);
+        assertFalse("reader did not finish", reader.isAlive());
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,146 @@
+package org.geoint.canon.impl.stream;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.geoint.canon.stream.mock.MockEventReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the CheckpointTable and TableTrackedDurableEventReader.
+ *
+ * @author steve_siebert
+ */
+public class CheckpointTableTest {
+
+    private static final String CHANNEL = "testChannel";
+    private static final String STREAM = "testStream";
+
+    /**
+     * Test reader positions are recovered when the table is reopened.
+     */
+    @Test
+    public void testRecoverPosition() throws Exception {
+        List<AppendedEventMessage> events = events(5);
+        File tableFile = tableFile();
+
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            TableTrackedDurableEventReader reader = open(events, table, "a");
+            acknowledge(reader, 3);
+            open(events, table, "b");
+        }
+
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            assertEquals(2, table.size());
+            assertEquals(events.get(3).getSequence(),
+                    open(events, table, "a").getPosition());
+            assertEquals(events.get(0).getSequence(),
+                    open(events, table, "b").getPosition());
+        }
+    }
+
+    /**
+     * Test a slot torn by a crash falls back to the previous position.
+     */
+    @Test
+    public void testTornWrite() throws Exception {
+        File tableFile = tableFile();
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            CheckpointTable.Checkpoint cp = table.checkpoint("reader");
+            cp.write("first");
+            cp.write("second");
+        }
+
+        //corrupt the newest record (version 2, the first record of slot 0)
+        try (RandomAccessFile raf = new RandomAccessFile(tableFile, "rw")) {
+            raf.seek(64 + 192 + 10);
+            raf.write('X');
+        }
+
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            assertEquals("first", table.checkpoint("reader").read());
+        }
+    }
+
+    /**
+     * Test deleted checkpoints free their slot for reuse.
+     */
+    @Test
+    public void testDeleteReader() throws Exception {
+        List<AppendedEventMessage> events = events(3);
+        File tableFile = tableFile();
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            TableTrackedDurableEventReader reader = open(events, table, "a");
+            acknowledge(reader, 2);
+            reader.deleteReader();
+            assertEquals(0, table.size());
+
+            assertNull(table.checkpoint("c").read());
+            assertEquals(64 + 4096 * 512, tableFile.length());
+        }
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            assertEquals(1, table.size());
+        }
+    }
+
+    /**
+     * Test the table grows beyond one mapped chunk.
+     */
+    @Test
+    public void testManyCheckpoints() throws Exception {
+        File tableFile = tableFile();
+        final int count = 10000;
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            for (int i = 0; i < count; i++) {
+                table.checkpoint("reader-" + i).write("position-" + i);
+            }
+        }
+        try (CheckpointTable table = CheckpointTable.open(tableFile)) {
+            assertEquals(count, table.size());
+            for (int i = 0; i < count; i += 997) {
+                assertEquals("position-" + i,
+                        table.checkpoint("reader-" + i).read());
+            }
+        }
+    }
+
+    private static List<AppendedEventMessage> events(int count) {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(MockAppendedEventMessage.random(CHANNEL, STREAM));
+        }
+        return events;
+    }
+
+    private static File tableFile() throws Exception {
+        File dir = Files.createTempDirectory("canon-checkpoints").toFile();
+        dir.deleteOnExit();
+        File tableFile = new File(dir, "checkpoints");
+        tableFile.deleteOnExit();
+        return tableFile;
+    }
+
+    /**
+     * Opens a durable reader positioned at the first event.
+     */
+    private static TableTrackedDurableEventReader open(
+            List<AppendedEventMessage> events, CheckpointTable table,
+            String readerId) throws Exception {
+        MockEventReader mock = new MockEventReader(CHANNEL, STREAM, events);
+        mock.poll();
+        return TableTrackedDurableEventReader.track(readerId, mock, table);
+    }
+
+    private static void acknowledge(TableTrackedDurableEventReader reader,
+            int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            assertTrue(reader.poll().isPresent());
+            reader.ok();
+        }
+    }
+}
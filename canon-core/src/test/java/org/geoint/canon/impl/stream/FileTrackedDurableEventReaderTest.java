@@ -0,0 +1,129 @@
+package org.geoint.canon.impl.stream;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.geoint.canon.stream.mock.MockEventReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the FileTrackedDurableEventReader.
+ *
+ * @author steve_siebert
+ */
+public class FileTrackedDurableEventReaderTest {
+
+    private static final String CHANNEL = "testChannel";
+    private static final String STREAM = "testStream";
+
+    /**
+     * Test a synchronous reader position is recovered from the track file.
+     */
+    @Test
+    public void testSynchronousCheckpoint() throws Exception {
+        List<AppendedEventMessage> events = events(5);
+        File trackFile = trackFile();
+
+        FileTrackedDurableEventReader reader = open(events, trackFile,
+                CheckpointPolicy.SYNCHRONOUS);
+        acknowledge(reader, 3);
+        assertEquals(events.get(3).getSequence(), recover(events, trackFile));
+        reader.close();
+    }
+
+    /**
+     * Test a batched reader writes its position only once the batch is full,
+     * and on close.
+     */
+    @Test
+    public void testBatchedCheckpoint() throws Exception {
+        List<AppendedEventMessage> events = events(10);
+        File trackFile = trackFile();
+
+        FileTrackedDurableEventReader reader = open(events, trackFile,
+                CheckpointPolicy.batched(4, 1, TimeUnit.HOURS));
+        acknowledge(reader, 3);
+        assertEquals("unflushed acknowledgements were written",
+                events.get(0).getSequence(), recover(events, trackFile));
+
+        acknowledge(reader, 1);
+        assertEquals(events.get(4).getSequence(), recover(events, trackFile));
+
+        acknowledge(reader, 2);
+        reader.close();
+        assertEquals(events.get(6).getSequence(), recover(events, trackFile));
+    }
+
+    /**
+     * Test a batched reader writes a pending acknowledgement after the delay.
+     */
+    @Test
+    public void testBatchedCheckpointDelay() throws Exception {
+        List<AppendedEventMessage> events = events(5);
+        File trackFile = trackFile();
+
+        FileTrackedDurableEventReader reader = open(events, trackFile,
+                CheckpointPolicy.batched(100, 20, TimeUnit.MILLISECONDS));
+        acknowledge(reader, 1);
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!events.get(1).getSequence().equals(recover(events, trackFile))) {
+            assertTrue("checkpoint was not flushed",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        reader.close();
+    }
+
+    private static List<AppendedEventMessage> events(int count) {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(MockAppendedEventMessage.random(CHANNEL, STREAM));
+        }
+        return events;
+    }
+
+    private static File trackFile() throws Exception {
+        File dir = Files.createTempDirectory("canon-track").toFile();
+        dir.deleteOnExit();
+        File trackFile = new File(dir, "reader");
+        trackFile.deleteOnExit();
+        return trackFile;
+    }
+
+    /**
+     * Opens a durable reader positioned at the first event.
+     */
+    private static FileTrackedDurableEventReader open(
+            List<AppendedEventMessage> events, File trackFile,
+            CheckpointPolicy checkpoints) throws Exception {
+        MockEventReader mock = new MockEventReader(CHANNEL, STREAM, events);
+        mock.poll();
+        return FileTrackedDurableEventReader.trackFile("reader", mock,
+                trackFile, checkpoints);
+    }
+
+    private static void acknowledge(FileTrackedDurableEventReader reader,
+            int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            assertTrue(reader.poll().isPresent());
+            reader.ok();
+        }
+    }
+
+    /**
+     * Position a reader recovering from the track file would resume from.
+     */
+    private static String recover(List<AppendedEventMessage> events,
+            File trackFile) throws Exception {
+        try (FileTrackedDurableEventReader recovered
+                = open(events, trackFile, CheckpointPolicy.SYNCHRONOUS)) {
+            return recovered.getPosition();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.geoint.canon.impl.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.impl.stream.GroupCommitter.SyncMode;
+import org.geoint.canon.stream.StreamAppendException;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the GroupCommitter.
+ *
+ * @author steve_siebert
+ */
+public class GroupCommitterTest {
+
+    private static final String STREAM = "test";
+
+    /**
+     * Test that each committer receives the appended events for only its own
+     * records, in order.
+     */
+    @Test
+    public void testCommitReturnsOwnRecords() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, Collections.emptyMap(), GroupCommitterTest::append,
+                syncs::incrementAndGet);
+
+        AppendedEventMessage[] appended
+                = committer.commit(list("a", "b"), 2);
+        assertEquals(2, appended.length);
+        assertEquals("a", appended[0].getSequence());
+        assertEquals("b", appended[1].getSequence());
+        assertEquals(SyncMode.BATCH, committer.getSyncMode());
+        assertEquals("batch policy did not sync", 1, syncs.get());
+    }
+
+    /**
+     * Test that concurrent commits are merged into fewer writes and flushes
+     * than commits.
+     */
+    @Test
+    public void testConcurrentCommitsAreGrouped() throws Exception {
+        final int producers = 16;
+        final int commitsPerProducer = 50;
+        AtomicInteger writes = new AtomicInteger();
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, Collections.emptyMap(),
+                (records) -> {
+                    writes.incrementAndGet();
+                    return append(records);
+                },
+                () -> {
+                    syncs.incrementAndGet();
+                    try {
+                        Thread.sleep(1); //simulate the device flush
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        ExecutorService exec = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final String producer = String.valueOf(p);
+            results.add(exec.submit(() -> {
+                start.await();
+                for (int i = 0; i < commitsPerProducer; i++) {
+                    String seq = producer + "-" + i;
+                    AppendedEventMessage[] a
+                            = committer.commit(list(seq), 1);
+                    if (a.length != 1 || !seq.equals(a[0].getSequence())) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> r : results) {
+            assertTrue("commit returned wrong events", r.get());
+        }
+        exec.shutdown();
+        exec.awaitTermination(1, TimeUnit.SECONDS);
+
+        final int commits = producers * commitsPerProducer;
+        assertTrue("commits were not grouped", writes.get() < commits);
+        assertEquals("each group write should sync once",
+                writes.get(), syncs.get());
+    }
+
+    /**
+     * Test that the bytes policy only flushes once the threshold is reached,
+     * and that close flushes the remainder.
+     */
+    @Test
+    public void testBytesPolicy() throws Exception {
+        Map<String, String> props = new HashMap<>();
+        props.put(GroupCommitter.PROPERTY_SYNC, "bytes");
+        props.put(GroupCommitter.PROPERTY_SYNC_BYTES, "10");
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, props, GroupCommitterTest::append,
+                syncs::incrementAndGet);
+
+        committer.commit(list("a"), 4);
+        committer.commit(list("b"), 4);
+        assertEquals(0, syncs.get());
+        committer.commit(list("c"), 4);
+        assertEquals(1, syncs.get());
+        committer.commit(list("d"), 4);
+        committer.close();
+        assertEquals("close did not flush", 2, syncs.get());
+    }
+
+    /**
+     * Test that a write failure is reported to the committer.
+     */
+    @Test(expected = StreamAppendException.class)
+    public void testWriteFailure() throws Exception {
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, Collections.emptyMap(),
+                (records) -> {
+                    throw new StreamAppendException(STREAM, "test failure");
+                },
+                () -> {
+                });
+        committer.commit(list("a"), 1);
+    }
+
+    /**
+     * Test that when a group is partially written only the commits whose
+     * records were all written are acknowledged.
+     */
+    @Test
+    public void testPartialWrite() throws Exception {
+        final int producers = 8;
+        //records written by the writer, before a failing record of the group
+        Map<String, Boolean> written = new ConcurrentHashMap<>();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, Collections.emptyMap(),
+                (records) -> {
+                    final int failed = records.indexOf("fail");
+                    if (failed == -1) {
+                        records.forEach((r) -> written.put(r, true));
+                        return append(records);
+                    }
+                    for (int i = 0; i < records.size(); i++) {
+                        written.put(records.get(i), i < failed);
+                    }
+                    throw new GroupCommitter.PartialWriteException(STREAM,
+                            append(records.subList(0, failed)),
+                            new StreamAppendException(STREAM, "test"));
+                },
+                () -> {
+                });
+
+        ExecutorService exec = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<String, Future<Boolean>> results = new HashMap<>();
+        for (int p = 0; p < producers; p++) {
+            final String record = (p == producers / 2) ? "fail" : "r" + p;
+            results.put(record, exec.submit(() -> {
+                start.await();
+                try {
+                    return committer.commit(list(record), 1).length == 1;
+                } catch (StreamAppendException ex) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        for (Map.Entry<String, Future<Boolean>> r : results.entrySet()) {
+            final boolean acknowledged = r.getValue().get();
+            assertEquals(r.getKey(), written.get(r.getKey()), acknowledged);
+        }
+        assertFalse(results.get("fail").get());
+        exec.shutdown();
+        exec.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Test that a failed flush fails the appends of the flushed group, and
+     * the committer refuses further appends without retrying the flush.
+     */
+    @Test
+    public void testSyncFailure() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, Collections.emptyMap(), GroupCommitterTest::append,
+                () -> {
+                    if (syncs.incrementAndGet() == 1) {
+                        throw new IOException("test failure");
+                    }
+                });
+
+        try {
+            committer.commit(list("a"), 1);
+            fail("append of the failed flush was acknowledged");
+        } catch (StreamAppendException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+        assertEquals(1, syncs.get());
+
+        //further appends are refused and the flush is not retried
+        try {
+            committer.commit(list("b"), 1);
+            fail("append was accepted after a failed flush");
+        } catch (StreamAppendException ex) {
+            //expected
+        }
+        committer.close();
+        assertEquals(1, syncs.get());
+    }
+
+    /**
+     * Test that a failed flush triggered by the bytes policy fails the
+     * appends of the triggering group only.
+     */
+    @Test
+    public void testBytesSyncFailure() throws Exception {
+        Map<String, String> props = new HashMap<>();
+        props.put(GroupCommitter.PROPERTY_SYNC, "bytes");
+        props.put(GroupCommitter.PROPERTY_SYNC_BYTES, "10");
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommitter<String> committer = GroupCommitter.fromProperties(
+                STREAM, props, GroupCommitterTest::append,
+                () -> {
+                    syncs.incrementAndGet();
+                    throw new IOException("test failure");
+                });
+
+        assertEquals(1, committer.commit(list("a"), 4).length);
+        assertEquals(1, committer.commit(list("b"), 4).length);
+        for (String record : new String[]{"c", "d"}) {
+            try {
+                committer.commit(list(record), 4);
+                fail(String.format("append '%s' was acknowledged", record));
+            } catch (StreamAppendException ex) {
+                //expected
+            }
+        }
+        committer.close();
+        assertEquals(1, syncs.get());
+    }
+
+    private static AppendedEventMessage[] append(List<String> records) {
+        AppendedEventMessage[] appended
+                = new AppendedEventMessage[records.size()];
+        for (int i = 0; i < appended.length; i++) {
+            appended[i] = new MockAppendedEventMessage("channel", STREAM,
+                    "test", records.get(i));
+        }
+        return appended;
+    }
+
+    private static List<String> list(String... records) {
+        List<String> l = new ArrayList<>();
+        Collections.addAll(l, records);
+        return l;
+    }
+}
@@ -0,0 +1,125 @@
+package org.geoint.canon.impl.stream;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the MonotonicIdGenerator.
+ *
+ * @author steve_siebert
+ */
+public class MonotonicIdGeneratorTest {
+
+    private static final Map<String, String> PROPS = new HashMap<>();
+
+    @Test
+    public void testMonotonic() {
+        MonotonicIdGenerator gen = new MonotonicIdGenerator();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(gen.generate(null, PROPS));
+        }
+        List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(ids, sorted);
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+        assertEquals(MonotonicIdGenerator.STRING_LENGTH, ids.get(0).length());
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        MonotonicIdGenerator gen = new MonotonicIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    ids.add(gen.generate(null, PROPS));
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40000, ids.size());
+    }
+
+    /**
+     * Test identities remain unique when more threads generate identities
+     * than there are thread tags.
+     */
+    @Test
+    public void testUniqueBeyondThreadTags() throws Exception {
+        MonotonicIdGenerator gen = new MonotonicIdGenerator(
+                new MonotonicIdGenerator.ThreadTags(2));
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        for (int t = 0; t < 10; t++) {
+            generate(gen, ids, 1000);
+        }
+        assertEquals(10000, ids.size());
+    }
+
+    @Test
+    public void testBinaryForm() {
+        MonotonicIdGenerator gen = new MonotonicIdGenerator();
+        ByteBuffer binary = ByteBuffer.allocate(gen.getBinaryLength());
+        final long before = System.currentTimeMillis();
+        gen.generate(null, PROPS, binary);
+        binary.flip();
+        String id = gen.toString(binary);
+
+        ByteBuffer decoded = ByteBuffer.allocate(gen.getBinaryLength());
+        MonotonicIdGenerator.toBinary(id, decoded);
+        decoded.flip();
+        assertEquals(binary, decoded);
+
+        final long timestamp = MonotonicIdGenerator.getTimestamp(id);
+        assertTrue(timestamp >= before
+                && timestamp <= System.currentTimeMillis());
+        assertTrue(MonotonicIdGenerator.lowerBound(timestamp)
+                .compareTo(id) <= 0);
+        assertTrue(MonotonicIdGenerator.lowerBound(timestamp + 1)
+                .compareTo(id) > 0);
+    }
+
+    @Test
+    public void testNodeProperty() {
+        Map<String, String> props = new HashMap<>();
+        props.put(MonotonicIdGenerator.NODE_PROPERTY_NAME, "258");
+        ByteBuffer binary
+                = ByteBuffer.allocate(MonotonicIdGenerator.BINARY_LENGTH);
+        new MonotonicIdGenerator().generate(null, props, binary);
+        assertEquals(258, binary.getLong(0) & 0xFFFF);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidId() {
+        MonotonicIdGenerator.getTimestamp("not-a-monotonic-id");
+    }
+
+    /**
+     * Generates identities on a new thread, which has ended on return.
+     */
+    private static void generate(MonotonicIdGenerator gen, Set<String> ids,
+            int count) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                ids.add(gen.generate(null, PROPS));
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,65 @@
+package org.geoint.canon.impl.stream;
+
+import java.util.HashMap;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.event.StreamCreated;
+import org.geoint.canon.stream.memory.MemoryChannelProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the stream registry of a channel.
+ *
+ * @author steve_siebert
+ */
+public class StreamRegistryTest {
+
+    @Test
+    public void testFindIgnoresCase() throws Exception {
+        EventChannel channel = newChannel();
+        EventStream stream = channel.getOrCreateStream("testStream");
+
+        assertSame(stream, channel.findStream("TESTSTREAM").get());
+        assertSame(stream, channel.getOrCreateStream("teststream"));
+        assertFalse(channel.findStream("otherStream").isPresent());
+        assertEquals(2, channel.listStreams().size());
+        channel.close();
+    }
+
+    @Test
+    public void testExistingStreamNotCreated() throws Exception {
+        EventChannel channel = newChannel();
+        channel.getOrCreateStream("testStream");
+        channel.getOrCreateStream("testStream");
+
+        //only the admin stream and the test stream creation are recorded
+        int created = 0;
+        try (EventReader reader = channel.getChannelAdminStream().newReader()) {
+            while (reader.hasNext()) {
+                AppendedEventMessage e = reader.poll().get();
+                if (e.getEventType().equals(StreamCreated.class.getName())) {
+                    created++;
+                }
+            }
+        }
+        assertEquals(2, created);
+        channel.close();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testListStreamsUnmodifiable() throws Exception {
+        EventChannel channel = newChannel();
+        channel.listStreams().clear();
+    }
+
+    private static EventChannel newChannel() throws Exception {
+        return new MemoryChannelProvider().getChannel("testChannel",
+                new HashMap<>(), new HierarchicalCodecResolver(
+                        new ObjectStreamEventCodec()));
+    }
+}
@@ -0,0 +1,171 @@
+package org.geoint.canon.impl.stream;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.SnapshotEventHandler;
+import org.geoint.canon.stream.event.SnapshotCreated;
+import org.geoint.canon.stream.memory.MemoryChannelProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the handler snapshots of a stream.
+ *
+ * @author steve_siebert
+ */
+public class StreamSnapshotTest {
+
+    private static final String STREAM = "testStream";
+    private static final int INTERVAL = 10;
+
+    /**
+     * Test a handler is restored from its snapshot and resumes after the
+     * snapshot event.
+     */
+    @Test
+    public void testResumeFromSnapshot() throws Exception {
+        EventChannel channel = new MemoryChannelProvider().getChannel(
+                "testChannel", new HashMap<>(), new HierarchicalCodecResolver(
+                        new ObjectStreamEventCodec()));
+        AbstractEventStream stream
+                = (AbstractEventStream) channel.getOrCreateStream(STREAM);
+        List<String> sequences = append(stream, 25);
+
+        RecordingHandler first = new RecordingHandler();
+        stream.addSnapshotHandler(first);
+        first.await(25);
+        assertEquals(sequences, first.getHandled());
+        stream.removeHandler(first);
+        stream.awaitSnapshots();
+        assertTrue(stream.listHandlers().stream()
+                .noneMatch((h) -> h instanceof SnapshottingEventHandler
+                && ((SnapshottingEventHandler) h).getHandler() == first));
+
+        //restored at the snapshot of the 20th event, handling only the rest
+        RecordingHandler second = new RecordingHandler();
+        stream.addSnapshotHandler(second);
+        assertEquals(sequences.subList(0, 20), second.getRestored());
+        second.await(25);
+        assertEquals(sequences, second.getHandled());
+        stream.removeHandler(second);
+
+        int created = 0;
+        try (EventReader admin = channel.getChannelAdminStream().newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = admin.poll()).isPresent()) {
+                if (e.get().getEventType()
+                        .equals(SnapshotCreated.class.getName())) {
+                    created++;
+                }
+            }
+        }
+        assertEquals(2, created);
+    }
+
+    /**
+     * Test the file store retains the two newest snapshots and falls back to
+     * the previous snapshot if the newest is invalid.
+     */
+    @Test
+    public void testFileSnapshotStore() throws Exception {
+        File dir = Files.createTempDirectory("canon-snapshots").toFile();
+        dir.deleteOnExit();
+        FileSnapshotStore store = new FileSnapshotStore(dir);
+        for (int i = 1; i <= 3; i++) {
+            store.save(new StreamSnapshot("test", "seq" + i, new byte[]{
+                (byte) i}));
+        }
+
+        StreamSnapshot latest = store.findLatest("test").get();
+        assertEquals("seq3", latest.getSequence());
+        assertArrayEquals(new byte[]{3}, latest.getState());
+
+        File[] files = new File(dir, "test").listFiles();
+        assertEquals(2, files.length);
+        File newest = Collections.max(Arrays.asList(files));
+        try (RandomAccessFile raf = new RandomAccessFile(newest, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertEquals("seq2", store.findLatest("test").get().getSequence());
+
+        store.delete("test");
+        assertFalse(store.findLatest("test").isPresent());
+    }
+
+    private static List<String> append(AbstractEventStream stream, int count)
+            throws Exception {
+        EventAppender appender = stream.newAppender();
+        for (int i = 0; i < count; i++) {
+            appender.create(String.class.getName()).event("event " + i);
+        }
+        appender.append();
+
+        List<String> sequences = new ArrayList<>();
+        try (EventReader reader = stream.newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = reader.poll()).isPresent()) {
+                sequences.add(e.get().getSequence());
+            }
+        }
+        return sequences;
+    }
+
+    private static class RecordingHandler
+            implements SnapshotEventHandler<ArrayList<String>> {
+
+        private final ArrayList<String> handled = new ArrayList<>();
+        private List<String> restored;
+
+        @Override
+        public synchronized void handle(AppendedEventMessage event) {
+            handled.add(event.getSequence());
+            notifyAll();
+        }
+
+        @Override
+        public int getSnapshotInterval() {
+            return INTERVAL;
+        }
+
+        @Override
+        public synchronized ArrayList<String> createSnapshot() {
+            return handled;
+        }
+
+        @Override
+        public synchronized void restoreSnapshot(ArrayList<String> snapshot) {
+            restored = new ArrayList<>(snapshot);
+            handled.addAll(snapshot);
+        }
+
+        synchronized List<String> getRestored() {
+            return restored;
+        }
+
+        synchronized List<String> getHandled() {
+            return new ArrayList<>(handled);
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (handled.size() < count) {
+                final long remaining = deadline - System.currentTimeMillis();
+                assertTrue("events were not handled", remaining > 0);
+                wait(remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.geoint.canon.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.geoint.canon.stream.mock.MockEventReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the partitioned replay of a stream.
+ *
+ * @author steve_siebert
+ */
+public class PartitionedReplayTest {
+
+    private static final String CHANNEL = "testChannel";
+    private static final String STREAM = "testStream";
+    private static final String KEY_HEADER = "entity";
+
+    /**
+     * Test every event is replayed and events of each key are replayed in
+     * stream order.
+     */
+    @Test
+    public void testKeyOrderPreserved() throws Exception {
+        List<AppendedEventMessage> events = events(10000, 37);
+        Map<String, List<String>> replayed = new ConcurrentHashMap<>();
+
+        replay(events, 8, (e) -> replayed.computeIfAbsent(
+                e.findHeader(KEY_HEADER).orElse(""),
+                (k) -> Collections.synchronizedList(new ArrayList<>()))
+                .add(e.getSequence()))
+                .get(10, TimeUnit.SECONDS);
+
+        Map<String, List<String>> expected = new ConcurrentHashMap<>();
+        for (AppendedEventMessage e : events) {
+            expected.computeIfAbsent(e.findHeader(KEY_HEADER).get(),
+                    (k) -> new ArrayList<>()).add(e.getSequence());
+        }
+        assertEquals(expected, replayed);
+    }
+
+    /**
+     * Test events without the key header are replayed.
+     */
+    @Test
+    public void testMissingKeyHeader() throws Exception {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(MockAppendedEventMessage.random(CHANNEL, STREAM));
+        }
+        AtomicInteger count = new AtomicInteger();
+        replay(events, 4, (e) -> count.incrementAndGet())
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(events.size(), count.get());
+    }
+
+    /**
+     * Test a failing handler stops the replay and completes the future
+     * exceptionally.
+     */
+    @Test
+    public void testHandlerFailure() throws Exception {
+        List<AppendedEventMessage> events = events(5000, 10);
+        String failing = events.get(100).getSequence();
+        AtomicInteger count = new AtomicInteger();
+
+        CompletableFuture<Void> replay = replay(events, 4, (e) -> {
+            if (e.getSequence().equals(failing)) {
+                throw new IllegalStateException("test failure");
+            }
+            count.incrementAndGet();
+        });
+        try {
+            replay.get(10, TimeUnit.SECONDS);
+            fail("replay did not fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof StreamReadException);
+        }
+        assertTrue(count.get() < events.size() - 1);
+    }
+
+    /**
+     * Test events the handler skips do not stop the replay.
+     */
+    @Test
+    public void testHandlerContinue() throws Exception {
+        List<AppendedEventMessage> events = events(500, 10);
+        AtomicInteger count = new AtomicInteger();
+
+        replay(events, 4, new EventHandler() {
+            @Override
+            public void handle(AppendedEventMessage event) throws Throwable {
+                if (count.incrementAndGet() % 2 == 0) {
+                    throw new IllegalStateException("test failure");
+                }
+            }
+
+            @Override
+            public EventHandlerAction onFailure(AppendedEventMessage event,
+                    Throwable ex) {
+                return EventHandlerAction.CONTINUE;
+            }
+        }).get(10, TimeUnit.SECONDS);
+        assertEquals(events.size(), count.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPartitions() {
+        replay(events(1, 1), 0, (e) -> {
+        });
+    }
+
+    private static List<AppendedEventMessage> events(int count, int keys) {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(MockAppendedEventMessage.random(CHANNEL, STREAM)
+                    .withHeader(KEY_HEADER, "key-" + (i % keys)));
+        }
+        return events;
+    }
+
+    private static CompletableFuture<Void> replay(
+            List<AppendedEventMessage> events, int partitions,
+            EventHandler handler) {
+        return PartitionedReplay.start(
+                new MockEventReader(CHANNEL, STREAM, events), handler,
+                KEY_HEADER, partitions, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,192 @@
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.event.StreamArchived;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the archiving of a FileEventStream.
+ *
+ * @author steve_siebert
+ */
+public class FileEventStreamArchiveTest {
+
+    private static final String STREAM = "testStream";
+    private static final String TIER = "tier";
+    private static final String COLD = "cold";
+
+    @Test
+    public void testArchiveCompressed() throws Exception {
+        testArchive(true);
+    }
+
+    @Test
+    public void testArchiveUncompressed() throws Exception {
+        testArchive(false);
+    }
+
+    private void testArchive(boolean compress) throws Exception {
+        File dir = Files.createTempDirectory("canon-archive").toFile();
+        dir.deleteOnExit();
+        File archiveDir = new File(dir, "archive");
+
+        FileEventChannel channel = open(dir);
+        EventAppender appender = channel.getOrCreateStream(STREAM)
+                .newAppender();
+        for (int i = 0; i < 400; i++) {
+            appender.create(String.class.getName())
+                    .header(TIER, i % 3 == 0 ? "hot" : COLD)
+                    .event("event " + i);
+            if (i % 50 == 49) {
+                appender.append();
+            }
+        }
+        channel.close();
+
+        //reopen so every sealed segment has a persisted index
+        channel = open(dir);
+        FileEventStream stream
+                = (FileEventStream) channel.getOrCreateStream(STREAM);
+        List<AppendedEventMessage> before = readAll(stream);
+        final long segmentBytes = segmentBytes(dir);
+        EventReader reader = stream.newReader();
+        for (int i = 0; i < 3; i++) {
+            reader.poll();
+        }
+
+        assertFalse(stream.isArchiving());
+        stream.enableArchive(archiveDir, compress,
+                (e) -> COLD.equals(e.findHeader(TIER).orElse(null)),
+                0, TimeUnit.MILLISECONDS);
+        assertTrue(stream.isArchiving());
+        //archiving may also have run in the background
+        stream.archive();
+        assertTrue(countAdminEvents(channel,
+                StreamArchived.class.getName()) > 0);
+        assertTrue(archiveFiles(archiveDir) > 0);
+        assertTrue(segmentBytes(dir) < segmentBytes);
+
+        //archived events are read transparently, in order
+        assertEquals(sequences(before), sequences(readAll(stream)));
+        assertEquals(before.get(3).getSequence(),
+                reader.poll().get().getSequence());
+
+        //archived events are found by sequence
+        EventReader positioned = stream.newReader();
+        AppendedEventMessage archived = before.get(before.size() / 2 + 2);
+        assertEquals(COLD, archived.findHeader(TIER).get());
+        positioned.setPosition(archived.getSequence());
+        assertEquals(archived.getSequence(), positioned.getPosition());
+        assertEquals(before.get(before.size() / 2 + 3).getSequence(),
+                positioned.poll().get().getSequence());
+
+        //archived events are found by offset
+        EventReader seeking = stream.newReader();
+        seeking.seek(archived.getOffset());
+        assertEquals(archived.getSequence(), seeking.getPosition());
+        assertEquals(archived.getOffset(), seeking.position());
+        assertEquals(before.get(before.size() / 2 + 3).getSequence(),
+                seeking.poll().get().getSequence());
+        channel.close();
+
+        //the archive survives reopening the stream
+        channel = open(dir);
+        stream = (FileEventStream) channel.getOrCreateStream(STREAM);
+        assertFalse(stream.isArchiving());
+        assertEquals(sequences(before), sequences(readAll(stream)));
+
+        //deleting the archive restores the events to the stream
+        stream.deleteArchive();
+        assertFalse(stream.isArchiving());
+        assertFalse(archiveDir.exists() && archiveFiles(archiveDir) > 0);
+        assertEquals(sequences(before), sequences(readAll(stream)));
+        channel.close();
+
+        channel = open(dir);
+        assertEquals(sequences(before),
+                sequences(readAll(channel.getOrCreateStream(STREAM))));
+        channel.close();
+    }
+
+    private static FileEventChannel open(File dir) throws Exception {
+        Map<String, String> props = new HashMap<>();
+        props.put(FileChannelProvider.PROPERTY_DIRECTORY,
+                dir.getAbsolutePath());
+        props.put(FileChannelProvider.PROPERTY_SEGMENT_SIZE, "4096");
+        return (FileEventChannel) new FileChannelProvider().getChannel(
+                "testChannel", props, new HierarchicalCodecResolver(
+                        new ObjectStreamEventCodec()));
+    }
+
+    private static List<AppendedEventMessage> readAll(
+            EventStream stream) throws Exception {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        try (EventReader reader = stream.newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = reader.poll()).isPresent()) {
+                events.add(e.get());
+            }
+        }
+        return events;
+    }
+
+    private static List<String> sequences(List<AppendedEventMessage> events) {
+        List<String> sequences = new ArrayList<>();
+        events.forEach((e) -> sequences.add(e.getSequence()));
+        return sequences;
+    }
+
+    /**
+     * Total size of the segment files under the directory.
+     */
+    private static long segmentBytes(File dir) {
+        long bytes = 0;
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                bytes += segmentBytes(f);
+            } else if (f.getName().endsWith(
+                    EventSegment.SEGMENT_FILE_EXTENSION)) {
+                bytes += f.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static int archiveFiles(File dir) {
+        int count = 0;
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                count += archiveFiles(f);
+            } else if (f.getName().endsWith(
+                    ArchiveSegment.ARCHIVE_FILE_EXTENSION)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countAdminEvents(FileEventChannel channel,
+            String eventType) throws Exception {
+        int count = 0;
+        for (AppendedEventMessage e : readAll(channel.getChannelAdminStream())) {
+            if (e.getEventType().equals(eventType)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
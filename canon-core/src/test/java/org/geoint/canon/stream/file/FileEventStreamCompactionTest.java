@@ -0,0 +1,170 @@
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.event.StreamCompacted;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the compaction of a FileEventStream.
+ *
+ * @author steve_siebert
+ */
+public class FileEventStreamCompactionTest {
+
+    private static final String STREAM = "testStream";
+    private static final String KEY = "entity";
+    private static final int KEYS = 5;
+
+    @Test
+    public void testCompact() throws Exception {
+        File dir = Files.createTempDirectory("canon-compaction").toFile();
+        dir.deleteOnExit();
+
+        FileEventChannel channel = open(dir);
+        EventAppender appender = channel.getOrCreateStream(STREAM)
+                .newAppender();
+        for (int i = 0; i < 400; i++) {
+            appender.create(String.class.getName())
+                    .header(KEY, "key-" + (i % KEYS))
+                    .event("event " + i);
+            if (i % 50 == 49) {
+                appender.append();
+            }
+        }
+        channel.close();
+
+        //reopen so every sealed segment has a persisted index
+        channel = open(dir);
+        FileEventStream stream
+                = (FileEventStream) channel.getOrCreateStream(STREAM);
+        List<AppendedEventMessage> before = readAll(stream);
+        EventReader reader = stream.newReader();
+        for (int i = 0; i < 3; i++) {
+            reader.poll();
+        }
+
+        Optional<StreamCompacted> compacted = stream.compact(KEY);
+        assertTrue(compacted.isPresent());
+        List<AppendedEventMessage> after = readAll(stream);
+        assertEquals(before.size() - after.size(),
+                compacted.get().getEventsRemoved());
+        assertRetained(before, after);
+
+        //a reader within a compacted segment continues after its last event
+        AppendedEventMessage next = reader.poll().get();
+        assertTrue(((FileAppendedEventMessage) next).getOffset() > 2);
+        assertTrue(after.stream().anyMatch((e)
+                -> e.getSequence().equals(next.getSequence())));
+
+        //retained events are found by sequence, removed events are not
+        EventReader positioned = stream.newReader();
+        AppendedEventMessage retained = after.get(after.size() / 2);
+        positioned.setPosition(retained.getSequence());
+        assertEquals(retained.getSequence(), positioned.getPosition());
+        try {
+            positioned.setPosition(before.get(0).getSequence());
+            fail("removed event was found");
+        } catch (UnknownEventException ex) {
+            //expected
+        }
+
+        //offsets of removed events are gaps in the stream
+        positioned.seek(retained.getOffset());
+        assertEquals(retained.getSequence(), positioned.getPosition());
+        assertEquals(retained.getOffset(), positioned.position());
+        try {
+            positioned.seek(before.get(0).getOffset());
+            fail("removed event was found");
+        } catch (UnknownEventException ex) {
+            assertEquals(retained.getOffset(), positioned.position());
+        }
+
+        assertEquals(1, countAdminEvents(channel,
+                StreamCompacted.class.getName()));
+        channel.close();
+
+        //compaction survives reopening the stream
+        channel = open(dir);
+        assertEquals(sequences(after),
+                sequences(readAll(channel.getOrCreateStream(STREAM))));
+        channel.close();
+    }
+
+    /**
+     * Asserts the events after compaction are an ordered subset of the events
+     * before, retaining the newest event of every key.
+     */
+    private static void assertRetained(List<AppendedEventMessage> before,
+            List<AppendedEventMessage> after) {
+        assertTrue(after.size() < before.size());
+        Map<String, String> newest = new HashMap<>();
+        before.forEach((e) -> newest.put(e.findHeader(KEY).get(),
+                e.getSequence()));
+
+        int i = 0;
+        for (AppendedEventMessage e : before) {
+            if (i < after.size()
+                    && after.get(i).getSequence().equals(e.getSequence())) {
+                i++;
+            } else {
+                assertFalse("newest event of key was removed", e.getSequence()
+                        .equals(newest.get(e.findHeader(KEY).get())));
+            }
+        }
+        assertEquals("events were reordered", after.size(), i);
+        assertTrue(sequences(after).containsAll(newest.values()));
+    }
+
+    private static FileEventChannel open(File dir) throws Exception {
+        Map<String, String> props = new HashMap<>();
+        props.put(FileChannelProvider.PROPERTY_DIRECTORY,
+                dir.getAbsolutePath());
+        props.put(FileChannelProvider.PROPERTY_SEGMENT_SIZE, "4096");
+        return (FileEventChannel) new FileChannelProvider().getChannel(
+                "testChannel", props, new HierarchicalCodecResolver(
+                        new ObjectStreamEventCodec()));
+    }
+
+    private static List<AppendedEventMessage> readAll(
+            EventStream stream) throws Exception {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        try (EventReader reader = stream.newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = reader.poll()).isPresent()) {
+                events.add(e.get());
+            }
+        }
+        return events;
+    }
+
+    private static List<String> sequences(List<AppendedEventMessage> events) {
+        List<String> sequences = new ArrayList<>();
+        events.forEach((e) -> sequences.add(e.getSequence()));
+        return sequences;
+    }
+
+    private static int countAdminEvents(FileEventChannel channel,
+            String eventType) throws Exception {
+        int count = 0;
+        for (AppendedEventMessage e : readAll(channel.getChannelAdminStream())) {
+            if (e.getEventType().equals(eventType)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
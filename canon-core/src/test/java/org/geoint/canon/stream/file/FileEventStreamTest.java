@@ -0,0 +1,309 @@
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.impl.codec.EventBuffer;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.impl.stream.GroupCommitter;
+import org.geoint.canon.stream.ChannelInitializationException;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests appending to and reading from a FileEventStream.
+ *
+ * @author steve_siebert
+ */
+public class FileEventStreamTest {
+
+    private static final String CHANNEL = "testChannel";
+    private static final String STREAM = "testStream";
+    private static final int EVENTS = 200;
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        append(channel.getOrCreateStream(STREAM), 0, EVENTS);
+
+        List<AppendedEventMessage> events
+                = readAll(channel.getOrCreateStream(STREAM));
+        assertEquals(EVENTS, events.size());
+        for (int i = 0; i < EVENTS; i++) {
+            AppendedEventMessage e = events.get(i);
+            assertEquals(i, e.getOffset());
+            assertEquals(STREAM, e.getStreamName());
+            assertEquals(String.valueOf(i), e.findHeader("index").get());
+            assertEquals("event " + i, decode(e));
+        }
+        //events did not fit in a single segment
+        assertTrue(segmentFiles(dir).length > 1);
+        channel.close();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        append(channel.getOrCreateStream(STREAM), 0, EVENTS);
+        List<String> before = sequences(readAll(
+                channel.getOrCreateStream(STREAM)));
+        channel.close();
+
+        //appends continue after the recovered active segment
+        channel = open(dir);
+        EventStream stream = channel.getOrCreateStream(STREAM);
+        assertEquals(before.get(EVENTS - 1), stream.getCurrentSequence());
+        append(stream, EVENTS, 10);
+        List<AppendedEventMessage> events = readAll(stream);
+        assertEquals(EVENTS + 10, events.size());
+        assertEquals(before, sequences(events).subList(0, EVENTS));
+        assertEquals(EVENTS + 9, events.get(EVENTS + 9).getOffset());
+        channel.close();
+    }
+
+    @Test
+    public void testRecoverTornRecord() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        append(channel.getOrCreateStream(STREAM), 0, EVENTS);
+        List<String> before = sequences(readAll(
+                channel.getOrCreateStream(STREAM)));
+        channel.close();
+
+        //corrupt the last record of the active segment and leave garbage
+        //following it, as written back by a crash
+        File[] segmentFiles = segmentFiles(dir);
+        File active = segmentFiles[segmentFiles.length - 1];
+        int limit;
+        try (EventSegment segment = EventSegment.open(CHANNEL, STREAM,
+                active)) {
+            limit = segment.getLimit();
+        }
+        assertTrue(limit > EventSegment.HEADER_LENGTH);
+        try (RandomAccessFile raf = new RandomAccessFile(active, "rw")) {
+            raf.seek(limit - 1);
+            final int last = raf.read();
+            raf.seek(limit - 1);
+            raf.write(last ^ 0xFF);
+            raf.writeInt(64);
+            raf.writeLong(-1);
+        }
+
+        channel = open(dir);
+        EventStream stream = channel.getOrCreateStream(STREAM);
+        List<AppendedEventMessage> events = readAll(stream);
+        assertEquals(before.subList(0, EVENTS - 1), sequences(events));
+        assertEquals(before.get(EVENTS - 2), stream.getCurrentSequence());
+
+        //the torn record is replaced by new appends
+        append(stream, EVENTS, 5);
+        assertEquals(EVENTS + 4, readAll(stream).size());
+        channel.close();
+
+        channel = open(dir);
+        events = readAll(channel.getOrCreateStream(STREAM));
+        assertEquals(EVENTS + 4, events.size());
+        assertEquals("event " + (EVENTS + 4), decode(events.get(EVENTS + 3)));
+        channel.close();
+    }
+
+    @Test
+    public void testSetPositionAcrossSegments() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        EventStream stream = channel.getOrCreateStream(STREAM);
+        append(stream, 0, EVENTS);
+        channel.close();
+
+        //positions are found both in the sealed and the reopened segments
+        channel = open(dir);
+        stream = channel.getOrCreateStream(STREAM);
+        append(stream, EVENTS, 10);
+        List<AppendedEventMessage> events = readAll(stream);
+        EventReader reader = stream.newReader();
+        for (int i : new int[]{EVENTS - 1, 3, EVENTS + 5, EVENTS / 2, 0}) {
+            reader.setPosition(events.get(i).getSequence());
+            assertEquals(events.get(i).getSequence(), reader.getPosition());
+            assertEquals(events.get(i + 1).getSequence(),
+                    reader.poll().get().getSequence());
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testSeekAcrossSegments() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        append(channel.getOrCreateStream(STREAM), 0, EVENTS);
+        channel.close();
+
+        //offsets are found in the sealed, the reopened and the active
+        //segments
+        channel = open(dir);
+        EventStream stream = channel.getOrCreateStream(STREAM);
+        append(stream, EVENTS, 10);
+        EventReader reader = stream.newReader();
+        for (long offset : new long[]{EVENTS - 1, 3, EVENTS + 5, EVENTS / 2,
+            0, EVENTS + 9}) {
+            reader.seek(offset);
+            assertEquals(offset, reader.position());
+            assertEquals("event " + offset, decode(reader.read()));
+            if (offset < EVENTS + 9) {
+                assertEquals(offset + 1, reader.poll().get().getOffset());
+            } else {
+                assertFalse(reader.poll().isPresent());
+            }
+        }
+        try {
+            reader.seek(EVENTS + 10);
+            fail("seek past the last event");
+        } catch (UnknownEventException ex) {
+            //expected, the reader keeps its position
+            assertEquals(EVENTS + 9, reader.position());
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testRetryAfterPartialWrite() throws Exception {
+        File dir = tempDir();
+        FileEventChannel channel = open(dir);
+        EventStream stream = channel.getOrCreateStream(STREAM);
+        EventAppender appender = stream.newAppender();
+        for (int i = 0; i < EVENTS; i++) {
+            appender.create(String.class.getName())
+                    .header("index", String.valueOf(i))
+                    .event("event " + i);
+        }
+
+        //block the next segment so the batch fails once the segment is full
+        File blocker = EventSegment.segmentFile(
+                new File(new File(dir, CHANNEL), STREAM),
+                segmentFiles(dir).length);
+        assertTrue(blocker.mkdir());
+        try {
+            appender.append();
+            fail("append should fail once the segment is full");
+        } catch (GroupCommitter.PartialWriteException ex) {
+            assertTrue(ex.getWritten().length < EVENTS);
+        }
+        final int written = readAll(stream).size();
+
+        //other producers reusing pooled buffers must not alter the content
+        //of the failed events
+        for (int i = 0; i < 16; i++) {
+            EventBuffer.acquire().write(new byte[256], 0, 256);
+        }
+
+        assertTrue(blocker.delete());
+        appender.append();
+
+        List<AppendedEventMessage> events = readAll(stream);
+        assertEquals(written + EVENTS, events.size());
+        for (int i = 0; i < EVENTS; i++) {
+            AppendedEventMessage e = events.get(written + i);
+            assertEquals(String.valueOf(i), e.findHeader("index").get());
+            assertEquals("event " + i, decode(e));
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testChannelDirectoryEncoded() throws Exception {
+        File dir = tempDir();
+        EventChannel channel = new FileChannelProvider().getChannel(
+                "../escape", properties(dir), codecs());
+        channel.close();
+
+        assertTrue(new File(dir,
+                FileEventChannel.directoryName("../escape")).isDirectory());
+        assertFalse(new File(dir.getParentFile(), "escape").exists());
+    }
+
+    @Test(expected = ChannelInitializationException.class)
+    public void testInvalidChannelDirectory() throws Exception {
+        new FileChannelProvider().getChannel("..", properties(tempDir()),
+                codecs());
+    }
+
+    private static void append(EventStream stream, int first, int count)
+            throws Exception {
+        EventAppender appender = stream.newAppender();
+        for (int i = first; i < first + count; i++) {
+            appender.create(String.class.getName())
+                    .header("index", String.valueOf(i))
+                    .event("event " + i);
+            if (i % 20 == 19) {
+                appender.append();
+            }
+        }
+        appender.append();
+    }
+
+    private static String decode(AppendedEventMessage e) throws Exception {
+        return (String) e.getEvent(new ObjectStreamEventCodec());
+    }
+
+    private static File tempDir() throws Exception {
+        File dir = Files.createTempDirectory("canon-file").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static File[] segmentFiles(File dir) {
+        File[] files = new File(new File(dir, CHANNEL), STREAM)
+                .listFiles(EventSegment::isSegmentFile);
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static Map<String, String> properties(File dir) {
+        Map<String, String> props = new HashMap<>();
+        props.put(FileChannelProvider.PROPERTY_DIRECTORY,
+                dir.getAbsolutePath());
+        props.put(FileChannelProvider.PROPERTY_SEGMENT_SIZE, "4096");
+        return props;
+    }
+
+    private static HierarchicalCodecResolver codecs() {
+        return new HierarchicalCodecResolver(new ObjectStreamEventCodec());
+    }
+
+    private static FileEventChannel open(File dir) throws Exception {
+        return (FileEventChannel) new FileChannelProvider().getChannel(
+                CHANNEL, properties(dir), codecs());
+    }
+
+    private static List<AppendedEventMessage> readAll(
+            EventStream stream) throws Exception {
+        List<AppendedEventMessage> events = new ArrayList<>();
+        try (EventReader reader = stream.newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = reader.poll()).isPresent()) {
+                events.add(e.get());
+            }
+        }
+        return events;
+    }
+
+    private static List<String> sequences(List<AppendedEventMessage> events) {
+        List<String> sequences = new ArrayList<>();
+        events.forEach((e) -> sequences.add(e.getSequence()));
+        return sequences;
+    }
+}
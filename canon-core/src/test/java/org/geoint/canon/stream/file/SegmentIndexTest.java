@@ -0,0 +1,186 @@
+package org.geoint.canon.stream.file;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.geoint.canon.stream.mock.MockAppendedEventMessage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the persisted SegmentIndex and the FileSequenceIndex of a stream.
+ *
+ * @author steve_siebert
+ */
+public class SegmentIndexTest {
+
+    private static final String CHANNEL = "testChannel";
+    private static final String STREAM = "testStream";
+    private static final int RECORDS = 100;
+
+    @Test
+    public void testPersistedLookup() throws Exception {
+        File dir = tempDir();
+        List<Integer> positions = new ArrayList<>();
+        try (EventSegment segment = segment(dir, 0, positions)) {
+            SegmentIndex index = SegmentIndex.open(segment);
+            assertEquals(RECORDS, index.size());
+            for (int i = 0; i < RECORDS; i++) {
+                assertEquals((int) positions.get(i), index.find(sequence(0, i)));
+            }
+            assertEquals(-1, index.find("unknown"));
+            assertEquals(-1, index.find(sequence(1, 0)));
+
+            //the filter rejects most sequences not in the segment
+            int candidates = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (index.mightContain(SegmentIndex.hash(sequence(2, i)))) {
+                    candidates++;
+                }
+            }
+            assertTrue(String.valueOf(candidates), candidates < 50);
+        }
+    }
+
+    @Test
+    public void testHashCollision() throws Exception {
+        File dir = tempDir();
+        List<Integer> positions = new ArrayList<>();
+        try (EventSegment segment = segment(dir, 0, positions)) {
+            //both records indexed with the hash of the first sequence, the
+            //second record ordered first
+            final long hash = SegmentIndex.hash(sequence(0, 0));
+            SegmentIndex index = SegmentIndex.write(segment,
+                    new long[]{hash, hash},
+                    new int[]{positions.get(1), positions.get(0)}, 2);
+            assertEquals((int) positions.get(0), index.find(sequence(0, 0)));
+            assertEquals(-1, index.find(sequence(0, 1)));
+        }
+    }
+
+    @Test
+    public void testRebuildOnReopen() throws Exception {
+        File dir = tempDir();
+        List<Integer> positions = new ArrayList<>();
+        try (EventSegment segment = segment(dir, 0, positions)) {
+            SegmentIndex.open(segment);
+            File indexFile = indexFile(dir);
+            assertTrue(indexFile.exists());
+
+            //an index file which is not valid is rebuilt
+            Files.write(indexFile.toPath(), new byte[]{1, 2, 3});
+            SegmentIndex index = SegmentIndex.open(segment);
+            assertEquals(RECORDS, index.size());
+            assertEquals((int) positions.get(RECORDS - 1),
+                    index.find(sequence(0, RECORDS - 1)));
+            assertTrue(indexFile.length() > 3);
+
+            //and a missing index file is rebuilt
+            assertTrue(indexFile.delete());
+            index = SegmentIndex.open(segment);
+            assertEquals((int) positions.get(RECORDS / 2),
+                    index.find(sequence(0, RECORDS / 2)));
+            assertTrue(indexFile.exists());
+        }
+    }
+
+    @Test
+    public void testStreamIndex() throws Exception {
+        File dir = tempDir();
+        FileSequenceIndex index = new FileSequenceIndex(STREAM);
+        List<Integer> sealedPositions = new ArrayList<>();
+        List<Integer> activePositions = new ArrayList<>();
+        try (EventSegment sealed = segment(dir, 0, sealedPositions);
+                EventSegment active = segment(dir, 1, activePositions)) {
+            for (int i = 0; i < RECORDS; i++) {
+                index.put(sequence(0, i), FileSequenceIndex.position(0,
+                        sealedPositions.get(i)));
+                index.put(sequence(1, i), FileSequenceIndex.position(1,
+                        activePositions.get(i)));
+            }
+            index.sealed(sealed);
+            index.awaitBuilds();
+            assertTrue(index.isPersisted(0));
+            assertFalse(index.isPersisted(1));
+
+            //found in both the persisted and the heap index
+            assertEquals(FileSequenceIndex.position(0, sealedPositions.get(7)),
+                    index.find(sequence(0, 7)).getAsLong());
+            assertEquals(FileSequenceIndex.position(1, activePositions.get(7)),
+                    index.find(sequence(1, 7)).getAsLong());
+            assertFalse(index.find(sequence(2, 0)).isPresent());
+        }
+    }
+
+    @Test
+    public void testOffsetTable() throws Exception {
+        File dir = tempDir();
+        FileSequenceIndex index = new FileSequenceIndex(STREAM);
+        List<Integer> sealedPositions = new ArrayList<>();
+        List<Integer> activePositions = new ArrayList<>();
+        try (EventSegment sealed = segment(dir, 0, sealedPositions);
+                EventSegment active = segment(dir, 1, activePositions)) {
+            for (int i = 0; i < RECORDS; i++) {
+                index.put(sequence(0, i), i, FileSequenceIndex.position(0,
+                        sealedPositions.get(i)));
+                index.put(sequence(1, i), RECORDS + i,
+                        FileSequenceIndex.position(1, activePositions.get(i)));
+            }
+            index.sealed(sealed);
+            index.awaitBuilds();
+
+            //scans start at the closest preceding table entry, from both the
+            //persisted and the heap table
+            for (int i = 0; i < RECORDS; i++) {
+                final int floor = i - i % SegmentIndex.OFFSET_STRIDE;
+                assertEquals((int) sealedPositions.get(floor),
+                        index.floorPosition(sealed, i));
+                assertEquals((int) activePositions.get(floor),
+                        index.floorPosition(active, RECORDS + i));
+            }
+            assertEquals(EventSegment.HEADER_LENGTH,
+                    index.floorPosition(active, RECORDS - 1));
+            final int last = RECORDS - 1;
+            assertEquals((int) sealedPositions.get(
+                    last - last % SegmentIndex.OFFSET_STRIDE),
+                    index.floorPosition(sealed, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Creates a sealed segment of records with the sequences of the segment.
+     */
+    private static EventSegment segment(File dir, long id,
+            List<Integer> positions) throws Exception {
+        EventSegment segment = EventSegment.create(CHANNEL, STREAM, dir, id,
+                64 * 1024);
+        for (int i = 0; i < RECORDS; i++) {
+            final String sequence = sequence(id, i);
+            positions.add(segment.append(id * RECORDS + i, sequence,
+                    EventSegment.encodeMetadata(0L, sequence,
+                            new MockAppendedEventMessage(CHANNEL, STREAM,
+                                    "test", sequence)),
+                    ByteBuffer.wrap(sequence.getBytes())));
+        }
+        segment.publish();
+        segment.seal();
+        return segment;
+    }
+
+    private static String sequence(long segment, int record) {
+        return "seq-" + segment + "-" + record;
+    }
+
+    private static File indexFile(File dir) {
+        return dir.listFiles((d, n)
+                -> n.endsWith(SegmentIndex.INDEX_FILE_EXTENSION))[0];
+    }
+
+    private static File tempDir() throws Exception {
+        File dir = Files.createTempDirectory("canon-index").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+}
@@ -0,0 +1,204 @@
+package org.geoint.canon.stream.memory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import org.geoint.canon.event.AppendedEventMessage;
+import org.geoint.canon.event.UnknownEventException;
+import org.geoint.canon.impl.codec.HierarchicalCodecResolver;
+import org.geoint.canon.impl.codec.ObjectStreamEventCodec;
+import org.geoint.canon.stream.DurableEventReader;
+import org.geoint.canon.stream.EventAppender;
+import org.geoint.canon.stream.EventChannel;
+import org.geoint.canon.stream.EventReader;
+import org.geoint.canon.stream.EventStream;
+import org.geoint.canon.stream.FilteredEventReader;
+import org.geoint.canon.stream.StreamReadException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests seeking heap stream readers, directly and through decorators, by
+ * event offset.
+ *
+ * @author steve_siebert
+ */
+public class HeapEventReaderSeekTest {
+
+    private static final int EVENTS = 10;
+
+    private EventChannel channel;
+    private EventStream stream;
+    private List<AppendedEventMessage> events;
+
+    @Before
+    public void setUp() throws Exception {
+        channel = new MemoryChannelProvider().getChannel("testChannel",
+                new HashMap<>(), new HierarchicalCodecResolver(
+                        new ObjectStreamEventCodec()));
+        stream = channel.getOrCreateStream("testStream");
+        EventAppender appender = stream.newAppender();
+        for (int i = 0; i < EVENTS; i++) {
+            appender.create(String.class.getName()).event("event " + i);
+        }
+        appender.append();
+
+        events = new ArrayList<>();
+        try (EventReader reader = stream.newReader()) {
+            Optional<AppendedEventMessage> e;
+            while ((e = reader.poll()).isPresent()) {
+                events.add(e.get());
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel.close();
+    }
+
+    @Test
+    public void testOffsets() {
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(i, events.get(i).getOffset());
+        }
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        EventReader reader = stream.newReader();
+        assertEquals(-1, reader.position());
+
+        reader.seek(4);
+        assertEquals(4, reader.position());
+        assertEquals(events.get(4).getSequence(), reader.getPosition());
+        assertEquals(EVENTS - 5, reader.available());
+        assertEquals(events.get(5).getSequence(),
+                reader.poll().get().getSequence());
+        assertEquals(5, reader.position());
+
+        //seeking backwards replays the following events
+        reader.seek(0);
+        assertEquals(events.get(1).getSequence(),
+                reader.poll().get().getSequence());
+
+        reader.seek(EVENTS - 1);
+        assertEquals(0, reader.available());
+        assertFalse(reader.poll().isPresent());
+    }
+
+    @Test
+    public void testSeekOutOfRange() throws Exception {
+        EventReader reader = stream.newReader();
+        reader.seek(3);
+        for (long offset : new long[]{-1, EVENTS, Long.MAX_VALUE}) {
+            try {
+                reader.seek(offset);
+                fail("seek to unknown offset " + offset);
+            } catch (UnknownEventException ex) {
+                //the reader position is unchanged
+                assertEquals(3, reader.position());
+            }
+        }
+    }
+
+    @Test
+    public void testSeekDecorated() throws Exception {
+        EventReader reader = new FilteredEventReader(stream.newReader(),
+                (e) -> true);
+        reader.seek(6);
+        assertEquals(6, reader.position());
+        assertEquals(events.get(7).getSequence(),
+                reader.poll().get().getSequence());
+        assertEquals(7, reader.position());
+    }
+
+    @Test
+    public void testDurableSeek() throws Exception {
+        MockDurableEventReader reader
+                = new MockDurableEventReader(stream.newReader());
+        reader.seek(2);
+        assertEquals(events.get(2).getSequence(), reader.written);
+        assertEquals(2, reader.position());
+
+        //the unacknowledged event is discarded by the seek
+        assertEquals(events.get(3).getSequence(),
+                reader.poll().get().getSequence());
+        reader.seek(7);
+        assertEquals(events.get(7).getSequence(), reader.written);
+        assertEquals(events.get(8).getSequence(),
+                reader.poll().get().getSequence());
+    }
+
+    /**
+     * Test the reader position is restored if the new position cannot be
+     * written.
+     */
+    @Test
+    public void testDurableSeekRollback() throws Exception {
+        MockDurableEventReader reader
+                = new MockDurableEventReader(stream.newReader());
+        reader.seek(2);
+        reader.failWrites = true;
+        try {
+            reader.seek(6);
+            fail("position written");
+        } catch (StreamReadException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+        assertEquals(2, reader.position());
+        assertEquals(events.get(2).getSequence(), reader.written);
+        assertEquals(events.get(3).getSequence(),
+                reader.poll().get().getSequence());
+    }
+
+    @Test
+    public void testDurableSeekOutOfRange() throws Exception {
+        MockDurableEventReader reader
+                = new MockDurableEventReader(stream.newReader());
+        reader.seek(2);
+        try {
+            reader.seek(EVENTS);
+            fail("seek to unknown offset");
+        } catch (UnknownEventException ex) {
+            //neither the reader nor the durable position changed
+            assertEquals(2, reader.position());
+            assertEquals(events.get(2).getSequence(), reader.written);
+        }
+    }
+
+    /**
+     * Durable reader keeping its position in memory.
+     */
+    private static class MockDurableEventReader extends DurableEventReader {
+
+        private String written;
+        private boolean failWrites;
+
+        MockDurableEventReader(EventReader reader) {
+            super("testReader", reader);
+        }
+
+        @Override
+        public void deleteReader() {
+            written = null;
+        }
+
+        @Override
+        protected String readPosition() {
+            return written;
+        }
+
+        @Override
+        protected void writePosition(String position) throws IOException {
+            if (failWrites) {
+                throw new IOException("write failure");
+            }
+            written = position;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.geoint.canon.stream.mock;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -34,6 +35,7 @@ public class MockAppendedEventMessage implements AppendedEventMessage {
     private final String streamName;
     private final String eventType;
     private final String sequence;
+    private final Map<String, String> headers = new HashMap<>();
 
     public MockAppendedEventMessage(String channelName, String streamName,
             String eventType, String sequence) {
@@ -68,6 +70,18 @@ public class MockAppendedEventMessage implements AppendedEventMessage {
                 eventType, UUID.randomUUID().toString());
     }
 
+    /**
+     * Sets an event header.
+     *
+     * @param name header name
+     * @param value header value
+     * @return this message
+     */
+    public MockAppendedEventMessage withHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
     @Override
     public String getSequence() {
         return sequence;
@@ -105,17 +119,17 @@ public class MockAppendedEventMessage implements AppendedEventMessage {
 
     @Override
     public Map<String, String> getHeaders() {
-        return Collections.EMPTY_MAP;
+        return Collections.unmodifiableMap(headers);
     }
 
     @Override
     public Optional<String> findHeader(String headerName) {
-        return Optional.empty();
+        return Optional.ofNullable(headers.get(headerName));
     }
 
     @Override
     public String getHeader(String headerName, Supplier<String> defaultValue) {
-        return defaultValue.get();
+        return findHeader(headerName).orElseGet(defaultValue);
     }
 
     @Override
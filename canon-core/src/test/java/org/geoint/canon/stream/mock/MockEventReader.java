@@ -78,6 +78,11 @@ public class MockEventReader implements EventReader {
         }
     }
 
+    @Override
+    public long available() {
+        return Math.max(0, messages.size() - (position + 1));
+    }
+
     @Override
     public AppendedEventMessage read() throws StreamReadException {
         return messages.get(position);
@@ -139,6 +144,24 @@ public class MockEventReader implements EventReader {
         }
     }
 
+    /**
+     * Sets the position to the event at the offset, the index of the event
+     * fed to this reader.
+     */
+    @Override
+    public void seek(long offset)
+            throws StreamReadException, UnknownEventException {
+        if (offset < 0 || offset >= messages.size()) {
+            throw new UnknownEventException(String.valueOf(offset));
+        }
+        this.position = (int) offset;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
     @Override
     public void close() throws IOException {
         messages.clear();
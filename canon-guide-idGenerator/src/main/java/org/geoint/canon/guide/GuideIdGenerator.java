@@ -15,6 +15,7 @@
  */
 package org.geoint.canon.guide;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
@@ -41,6 +42,10 @@ import org.geoint.guide.InvalidGUIDEException;
  * if set</li>
  * <li>throws NoGUIDEPrefixFoundException</li>
  * </ol>
+ * <p>
+ * The channel and JVM prefix is resolved once for the channel properties the
+ * generator is used with and cached, so later changes to the JVM property are
+ * not seen by the generator; only the event header is checked for each event.
  *
  * @author steve_siebert
  */
@@ -48,23 +53,70 @@ public class GuideIdGenerator implements EventIdGenerator {
 
     public static final String PREFIX_NAME = "org.geoint.canon.guide.prefix";
 
+    //replaced, rather than locked, if used with other channel properties
+    private volatile ChannelPrefix channelPrefix;
+
     @Override
     public String generate(EventMessage eventContext,
             Map<String, String> channelProperties) {
+        return mint(eventContext, channelPrefix(channelProperties));
+    }
+
+    /**
+     * Generates the GUIDEs of a batch of events, resolving the channel prefix
+     * once for the batch.
+     *
+     * @param events events for which identifiers are to be generated
+     * @param channelProperties channel properties
+     * @return GUIDE strings, in the order of the events
+     */
+    @Override
+    public String[] generateBatch(List<? extends EventMessage> events,
+            Map<String, String> channelProperties) {
+        final ChannelPrefix defaultPrefix = channelPrefix(channelProperties);
+        final String[] ids = new String[events.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mint(events.get(i), defaultPrefix);
+        }
+        return ids;
+    }
+
+    private String mint(EventMessage eventContext,
+            ChannelPrefix defaultPrefix) {
+        final String header
+                = validOrNull(eventContext.getHeaders().get(PREFIX_NAME));
+        final int prefix;
+        if (header != null) {
+            prefix = Integer.parseInt(header);
+        } else if (defaultPrefix.prefix != null) {
+            prefix = defaultPrefix.prefix;
+        } else {
+            throw new NoGUIDEPrefixFoundException(eventContext);
+        }
 
-        String prefix = Optional.ofNullable(
-                findPrefix(eventContext.getHeaders())
-                .orElseGet(() -> findPrefix(channelProperties)
-                        .orElseGet(() -> findPrefix(System.getProperties())
-                                .orElse(null))))
-                .orElseThrow(() -> new NoGUIDEPrefixFoundException(eventContext));
         try {
-            return GUIDE.randomGUIDE(Integer.valueOf(prefix)).asString();
+            return GUIDE.randomGUIDE(prefix).asString();
         } catch (InvalidGUIDEException ex) {
             throw new InvalidGeneratedGUIDEException(eventContext);
         }
     }
 
+    /**
+     * Prefix of the channel, resolved from the channel properties or JVM
+     * properties if not cached for these channel properties.
+     */
+    private ChannelPrefix channelPrefix(Map<String, String> channelProperties) {
+        ChannelPrefix cached = channelPrefix;
+        if (cached == null || cached.channelProperties != channelProperties) {
+            cached = new ChannelPrefix(channelProperties,
+                    findPrefix(channelProperties)
+                    .orElseGet(() -> findPrefix(System.getProperties())
+                            .orElse(null)));
+            channelPrefix = cached;
+        }
+        return cached;
+    }
+
     private Optional<String> findPrefix(Map<String, String> settings) {
         return Optional.ofNullable(validOrNull(settings.get(PREFIX_NAME)));
     }
@@ -79,4 +131,19 @@ public class GuideIdGenerator implements EventIdGenerator {
         }
         return str;
     }
+
+    /**
+     * Prefix resolved for channel properties.
+     */
+    private static final class ChannelPrefix {
+
+        private final Map<String, String> channelProperties;
+        //null if neither the channel nor the JVM set a prefix
+        private final Integer prefix;
+
+        ChannelPrefix(Map<String, String> channelProperties, String prefix) {
+            this.channelProperties = channelProperties;
+            this.prefix = prefix == null ? null : Integer.valueOf(prefix);
+        }
+    }
 }
@@ -16,6 +16,7 @@
 package org.geoint.canon.guide;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,6 +35,7 @@ import org.junit.Test;
 public class GuideIdGeneratorTest {
 
     private static final int VALID_PREFIX = 123;
+    private static final int OTHER_PREFIX = 456;
     private static final int INVALID_PREFIX = -10;
 
     @Test
@@ -82,6 +84,34 @@ public class GuideIdGeneratorTest {
         }
     }
 
+    @Test
+    public void testEventPrefixOverridesCachedChannelPrefix() throws Exception {
+        final Map<String, String> props = mapWithPrefix(VALID_PREFIX);
+
+        GuideIdGenerator generator = new GuideIdGenerator();
+        String id = generator.generate(messageWithoutPrefix(), props);
+        assertEquals(VALID_PREFIX, GUIDE.valueOf(id).getPrefix());
+        id = generator.generate(messageWithPrefix(OTHER_PREFIX), props);
+        assertEquals(OTHER_PREFIX, GUIDE.valueOf(id).getPrefix());
+        id = generator.generate(messageWithoutPrefix(), props);
+        assertEquals(VALID_PREFIX, GUIDE.valueOf(id).getPrefix());
+    }
+
+    @Test
+    public void testGenerateBatch() throws Exception {
+        final Map<String, String> props = mapWithPrefix(VALID_PREFIX);
+
+        GuideIdGenerator generator = new GuideIdGenerator();
+        String[] ids = generator.generateBatch(Arrays.asList(
+                messageWithoutPrefix(), messageWithPrefix(OTHER_PREFIX),
+                messageWithoutPrefix()), props);
+        assertEquals(3, ids.length);
+        assertEquals(VALID_PREFIX, GUIDE.valueOf(ids[0]).getPrefix());
+        assertEquals(OTHER_PREFIX, GUIDE.valueOf(ids[1]).getPrefix());
+        assertEquals(VALID_PREFIX, GUIDE.valueOf(ids[2]).getPrefix());
+        assertFalse(ids[0].equals(ids[2]));
+    }
+
     @Test(expected = InvalidGeneratedGUIDEException.class)
     public void testInvalidPrefix() {
         final EventMessage msg = messageWithPrefix(INVALID_PREFIX);
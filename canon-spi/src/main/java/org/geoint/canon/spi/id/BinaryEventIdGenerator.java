@@ -0,0 +1,51 @@
+package org.geoint.canon.spi.id;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.geoint.canon.event.EventMessage;
+
+/**
+ * An EventIdGenerator which can also generate event identities in a compact,
+ * fixed length, binary form.
+ * <p>
+ * The binary form of an identity is equivalent to its string form; an
+ * identity generated in one form can be converted to the other with
+ * {@link #toString(ByteBuffer)}. Writing the binary form into a caller
+ * provided buffer allows identities to be generated without allocation, for
+ * example directly into an index entry.
+ * <p>
+ * Implementations of this interface must be thread safe.
+ *
+ * @author steve_siebert
+ */
+public interface BinaryEventIdGenerator extends EventIdGenerator {
+
+    /**
+     * Number of bytes of the binary form of an identity.
+     *
+     * @return binary identity length
+     */
+    int getBinaryLength();
+
+    /**
+     * Generate a new unique event identity, writing its binary form to the
+     * buffer at its current position and advancing the position.
+     *
+     * @param eventContext event for which the identifier is to be generated
+     * @param channelProperties properties of the channel for which this id
+     * generator is being used
+     * @param id buffer with at least {@link #getBinaryLength()} bytes
+     * remaining
+     */
+    void generate(EventMessage eventContext,
+            Map<String, String> channelProperties, ByteBuffer id);
+
+    /**
+     * Returns the string form of the binary identity at the current position
+     * of the buffer, without changing the buffer position.
+     *
+     * @param id buffer containing a binary identity
+     * @return string form of the identity
+     */
+    String toString(ByteBuffer id);
+}
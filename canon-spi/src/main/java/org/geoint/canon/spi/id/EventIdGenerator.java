@@ -1,5 +1,6 @@
 package org.geoint.canon.spi.id;
 
+import java.util.List;
 import java.util.Map;
 import org.geoint.canon.event.EventMessage;
 
@@ -38,4 +39,26 @@ public interface EventIdGenerator {
      */
     String generate(EventMessage eventContext, 
             Map<String, String> channelProperties);
+
+    /**
+     * Generate new unique event identities for a batch of events appended
+     * together.
+     * <p>
+     * The default implementation generates the identity of each event
+     * individually; implementations may override this method to share work,
+     * such as resolving settings, across the batch.
+     *
+     * @param events events for which identifiers are to be generated
+     * @param channelProperties properties of the channel for which this id
+     * generator is being used
+     * @return new unique event identities, in the order of the events
+     */
+    default String[] generateBatch(List<? extends EventMessage> events,
+            Map<String, String> channelProperties) {
+        final String[] ids = new String[events.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generate(events.get(i), channelProperties);
+        }
+        return ids;
+    }
 }